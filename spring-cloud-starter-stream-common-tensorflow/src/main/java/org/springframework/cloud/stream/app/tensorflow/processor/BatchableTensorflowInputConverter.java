@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Collection;
+
+/**
+ * A {@link TensorflowInputConverter} that opts in to micro-batching.
+ *
+ * When batching is enabled (tensorflow.batch.size > 1) the messages are still converted one at a time, but the
+ * feeds returned by {@link #getBatchedFeedNames()} are stacked along the first (batch) dimension and evaluated with
+ * a single session run. Each of those feeds must be produced with a leading batch dimension of size 1. Messages
+ * whose batched feeds have different shapes (e.g. images of different sizes) are evaluated in separate runs.
+ *
+ * The feeds not listed in {@link #getBatchedFeedNames()} are expected to be equal for all messages. They are taken
+ * from the first message of the batch.
+ *
+ * The fetched output tensors are split back along the first dimension, so the {@link TensorflowOutputConverter}
+ * always sees the result of a single message.
+ *
+ * @author agent
+ */
+public interface BatchableTensorflowInputConverter extends TensorflowInputConverter {
+
+	/**
+	 * @return Names of the feeds that can be stacked along the batch dimension.
+	 */
+	Collection<String> getBatchedFeedNames();
+
+}
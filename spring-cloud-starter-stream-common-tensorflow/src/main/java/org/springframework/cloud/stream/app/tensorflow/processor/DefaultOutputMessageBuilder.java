@@ -28,6 +28,9 @@ import org.springframework.util.MimeTypeUtils;
  * The {@link OutputMode#header} stores the inference score inside a Message header with name {@link #outputName}.
  * In this case the output message payload copies the inbound message payload.
  *
+ * The payload mode content type is application/json, or the content type of the configured output format (see
+ * {@link TensorFormat}) for binary scores.
+ *
  * @author Christian Tzolov
  */
 public class DefaultOutputMessageBuilder implements OutputMessageBuilder {
@@ -36,9 +39,12 @@ public class DefaultOutputMessageBuilder implements OutputMessageBuilder {
 
 	private final String outputName;
 
+	private final TensorFormat outputFormat;
+
 	public DefaultOutputMessageBuilder(TensorflowCommonProcessorProperties properties) {
 		this.outputMode = properties.getMode();
 		this.outputName = properties.getOutputName();
+		this.outputFormat = properties.getOutputFormat();
 	}
 
 	@Override
@@ -57,8 +63,15 @@ public class DefaultOutputMessageBuilder implements OutputMessageBuilder {
 		default: // payload mode
 			return MessageBuilder
 					.withPayload(computedScore)
-					.setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON_VALUE);
+					.setHeader(MessageHeaders.CONTENT_TYPE, contentType(computedScore));
 		}
 
 	}
+
+	private String contentType(Object computedScore) {
+		if (computedScore instanceof byte[]) {
+			return this.outputFormat.getContentType();
+		}
+		return MimeTypeUtils.APPLICATION_JSON_VALUE;
+	}
 }
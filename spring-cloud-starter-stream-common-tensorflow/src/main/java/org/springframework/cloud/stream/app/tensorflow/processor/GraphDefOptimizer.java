@@ -0,0 +1,589 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.tensorflow.Graph;
+import org.tensorflow.Session;
+import org.tensorflow.Tensor;
+import org.tensorflow.framework.AttrValue;
+import org.tensorflow.framework.GraphDef;
+import org.tensorflow.framework.NodeDef;
+import org.tensorflow.framework.TensorProto;
+
+/**
+ * Rewrites a frozen GraphDef before it is imported, to reduce the native memory of the graph and the number of
+ * nodes the sessions schedule on every run:
+ *
+ * <ul>
+ *     <li>Prunes the nodes that the fetched outputs do not depend on (e.g. the training, summary and saver nodes).
+ *     The Placeholder nodes are always kept, since the feeds are only known at evaluation time.</li>
+ *     <li>Forwards the Identity nodes to their inputs. The fetched Identity nodes and the Identity nodes of the
+ *     control flow and of the variables are kept.</li>
+ *     <li>Folds the subgraphs of pure ops that depend on constants only into Const nodes, evaluated once with a
+ *     temporary session. A folded constant can not be larger than the constants it replaces (or 1KB).</li>
+ * </ul>
+ *
+ * The feeds must be Placeholder nodes. Without fetched names the nodes without consumers are kept instead.
+ *
+ * With a cache directory the optimized GraphDef is stored on the local disk, under a key computed from the original
+ * GraphDef content and the optimization settings, so the following loads skip the optimization.
+ *
+ * @author agent
+ */
+class GraphDefOptimizer {
+
+	private static final Log logger = LogFactory.getLog(GraphDefOptimizer.class);
+
+	/**
+	 * Part of the cache key. Change it when the rewrites change.
+	 */
+	private static final String VERSION = "2";
+
+	private static final String OPTIMIZED_GRAPH_FILE_EXTENSION = ".optimized.pb";
+
+	/**
+	 * Pure ops, whose outputs only depend on their inputs, the only ones folded. The Java API does not expose the
+	 * stateful flag of the registered ops, and a new stateful or random op (e.g. TruncatedNormal) must never be
+	 * folded into a constant, so the unknown ops are not folded.
+	 */
+	private static final Set<String> FOLDABLE_OPS = new HashSet<>(Arrays.asList(
+			// Arithmetic
+			"Add", "AddV2", "AddN", "Sub", "Mul", "Div", "RealDiv", "FloorDiv", "FloorMod", "Mod", "Neg", "Abs",
+			"Sign", "Square", "Sqrt", "Rsqrt", "Reciprocal", "Exp", "Log", "Log1p", "Pow", "Maximum", "Minimum",
+			"Floor", "Ceil", "Round", "SquaredDifference", "BiasAdd", "MatMul", "BatchMatMul", "Sigmoid", "Tanh",
+			"Relu", "Relu6",
+			// Comparison and logic
+			"Equal", "NotEqual", "Less", "LessEqual", "Greater", "GreaterEqual", "LogicalAnd", "LogicalOr",
+			"LogicalNot", "Select",
+			// Reductions
+			"Sum", "Prod", "Mean", "Max", "Min", "All", "Any", "ArgMax", "ArgMin",
+			// Shapes and layouts
+			"Shape", "ShapeN", "Size", "Rank", "Reshape", "Squeeze", "ExpandDims", "Transpose", "Tile", "Fill",
+			"Range", "ZerosLike", "OnesLike", "Pack", "Unpack", "Concat", "ConcatV2", "Slice", "StridedSlice",
+			"Gather", "GatherV2", "Pad", "PadV2", "Cast", "BroadcastTo", "BroadcastArgs", "Identity"));
+
+	/**
+	 * The Identity nodes of these inputs carry a semantic (dead tensors of the untaken branches, loop frames,
+	 * reference dereferencing) and are not forwarded.
+	 */
+	private static final Pattern NON_FORWARDED_IDENTITY_INPUTS = Pattern.compile(
+			"(Ref)?(Switch|Merge|Enter|Exit|NextIteration)|LoopCond|.*Variable.*");
+
+	private static final String COLOCATION_ATTR = "_class";
+
+	private static final String COLOCATION_PREFIX = "loc:@";
+
+	/**
+	 * Minimal size of a folded constant, below which the constants are folded regardless of their inputs size.
+	 */
+	private static final int MIN_FOLDED_BYTES = 1024;
+
+	private final List<String> fetchedNames;
+
+	private final boolean constantFolding;
+
+	private final File cacheDirectory;
+
+	/**
+	 * @param fetchedNames Names of the fetched output tensors, or an empty list if not known.
+	 * @param constantFolding Folds the constant subgraphs when true.
+	 * @param cacheDirectory Local directory to cache the optimized GraphDef in, or null to disable the caching.
+	 */
+	GraphDefOptimizer(List<String> fetchedNames, boolean constantFolding, File cacheDirectory) {
+		this.fetchedNames = (fetchedNames != null) ? fetchedNames : new ArrayList<>();
+		this.constantFolding = constantFolding;
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * @param graphDef Serialized frozen GraphDef.
+	 * @return Returns the serialized optimized GraphDef.
+	 */
+	byte[] optimize(byte[] graphDef) {
+		if (this.cacheDirectory == null) {
+			return optimizeLogged(graphDef);
+		}
+
+		File cachedGraph = new File(this.cacheDirectory, cacheKey(graphDef) + OPTIMIZED_GRAPH_FILE_EXTENSION);
+		try {
+			if (cachedGraph.isFile()) {
+				if (logger.isInfoEnabled()) {
+					logger.info("Optimized graph cache hit: " + cachedGraph);
+				}
+				return Files.readAllBytes(cachedGraph.toPath());
+			}
+		}
+		catch (IOException e) {
+			logger.warn("Failed to read the optimized graph: " + cachedGraph, e);
+		}
+
+		byte[] optimized = optimizeLogged(graphDef);
+		try {
+			Files.createDirectories(this.cacheDirectory.toPath());
+			Path temp = Files.createTempFile(this.cacheDirectory.toPath(), cachedGraph.getName(), ".tmp");
+			Files.write(temp, optimized);
+			Files.move(temp, cachedGraph.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			logger.warn("Failed to cache the optimized graph: " + cachedGraph, e);
+		}
+		return optimized;
+	}
+
+	private byte[] optimizeLogged(byte[] graphDef) {
+		long start = System.nanoTime();
+		GraphDef original;
+		try {
+			original = GraphDef.parseFrom(graphDef);
+		}
+		catch (InvalidProtocolBufferException e) {
+			throw new IllegalArgumentException("Invalid GraphDef", e);
+		}
+		GraphDef optimized = optimize(original);
+		byte[] optimizedBytes = optimized.toByteArray();
+		if (logger.isInfoEnabled()) {
+			logger.info(String.format("Graph optimized in %d ms: %d -> %d nodes, %d -> %d bytes",
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), original.getNodeCount(),
+					optimized.getNodeCount(), graphDef.length, optimizedBytes.length));
+		}
+		return optimizedBytes;
+	}
+
+	GraphDef optimize(GraphDef graphDef) {
+		List<NodeDef> nodes = graphDef.getNodeList();
+		Set<String> roots = roots(nodes);
+
+		// The roots and the feeds keep their names and their semantic
+		Set<String> preserved = new HashSet<>(roots);
+		for (NodeDef node : nodes) {
+			if (node.getOp().startsWith("Placeholder")) {
+				preserved.add(node.getName());
+			}
+		}
+
+		nodes = prune(nodes, preserved);
+		nodes = forwardIdentities(nodes, preserved);
+		if (this.constantFolding) {
+			nodes = prune(foldConstants(graphDef, nodes, roots), preserved);
+		}
+		nodes = removeDanglingColocations(nodes);
+
+		return graphDef.toBuilder().clearNode().addAllNode(nodes).build();
+	}
+
+	/**
+	 * @return the nodes of the fetched tensors, or the nodes without consumers if the fetched names are unknown
+	 * or missing from the graph.
+	 */
+	private Set<String> roots(List<NodeDef> nodes) {
+		Set<String> names = new HashSet<>();
+		for (NodeDef node : nodes) {
+			names.add(node.getName());
+		}
+
+		Set<String> roots = new LinkedHashSet<>();
+		for (String fetchedName : this.fetchedNames) {
+			roots.add(nodeName(fetchedName));
+		}
+		if (!roots.isEmpty() && names.containsAll(roots)) {
+			return roots;
+		}
+		if (!roots.isEmpty()) {
+			logger.warn("Fetched names not found in the graph, the unused nodes are not pruned: " + this.fetchedNames);
+		}
+
+		Set<String> consumed = new HashSet<>();
+		for (NodeDef node : nodes) {
+			for (String input : node.getInputList()) {
+				consumed.add(nodeName(input));
+			}
+		}
+		roots.clear();
+		for (NodeDef node : nodes) {
+			if (!consumed.contains(node.getName())) {
+				roots.add(node.getName());
+			}
+		}
+		return roots;
+	}
+
+	/**
+	 * Keeps the nodes the given nodes depend on, through both the data and the control inputs.
+	 */
+	private static List<NodeDef> prune(List<NodeDef> nodes, Collection<String> kept) {
+		Map<String, NodeDef> nodesByName = byName(nodes);
+		Set<String> reachable = new HashSet<>();
+		Deque<String> pending = new ArrayDeque<>(kept);
+		while (!pending.isEmpty()) {
+			String name = pending.pop();
+			NodeDef node = nodesByName.get(name);
+			if (node != null && reachable.add(name)) {
+				for (String input : node.getInputList()) {
+					pending.push(nodeName(input));
+				}
+			}
+		}
+
+		List<NodeDef> pruned = new ArrayList<>(reachable.size());
+		for (NodeDef node : nodes) {
+			if (reachable.contains(node.getName())) {
+				pruned.add(node);
+			}
+		}
+		return pruned;
+	}
+
+	/**
+	 * Removes the Identity nodes and connects their consumers to the Identity input.
+	 */
+	private static List<NodeDef> forwardIdentities(List<NodeDef> nodes, Set<String> preserved) {
+		Map<String, NodeDef> nodesByName = byName(nodes);
+
+		// Maps the removed Identity node names to their input
+		Map<String, String> forwarded = new HashMap<>();
+		for (NodeDef node : nodes) {
+			if ("Identity".equals(node.getOp()) && !preserved.contains(node.getName())
+					&& node.getInputCount() == 1 && !isControlInput(node.getInput(0))) {
+				NodeDef input = nodesByName.get(nodeName(node.getInput(0)));
+				if (input != null && !NON_FORWARDED_IDENTITY_INPUTS.matcher(input.getOp()).matches()) {
+					forwarded.put(node.getName(), node.getInput(0));
+				}
+			}
+		}
+		if (forwarded.isEmpty()) {
+			return nodes;
+		}
+
+		List<NodeDef> rewired = new ArrayList<>(nodes.size() - forwarded.size());
+		for (NodeDef node : nodes) {
+			if (forwarded.containsKey(node.getName())) {
+				continue;
+			}
+			NodeDef.Builder builder = node.toBuilder().clearInput();
+			for (String input : node.getInputList()) {
+				builder.addInput(forward(input, forwarded));
+			}
+			rewired.add(builder.build());
+		}
+		return rewired;
+	}
+
+	private static String forward(String input, Map<String, String> forwarded) {
+		String resolved = input;
+		// An Identity has a single output, so the input of a forwarded chain is the input of the first Identity
+		while (forwarded.containsKey(nodeName(resolved))) {
+			resolved = forwarded.get(nodeName(resolved));
+		}
+		if (resolved.equals(input)) {
+			return input;
+		}
+		return isControlInput(input) ? "^" + nodeName(resolved) : resolved;
+	}
+
+	/**
+	 * Replaces the foldable nodes consumed by the non-foldable ones (or fetched) with Const nodes of their value.
+	 * The replaced subgraphs become unused and are pruned afterwards.
+	 */
+	private static List<NodeDef> foldConstants(GraphDef graphDef, List<NodeDef> nodes, Set<String> roots) {
+		Map<String, NodeDef> nodesByName = byName(nodes);
+		Set<String> foldable = foldableNodes(nodesByName);
+
+		Set<String> frontier = new LinkedHashSet<>();
+		for (NodeDef node : nodes) {
+			if (foldable.contains(node.getName()) && !"Const".equals(node.getOp()) && roots.contains(node.getName())) {
+				frontier.add(node.getName());
+			}
+			if (!foldable.contains(node.getName())) {
+				for (String input : node.getInputList()) {
+					String inputName = nodeName(input);
+					if (foldable.contains(inputName) && !"Const".equals(nodesByName.get(inputName).getOp())) {
+						frontier.add(inputName);
+					}
+				}
+			}
+		}
+		if (frontier.isEmpty()) {
+			return nodes;
+		}
+
+		Map<String, NodeDef> folded = new HashMap<>();
+		GraphDef current = graphDef.toBuilder().clearNode().addAllNode(nodes).build();
+		try (Graph graph = new Graph()) {
+			graph.importGraphDef(current.toByteArray());
+			try (Session session = new Session(graph)) {
+				Session.Runner runner = session.runner();
+				for (String name : frontier) {
+					runner.fetch(name, 0);
+				}
+				List<Tensor<?>> values = runner.run();
+				try {
+					int i = 0;
+					for (String name : frontier) {
+						NodeDef constNode = constNode(nodesByName.get(name), values.get(i++),
+								constantBytes(name, nodesByName));
+						if (constNode != null) {
+							folded.put(name, constNode);
+						}
+					}
+				}
+				finally {
+					TensorflowModel.closeAll(values);
+				}
+			}
+		}
+		catch (RuntimeException e) {
+			logger.warn("Constant folding failed, the constant subgraphs are not folded", e);
+			return nodes;
+		}
+
+		List<NodeDef> result = new ArrayList<>(nodes.size());
+		for (NodeDef node : nodes) {
+			result.add(folded.getOrDefault(node.getName(), node));
+		}
+		return result;
+	}
+
+	/**
+	 * A node is foldable when it is a Const or a pure op (see {@link #FOLDABLE_OPS}) whose inputs are all foldable. The nodes with control
+	 * inputs or with consumers of outputs other than the first one are not folded.
+	 */
+	private static Set<String> foldableNodes(Map<String, NodeDef> nodesByName) {
+		Set<String> multiOutputs = new HashSet<>();
+		for (NodeDef node : nodesByName.values()) {
+			for (String input : node.getInputList()) {
+				if (!isControlInput(input) && input.indexOf(':') > 0 && !input.endsWith(":0")) {
+					multiOutputs.add(nodeName(input));
+				}
+			}
+		}
+
+		Map<String, Boolean> foldable = new HashMap<>();
+		Set<String> visiting = new HashSet<>();
+		for (String root : nodesByName.keySet()) {
+			// Iterative depth first traversal, the graphs can be deeper than the thread stack
+			Deque<String> stack = new ArrayDeque<>();
+			stack.push(root);
+			while (!stack.isEmpty()) {
+				String name = stack.peek();
+				if (foldable.containsKey(name)) {
+					stack.pop();
+					continue;
+				}
+				NodeDef node = nodesByName.get(name);
+				if (!canFold(node) || multiOutputs.contains(name)) {
+					foldable.put(name, false);
+					stack.pop();
+					continue;
+				}
+				visiting.add(name);
+				boolean inputsResolved = true;
+				boolean inputsFoldable = true;
+				for (String input : node.getInputList()) {
+					String inputName = nodeName(input);
+					Boolean inputFoldable = foldable.get(inputName);
+					if (inputFoldable == null && visiting.contains(inputName)) {
+						// A cycle, only the loops of the (non-foldable) control flow create them
+						inputFoldable = false;
+					}
+					if (inputFoldable == null) {
+						stack.push(inputName);
+						inputsResolved = false;
+					}
+					else {
+						inputsFoldable &= inputFoldable;
+					}
+				}
+				if (inputsResolved) {
+					foldable.put(name, inputsFoldable);
+					visiting.remove(name);
+					stack.pop();
+				}
+			}
+		}
+
+		Set<String> foldableNames = new HashSet<>();
+		foldable.forEach((name, isFoldable) -> {
+			if (isFoldable) {
+				foldableNames.add(name);
+			}
+		});
+		return foldableNames;
+	}
+
+	private static boolean canFold(NodeDef node) {
+		if (node == null || !("Const".equals(node.getOp()) || FOLDABLE_OPS.contains(node.getOp()))) {
+			return false;
+		}
+		for (String input : node.getInputList()) {
+			if (isControlInput(input)) {
+				return false;
+			}
+		}
+		return "Const".equals(node.getOp()) || node.getInputCount() > 0;
+	}
+
+	/**
+	 * @return the serialized size of the Const nodes the folded node depends on.
+	 */
+	private static long constantBytes(String name, Map<String, NodeDef> nodesByName) {
+		long bytes = 0;
+		Set<String> visited = new HashSet<>();
+		Deque<String> pending = new ArrayDeque<>();
+		pending.push(name);
+		while (!pending.isEmpty()) {
+			NodeDef node = nodesByName.get(pending.pop());
+			if (node == null || !visited.add(node.getName())) {
+				continue;
+			}
+			if ("Const".equals(node.getOp())) {
+				bytes += node.getAttrOrDefault("value", AttrValue.getDefaultInstance()).getTensor().getSerializedSize();
+			}
+			for (String input : node.getInputList()) {
+				pending.push(nodeName(input));
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return the Const node holding the folded value, or null if the value can not be (or should not be) stored
+	 * in a Const node.
+	 */
+	private static NodeDef constNode(NodeDef node, Tensor<?> value, long constantBytes) {
+		TensorProto tensorProto;
+		try {
+			tensorProto = TensorProtoConverter.toTensorProto(value);
+		}
+		catch (RuntimeException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Can not fold the node: " + node.getName(), e);
+			}
+			return null;
+		}
+		if (tensorProto.getSerializedSize() > Math.max(MIN_FOLDED_BYTES, constantBytes)) {
+			// Expanding ops (e.g. Fill, Tile) are cheaper to compute than to store
+			return null;
+		}
+		return NodeDef.newBuilder()
+				.setName(node.getName())
+				.setOp("Const")
+				.setDevice(node.getDevice())
+				.putAttr("dtype", AttrValue.newBuilder().setTypeValue(tensorProto.getDtypeValue()).build())
+				.putAttr("value", AttrValue.newBuilder().setTensor(tensorProto).build())
+				.build();
+	}
+
+	/**
+	 * The import fails when a node is colocated with a missing node, so the colocations with the removed nodes are
+	 * dropped.
+	 */
+	private static List<NodeDef> removeDanglingColocations(List<NodeDef> nodes) {
+		Set<String> names = byName(nodes).keySet();
+		List<NodeDef> result = new ArrayList<>(nodes.size());
+		for (NodeDef node : nodes) {
+			AttrValue colocation = node.getAttrMap().get(COLOCATION_ATTR);
+			if (colocation == null) {
+				result.add(node);
+				continue;
+			}
+			AttrValue.ListValue.Builder kept = AttrValue.ListValue.newBuilder();
+			for (ByteString value : colocation.getList().getSList()) {
+				String location = value.toStringUtf8();
+				if (!location.startsWith(COLOCATION_PREFIX)
+						|| names.contains(location.substring(COLOCATION_PREFIX.length()))) {
+					kept.addS(value);
+				}
+			}
+			if (kept.getSCount() == colocation.getList().getSCount()) {
+				result.add(node);
+			}
+			else if (kept.getSCount() == 0) {
+				result.add(node.toBuilder().removeAttr(COLOCATION_ATTR).build());
+			}
+			else {
+				result.add(node.toBuilder().putAttr(COLOCATION_ATTR, AttrValue.newBuilder().setList(kept).build())
+						.build());
+			}
+		}
+		return result;
+	}
+
+	private static Map<String, NodeDef> byName(List<NodeDef> nodes) {
+		Map<String, NodeDef> nodesByName = new LinkedHashMap<>();
+		for (NodeDef node : nodes) {
+			nodesByName.put(node.getName(), node);
+		}
+		return nodesByName;
+	}
+
+	private static boolean isControlInput(String input) {
+		return input.startsWith("^");
+	}
+
+	/**
+	 * @return the node name of a tensor name ("node:1") or of a control input ("^node").
+	 */
+	static String nodeName(String input) {
+		String name = isControlInput(input) ? input.substring(1) : input;
+		int colon = name.lastIndexOf(':');
+		return (colon < 0) ? name : name.substring(0, colon);
+	}
+
+	private String cacheKey(byte[] graphDef) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(graphDef);
+			digest.update(String.join("\n", VERSION, String.valueOf(this.fetchedNames),
+					String.valueOf(this.constantFolding)).getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.tensorflow.Tensor;
+
+import org.springframework.util.Assert;
+
+/**
+ * Admission control in front of the model evaluation. Bounds the number of in-flight evaluations with an adaptive
+ * limit and the native memory of their live tensors with a fixed budget. The callers block in {@link #acquire()}
+ * while either limit is reached, so the input binding consumers stop polling new messages.
+ *
+ * The limit follows the latency gradient of the evaluations: the ratio between the long term average latency and
+ * the latency of the completed evaluation. While the evaluations are as fast as usual the limit grows by a small
+ * queue allowance. When the evaluations slow down, because they compete for the CPU cores or the memory bandwidth,
+ * the limit shrinks proportionally. The limit does not grow while less than half of it is used.
+ *
+ * The tensors are the feeds produced by the input converter and the fetched model outputs. They live off-heap, so
+ * the JVM doesn't account for them. Their bytes are counted from the moment they are added to the {@link Permit}
+ * until the permit is closed. A new evaluation is admitted while the live tensor bytes are below the budget. An
+ * evaluation is always admitted when no other evaluation is in flight, so that a single large input can progress.
+ *
+ * @author agent
+ */
+public class InferenceAdmission {
+
+	/**
+	 * Weight of a latency sample in the long term average latency (about the last 100 evaluations).
+	 */
+	private static final double LONG_TERM_WEIGHT = 0.01;
+
+	/**
+	 * Weight of the new limit estimate in the smoothed limit.
+	 */
+	private static final double SMOOTHING = 0.2;
+
+	/**
+	 * The limit doesn't shrink below half of its value in a single evaluation.
+	 */
+	private static final double MIN_GRADIENT = 0.5;
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	private final long tensorBytesBudget;
+
+	// The following fields are guarded by this
+
+	private double limit;
+
+	private int inFlight;
+
+	private long liveTensorBytes;
+
+	/**
+	 * Long term average evaluation latency in nanoseconds, 0 until the first evaluation completes.
+	 */
+	private double longTermLatency;
+
+	private long admitted;
+
+	private long throttled;
+
+	/**
+	 * @param initialLimit Limit of the concurrent evaluations before the first latency measurements.
+	 * @param minLimit Lower bound of the adaptive limit.
+	 * @param maxLimit Upper bound of the adaptive limit.
+	 * @param tensorBytesBudget Live tensor bytes above which no new evaluation is admitted.
+	 */
+	public InferenceAdmission(int initialLimit, int minLimit, int maxLimit, long tensorBytesBudget) {
+		Assert.isTrue(0 < minLimit && minLimit <= maxLimit, String.format(
+				"Invalid admission limit bounds: min=%d, max=%d", minLimit, maxLimit));
+		Assert.isTrue(minLimit <= initialLimit && initialLimit <= maxLimit, String.format(
+				"The initial admission limit must be within [%d, %d]: %d", minLimit, maxLimit, initialLimit));
+		Assert.isTrue(tensorBytesBudget > 0, "The tensor bytes budget must be positive: " + tensorBytesBudget);
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.tensorBytesBudget = tensorBytesBudget;
+	}
+
+	/**
+	 * Blocks until the evaluation is admitted. The caller must close the returned permit once the evaluation
+	 * completes and its tensors are closed.
+	 *
+	 * @return the permit of the admitted evaluation.
+	 */
+	public Permit acquire() {
+		synchronized (this) {
+			boolean waited = false;
+			while (!canAdmit()) {
+				if (!waited) {
+					this.throttled++;
+					waited = true;
+				}
+				try {
+					wait();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for the evaluation admission", e);
+				}
+			}
+			this.inFlight++;
+			this.admitted++;
+		}
+		return new AdmittedPermit(System.nanoTime());
+	}
+
+	private boolean canAdmit() {
+		if (this.inFlight == 0) {
+			return true;
+		}
+		return this.inFlight < getLimit() && this.liveTensorBytes < this.tensorBytesBudget;
+	}
+
+	private synchronized void addTensorBytes(long bytes) {
+		this.liveTensorBytes += bytes;
+	}
+
+	private synchronized void release(long tensorBytes, long latencyNanos) {
+		update(latencyNanos, this.inFlight);
+		this.inFlight--;
+		this.liveTensorBytes -= tensorBytes;
+		notifyAll();
+	}
+
+	/**
+	 * Updates the limit with the latency of a completed evaluation.
+	 *
+	 * @param latencyNanos Latency of the completed evaluation.
+	 * @param inFlight Number of the in-flight evaluations, including the completed one.
+	 */
+	synchronized void update(long latencyNanos, int inFlight) {
+		if (latencyNanos <= 0) {
+			return;
+		}
+		if (this.longTermLatency == 0) {
+			this.longTermLatency = latencyNanos;
+			return;
+		}
+		this.longTermLatency = this.longTermLatency * (1 - LONG_TERM_WEIGHT) + latencyNanos * LONG_TERM_WEIGHT;
+
+		double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, this.longTermLatency / latencyNanos));
+		double newLimit = this.limit * gradient + Math.sqrt(this.limit);
+		if (inFlight < this.limit / 2) {
+			// The evaluations are not limited by the admission, the latency says nothing about a higher limit
+			newLimit = Math.min(newLimit, this.limit);
+		}
+		newLimit = this.limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+		this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, newLimit));
+		notifyAll();
+	}
+
+	/**
+	 * @return the current limit of the concurrent evaluations.
+	 */
+	public synchronized int getLimit() {
+		return (int) this.limit;
+	}
+
+	public synchronized int getInFlight() {
+		return this.inFlight;
+	}
+
+	/**
+	 * @return the bytes of the tensors of the in-flight evaluations.
+	 */
+	public synchronized long getLiveTensorBytes() {
+		return this.liveTensorBytes;
+	}
+
+	/**
+	 * @return the number of the evaluations that had to wait for the admission.
+	 */
+	public synchronized long getThrottled() {
+		return this.throttled;
+	}
+
+	public synchronized Map<String, Object> getStatistics() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("limit", getLimit());
+		statistics.put("inFlight", this.inFlight);
+		statistics.put("liveTensorBytes", this.liveTensorBytes);
+		statistics.put("tensorBytesBudget", this.tensorBytesBudget);
+		statistics.put("longTermLatencyMs", this.longTermLatency / 1_000_000);
+		statistics.put("admitted", this.admitted);
+		statistics.put("throttled", this.throttled);
+		return statistics;
+	}
+
+	/**
+	 * Admission of a single evaluation. The {@link #NONE} permit is used when the admission control is disabled.
+	 */
+	public interface Permit extends AutoCloseable {
+
+		/**
+		 * Admits everything and counts nothing.
+		 */
+		Permit NONE = new Permit() {
+
+			@Override
+			public void addTensors(Collection<?> values) {
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+
+		/**
+		 * Counts the tensors among the values as live tensors of the evaluation, until the permit is closed.
+		 *
+		 * @param values Feeds or fetched outputs of the evaluation. The values that are not tensors are ignored.
+		 */
+		void addTensors(Collection<?> values);
+
+		@Override
+		void close();
+	}
+
+	private class AdmittedPermit implements Permit {
+
+		private final long start;
+
+		private long tensorBytes;
+
+		private boolean closed;
+
+		AdmittedPermit(long start) {
+			this.start = start;
+		}
+
+		@Override
+		public void addTensors(Collection<?> values) {
+			long bytes = 0;
+			for (Object value : values) {
+				if (value instanceof Tensor) {
+					bytes += ((Tensor<?>) value).numBytes();
+				}
+			}
+			synchronized (this) {
+				if (this.closed) {
+					return;
+				}
+				this.tensorBytes += bytes;
+			}
+			addTensorBytes(bytes);
+		}
+
+		@Override
+		public void close() {
+			long bytes;
+			synchronized (this) {
+				if (this.closed) {
+					return;
+				}
+				this.closed = true;
+				bytes = this.tensorBytes;
+			}
+			release(bytes, System.nanoTime() - this.start);
+		}
+	}
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Two tier cache of the inference results, keyed by a hash of the input data.
+ *
+ * The memory tier is a size bounded LRU map. The optional disk tier stores the {@link Serializable} results in a
+ * local directory, so they survive restarts, and is bounded by the number of entries too. Memory misses that hit
+ * the disk are promoted to the memory tier.
+ *
+ * Concurrent requests for the same key are coalesced: only the first one computes the result, the others wait for
+ * it.
+ *
+ * @author agent
+ */
+public class InferenceCache {
+
+	private static final Log logger = LogFactory.getLog(InferenceCache.class);
+
+	private static final String DISK_ENTRY_SUFFIX = ".result";
+
+	private final int maxEntries;
+
+	private final Map<String, Object> memory;
+
+	private final File diskDirectory;
+
+	private final int diskMaxEntries;
+
+	/**
+	 * Disk entry keys in insertion order, used to evict the oldest entries.
+	 */
+	private final Map<String, Boolean> diskIndex = new LinkedHashMap<>();
+
+	private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong diskHits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong coalesced = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final AtomicLong diskEvictions = new AtomicLong();
+
+	/**
+	 * @param maxEntries Maximum number of results in the memory tier.
+	 * @param diskDirectory Directory of the disk tier, or null to disable the disk tier.
+	 * @param diskMaxEntries Maximum number of results in the disk tier.
+	 */
+	public InferenceCache(int maxEntries, File diskDirectory, int diskMaxEntries) {
+		this.maxEntries = maxEntries;
+		this.memory = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+				boolean evict = size() > InferenceCache.this.maxEntries;
+				if (evict) {
+					evictions.incrementAndGet();
+				}
+				return evict;
+			}
+		};
+		this.diskDirectory = diskDirectory;
+		this.diskMaxEntries = diskMaxEntries;
+		if (diskDirectory != null) {
+			loadDiskIndex();
+		}
+	}
+
+	/**
+	 * Computes a cache key from the model fingerprint, the fetched outputs and the input data.
+	 * @param namespace Identifies the model and the evaluation settings the results are valid for.
+	 * @param inputData Input data. Only the byte arrays and the strings are hashed by their content.
+	 * @return the cache key, or null if the input data can not be cached.
+	 */
+	public static String key(String namespace, Object inputData) {
+		if (!(inputData instanceof byte[] || inputData instanceof String)) {
+			// The string representation of the other types (e.g. tensors, arrays or maps) doesn't identify the content
+			return null;
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(namespace.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			if (inputData instanceof byte[]) {
+				digest.update((byte) 'b');
+				digest.update((byte[]) inputData);
+			}
+			else {
+				digest.update((byte) 's');
+				digest.update(((String) inputData).getBytes(StandardCharsets.UTF_8));
+			}
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the cached result for the key, or computes, caches and returns it. Concurrent calls with the same
+	 * key wait for a single computation.
+	 */
+	public Object get(String key, Supplier<Object> compute) {
+
+		Object result = getCached(key);
+		if (result != null) {
+			return result;
+		}
+
+		CompletableFuture<Object> future = new CompletableFuture<>();
+		CompletableFuture<Object> existing = this.inFlight.putIfAbsent(key, future);
+		if (existing != null) {
+			this.coalesced.incrementAndGet();
+			try {
+				return existing.join();
+			}
+			catch (CompletionException e) {
+				throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+			}
+		}
+
+		try {
+			// The result could be cached after the first lookup, by a computation completed in between
+			result = getCached(key);
+			if (result == null) {
+				this.misses.incrementAndGet();
+				result = compute.get();
+				put(key, result);
+			}
+			future.complete(result);
+			return result;
+		}
+		catch (RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		}
+		finally {
+			this.inFlight.remove(key);
+		}
+	}
+
+	private Object getCached(String key) {
+		synchronized (this.memory) {
+			Object result = this.memory.get(key);
+			if (result != null) {
+				this.hits.incrementAndGet();
+				return result;
+			}
+		}
+		if (this.diskDirectory != null) {
+			Object result = readDisk(key);
+			if (result != null) {
+				this.diskHits.incrementAndGet();
+				synchronized (this.memory) {
+					this.memory.put(key, result);
+				}
+				return result;
+			}
+		}
+		return null;
+	}
+
+	private void put(String key, Object result) {
+		if (result == null) {
+			return;
+		}
+		synchronized (this.memory) {
+			this.memory.put(key, result);
+		}
+		if (this.diskDirectory != null && result instanceof Serializable) {
+			writeDisk(key, result);
+		}
+	}
+
+	private Object readDisk(String key) {
+		synchronized (this.diskIndex) {
+			if (!this.diskIndex.containsKey(key)) {
+				return null;
+			}
+		}
+		Path entry = diskEntry(key);
+		try (InputStream is = Files.newInputStream(entry);
+			 ObjectInputStream ois = new ObjectInputStream(is)) {
+			return ois.readObject();
+		}
+		catch (IOException | ClassNotFoundException e) {
+			logger.warn("Failed to read the cached result: " + entry, e);
+			return null;
+		}
+	}
+
+	private void writeDisk(String key, Object result) {
+		Path entry = diskEntry(key);
+		try {
+			Path temp = Files.createTempFile(this.diskDirectory.toPath(), key, ".tmp");
+			try (OutputStream os = Files.newOutputStream(temp);
+				 ObjectOutputStream oos = new ObjectOutputStream(os)) {
+				oos.writeObject(result);
+			}
+			Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			logger.warn("Failed to write the cached result: " + entry, e);
+			return;
+		}
+
+		synchronized (this.diskIndex) {
+			this.diskIndex.put(key, Boolean.TRUE);
+			Iterator<String> oldest = this.diskIndex.keySet().iterator();
+			while (this.diskIndex.size() > this.diskMaxEntries && oldest.hasNext()) {
+				String evicted = oldest.next();
+				oldest.remove();
+				this.diskEvictions.incrementAndGet();
+				try {
+					Files.deleteIfExists(diskEntry(evicted));
+				}
+				catch (IOException e) {
+					logger.warn("Failed to delete the cached result: " + evicted, e);
+				}
+			}
+		}
+	}
+
+	private Path diskEntry(String key) {
+		return this.diskDirectory.toPath().resolve(key + DISK_ENTRY_SUFFIX);
+	}
+
+	/**
+	 * Indexes the disk entries of previous runs, oldest first.
+	 */
+	private void loadDiskIndex() {
+		this.diskDirectory.mkdirs();
+		File[] entries = this.diskDirectory.listFiles((dir, name) -> name.endsWith(DISK_ENTRY_SUFFIX));
+		if (entries == null) {
+			return;
+		}
+		Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+		for (File entry : entries) {
+			String name = entry.getName();
+			this.diskIndex.put(name.substring(0, name.length() - DISK_ENTRY_SUFFIX.length()), Boolean.TRUE);
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info("Inference cache loaded " + entries.length + " entries from: " + this.diskDirectory);
+		}
+	}
+
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	public long getDiskHits() {
+		return this.diskHits.get();
+	}
+
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	public long getCoalesced() {
+		return this.coalesced.get();
+	}
+
+	public long getEvictions() {
+		return this.evictions.get();
+	}
+
+	public long getDiskEvictions() {
+		return this.diskEvictions.get();
+	}
+
+	public int getSize() {
+		synchronized (this.memory) {
+			return this.memory.size();
+		}
+	}
+
+	/**
+	 * @return the cache counters.
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("size", getSize());
+		statistics.put("hits", getHits());
+		statistics.put("diskHits", getDiskHits());
+		statistics.put("misses", getMisses());
+		statistics.put("coalesced", getCoalesced());
+		statistics.put("evictions", getEvictions());
+		statistics.put("diskEvictions", getDiskEvictions());
+		return statistics;
+	}
+}
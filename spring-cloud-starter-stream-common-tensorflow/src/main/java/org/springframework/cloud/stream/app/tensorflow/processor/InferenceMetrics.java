@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+/**
+ * Records the duration of the evaluation stages, the number of in-flight model evaluations and the size of the
+ * input and output tensors. The {@link #NONE} instance is used when no metrics registry is available.
+ *
+ * @author agent
+ */
+public interface InferenceMetrics {
+
+	/**
+	 * Discards all measurements.
+	 */
+	InferenceMetrics NONE = new InferenceMetrics() {
+	};
+
+	/**
+	 * Evaluation stages of an input message.
+	 */
+	enum Stage {
+		/** Input data extraction with the tensorflow.expression. */
+		expression,
+		/** {@link TensorflowInputConverter} conversion. */
+		input,
+		/** {@link TensorFlowService} model evaluation. */
+		inference,
+		/** {@link TensorflowOutputConverter} conversion. */
+		output,
+		/** {@link OutputMessageBuilder} output message building. */
+		message
+	}
+
+	/**
+	 * @param stage Completed stage.
+	 * @param modelName Name of the model zoo model of the evaluation, or null for the default model.
+	 * @param startNanos The {@link System#nanoTime()} at the stage start.
+	 */
+	default void record(Stage stage, String modelName, long startNanos) {
+	}
+
+	/**
+	 * Called once the model is acquired, so the model exists.
+	 *
+	 * @param modelName Name of the model zoo model, or null for the default model.
+	 */
+	default void evaluationStarted(String modelName) {
+	}
+
+	default void evaluationFinished(String modelName) {
+	}
+
+	/**
+	 * @param modelName Name of the model zoo model, or null for the default model.
+	 * @param bytes Total size of the feed tensors of a model evaluation.
+	 */
+	default void inputTensorBytes(String modelName, long bytes) {
+	}
+
+	/**
+	 * @param modelName Name of the model zoo model, or null for the default model.
+	 * @param bytes Total size of the fetched tensors of a model evaluation.
+	 */
+	default void outputTensorBytes(String modelName, long bytes) {
+	}
+}
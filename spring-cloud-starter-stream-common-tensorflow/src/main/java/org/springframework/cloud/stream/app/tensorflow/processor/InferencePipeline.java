@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Runs the input conversion, the model inference and the output conversion stages of every message on separate
+ * thread pools. While one message is being evaluated by the model, the following message can be decoded and the
+ * preceding message can be converted and encoded into the output message.
+ *
+ * The stages are connected with bounded queues. When a queue is full the thread that hands a message over to the
+ * next stage blocks, so a slow stage holds back the previous stages and eventually the caller of
+ * {@link #submit(Supplier, Function, Function)}.
+ *
+ * With more than one thread per stage the messages can complete out of order.
+ *
+ * @author agent
+ */
+public class InferencePipeline implements AutoCloseable {
+
+	private static final Log logger = LogFactory.getLog(InferencePipeline.class);
+
+	private final ThreadPoolExecutor inputExecutor;
+
+	private final ThreadPoolExecutor inferenceExecutor;
+
+	private final ThreadPoolExecutor outputExecutor;
+
+	public InferencePipeline(int inputThreads, int inferenceThreads, int outputThreads, int queueCapacity) {
+		this.inputExecutor = stageExecutor("tensorflow-input-", inputThreads, queueCapacity);
+		this.inferenceExecutor = stageExecutor("tensorflow-inference-", inferenceThreads, queueCapacity);
+		this.outputExecutor = stageExecutor("tensorflow-output-", outputThreads, queueCapacity);
+
+		if (logger.isInfoEnabled()) {
+			logger.info(String.format("Inference pipeline threads: input=%d, inference=%d, output=%d, queue capacity=%d",
+					inputThreads, inferenceThreads, outputThreads, queueCapacity));
+		}
+	}
+
+	/**
+	 * Submits a message to the pipeline.
+	 * @param inputStage Converts the input message into model feeds.
+	 * @param inferenceStage Evaluates the model feeds.
+	 * @param outputStage Converts the model outputs into the result.
+	 * @return Future completed with the result of the output stage or with the first stage failure.
+	 */
+	public <F, O, R> CompletableFuture<R> submit(Supplier<F> inputStage, Function<F, O> inferenceStage,
+			Function<O, R> outputStage) {
+		return CompletableFuture.supplyAsync(inputStage, this.inputExecutor)
+				.thenApplyAsync(inferenceStage, this.inferenceExecutor)
+				.thenApplyAsync(outputStage, this.outputExecutor);
+	}
+
+	private static ThreadPoolExecutor stageExecutor(String threadNamePrefix, int threads, int queueCapacity) {
+		Assert.isTrue(threads > 0, "The number of stage threads must be positive: " + threads);
+		Assert.isTrue(queueCapacity > 0, "The stage queue capacity must be positive: " + queueCapacity);
+		return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory(threadNamePrefix),
+				new BlockWhenFullPolicy());
+	}
+
+	@Override
+	public void close() {
+		logger.info("Close inference pipeline!");
+		shutdown(this.inputExecutor);
+		shutdown(this.inferenceExecutor);
+		shutdown(this.outputExecutor);
+	}
+
+	/**
+	 * Lets the submitted messages drain through the stage before the next stage is shut down.
+	 */
+	private static void shutdown(ThreadPoolExecutor executor) {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+				executor.shutdownNow();
+			}
+		}
+		catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Blocks the submitting thread until there is room in the stage queue.
+	 */
+	private static class BlockWhenFullPolicy implements RejectedExecutionHandler {
+
+		@Override
+		public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("The inference pipeline is shut down");
+			}
+			try {
+				executor.getQueue().put(task);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted while waiting for the pipeline stage", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.tensorflow.framework.AllocatorMemoryUsed;
+import org.tensorflow.framework.DeviceStepStats;
+import org.tensorflow.framework.NodeExecStats;
+import org.tensorflow.framework.RunMetadata;
+import org.tensorflow.framework.RunOptions;
+
+import org.springframework.util.Assert;
+
+/**
+ * Samples the model evaluations with full tracing and aggregates the execution statistics of every graph op: the
+ * wall time, from the op scheduling to the completion of its outputs, and the memory allocated by the op.
+ *
+ * One in sampleRate evaluations is traced. The tracing slows the traced evaluation down, so the sample rate trades
+ * the profile accuracy for the evaluation overhead. The ops are reported by descending total wall time, so the top
+ * of the report shows the ops worth optimizing (e.g. with a graph rewrite or a different model variant).
+ *
+ * @author agent
+ */
+public class InferenceProfiler {
+
+	private static final Log logger = LogFactory.getLog(InferenceProfiler.class);
+
+	/**
+	 * Serialized RunOptions that enable the full tracing of a session run.
+	 */
+	static final byte[] FULL_TRACE = RunOptions.newBuilder()
+			.setTraceLevel(RunOptions.TraceLevel.FULL_TRACE)
+			.build()
+			.toByteArray();
+
+	private final int sampleRate;
+
+	private final int topOps;
+
+	private final AtomicLong evaluations = new AtomicLong();
+
+	// The following fields are guarded by this
+
+	private final Map<String, OpStatistics> ops = new HashMap<>();
+
+	private long tracedEvaluations;
+
+	/**
+	 * @param sampleRate Traces one in sampleRate evaluations.
+	 * @param topOps Number of the ops reported.
+	 */
+	public InferenceProfiler(int sampleRate, int topOps) {
+		Assert.isTrue(sampleRate > 0, "The sample rate must be positive: " + sampleRate);
+		Assert.isTrue(topOps > 0, "The number of the reported ops must be positive: " + topOps);
+		this.sampleRate = sampleRate;
+		this.topOps = topOps;
+	}
+
+	/**
+	 * @return true if the evaluation about to start must be traced.
+	 */
+	boolean sample() {
+		return this.evaluations.incrementAndGet() % this.sampleRate == 0;
+	}
+
+	/**
+	 * Adds the step statistics of a traced evaluation to the profile. Invalid metadata is logged and ignored.
+	 *
+	 * @param runMetadata Serialized RunMetadata returned by the traced session run.
+	 */
+	void record(byte[] runMetadata) {
+		RunMetadata metadata;
+		try {
+			metadata = RunMetadata.parseFrom(runMetadata);
+		}
+		catch (InvalidProtocolBufferException e) {
+			logger.warn("Failed to parse the TensorFlow RunMetadata", e);
+			return;
+		}
+
+		synchronized (this) {
+			this.tracedEvaluations++;
+			for (DeviceStepStats deviceStepStats : metadata.getStepStats().getDevStatsList()) {
+				for (NodeExecStats nodeStats : deviceStepStats.getNodeStatsList()) {
+					this.ops.computeIfAbsent(nodeStats.getNodeName(), name -> new OpStatistics(opType(nodeStats)))
+							.add(nodeStats);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The op type is only reported in the timeline label: "name = Type(inputs)".
+	 */
+	private static String opType(NodeExecStats nodeStats) {
+		String label = nodeStats.getTimelineLabel();
+		int start = label.indexOf(" = ");
+		int end = label.indexOf('(', start + 1);
+		return (start >= 0 && end > start) ? label.substring(start + 3, end) : "";
+	}
+
+	/**
+	 * Discards the aggregated statistics, e.g. when the model is replaced.
+	 */
+	public synchronized void reset() {
+		this.ops.clear();
+		this.tracedEvaluations = 0;
+	}
+
+	/**
+	 * @return the number of the traced evaluations and the statistics of the top ops, by descending total wall time.
+	 */
+	public synchronized Map<String, Object> getReport() {
+		List<Map.Entry<String, OpStatistics>> sortedOps = new ArrayList<>(this.ops.entrySet());
+		sortedOps.sort(Comparator.comparingLong(
+				(Map.Entry<String, OpStatistics> op) -> op.getValue().totalMicros).reversed());
+
+		long totalMicros = 0;
+		for (OpStatistics op : this.ops.values()) {
+			totalMicros += op.totalMicros;
+		}
+
+		List<Map<String, Object>> topOps = new ArrayList<>();
+		for (Map.Entry<String, OpStatistics> op : sortedOps.subList(0, Math.min(this.topOps, sortedOps.size()))) {
+			topOps.add(op.getValue().toMap(op.getKey(), totalMicros));
+		}
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("sampleRate", this.sampleRate);
+		report.put("evaluations", this.evaluations.get());
+		report.put("tracedEvaluations", this.tracedEvaluations);
+		report.put("totalMicros", totalMicros);
+		report.put("ops", topOps);
+		return report;
+	}
+
+	private static class OpStatistics {
+
+		private final String type;
+
+		private long count;
+
+		private long totalMicros;
+
+		private long maxMicros;
+
+		private long allocatedBytes;
+
+		private long peakBytes;
+
+		OpStatistics(String type) {
+			this.type = type;
+		}
+
+		void add(NodeExecStats nodeStats) {
+			long micros = nodeStats.getAllEndRelMicros();
+			this.count++;
+			this.totalMicros += micros;
+			this.maxMicros = Math.max(this.maxMicros, micros);
+			for (AllocatorMemoryUsed memory : nodeStats.getMemoryList()) {
+				this.allocatedBytes += memory.getTotalBytes();
+				this.peakBytes = Math.max(this.peakBytes, memory.getPeakBytes());
+			}
+		}
+
+		Map<String, Object> toMap(String name, long profileMicros) {
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("name", name);
+			map.put("type", this.type);
+			map.put("count", this.count);
+			map.put("totalMicros", this.totalMicros);
+			map.put("meanMicros", (double) this.totalMicros / this.count);
+			map.put("maxMicros", this.maxMicros);
+			map.put("timeShare", (profileMicros > 0) ? (double) this.totalMicros / profileMicros : 0);
+			map.put("meanAllocatedBytes", this.allocatedBytes / this.count);
+			map.put("peakBytes", this.peakBytes);
+			return map;
+		}
+	}
+}
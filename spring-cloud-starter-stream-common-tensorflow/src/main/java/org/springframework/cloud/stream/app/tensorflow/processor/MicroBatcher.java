@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Accumulates items into batches of up to batchSize items. A batch is handed over to the batch handler either when
+ * it is full or when the timeout, counted from the first item in the batch, expires.
+ *
+ * Full batches are handled on the thread that adds the last item, so slow batch processing holds back the
+ * producer. Expired batches are handled on a dedicated timer thread.
+ *
+ * Every added item gets the completion of its batch, failed with the batch handler error if the batch fails. The
+ * producers can wait for it, so that the items of a failed batch are not lost (e.g. the input messages are
+ * redelivered or sent to the dead letter queue).
+ *
+ * @author agent
+ */
+public class MicroBatcher<T> implements AutoCloseable {
+
+	private final int batchSize;
+
+	private final long timeout;
+
+	private final Consumer<List<T>> batchHandler;
+
+	private final ScheduledExecutorService timer;
+
+	private List<T> batch;
+
+	/**
+	 * Completion of the current batch.
+	 */
+	private CompletableFuture<Void> completion;
+
+	private ScheduledFuture<?> timeoutFlush;
+
+	/**
+	 * @param batchSize Maximum number of items in a batch.
+	 * @param timeout Maximum time, in milliseconds, to wait for a batch to fill up.
+	 * @param batchHandler Handles the collected batches.
+	 */
+	public MicroBatcher(int batchSize, long timeout, Consumer<List<T>> batchHandler) {
+		Assert.isTrue(batchSize > 0, "The batch size must be positive: " + batchSize);
+		Assert.isTrue(timeout > 0, "The batch timeout must be positive: " + timeout);
+		Assert.notNull(batchHandler, "Not null batch handler is required!");
+		this.batchSize = batchSize;
+		this.timeout = timeout;
+		this.batchHandler = batchHandler;
+		this.timer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("tensorflow-batch-"));
+		this.batch = new ArrayList<>(batchSize);
+		this.completion = new CompletableFuture<>();
+	}
+
+	/**
+	 * @param item Item to add to the current batch.
+	 * @return the completion of the batch of the item.
+	 */
+	public CompletableFuture<Void> add(T item) {
+		List<T> fullBatch = null;
+		CompletableFuture<Void> batchCompletion;
+		synchronized (this) {
+			this.batch.add(item);
+			batchCompletion = this.completion;
+			if (this.batch.size() >= this.batchSize) {
+				fullBatch = takeBatch();
+			}
+			else if (this.batch.size() == 1) {
+				this.timeoutFlush = this.timer.schedule(this::flush, this.timeout, TimeUnit.MILLISECONDS);
+			}
+		}
+		if (fullBatch != null) {
+			handle(fullBatch, batchCompletion);
+		}
+		return batchCompletion;
+	}
+
+	/**
+	 * Handles the pending items, if any, on the calling thread.
+	 */
+	public void flush() {
+		List<T> pendingBatch;
+		CompletableFuture<Void> batchCompletion;
+		synchronized (this) {
+			batchCompletion = this.completion;
+			pendingBatch = takeBatch();
+		}
+		if (!pendingBatch.isEmpty()) {
+			handle(pendingBatch, batchCompletion);
+		}
+	}
+
+	private List<T> takeBatch() {
+		if (this.timeoutFlush != null) {
+			this.timeoutFlush.cancel(false);
+			this.timeoutFlush = null;
+		}
+		List<T> currentBatch = this.batch;
+		if (!currentBatch.isEmpty()) {
+			this.batch = new ArrayList<>(this.batchSize);
+			this.completion = new CompletableFuture<>();
+		}
+		return currentBatch;
+	}
+
+	private void handle(List<T> items, CompletableFuture<Void> batchCompletion) {
+		try {
+			this.batchHandler.accept(items);
+			batchCompletion.complete(null);
+		}
+		catch (RuntimeException e) {
+			batchCompletion.completeExceptionally(e);
+		}
+		catch (Error e) {
+			// Don't leave the producers waiting
+			batchCompletion.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() {
+		flush();
+		this.timer.shutdown();
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Micrometer backed {@link InferenceMetrics}. The meters are tagged by processor and model:
+ *
+ * <ul>
+ *     <li>tensorflow.evaluation.stage : timer with percentile histogram, tagged by stage.</li>
+ *     <li>tensorflow.evaluations.in.flight : gauge of the concurrent model evaluations.</li>
+ *     <li>tensorflow.tensor.bytes : distribution summary of the feed and fetched tensor sizes, tagged by
+ *     direction.</li>
+ *     <li>tensorflow.model.load.duration : time gauge of the last (re)load of the default model.</li>
+ * </ul>
+ *
+ * The default model is tagged by the given model name. The model zoo models are tagged by their name, and their
+ * meters are registered by their first evaluation, once the model is loaded. The names that fail to load never get
+ * meters, so the number of tag values is bounded by the models that exist. The stages of a model zoo model measured
+ * before its first evaluation are not recorded.
+ *
+ * The measurements are discarded until the meters are bound to a registry.
+ *
+ * @author agent
+ */
+public class MicrometerInferenceMetrics implements InferenceMetrics, MeterBinder {
+
+	private final TensorFlowService tensorFlowService;
+
+	private final Tags tags;
+
+	private final String model;
+
+	private final ConcurrentMap<String, ModelMeters> modelMeters = new ConcurrentHashMap<>();
+
+	private volatile MeterRegistry registry;
+
+	/**
+	 * @param tensorFlowService Service to report the model load duration of.
+	 * @param processor Processor tag value.
+	 * @param model Model tag value of the default model.
+	 */
+	public MicrometerInferenceMetrics(TensorFlowService tensorFlowService, String processor, String model) {
+		this.tensorFlowService = tensorFlowService;
+		this.tags = Tags.of("processor", processor);
+		this.model = model;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		TimeGauge.builder("tensorflow.model.load.duration", this.tensorFlowService, TimeUnit.MILLISECONDS,
+				TensorFlowService::getModelLoadDuration)
+				.description("Duration of the last model load")
+				.tags(this.tags)
+				.tag("model", this.model)
+				.register(registry);
+
+		this.modelMeters.clear();
+		this.registry = registry;
+		register(null);
+	}
+
+	/**
+	 * @return the meters of the model, registering them if needed, or null if not bound to a registry yet.
+	 */
+	private ModelMeters register(String modelName) {
+		MeterRegistry registry = this.registry;
+		if (registry == null) {
+			return null;
+		}
+		return this.modelMeters.computeIfAbsent(modelTag(modelName),
+				model -> new ModelMeters(registry, this.tags.and("model", model)));
+	}
+
+	/**
+	 * @return the registered meters of the model, or null.
+	 */
+	private ModelMeters meters(String modelName) {
+		return this.modelMeters.get(modelTag(modelName));
+	}
+
+	private String modelTag(String modelName) {
+		return (modelName != null) ? modelName : this.model;
+	}
+
+	@Override
+	public void record(Stage stage, String modelName, long startNanos) {
+		ModelMeters meters = meters(modelName);
+		if (meters != null) {
+			meters.stageTimers[stage.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	@Override
+	public void evaluationStarted(String modelName) {
+		ModelMeters meters = register(modelName);
+		if (meters != null) {
+			meters.inFlightEvaluations.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void evaluationFinished(String modelName) {
+		ModelMeters meters = meters(modelName);
+		if (meters != null) {
+			// An evaluation started before the meters were bound was not counted
+			meters.inFlightEvaluations.updateAndGet(count -> Math.max(count - 1, 0));
+		}
+	}
+
+	@Override
+	public void inputTensorBytes(String modelName, long bytes) {
+		ModelMeters meters = meters(modelName);
+		if (meters != null) {
+			meters.inputTensorBytes.record(bytes);
+		}
+	}
+
+	@Override
+	public void outputTensorBytes(String modelName, long bytes) {
+		ModelMeters meters = meters(modelName);
+		if (meters != null) {
+			meters.outputTensorBytes.record(bytes);
+		}
+	}
+
+	/**
+	 * Evaluation meters of a model.
+	 */
+	private static final class ModelMeters {
+
+		/**
+		 * Stage timers, indexed by the stage ordinal.
+		 */
+		private final Timer[] stageTimers = new Timer[Stage.values().length];
+
+		private final AtomicInteger inFlightEvaluations = new AtomicInteger();
+
+		private final DistributionSummary inputTensorBytes;
+
+		private final DistributionSummary outputTensorBytes;
+
+		private ModelMeters(MeterRegistry registry, Tags tags) {
+			for (Stage stage : Stage.values()) {
+				this.stageTimers[stage.ordinal()] = Timer.builder("tensorflow.evaluation.stage")
+						.description("Duration of the input message evaluation stages")
+						.tags(tags)
+						.tag("stage", stage.name())
+						.publishPercentileHistogram()
+						.register(registry);
+			}
+
+			this.inputTensorBytes = tensorBytes(registry, tags, "input");
+			this.outputTensorBytes = tensorBytes(registry, tags, "output");
+
+			Gauge.builder("tensorflow.evaluations.in.flight", this.inFlightEvaluations, AtomicInteger::get)
+					.description("Number of the concurrent model evaluations")
+					.tags(tags)
+					.register(registry);
+		}
+
+		private static DistributionSummary tensorBytes(MeterRegistry registry, Tags tags, String direction) {
+			return DistributionSummary.builder("tensorflow.tensor.bytes")
+					.description("Size of the tensors fed to and fetched from the model per evaluation")
+					.baseUnit("bytes")
+					.tags(tags)
+					.tag("direction", direction)
+					.register(registry);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Polls the last modified time of the model location and reloads the {@link TensorFlowService} model when it
+ * changes. The reload runs on the polling thread, so the evaluations are not blocked while the new model loads.
+ * The polling is disabled if the poll interval is not positive.
+ *
+ * The first poll runs right away and only records the last modified time of the loaded model. It waits on the
+ * polling thread for the background load of the initial model, so the construction doesn't block the startup.
+ *
+ * The explicit reloads (e.g. through the {@link TensorflowModelEndpoint}) go through {@link #reload()} as well, so
+ * that the polling doesn't load the same model version again.
+ *
+ * @author agent
+ */
+public class ModelReloader implements AutoCloseable {
+
+	private static final Log logger = LogFactory.getLog(ModelReloader.class);
+
+	private final TensorFlowService tensorFlowService;
+
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Last modified time of the loaded model, or null until the first poll or reload.
+	 */
+	private Long lastModified;
+
+	/**
+	 * @param tensorFlowService Service to reload the model of.
+	 * @param pollInterval Time, in milliseconds, between two checks of the model location, or 0 to disable polling.
+	 */
+	public ModelReloader(TensorFlowService tensorFlowService, long pollInterval) {
+		this.tensorFlowService = tensorFlowService;
+		if (pollInterval <= 0) {
+			this.scheduler = null;
+			return;
+		}
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("tensorflow-reload-"));
+		this.scheduler.scheduleWithFixedDelay(this::poll, 0, pollInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Reloads the model from its current location and records the last modified time of the loaded version.
+	 */
+	public synchronized void reload() {
+		Resource modelLocation = this.tensorFlowService.getModelLocation();
+		// Read before the load, so that a change made while the model loads is picked up by the next poll
+		long modified = lastModified(modelLocation);
+		this.tensorFlowService.reload(modelLocation);
+		this.lastModified = modified;
+	}
+
+	synchronized void poll() {
+		Resource modelLocation = null;
+		try {
+			modelLocation = this.tensorFlowService.getModelLocation();
+			long modified = lastModified(modelLocation);
+			if (this.lastModified == null) {
+				this.lastModified = modified;
+				return;
+			}
+			if (modified <= 0 || modified == this.lastModified) {
+				return;
+			}
+			reload();
+		}
+		catch (RuntimeException e) {
+			// Keep serving the current model and retry on the next poll, an exception would cancel the polling
+			logger.error("Failed to reload the model: " + modelLocation, e);
+		}
+	}
+
+	private static long lastModified(Resource resource) {
+		try {
+			return resource.lastModified();
+		}
+		catch (IOException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Can not resolve the last modified time of: " + resource, e);
+			}
+			return 0;
+		}
+	}
+
+	@Override
+	public void close() {
+		if (this.scheduler != null) {
+			this.scheduler.shutdownNow();
+		}
+	}
+}
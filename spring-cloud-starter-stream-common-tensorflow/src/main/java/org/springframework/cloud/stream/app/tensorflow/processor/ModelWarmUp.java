@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Runs the model warm-up before the input bindings are started.
+ *
+ * The first evaluations after the startup hit cold kernels, lazy native allocations and not yet compiled Java
+ * converters. The warm-up runs a number of evaluation rounds on the startup thread, in a lifecycle phase that
+ * precedes the binding lifecycles, so no message is consumed before the warm-up completes. A failed round fails
+ * the startup. The {@link #isCompleted()} state is exposed through a health indicator to hold the readiness of the
+ * application.
+ *
+ * @author agent
+ */
+public class ModelWarmUp implements SmartLifecycle {
+
+	private static final Log logger = LogFactory.getLog(ModelWarmUp.class);
+
+	/**
+	 * Must start before the Spring Cloud Stream binding lifecycles (Integer.MAX_VALUE - 1000).
+	 */
+	static final int PHASE = 0;
+
+	private final int iterations;
+
+	private final Runnable round;
+
+	private volatile boolean running;
+
+	private volatile boolean completed;
+
+	private volatile long durationMillis;
+
+	/**
+	 * @param iterations Number of warm-up rounds to run.
+	 * @param round Runs a single warm-up round. The output of the round is discarded.
+	 */
+	public ModelWarmUp(int iterations, Runnable round) {
+		this.iterations = iterations;
+		this.round = round;
+	}
+
+	@Override
+	public void start() {
+		if (this.running) {
+			return;
+		}
+		this.running = true;
+		if (this.completed) {
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < this.iterations; i++) {
+			try {
+				this.round.run();
+			}
+			catch (RuntimeException e) {
+				this.running = false;
+				throw new IllegalStateException("Model warm-up round " + (i + 1) + " failed", e);
+			}
+		}
+		this.durationMillis = System.currentTimeMillis() - start;
+		this.completed = true;
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Model warm-up completed " + this.iterations + " rounds in " + this.durationMillis + " ms");
+		}
+	}
+
+	@Override
+	public void stop() {
+		this.running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public int getPhase() {
+		return PHASE;
+	}
+
+	public boolean isCompleted() {
+		return this.completed;
+	}
+
+	public int getIterations() {
+		return this.iterations;
+	}
+
+	public long getDurationMillis() {
+		return this.durationMillis;
+	}
+}
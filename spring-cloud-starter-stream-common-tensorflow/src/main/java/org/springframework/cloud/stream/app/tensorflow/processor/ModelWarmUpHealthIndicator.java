@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * Reports the application as DOWN until the {@link ModelWarmUp} completes, so that the platform doesn't
+ * route traffic to (or count as ready) an instance with a cold model.
+ *
+ * @author agent
+ */
+public class ModelWarmUpHealthIndicator extends AbstractHealthIndicator {
+
+	private final ModelWarmUp modelWarmUp;
+
+	public ModelWarmUpHealthIndicator(ModelWarmUp modelWarmUp) {
+		this.modelWarmUp = modelWarmUp;
+	}
+
+	@Override
+	protected void doHealthCheck(Health.Builder builder) {
+		if (this.modelWarmUp.isCompleted()) {
+			builder.up().withDetail("durationMillis", this.modelWarmUp.getDurationMillis());
+		}
+		else {
+			builder.down();
+		}
+		builder.withDetail("iterations", this.modelWarmUp.getIterations());
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.HashMap;
+
+/**
+ * Context of a single evaluation, used by the {@link TensorflowInputConverter} to convey metadata to the
+ * {@link TensorflowOutputConverter}.
+ *
+ * The synchronous evaluations run from the input conversion to the output conversion on the consumer thread, so
+ * they reuse the context of that thread, cleared, instead of allocating a new context for every message. The
+ * converters must not retain the context past the evaluation.
+ *
+ * @author agent
+ */
+public class ProcessorContext extends HashMap<String, Object> {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final ThreadLocal<ProcessorContext> CURRENT = ThreadLocal.withInitial(ProcessorContext::new);
+
+	/**
+	 * @return the cleared context of the calling thread.
+	 */
+	static ProcessorContext current() {
+		ProcessorContext processorContext = CURRENT.get();
+		processorContext.clear();
+		return processorContext;
+	}
+
+	/**
+	 * @param key Context key.
+	 * @param type Expected value type.
+	 * @return the value of the key, or null if missing.
+	 * @throws ClassCastException if the value is not of the expected type.
+	 */
+	public <T> T get(String key, Class<T> type) {
+		return type.cast(get(key));
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Collections;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+/**
+ * Binds the tensorflowFunction to the processor input and output when the reactive evaluation is enabled (see
+ * {@link ReactiveInferenceFunction}).
+ *
+ * An explicitly configured function definition always takes precedence.
+ *
+ * @author agent
+ */
+public class ReactiveFunctionEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+	static final String REACTIVE_ENABLED = "tensorflow.reactive.enabled";
+
+	static final String FUNCTION_DEFINITION = "spring.cloud.stream.function.definition";
+
+	static final String FUNCTION_NAME = "tensorflowFunction";
+
+	private static final String PROPERTY_SOURCE_NAME = "tensorflowReactiveFunction";
+
+	@Override
+	public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+		Binder binder = Binder.get(environment);
+		if (!binder.bind(REACTIVE_ENABLED, Boolean.class).orElse(false)
+				|| binder.bind(FUNCTION_DEFINITION, String.class).isBound()) {
+			return;
+		}
+		environment.getPropertySources().addLast(new MapPropertySource(PROPERTY_SOURCE_NAME,
+				Collections.singletonMap(FUNCTION_DEFINITION, FUNCTION_NAME)));
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.function.Function;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * Functional, reactive variant of the processor. Every input message is evaluated on a dedicated inference
+ * scheduler, so the binder thread only hands the message over. Up to the given number of messages are evaluated
+ * concurrently. Once the bound is reached no more input messages are requested, so the demand of the output
+ * binding propagates to the input binding.
+ *
+ * The output messages are emitted in the completion order, which can differ from the input order when more than
+ * one message is evaluated concurrently. A message that fails to evaluate is handed to the error handler as a
+ * {@link MessagingException}, without terminating the stream. The messages are acknowledged before they are
+ * evaluated, so the binder can not redeliver the failed message.
+ *
+ * @author agent
+ */
+public class ReactiveInferenceFunction implements Function<Flux<Message<byte[]>>, Flux<Message<?>>>, AutoCloseable {
+
+	private final Function<Message<byte[]>, Message<?>> evaluation;
+
+	private final int concurrency;
+
+	private final Scheduler scheduler;
+
+	private final ErrorHandler errorHandler;
+
+	/**
+	 * @param evaluation Evaluates an input message into the output message. Runs on the inference scheduler.
+	 * @param concurrency Maximum number of the messages evaluated concurrently.
+	 * @param inferenceThreads Number of the inference scheduler threads.
+	 * @param errorHandler Handles the failed evaluations, e.g. publishes them to the error channel.
+	 */
+	public ReactiveInferenceFunction(Function<Message<byte[]>, Message<?>> evaluation, int concurrency,
+			int inferenceThreads, ErrorHandler errorHandler) {
+		Assert.notNull(evaluation, "The evaluation must not be null");
+		Assert.notNull(errorHandler, "The error handler must not be null");
+		Assert.isTrue(concurrency > 0, "The concurrency must be positive: " + concurrency);
+		Assert.isTrue(inferenceThreads > 0, "The number of inference threads must be positive: " + inferenceThreads);
+		this.evaluation = evaluation;
+		this.concurrency = concurrency;
+		this.scheduler = Schedulers.newParallel("tensorflow-inference", inferenceThreads, true);
+		this.errorHandler = errorHandler;
+	}
+
+	@Override
+	public Flux<Message<?>> apply(Flux<Message<byte[]>> inputs) {
+		return inputs.flatMap(this::evaluate, this.concurrency);
+	}
+
+	private Mono<Message<?>> evaluate(Message<byte[]> input) {
+		return Mono.<Message<?>>fromCallable(() -> this.evaluation.apply(input))
+				.subscribeOn(this.scheduler)
+				.onErrorResume(error -> {
+					this.errorHandler.handleError(
+							new MessagingException(input, "Failed to evaluate the message", error));
+					return Mono.empty();
+				});
+	}
+
+	@Override
+	public void close() {
+		this.scheduler.dispose();
+	}
+}
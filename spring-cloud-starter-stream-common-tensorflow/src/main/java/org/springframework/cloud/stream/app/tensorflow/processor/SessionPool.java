@@ -0,0 +1,133 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.tensorflow.Graph;
+import org.tensorflow.Session;
+
+import org.springframework.util.Assert;
+
+/**
+ * Fixed size pool of long-lived {@link Session}s bound to a shared {@link Graph}.
+ *
+ * Opening a new session per evaluation re-initializes the kernels and the allocators on every call. The pool opens
+ * all sessions upfront and hands them out one evaluation at a time. When all sessions are in use the callers
+ * block until a session is released.
+ *
+ * The pool can also share a single, externally managed session (e.g. the session of a SavedModelBundle, that holds
+ * the restored variables) between up to size concurrent callers. Shared sessions are not closed by the pool.
+ *
+ * @author agent
+ */
+public class SessionPool implements AutoCloseable {
+
+	private static final Log logger = LogFactory.getLog(SessionPool.class);
+
+	private final List<Session> sessions;
+
+	private final BlockingQueue<Session> idleSessions;
+
+	private final int size;
+
+	public SessionPool(Graph graph, int size) {
+		this(graph, size, null);
+	}
+
+	/**
+	 * @param graph Graph the sessions are bound to.
+	 * @param size Number of sessions in the pool.
+	 * @param config Serialized ConfigProto used to create the sessions, or null for the default configuration.
+	 */
+	public SessionPool(Graph graph, int size, byte[] config) {
+		Assert.notNull(graph, "Not null graph is required!");
+		Assert.isTrue(size > 0, "The session pool size must be positive: " + size);
+
+		this.sessions = new ArrayList<>(size);
+		this.idleSessions = new ArrayBlockingQueue<>(size);
+		for (int i = 0; i < size; i++) {
+			Session session = (config != null) ? new Session(graph, config) : new Session(graph);
+			this.sessions.add(session);
+			this.idleSessions.add(session);
+		}
+		this.size = size;
+
+		if (logger.isInfoEnabled()) {
+			logger.info("TensorFlow session pool created with size: " + size);
+		}
+	}
+
+	/**
+	 * @param sharedSession Externally managed session handed out to all callers.
+	 * @param size Maximum number of concurrent callers.
+	 */
+	public SessionPool(Session sharedSession, int size) {
+		Assert.notNull(sharedSession, "Not null session is required!");
+		Assert.isTrue(size > 0, "The session pool size must be positive: " + size);
+
+		this.sessions = new ArrayList<>();
+		this.idleSessions = new ArrayBlockingQueue<>(size);
+		for (int i = 0; i < size; i++) {
+			this.idleSessions.add(sharedSession);
+		}
+		this.size = size;
+	}
+
+	/**
+	 * Takes an idle session from the pool, waiting if none is available.
+	 * @return session that must be returned back with {@link #release(Session)} after use.
+	 */
+	public Session borrow() {
+		try {
+			return this.idleSessions.take();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a TensorFlow session", e);
+		}
+	}
+
+	/**
+	 * Returns a session, previously obtained by {@link #borrow()}, back to the pool.
+	 * @param session session to return.
+	 */
+	public void release(Session session) {
+		if (session != null) {
+			this.idleSessions.offer(session);
+		}
+	}
+
+	public int getSize() {
+		return this.size;
+	}
+
+	@Override
+	public void close() {
+		logger.info("Close TensorFlow session pool!");
+		for (Session session : this.sessions) {
+			session.close();
+		}
+		this.sessions.clear();
+		this.idleSessions.clear();
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Collections;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.cloud.stream.messaging.Processor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+/**
+ * Aligns the input binding consumer concurrency with the TensorFlow session pool size. Every consumer thread can
+ * then evaluate on its own session instead of serializing all messages on a single one.
+ *
+ * With micro-batching the consumer threads wait for the evaluation of their batch, so the concurrency is multiplied
+ * by the batch size, to fill a batch for every session without waiting for the batch timeout.
+ *
+ * An explicitly configured consumer concurrency always takes precedence.
+ *
+ * @author agent
+ */
+public class SessionPoolConcurrencyEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+	static final String SESSION_POOL_SIZE = "tensorflow.session.pool-size";
+
+	static final String BATCH_SIZE = "tensorflow.batch.size";
+
+	static final String CONSUMER_CONCURRENCY = "spring.cloud.stream.bindings." + Processor.INPUT + ".consumer.concurrency";
+
+	private static final String PROPERTY_SOURCE_NAME = "tensorflowSessionPoolConcurrency";
+
+	@Override
+	public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+		Binder binder = Binder.get(environment);
+		if (binder.bind(CONSUMER_CONCURRENCY, Integer.class).isBound()) {
+			return;
+		}
+		int poolSize = binder.bind(SESSION_POOL_SIZE, Integer.class).orElse(1);
+		int batchSize = binder.bind(BATCH_SIZE, Integer.class).orElse(1);
+		int concurrency = poolSize * Math.max(1, batchSize);
+		if (concurrency > 1) {
+			environment.getPropertySources().addLast(new MapPropertySource(PROPERTY_SOURCE_NAME,
+					Collections.singletonMap(CONSUMER_CONCURRENCY, concurrency)));
+		}
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.tensorflow.Tensor;
+
+/**
+ * Releases the native tensors of the evaluations. Every evaluation opens a {@link Scope} that closes its tensors
+ * once the message completes, whether it completes normally or not:
+ *
+ * <ul>
+ *     <li>The feed tensors created by the input converter are tracked until the model evaluation, which closes
+ *     them, and are then released from the scope. The converters must not close them.</li>
+ *     <li>The output tensors fetched from the model are owned by the scope. The output converters don't have to
+ *     close them, but they may: closing a tensor twice is a no-op.</li>
+ * </ul>
+ *
+ * The tracked tensors that were never released when their scope closes are counted as reclaimed, e.g. the feeds of
+ * a pipelined evaluation that failed or was abandoned before the model evaluation. The scope records which tensors
+ * it released, so that closing it doesn't have to probe the tensors. In debug mode every tracked tensor records the
+ * evaluation stage that produced it, and the reclaimed tensors are logged with it. The named feeds record their name.
+ * The tensors tracked one by one, right after a converter created them, record the stack trace of their allocation.
+ *
+ * @author agent
+ */
+public class TensorArena {
+
+	private static final Log logger = LogFactory.getLog(TensorArena.class);
+
+	private final boolean debug;
+
+	private final AtomicLong openScopes = new AtomicLong();
+
+	private final AtomicLong trackedTensors = new AtomicLong();
+
+	private final AtomicLong reclaimedTensors = new AtomicLong();
+
+	private final AtomicLong reclaimedBytes = new AtomicLong();
+
+	private final AtomicBoolean reclaimLogged = new AtomicBoolean();
+
+	/**
+	 * @param debug Records and logs the evaluation stages, names and allocation sites of the reclaimed tensors.
+	 */
+	public TensorArena(boolean debug) {
+		this.debug = debug;
+	}
+
+	/**
+	 * @return new scope for the tensors of an evaluation. The caller must close it once the message completes.
+	 */
+	public Scope open() {
+		this.openScopes.incrementAndGet();
+		return new Scope();
+	}
+
+	public boolean isDebug() {
+		return this.debug;
+	}
+
+	/**
+	 * @return the number of the evaluations in flight. Stays above zero if a scope is never closed.
+	 */
+	public long getOpenScopes() {
+		return this.openScopes.get();
+	}
+
+	public long getTrackedTensors() {
+		return this.trackedTensors.get();
+	}
+
+	/**
+	 * @return the number of the tracked tensors that were never released before their scope closed.
+	 */
+	public long getReclaimedTensors() {
+		return this.reclaimedTensors.get();
+	}
+
+	/**
+	 * @return the native bytes of the reclaimed tensors.
+	 */
+	public long getReclaimedBytes() {
+		return this.reclaimedBytes.get();
+	}
+
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("debug", this.debug);
+		statistics.put("openScopes", getOpenScopes());
+		statistics.put("trackedTensors", getTrackedTensors());
+		statistics.put("reclaimedTensors", getReclaimedTensors());
+		statistics.put("reclaimedBytes", getReclaimedBytes());
+		return statistics;
+	}
+
+	private void reclaimed(Tensor<?> tensor, TensorSource source) {
+		long bytes = tensor.numBytes();
+		this.reclaimedTensors.incrementAndGet();
+		this.reclaimedBytes.addAndGet(bytes);
+		if (source != null) {
+			String message = String.format("Reclaimed the %s, a %s %s tensor of %d bytes never released by the "
+					+ "evaluation", source.getMessage(), tensor.dataType(), Arrays.toString(tensor.shape()), bytes);
+			if (source.getStackTrace().length > 0) {
+				logger.warn(message, source);
+			}
+			else {
+				logger.warn(message);
+			}
+		}
+		else if (this.reclaimLogged.compareAndSet(false, true) && logger.isInfoEnabled()) {
+			logger.info("Some tensors were never released by the evaluations and have been released by the tensor "
+					+ "arena. Set tensorflow.arena.debug=true to log them.");
+		}
+	}
+
+	/**
+	 * Tensors of a single evaluation. The evaluation stages can track their tensors from different threads, one
+	 * after the other.
+	 */
+	public final class Scope implements AutoCloseable {
+
+		/**
+		 * Tensors handed on to a following stage, not released yet.
+		 */
+		private final List<Tensor<?>> tracked = new ArrayList<>(4);
+
+		/**
+		 * The sources of the tracked tensors, in debug mode only.
+		 */
+		private final List<TensorSource> sources = TensorArena.this.debug ? new ArrayList<>(4) : null;
+
+		/**
+		 * Tensors closed with the scope, never reclaimed.
+		 */
+		private final List<Tensor<?>> owned = new ArrayList<>(4);
+
+		private boolean closed;
+
+		private Scope() {
+		}
+
+		/**
+		 * Tracks the tensors among the values, until a following stage takes them over and they are released. The
+		 * values that are not tensors are ignored.
+		 *
+		 * @param values Named feeds of the evaluation.
+		 * @param stage Evaluation stage that produced the values, reported in debug mode.
+		 * @return the given values.
+		 */
+		public <M extends Map<String, ?>> M track(M values, String stage) {
+			for (Map.Entry<String, ?> entry : values.entrySet()) {
+				if (entry.getValue() instanceof Tensor) {
+					track((Tensor<?>) entry.getValue(), stage, entry.getKey());
+				}
+			}
+			return values;
+		}
+
+		/**
+		 * Tracks a tensor created during the evaluation, e.g. by a converter. In debug mode the stack trace of the
+		 * caller is recorded as the allocation site of the tensor.
+		 *
+		 * @param tensor Tensor to close with the scope, unless released before.
+		 * @param stage Evaluation stage that created the tensor, reported in debug mode.
+		 * @return the given tensor.
+		 */
+		public <T extends Tensor<?>> T track(T tensor, String stage) {
+			track(tensor, stage, null);
+			return tensor;
+		}
+
+		/**
+		 * Closes the tracked tensors among the values, once the stage they were handed on to is done with them, and
+		 * stops tracking them.
+		 *
+		 * @param values Values given to {@link #track(Map, String)}.
+		 */
+		public synchronized void release(Map<String, ?> values) {
+			for (Object value : values.values()) {
+				if (value instanceof Tensor) {
+					int index = indexOf((Tensor<?>) value);
+					if (index >= 0) {
+						this.tracked.remove(index);
+						if (this.sources != null) {
+							this.sources.remove(index);
+						}
+					}
+					((Tensor<?>) value).close();
+				}
+			}
+		}
+
+		/**
+		 * Closes the tensors with the scope, e.g. the output tensors fetched from the model. The values that are
+		 * not tensors are ignored.
+		 *
+		 * @param values Named outputs of the evaluation.
+		 * @return the given values.
+		 */
+		public synchronized <M extends Map<String, ?>> M own(M values) {
+			for (Object value : values.values()) {
+				if (value instanceof Tensor) {
+					if (this.closed) {
+						// Late tensors, e.g. of a timed out stage, are not left behind
+						((Tensor<?>) value).close();
+						continue;
+					}
+					this.owned.add((Tensor<?>) value);
+					TensorArena.this.trackedTensors.incrementAndGet();
+				}
+			}
+			return values;
+		}
+
+		private synchronized void track(Tensor<?> tensor, String stage, String name) {
+			if (this.closed) {
+				tensor.close();
+				return;
+			}
+			this.tracked.add(tensor);
+			if (this.sources != null) {
+				// The tensors tracked one by one are not named, their allocation site identifies them
+				this.sources.add((name != null) ? new TensorSource(stage + " tensor '" + name + "'", false)
+						: new TensorSource(stage + " tensor", true));
+			}
+			TensorArena.this.trackedTensors.incrementAndGet();
+		}
+
+		private int indexOf(Tensor<?> tensor) {
+			for (int i = 0; i < this.tracked.size(); i++) {
+				if (this.tracked.get(i) == tensor) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Closes all tensors, and counts the tracked tensors that were not released as reclaimed. Idempotent.
+		 */
+		@Override
+		public synchronized void close() {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			try {
+				for (int i = 0; i < this.tracked.size(); i++) {
+					Tensor<?> tensor = this.tracked.get(i);
+					reclaimed(tensor, (this.sources != null) ? this.sources.get(i) : null);
+					tensor.close();
+				}
+				TensorflowModel.closeAll(this.owned);
+			}
+			finally {
+				this.tracked.clear();
+				this.owned.clear();
+				TensorArena.this.openScopes.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Evaluation stage, and name or allocation site, of a tracked tensor. Logged as the cause of the reclaim.
+	 */
+	private static final class TensorSource extends Throwable {
+
+		private static final long serialVersionUID = 1L;
+
+		private TensorSource(String description, boolean allocationSite) {
+			super(description, null, false, allocationSite);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.tensorflow.DataType;
+import org.tensorflow.Tensor;
+
+import org.springframework.util.Assert;
+
+/**
+ * Utility that stacks single item tensors into a batch tensor and splits a batch tensor back into single item
+ * tensors. The first tensor dimension is used as the batch dimension.
+ *
+ * @author agent
+ */
+public class TensorBatchUtils {
+
+	/**
+	 * Stacks tensors with shape [1, d1, d2 ...] into a single tensor with shape [N, d1, d2 ...].
+	 * @param tensors Tensors of the same data type and shape, having 1 as first dimension.
+	 * @return New batch tensor. The caller is responsible to close it.
+	 */
+	public static Tensor<?> stack(List<Tensor<?>> tensors) {
+		Assert.notEmpty(tensors, "At least one tensor is required");
+
+		Tensor<?> first = tensors.get(0);
+		DataType dataType = first.dataType();
+		long[] itemShape = first.shape();
+		Assert.isTrue(dataType != DataType.STRING, "String tensors can not be batched");
+		Assert.isTrue(itemShape.length > 0 && itemShape[0] == 1,
+				"Expected batch dimension of size 1, found shape: " + Arrays.toString(itemShape));
+
+		ByteBuffer buffer = ByteBuffer.allocate(first.numBytes() * tensors.size());
+		for (Tensor<?> tensor : tensors) {
+			Assert.isTrue(tensor.dataType() == dataType && Arrays.equals(tensor.shape(), itemShape),
+					"All batched tensors must have the same data type and shape");
+			tensor.writeTo(buffer);
+		}
+		buffer.flip();
+
+		long[] batchShape = Arrays.copyOf(itemShape, itemShape.length);
+		batchShape[0] = tensors.size();
+
+		return Tensor.create(TensorJsonConverter.dataTypeToClass(dataType), batchShape, buffer);
+	}
+
+	/**
+	 * Splits a tensor with shape [N, d1, d2 ...] into N tensors with shape [1, d1, d2 ...].
+	 * @param batch Tensor to split. It is not closed by this method.
+	 * @param batchSize Expected size of the first dimension.
+	 * @return List of new tensors. The caller is responsible to close them.
+	 */
+	public static List<Tensor<?>> split(Tensor<?> batch, int batchSize) {
+		long[] batchShape = batch.shape();
+		if (batchShape.length == 0 || batchShape[0] != batchSize) {
+			throw new IllegalStateException(String.format("Expected output tensor batched along the first " +
+					"dimension with size %d, found shape: %s", batchSize, Arrays.toString(batchShape)));
+		}
+		Assert.isTrue(batch.dataType() != DataType.STRING, "String tensors can not be split");
+
+		ByteBuffer buffer = ByteBuffer.allocate(batch.numBytes());
+		batch.writeTo(buffer);
+
+		long[] itemShape = Arrays.copyOf(batchShape, batchShape.length);
+		itemShape[0] = 1;
+		int itemBytes = batch.numBytes() / batchSize;
+		Class<?> type = TensorJsonConverter.dataTypeToClass(batch.dataType());
+
+		List<Tensor<?>> items = new ArrayList<>(batchSize);
+		for (int i = 0; i < batchSize; i++) {
+			buffer.limit((i + 1) * itemBytes);
+			buffer.position(i * itemBytes);
+			items.add(Tensor.create(type, itemShape, buffer.slice()));
+		}
+		return items;
+	}
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.tensorflow.DataType;
+import org.tensorflow.Tensor;
+
+import org.springframework.util.Assert;
+
+/**
+ * Utility that converts named {@link Tensor}s to the binary tensor envelope and in reverse.
+ *
+ * The envelope carries several named tensors with their raw content, without Base64 or JSON encoding. All numbers
+ * are little-endian:
+ *
+ * <pre>
+ * envelope := "TFEV" version:u8 count:i32 tensor*
+ * tensor   := nameLength:u16 name:utf8 dataType:u8 encoding rank:u8 dimension:i64* byteLength:i64 bytes
+ * encoding := 0:u8 | 1:u8 | 2:u8 scale:f32 zeroPoint:i32
+ * </pre>
+ *
+ * The dataType is the TensorFlow DataType protocol buffer enum number (e.g. DT_FLOAT = 1) and the tensor bytes are
+ * the little-endian tensor content in row-major order. The tensor content is copied straight between the envelope
+ * byte array and the native tensor buffers. String tensors are not supported.
+ *
+ * The encoding defines how the float tensor values are stored (see {@link TensorPrecision}): 0 for raw values, 1 for
+ * half precision values and 2 for 8 bit values quantized with the given scale and zero point. The reduced precision
+ * values are decoded back into float tensors. The version 1 envelopes have no encoding and carry raw values only.
+ *
+ * @author agent
+ */
+public class TensorEnvelopeConverter {
+
+	/**
+	 * Content type of the messages carrying a tensor envelope payload.
+	 */
+	public static final String CONTENT_TYPE = "application/x-tensorflow-envelope";
+
+	private static final byte[] MAGIC = { 'T', 'F', 'E', 'V' };
+
+	private static final byte VERSION = 2;
+
+	private static final byte ENCODING_RAW = 0;
+
+	private static final byte ENCODING_FLOAT16 = 1;
+
+	private static final byte ENCODING_INT8 = 2;
+
+	private static final int HEADER_SIZE = MAGIC.length + 1 + 4;
+
+	private static final boolean SWAP_BYTES = ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN;
+
+	/**
+	 * @param payload Message payload to check.
+	 * @return Returns true if the payload starts with the envelope signature.
+	 */
+	public static boolean isEnvelope(byte[] payload) {
+		if (payload == null || payload.length < HEADER_SIZE) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (payload[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param tensors Named tensors to encode. The tensors are not closed by this method.
+	 * @return Returns the envelope with all tensors, in the iteration order of the map.
+	 */
+	public static byte[] toEnvelope(Map<String, Tensor<?>> tensors) {
+		return toEnvelope(tensors, TensorPrecision.full);
+	}
+
+	/**
+	 * @param tensors Named tensors to encode. The tensors are not closed by this method.
+	 * @param precision Transport precision of the float tensors. The other tensors are always stored raw.
+	 * @return Returns the envelope with all tensors, in the iteration order of the map.
+	 */
+	public static byte[] toEnvelope(Map<String, Tensor<?>> tensors, TensorPrecision precision) {
+		int size = HEADER_SIZE;
+		for (Map.Entry<String, Tensor<?>> e : tensors.entrySet()) {
+			Tensor<?> tensor = e.getValue();
+			Assert.isTrue(tensor.dataType() != DataType.STRING,
+					"String tensors can not be stored in an envelope: " + e.getKey());
+			size += 2 + e.getKey().getBytes(StandardCharsets.UTF_8).length + 3
+					+ 8 * tensor.numDimensions() + 8;
+			switch (encoding(tensor, precision)) {
+			case ENCODING_FLOAT16:
+				size += 2 * tensor.numElements();
+				break;
+			case ENCODING_INT8:
+				size += 8 + tensor.numElements();
+				break;
+			default:
+				size += tensor.numBytes();
+			}
+		}
+
+		byte[] envelope = new byte[size];
+		ByteBuffer buffer = ByteBuffer.wrap(envelope).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(MAGIC).put(VERSION).putInt(tensors.size());
+
+		for (Map.Entry<String, Tensor<?>> e : tensors.entrySet()) {
+			Tensor<?> tensor = e.getValue();
+			byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+			Assert.isTrue(name.length <= 0xFFFF, "Tensor name is too long: " + e.getKey());
+			buffer.putShort((short) name.length).put(name);
+			buffer.put((byte) dataTypeNumber(tensor.dataType()));
+
+			byte encoding = encoding(tensor, precision);
+			if (encoding != ENCODING_RAW) {
+				FloatBuffer values = FloatBuffer.allocate(tensor.numElements());
+				tensor.writeTo(values);
+				values.flip();
+				if (encoding == ENCODING_FLOAT16) {
+					buffer.put(encoding);
+					putShape(buffer, tensor.shape());
+					buffer.putLong(2L * values.remaining());
+					while (values.hasRemaining()) {
+						buffer.putShort(toFloat16(values.get()));
+					}
+				}
+				else {
+					writeInt8(values, tensor.shape(), buffer);
+				}
+				continue;
+			}
+
+			buffer.put(encoding);
+			putShape(buffer, tensor.shape());
+			buffer.putLong(tensor.numBytes());
+
+			int offset = buffer.position();
+			// Copies the native tensor buffer straight into the envelope array
+			tensor.writeTo(buffer);
+			if (SWAP_BYTES) {
+				swapBytes(envelope, offset, tensor.numBytes(), tensor.dataType().byteSize());
+			}
+		}
+		return envelope;
+	}
+
+	private static byte encoding(Tensor<?> tensor, TensorPrecision precision) {
+		if (tensor.dataType() != DataType.FLOAT || precision == TensorPrecision.full) {
+			return ENCODING_RAW;
+		}
+		return precision == TensorPrecision.float16 ? ENCODING_FLOAT16 : ENCODING_INT8;
+	}
+
+	private static void putShape(ByteBuffer buffer, long[] shape) {
+		buffer.put((byte) shape.length);
+		for (long dimension : shape) {
+			buffer.putLong(dimension);
+		}
+	}
+
+	/**
+	 * Quantizes the values linearly into [-128, 127]. The range is extended to include zero, so that zero is exactly
+	 * representable. The not finite values are ignored by the range computation and saturated.
+	 */
+	private static void writeInt8(FloatBuffer values, long[] shape, ByteBuffer buffer) {
+		float min = 0;
+		float max = 0;
+		for (int i = values.position(); i < values.limit(); i++) {
+			float value = values.get(i);
+			if (Float.isFinite(value)) {
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+		}
+
+		float scale = (max > min) ? (max - min) / 255 : 1;
+		int zeroPoint = Math.max(-128, Math.min(127, Math.round(-128 - min / scale)));
+
+		buffer.put(ENCODING_INT8).putFloat(scale).putInt(zeroPoint);
+		putShape(buffer, shape);
+		buffer.putLong(values.remaining());
+		while (values.hasRemaining()) {
+			float value = values.get();
+			float quantized = Float.isNaN(value) ? zeroPoint : value / scale + zeroPoint;
+			buffer.put((byte) (quantized >= 127 ? 127 : quantized <= -128 ? -128 : Math.round(quantized)));
+		}
+	}
+
+	/**
+	 * @param envelope Envelope to decode.
+	 * @return Returns the named tensors in the envelope order. The caller is responsible to close them.
+	 */
+	public static Map<String, Tensor<?>> toTensors(byte[] envelope) {
+		Assert.isTrue(isEnvelope(envelope), "Not a tensor envelope");
+
+		Map<String, Tensor<?>> tensors = new LinkedHashMap<>();
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(envelope).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.position(MAGIC.length);
+			byte version = buffer.get();
+			Assert.isTrue(version == 1 || version == VERSION, "Unsupported tensor envelope version: " + version);
+			int count = buffer.getInt();
+
+			for (int i = 0; i < count; i++) {
+				byte[] name = new byte[Short.toUnsignedInt(buffer.getShort())];
+				buffer.get(name);
+				DataType dataType = dataType(Byte.toUnsignedInt(buffer.get()));
+				byte encoding = (version == 1) ? ENCODING_RAW : buffer.get();
+				float scale = 0;
+				int zeroPoint = 0;
+				if (encoding == ENCODING_INT8) {
+					scale = buffer.getFloat();
+					zeroPoint = buffer.getInt();
+				}
+				long[] shape = new long[Byte.toUnsignedInt(buffer.get())];
+				for (int d = 0; d < shape.length; d++) {
+					shape[d] = buffer.getLong();
+				}
+				int byteLength = Math.toIntExact(buffer.getLong());
+				Assert.isTrue(byteLength <= buffer.remaining(), "Truncated tensor envelope");
+
+				ByteBuffer content;
+				if (encoding != ENCODING_RAW) {
+					Assert.isTrue(dataType == DataType.FLOAT, "Reduced precision encoding of a " + dataType + " tensor");
+					int elements = (encoding == ENCODING_FLOAT16) ? byteLength / 2 : byteLength;
+					content = ByteBuffer.allocate(4 * elements).order(ByteOrder.nativeOrder());
+					for (int e = 0; e < elements; e++) {
+						content.putFloat(encoding == ENCODING_FLOAT16 ? fromFloat16(buffer.getShort())
+								: (buffer.get() - zeroPoint) * scale);
+					}
+					content.flip();
+				}
+				else if (SWAP_BYTES) {
+					byte[] swapped = new byte[byteLength];
+					buffer.get(swapped);
+					swapBytes(swapped, 0, byteLength, dataType.byteSize());
+					content = ByteBuffer.wrap(swapped);
+				}
+				else {
+					// Tensor.create copies the content straight from the envelope array into the native buffer
+					content = ByteBuffer.wrap(envelope, buffer.position(), byteLength);
+					buffer.position(buffer.position() + byteLength);
+				}
+				tensors.put(new String(name, StandardCharsets.UTF_8),
+						Tensor.create(TensorJsonConverter.dataTypeToClass(dataType), shape, content));
+			}
+			return tensors;
+		}
+		catch (RuntimeException e) {
+			TensorflowModel.closeAll(tensors.values());
+			throw new IllegalArgumentException("Can not convert the envelope into tensors", e);
+		}
+	}
+
+	/**
+	 * @return Returns the TensorFlow DataType protocol buffer enum number of the data type.
+	 */
+	static int dataTypeNumber(DataType dataType) {
+		return org.tensorflow.framework.DataType.valueOf("DT_" + dataType.name()).getNumber();
+	}
+
+	static DataType dataType(int dataTypeNumber) {
+		org.tensorflow.framework.DataType dataType = org.tensorflow.framework.DataType.forNumber(dataTypeNumber);
+		if (dataType == null) {
+			throw new IllegalArgumentException("Unknown data type number: " + dataTypeNumber);
+		}
+		return DataType.valueOf(dataType.name().substring("DT_".length()));
+	}
+
+	/**
+	 * Converts the value into IEEE 754 half precision bits, rounding to the nearest (ties to even).
+	 */
+	static short toFloat16(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		int sign = (bits >>> 16) & 0x8000;
+		int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+		int mantissa = bits & 0x7FFFFF;
+
+		if (exponent == 0xFF - 127 + 15) {
+			// Infinity or NaN, keeping NaN quiet
+			return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 | (mantissa >>> 13) : 0));
+		}
+		if (exponent >= 0x1F) {
+			return (short) (sign | 0x7C00);
+		}
+		if (exponent <= 0) {
+			if (exponent < -10) {
+				return (short) sign;
+			}
+			// Subnormal half, with the implicit leading bit made explicit
+			mantissa |= 0x800000;
+			int shift = 14 - exponent;
+			int half = mantissa >>> shift;
+			int remainder = mantissa & ((1 << shift) - 1);
+			int halfway = 1 << (shift - 1);
+			if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) {
+				half++;
+			}
+			return (short) (sign | half);
+		}
+
+		int half = (exponent << 10) | (mantissa >>> 13);
+		int remainder = mantissa & 0x1FFF;
+		if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+			// A carry into the exponent is still the correctly rounded value
+			half++;
+		}
+		return (short) (sign | half);
+	}
+
+	static float fromFloat16(short bits) {
+		int sign = (bits & 0x8000) << 16;
+		int exponent = (bits >>> 10) & 0x1F;
+		int mantissa = bits & 0x3FF;
+
+		if (exponent == 0x1F) {
+			return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+		}
+		if (exponent == 0) {
+			float value = mantissa * 0x1p-24f;
+			return (sign != 0) ? -value : value;
+		}
+		return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+	}
+
+	private static void swapBytes(byte[] bytes, int offset, int length, int elementSize) {
+		for (int start = offset; start + elementSize <= offset + length; start += elementSize) {
+			for (int i = 0, j = elementSize - 1; i < j; i++, j--) {
+				byte b = bytes[start + i];
+				bytes[start + i] = bytes[start + j];
+				bytes[start + j] = b;
+			}
+		}
+	}
+}
@@ -16,93 +16,578 @@
 
 package org.springframework.cloud.stream.app.tensorflow.processor;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.tensorflow.DataType;
 import org.tensorflow.Graph;
 import org.tensorflow.Session;
-import org.tensorflow.Session.Runner;
 import org.tensorflow.Tensor;
+import org.tensorflow.framework.ConfigProto;
+import org.tensorflow.framework.TensorProto;
 
-import org.springframework.cloud.stream.app.tensorflow.util.ModelExtractor;
 import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
 import org.springframework.util.StreamUtils;
 
 /**
+ * Evaluates a TensorFlow model, loaded either as a frozen graph or as a SavedModel bundle.
+ *
+ * The model can be replaced at runtime with {@link #reload(Resource)}. The new model is loaded and warmed up in the
+ * background, while the current model keeps serving. Then the new evaluations switch to the new model, and the old
+ * model is closed once its in-flight evaluations drain.
+ *
+ * When the model zoo is enabled, the evaluations can select a named model instead (see {@link TensorflowModelZoo}).
+ * The named models are loaded on demand and the least recently used ones are closed when the native memory budget
+ * is exceeded. The reload applies to the default model only.
+ *
+ * Created with a {@link TensorflowStartup}, the initial model is loaded in the background while the application
+ * starts. The evaluations wait for it.
+ *
  * @author Christian Tzolov
  */
 public class TensorFlowService implements AutoCloseable {
 
 	private static final Log logger = LogFactory.getLog(TensorflowCommonProcessorConfiguration.class);
 
-	private Graph graph;
+	private final TensorflowCommonProcessorProperties properties;
+
+	/**
+	 * The model used by the new evaluations. Replaced on reload.
+	 */
+	private final AtomicReference<TensorflowModel> model = new AtomicReference<>();
+
+	private final AtomicLong modelVersion = new AtomicLong();
+
+	/**
+	 * Duration of the last model load, in milliseconds.
+	 */
+	private volatile long modelLoadDuration;
+
+	private volatile InferenceMetrics metrics = InferenceMetrics.NONE;
+
+	/**
+	 * Profiles the evaluations of the default model, or null.
+	 */
+	private volatile InferenceProfiler profiler;
+
+	/**
+	 * The named models, or null if the model zoo is disabled.
+	 */
+	private final TensorflowModelZoo modelZoo;
+
+	/**
+	 * The initial model load, when the model is loaded in the background. Null otherwise.
+	 */
+	private final CompletableFuture<TensorflowModel> initialModel;
 
 	public TensorFlowService(Resource modelLocation) {
+		this(modelLocation, new TensorflowCommonProcessorProperties());
+	}
+
+	public TensorFlowService(Resource modelLocation, TensorflowCommonProcessorProperties properties) {
+		this.properties = properties;
+		this.model.set(loadModel(modelLocation, null));
+		this.modelVersion.incrementAndGet();
+		this.modelZoo = modelZoo(properties);
+		this.initialModel = null;
+	}
+
+	/**
+	 * Loads the model in the background. The evaluations wait for the model until it is loaded. The startup fails
+	 * if the model can not be loaded.
+	 *
+	 * @param modelLocation Location of the model.
+	 * @param properties Processor properties.
+	 * @param startup Runs and records the model load.
+	 */
+	public TensorFlowService(Resource modelLocation, TensorflowCommonProcessorProperties properties,
+			TensorflowStartup startup) {
+		this.properties = properties;
+		this.modelZoo = modelZoo(properties);
+		this.initialModel = startup.submit("model", () -> {
+			TensorflowModel loaded = loadModel(modelLocation, startup);
+			this.model.set(loaded);
+			this.modelVersion.incrementAndGet();
+			return loaded;
+		});
+	}
+
+	private static TensorflowModelZoo modelZoo(TensorflowCommonProcessorProperties properties) {
+		return properties.getModelZoo().isEnabled()
+				? new TensorflowModelZoo(properties.getModelZoo(), location -> TensorflowModel.load(location, properties))
+				: null;
+	}
+
+	private TensorflowModel loadModel(Resource modelLocation, TensorflowStartup startup) {
+		long start = System.nanoTime();
+		TensorflowModel newModel = TensorflowModel.load(modelLocation, this.properties, startup);
+		this.modelLoadDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		return newModel;
+	}
+
+	/**
+	 * Reloads the model from its current location.
+	 */
+	public void reload() {
+		reload(getModelLocation());
+	}
+
+	/**
+	 * Loads and warms up a new model in the calling thread, while the current model keeps serving the evaluations.
+	 * Then atomically swaps the new model in for the new evaluations. The previous model is closed once the
+	 * in-flight evaluations complete.
+	 *
+	 * @param modelLocation Location of the new model.
+	 */
+	public synchronized void reload(Resource modelLocation) {
+		if (logger.isInfoEnabled()) {
+			logger.info("Reloading TensorFlow model: " + modelLocation);
+		}
+		awaitInitialModel();
+		TensorflowModel newModel = loadModel(modelLocation, null);
+		try {
+			// Every warm-up round runs on the next pooled session
+			newModel.warmUp(this.properties.getWarmUp().getIterations(), this.properties.getModelFetch());
+		}
+		catch (RuntimeException e) {
+			newModel.release();
+			throw e;
+		}
+
+		TensorflowModel oldModel = this.model.getAndSet(newModel);
+		long version = this.modelVersion.incrementAndGet();
+		if (oldModel != null) {
+			oldModel.release();
+		}
+		InferenceProfiler currentProfiler = this.profiler;
+		if (currentProfiler != null) {
+			// The profile of the previous model doesn't apply to the new one
+			currentProfiler.reset();
+		}
 		if (logger.isInfoEnabled()) {
-			logger.info("Loading TensorFlow graph model: " + modelLocation);
+			logger.info("TensorFlow model version " + version + " loaded from: " + modelLocation);
+		}
+	}
+
+	public Resource getModelLocation() {
+		return currentModel().getLocation();
+	}
+
+	public long getModelVersion() {
+		return this.modelVersion.get();
+	}
+
+	public long getModelLoadedAt() {
+		return currentModel().getLoadedAt();
+	}
+
+	/**
+	 * @return the duration of the last model load, in milliseconds.
+	 */
+	public long getModelLoadDuration() {
+		return this.modelLoadDuration;
+	}
+
+	/**
+	 * @param metrics Records the concurrent model evaluations and the size of their input and output tensors.
+	 */
+	public void setMetrics(InferenceMetrics metrics) {
+		this.metrics = (metrics != null) ? metrics : InferenceMetrics.NONE;
+	}
+
+	/**
+	 * @param profiler Traces a sample of the default model evaluations, or null to disable the profiling. The model
+	 * zoo models are not profiled.
+	 */
+	public void setProfiler(InferenceProfiler profiler) {
+		this.profiler = profiler;
+	}
+
+	/**
+	 * @return identifies the content of the current model (the location and the last modified time). Changes when
+	 * a different model is loaded.
+	 */
+	public String getModelFingerprint() {
+		return currentModel().getFingerprint();
+	}
+
+	/**
+	 * @param modelName Name of the model zoo model, or null for the default model.
+	 * @return identifies the content of the named model. Loads the model if necessary.
+	 */
+	public String getModelFingerprint(String modelName) {
+		if (modelName == null) {
+			return getModelFingerprint();
+		}
+		TensorflowModel named = acquireModel(modelName);
+		try {
+			return named.getFingerprint();
+		}
+		finally {
+			named.release();
 		}
-		graph = new Graph();
-		byte[] model = new ModelExtractor().getModel(modelLocation);
-		graph.importGraphDef(model);
+	}
+
+	/**
+	 * @return the loaded model zoo models and their estimated native memory, or an empty map if the model zoo is
+	 * disabled.
+	 */
+	public Map<String, Object> getModelZooStatistics() {
+		return (this.modelZoo != null) ? this.modelZoo.getStatistics() : Collections.emptyMap();
+	}
+
+	private TensorflowModel currentModel() {
+		TensorflowModel current = this.model.get();
+		if (current == null && this.initialModel != null && !this.initialModel.isDone()) {
+			awaitInitialModel();
+			current = this.model.get();
+		}
+		if (current == null) {
+			throw new IllegalStateException("The TensorFlow service is closed");
+		}
+		return current;
+	}
+
+	/**
+	 * Waits for the background load of the initial model, if any.
+	 */
+	private void awaitInitialModel() {
+		if (this.initialModel != null) {
+			try {
+				this.initialModel.join();
+			}
+			catch (CompletionException e) {
+				throw new IllegalStateException("Failed to load the TensorFlow model", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Acquires the current model. A model replaced concurrently can already be closed, so retry with the new one.
+	 */
+	private TensorflowModel acquireModel() {
+		while (true) {
+			TensorflowModel current = currentModel();
+			if (current.tryAcquire()) {
+				return current;
+			}
+		}
+	}
+
+	/**
+	 * Acquires the named model zoo model, or the current model if the name is null.
+	 */
+	private TensorflowModel acquireModel(String modelName) {
+		if (modelName == null) {
+			return acquireModel();
+		}
+		Assert.state(this.modelZoo != null, "The model zoo is disabled. Can not select the model: " + modelName);
+		return this.modelZoo.acquire(modelName);
+	}
+
+	/**
+	 * Builds the serialized session ConfigProto from the session properties.
+	 * @param sessionProperties session configuration properties.
+	 * @return the serialized ConfigProto or null if the TensorFlow defaults should be used.
+	 */
+	static byte[] sessionConfig(TensorflowCommonProcessorProperties.Session sessionProperties) {
+
+		int intraOpParallelism = sessionProperties.getIntraOpParallelism();
+		boolean usePerSessionThreads = sessionProperties.isUsePerSessionThreads();
+
+		if (sessionProperties.isPartitionCores() && intraOpParallelism == 0) {
+			int cores = Runtime.getRuntime().availableProcessors();
+			intraOpParallelism = Math.max(1, cores / sessionProperties.getPoolSize());
+			// The partitions are only isolated if every session uses its own thread pools.
+			usePerSessionThreads = true;
+		}
+
+		if (intraOpParallelism == 0 && sessionProperties.getInterOpParallelism() == 0 && !usePerSessionThreads) {
+			return null;
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info(String.format("TensorFlow session config: intraOpParallelism=%d, interOpParallelism=%d, " +
+							"usePerSessionThreads=%s", intraOpParallelism, sessionProperties.getInterOpParallelism(),
+					usePerSessionThreads));
+		}
+
+		return ConfigProto.newBuilder()
+				.setIntraOpParallelismThreads(intraOpParallelism)
+				.setInterOpParallelismThreads(sessionProperties.getInterOpParallelism())
+				.setUsePerSessionThreads(usePerSessionThreads)
+				.build()
+				.toByteArray();
 	}
 
 	/**
 	 * Evaluates a pre-trained tensorflow model (encoded as {@link Graph}). Use the feeds parameter to feed in the
 	 * model input data and fetch-names to specify the output tensors.
 	 *
-	 * @param feeds Named map of input tensors. Tensors can be encoded as {@link Tensor} or JSON string objects.
+	 * The evaluation runs on a long-lived {@link Session} borrowed from the session pool, so concurrent callers
+	 * can evaluate in parallel up to the pool size.
+	 *
+	 * @param feeds Named map of input tensors. Tensors can be encoded as {@link Tensor}, {@link TensorProto} or JSON
+	 * string objects.
 	 * @param fetchedNames Names of the output tensors computed by the model.
 	 * @return Returns the computed output tensors. The names of the output tensors is defined by the fetchedNames
 	 * argument
 	 */
 	public Map<String, Tensor<?>> evaluate(Map<String, Object> feeds, List<String> fetchedNames) {
+		return evaluate(null, feeds, fetchedNames);
+	}
+
+	/**
+	 * Evaluates the named model zoo model, see {@link #evaluate(Map, List)}.
+	 *
+	 * @param modelName Name of the model zoo model, or null for the default model.
+	 * @param feeds Named map of input tensors.
+	 * @param fetchedNames Names of the output tensors computed by the model.
+	 * @return Returns the computed output tensors.
+	 */
+	public Map<String, Tensor<?>> evaluate(String modelName, Map<String, Object> feeds, List<String> fetchedNames) {
+
+		// Keep tensor references to release them in the finally block. The feeds that are tensors already are
+		// used as they are.
+		Map<String, Tensor<?>> feedTensors = asTensorMap(feeds);
+		boolean convert = (feedTensors == null);
+		if (convert) {
+			feedTensors = new LinkedHashMap<>(TensorflowModel.mapCapacity(feeds.size()));
+		}
+		try {
+			if (convert) {
+				for (Entry<String, Object> e : feeds.entrySet()) {
+					feedTensors.put(e.getKey(), toFeedTensor(e.getValue()));
+				}
+			}
+			return run(modelName, feedTensors, fetchedNames);
+		}
+		finally {
+			// Release all feed tensors
+			closeAll(feedTensors.values());
+		}
+	}
 
-		try (Session session = new Session(graph)) {
+	/**
+	 * @return the feeds, if all of them are tensors (e.g. created by the input converter), or null.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Tensor<?>> asTensorMap(Map<String, Object> feeds) {
+		for (Object feed : feeds.values()) {
+			if (!(feed instanceof Tensor)) {
+				return null;
+			}
+		}
+		return (Map<String, Tensor<?>>) (Map<String, ?>) feeds;
+	}
 
-			Runner runner = session.runner();
+	/**
+	 * Evaluates a batch of inputs with as few session runs as possible. The batchedFeedNames tensors of all inputs
+	 * that have the same shape, and the same values of the other feeds, are stacked along the first dimension and
+	 * evaluated together. The output tensors are split back along the first dimension.
+	 *
+	 * @param feedsBatch Named input tensors for every input in the batch.
+	 * @param batchedFeedNames Names of the feeds that have a leading batch dimension of size 1.
+	 * @param fetchedNames Names of the output tensors computed by the model.
+	 * @return Returns the computed output tensors for every input, in the order of the feedsBatch.
+	 */
+	public List<Map<String, Tensor<?>>> evaluate(List<Map<String, Object>> feedsBatch,
+			Collection<String> batchedFeedNames, List<String> fetchedNames) {
+		return evaluate(null, feedsBatch, batchedFeedNames, fetchedNames);
+	}
 
-			// Keep tensor references to release them in the finally block
-			Tensor[] feedTensors = new Tensor[feeds.size()];
-			try {
-				// Feed in the input named tensors
-				int inputIndex = 0;
+	/**
+	 * Evaluates a batch of inputs with the named model zoo model, see {@link #evaluate(List, Collection, List)}.
+	 *
+	 * @param modelName Name of the model zoo model, or null for the default model.
+	 * @param feedsBatch Named input tensors for every input in the batch.
+	 * @param batchedFeedNames Names of the feeds that have a leading batch dimension of size 1.
+	 * @param fetchedNames Names of the output tensors computed by the model.
+	 * @return Returns the computed output tensors for every input, in the order of the feedsBatch.
+	 */
+	public List<Map<String, Tensor<?>>> evaluate(String modelName, List<Map<String, Object>> feedsBatch,
+			Collection<String> batchedFeedNames, List<String> fetchedNames) {
+
+		List<Map<String, Tensor<?>>> feedTensorsBatch = new ArrayList<>(feedsBatch.size());
+		List<Tensor<?>> stackedTensors = new ArrayList<>();
+		try {
+			for (Map<String, Object> feeds : feedsBatch) {
+				Map<String, Tensor<?>> feedTensors = new LinkedHashMap<>();
+				feedTensorsBatch.add(feedTensors);
 				for (Entry<String, Object> e : feeds.entrySet()) {
-					String feedName = e.getKey();
-					feedTensors[inputIndex] = toFeedTensor(e.getValue());
-					runner = runner.feed(feedName, feedTensors[inputIndex]);
-					inputIndex++;
+					feedTensors.put(e.getKey(), toFeedTensor(e.getValue()));
 				}
+			}
 
-				// Set the tensor name to be fetched after the evaluation
-				for (String fetchName : fetchedNames) {
-					runner.fetch(fetchName);
+			List<Map<String, Tensor<?>>> results = new ArrayList<>(Collections.nCopies(feedsBatch.size(), null));
+			try {
+				evaluateGroups(modelName, feedTensorsBatch, batchedFeedNames, fetchedNames, stackedTensors, results);
+			}
+			catch (RuntimeException | Error e) {
+				// Release the outputs of the groups evaluated before the failure
+				for (Map<String, Tensor<?>> result : results) {
+					if (result != null) {
+						closeAll(result.values());
+					}
 				}
+				throw e;
+			}
+			return results;
+		}
+		finally {
+			for (Map<String, Tensor<?>> feedTensors : feedTensorsBatch) {
+				closeAll(feedTensors.values());
+			}
+			closeAll(stackedTensors);
+		}
+	}
 
-				// Evaluate the input
-				List<Tensor<?>> outputTensors = runner.run();
+	/**
+	 * Evaluates every group of inputs with a single session run and stores the split outputs in the results.
+	 */
+	private void evaluateGroups(String modelName, List<Map<String, Tensor<?>>> feedTensorsBatch,
+			Collection<String> batchedFeedNames, List<String> fetchedNames, List<Tensor<?>> stackedTensors,
+			List<Map<String, Tensor<?>>> results) {
+
+		for (List<Integer> group : groupBySameShape(feedTensorsBatch, batchedFeedNames)) {
+			if (group.size() == 1) {
+				int index = group.get(0);
+				results.set(index, run(modelName, feedTensorsBatch.get(index), fetchedNames));
+				continue;
+			}
 
-				// Extract the output tensors
-				Map<String, Tensor<?>> outTensorMap = new HashMap<>();
-				for (int outputIndex = 0; outputIndex < fetchedNames.size(); outputIndex++) {
-					outTensorMap.put(fetchedNames.get(outputIndex), outputTensors.get(outputIndex));
+			Map<String, Tensor<?>> groupFeeds = new LinkedHashMap<>(feedTensorsBatch.get(group.get(0)));
+			for (String feedName : batchedFeedNames) {
+				if (groupFeeds.containsKey(feedName)) {
+					List<Tensor<?>> items = new ArrayList<>(group.size());
+					for (int index : group) {
+						items.add(feedTensorsBatch.get(index).get(feedName));
+					}
+					Tensor<?> stacked = TensorBatchUtils.stack(items);
+					stackedTensors.add(stacked);
+					groupFeeds.put(feedName, stacked);
 				}
-				return outTensorMap;
 			}
-			finally {
-				// Release all feed tensors
-				for (Tensor tensor : feedTensors) {
-					if (tensor != null) {
-						tensor.close();
+
+			Map<String, Tensor<?>> groupOutputs = run(modelName, groupFeeds, fetchedNames);
+			try {
+				for (int index : group) {
+					results.set(index, new HashMap<>());
+				}
+				for (Entry<String, Tensor<?>> output : groupOutputs.entrySet()) {
+					List<Tensor<?>> items = TensorBatchUtils.split(output.getValue(), group.size());
+					for (int i = 0; i < group.size(); i++) {
+						results.get(group.get(i)).put(output.getKey(), items.get(i));
 					}
 				}
 			}
+			finally {
+				closeAll(groupOutputs.values());
+			}
 		}
 	}
 
+	/**
+	 * Groups the batch input indexes that can be evaluated with a single run: their feeds have the same names, data
+	 * types and shapes, and their not batched feeds have the same values. An input with a not batched string feed is
+	 * evaluated on its own.
+	 */
+	private Collection<List<Integer>> groupBySameShape(List<Map<String, Tensor<?>>> feedTensorsBatch,
+			Collection<String> batchedFeedNames) {
+
+		Map<List<Object>, List<Integer>> groups = new LinkedHashMap<>();
+		for (int index = 0; index < feedTensorsBatch.size(); index++) {
+			List<Object> key = new ArrayList<>();
+			for (Entry<String, Tensor<?>> feed : feedTensorsBatch.get(index).entrySet()) {
+				Tensor<?> tensor = feed.getValue();
+				key.add(feed.getKey());
+				key.add(tensor.dataType());
+				key.add(Arrays.toString(tensor.shape()));
+				if (!batchedFeedNames.contains(feed.getKey())) {
+					key.add((tensor.dataType() == DataType.STRING) ? new Object() : content(tensor));
+				}
+			}
+			groups.computeIfAbsent(key, k -> new ArrayList<>()).add(index);
+		}
+		return groups.values();
+	}
+
+	private static ByteBuffer content(Tensor<?> tensor) {
+		ByteBuffer content = ByteBuffer.allocate(tensor.numBytes()).order(ByteOrder.nativeOrder());
+		tensor.writeTo(content);
+		content.flip();
+		return content;
+	}
+
+	/**
+	 * Runs the current or the named model. The model can not be closed by a concurrent reload or eviction before the
+	 * run completes.
+	 */
+	private Map<String, Tensor<?>> run(String modelName, Map<String, Tensor<?>> feedTensors,
+			List<String> fetchedNames) {
+		TensorflowModel current = acquireModel(modelName);
+		InferenceMetrics metrics = this.metrics;
+		// Once the model is acquired, so that the metrics are only tagged by the names of existing models
+		metrics.evaluationStarted(modelName);
+		try {
+			metrics.inputTensorBytes(modelName, numBytes(feedTensors));
+			Map<String, Tensor<?>> outputTensors = current.run(feedTensors, fetchedNames,
+					(modelName == null) ? this.profiler : null);
+			metrics.outputTensorBytes(modelName, numBytes(outputTensors));
+			return outputTensors;
+		}
+		finally {
+			current.release();
+			metrics.evaluationFinished(modelName);
+		}
+	}
+
+	private static long numBytes(Map<String, Tensor<?>> tensors) {
+		long numBytes = 0;
+		for (Tensor<?> tensor : tensors.values()) {
+			numBytes += tensor.numBytes();
+		}
+		return numBytes;
+	}
+
+	/**
+	 * Creates zero filled feed tensors for all model inputs, using the placeholders data type and shape. Unknown
+	 * dimensions are set to 1. Used to warm up the model when no sample inputs are available.
+	 *
+	 * @return Named map of synthetic input tensors, or an empty map if some of the inputs can not be synthesized
+	 * (e.g. string inputs). The caller must close the tensors.
+	 */
+	public Map<String, Object> syntheticFeeds() {
+		TensorflowModel current = acquireModel();
+		try {
+			return new LinkedHashMap<>(current.syntheticFeeds());
+		}
+		finally {
+			current.release();
+		}
+	}
+
+	private static void closeAll(Collection<? extends Tensor<?>> tensors) {
+		TensorflowModel.closeAll(tensors);
+	}
+
 	/**
 	 * Convert an object into {@link Tensor} instance. Supports java primitive types, JSON string encoded
 	 * tensors or {@link Tensor} instances.
@@ -117,7 +602,10 @@ public class TensorFlowService implements AutoCloseable {
 			return TensorJsonConverter.toTensor((String) value);
 		}
 		else if (value instanceof byte[]) {
-			return TensorJsonConverter.toTensor(new String((byte[]) value));
+			return TensorJsonConverter.toTensor((byte[]) value);
+		}
+		else if (value instanceof TensorProto) {
+			return TensorProtoConverter.toTensor((TensorProto) value);
 		}
 
 		return Tensor.create(value);
@@ -126,8 +614,16 @@ public class TensorFlowService implements AutoCloseable {
 	@Override
 	public void close() {
 		logger.info("Close TensorFlow Graph!");
-		if (graph != null) {
-			graph.close();
+		if (this.initialModel != null) {
+			// Let the background load complete, not to leak the model
+			this.initialModel.handle((loaded, error) -> null).join();
+		}
+		TensorflowModel current = this.model.getAndSet(null);
+		if (current != null) {
+			current.release();
+		}
+		if (this.modelZoo != null) {
+			this.modelZoo.close();
 		}
 	}
 
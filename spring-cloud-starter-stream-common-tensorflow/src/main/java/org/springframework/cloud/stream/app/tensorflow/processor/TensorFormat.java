@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Wire formats used to carry tensors in the message payloads.
+ *
+ * @author agent
+ */
+public enum TensorFormat {
+
+	/**
+	 * Json object with the tensor data type, shape and Base64 encoded content (see {@link TensorJsonConverter}).
+	 */
+	json(MimeTypeUtils.APPLICATION_JSON_VALUE),
+
+	/**
+	 * Binary tensor envelope with raw tensor contents (see {@link TensorEnvelopeConverter}).
+	 */
+	envelope(TensorEnvelopeConverter.CONTENT_TYPE),
+
+	/**
+	 * TensorFlow Serving PredictRequest (input) or PredictResponse (output) message with TensorProto values
+	 * (see {@link TensorProtoConverter}).
+	 */
+	proto(TensorProtoConverter.CONTENT_TYPE);
+
+	private final String contentType;
+
+	TensorFormat(String contentType) {
+		this.contentType = contentType;
+	}
+
+	/**
+	 * @return Returns the content type of the messages carrying the format.
+	 */
+	public String getContentType() {
+		return this.contentType;
+	}
+}
@@ -16,53 +16,193 @@
 
 package org.springframework.cloud.stream.app.tensorflow.processor;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.tensorflow.DataType;
 import org.tensorflow.Tensor;
 import org.tensorflow.types.UInt8;
 
+import org.springframework.util.Assert;
+
 /**
  * Utility that helps to covert {@link Tensor} to Json and in reverse.
+ *
+ * The Json format is: { "type": DataType name, "shape": [dimensions], "value": Base64 encoded tensor content }
+ *
+ * The conversion streams through a shared {@link JsonFactory}. The tensor content is Base64 encoded straight from,
+ * and decoded straight into, a direct buffer pooled per thread, without intermediate Base64 strings or byte arrays.
+ * The decoding buffer is sized from the tensor type and shape, when they precede the value. The content larger than
+ * 4MB goes through a heap buffer of the conversion instead, so that the threads don't retain large direct buffers.
+ *
  * @author Christian Tzolov
  */
 public class TensorJsonConverter {
 
-	public static String toJson(Tensor tensor) {
+	private static final JsonFactory jsonFactory = new JsonFactory()
+			.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+			.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
 
-		// Retrieve all bytes in the buffer
-		ByteBuffer buffer = ByteBuffer.allocate(tensor.numBytes());
-		tensor.writeTo(buffer);
-		buffer.clear();
-		byte[] bytes = new byte[buffer.capacity()];
-		buffer.get(bytes, 0, bytes.length);
+	// Same alphabet and padding as the java.util.Base64 basic encoder
+	private static final Base64Variant BASE64 = Base64Variants.MIME_NO_LINEFEEDS;
 
-		long[] shape = tensor.shape();
+	/**
+	 * Larger content is converted through a heap buffer released after use, instead of a pooled direct buffer.
+	 */
+	private static final int MAX_POOLED_BUFFER_SIZE = 4 * 1024 * 1024;
 
-		String bytesBase64 = Base64.getEncoder().encodeToString(bytes);
+	private static final int MIN_BUFFER_SIZE = 8 * 1024;
 
-		return String.format("{ \"type\": \"%s\", \"shape\": %s, \"value\": \"%s\" }",
-				tensor.dataType().name(), Arrays.toString(shape), bytesBase64);
+	private static final ThreadLocal<ContentBuffer> contentBuffers = ThreadLocal.withInitial(ContentBuffer::new);
+
+	public static String toJson(Tensor tensor) {
+		StringWriter writer = new StringWriter(4 * (tensor.numBytes() + 2) / 3 + 64);
+		try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+			writeJson(tensor, generator);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Can not covert Tensor into json", e);
+		}
+		return writer.toString();
+	}
+
+	/**
+	 * Writes the Json representation of the tensor into the output stream, encoded in UTF-8.
+	 * @param tensor Tensor to convert.
+	 * @param out Output stream to write to. The stream is not closed.
+	 */
+	public static void toJson(Tensor tensor, OutputStream out) throws IOException {
+		try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+			writeJson(tensor, generator);
+		}
 	}
 
 	public static Tensor toTensor(String json) {
-		try {
-			JsonTensor jsonTensor = new ObjectMapper().readValue(json, JsonTensor.class);
-			DataType dataType = DataType.valueOf(jsonTensor.getType());
-			long[] shape = jsonTensor.getShape();
-			byte[] tfValue = Base64.getDecoder().decode(jsonTensor.getValue());
-			return Tensor.create(dataTypeToClass(dataType), shape, ByteBuffer.wrap(tfValue));
+		try (JsonParser parser = jsonFactory.createParser(json)) {
+			return readTensor(parser);
 		}
 		catch (Throwable throwable) {
 			throw new RuntimeException(String.format("Can not covert json:'%s' into Tensor", json), throwable);
 		}
 	}
 
+	/**
+	 * @param json UTF-8 encoded Json tensor.
+	 * @return Returns new Tensor. The caller is responsible to close it.
+	 */
+	public static Tensor toTensor(byte[] json) {
+		try (JsonParser parser = jsonFactory.createParser(json)) {
+			return readTensor(parser);
+		}
+		catch (Throwable throwable) {
+			throw new RuntimeException(String.format("Can not covert json of %d bytes into Tensor", json.length),
+					throwable);
+		}
+	}
+
+	private static void writeJson(Tensor tensor, JsonGenerator generator) throws IOException {
+		ContentBuffer content = contentBuffers.get();
+		try {
+			ByteBuffer buffer = content.reset(tensor.numBytes());
+			tensor.writeTo(buffer);
+			buffer.flip();
+
+			generator.writeStartObject();
+			generator.writeStringField("type", tensor.dataType().name());
+			generator.writeArrayFieldStart("shape");
+			for (long dimension : tensor.shape()) {
+				generator.writeNumber(dimension);
+			}
+			generator.writeEndArray();
+			generator.writeFieldName("value");
+			generator.writeBinary(BASE64, content.getInputStream(), buffer.remaining());
+			generator.writeEndObject();
+		}
+		finally {
+			content.release();
+		}
+	}
+
+	private static Tensor readTensor(JsonParser parser) throws IOException {
+		Assert.isTrue(parser.nextToken() == JsonToken.START_OBJECT, "Json object expected");
+
+		DataType dataType = null;
+		long[] shape = null;
+		ContentBuffer content = contentBuffers.get();
+		ByteBuffer buffer = null;
+		try {
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				parser.nextToken();
+				switch (fieldName) {
+				case "type":
+					dataType = DataType.valueOf(parser.getText());
+					break;
+				case "shape":
+					shape = readShape(parser);
+					break;
+				case "value":
+					content.reset(contentSize(dataType, shape));
+					parser.readBinaryValue(BASE64, content);
+					buffer = content.flip();
+					break;
+				default:
+					parser.skipChildren();
+				}
+			}
+
+			Assert.notNull(dataType, "Missing tensor type");
+			Assert.notNull(shape, "Missing tensor shape");
+			Assert.notNull(buffer, "Missing tensor value");
+
+			// Copies the decoded content from the direct buffer into the tensor buffer
+			return Tensor.create(dataTypeToClass(dataType), shape, buffer);
+		}
+		finally {
+			content.release();
+		}
+	}
+
+	/**
+	 * @return the byte size of the tensor content, or 0 if not known before the value is decoded.
+	 */
+	private static int contentSize(DataType dataType, long[] shape) {
+		Integer elementSize = (dataType != null) ? elementSizes.get(dataType) : null;
+		if (elementSize == null || shape == null) {
+			return 0;
+		}
+		long size = elementSize;
+		for (long dimension : shape) {
+			size *= dimension;
+		}
+		return (size >= 0 && size <= Integer.MAX_VALUE) ? (int) size : 0;
+	}
+
+	private static long[] readShape(JsonParser parser) throws IOException {
+		Assert.isTrue(parser.currentToken() == JsonToken.START_ARRAY, "Json array expected for the tensor shape");
+		long[] shape = new long[4];
+		int rank = 0;
+		while (parser.nextToken() != JsonToken.END_ARRAY) {
+			if (rank == shape.length) {
+				shape = Arrays.copyOf(shape, 2 * rank);
+			}
+			shape[rank++] = parser.getLongValue();
+		}
+		return Arrays.copyOf(shape, rank);
+	}
+
 	private static final Map<DataType, Class<?>> typeToClassMap = new HashMap<>();
 
 	static {
@@ -75,11 +215,115 @@ public class TensorJsonConverter {
 		typeToClassMap.put(DataType.STRING, String.class);
 	}
 
-	private static Class<?> dataTypeToClass(DataType dataType) {
+	private static final Map<DataType, Integer> elementSizes = new HashMap<>();
+
+	static {
+		elementSizes.put(DataType.FLOAT, 4);
+		elementSizes.put(DataType.DOUBLE, 8);
+		elementSizes.put(DataType.INT32, 4);
+		elementSizes.put(DataType.UINT8, 1);
+		elementSizes.put(DataType.INT64, 8);
+		elementSizes.put(DataType.BOOL, 1);
+	}
+
+	static Class<?> dataTypeToClass(DataType dataType) {
 		Class<?> clazz = typeToClassMap.get(dataType);
 		if (clazz == null) {
 			throw new IllegalArgumentException("No class found for dataType: " + dataType);
 		}
 		return clazz;
 	}
+
+	/**
+	 * Growable buffer, reused by the conversions of a thread. Base64 decoding writes into it as an output stream and
+	 * Base64 encoding reads from it as an input stream. Up to 4MB the content goes through a direct buffer kept by
+	 * the thread, larger content through a heap buffer of the current conversion only.
+	 */
+	private static final class ContentBuffer extends OutputStream {
+
+		private ByteBuffer pooled = ByteBuffer.allocateDirect(MIN_BUFFER_SIZE);
+
+		private ByteBuffer buffer = this.pooled;
+
+		private final InputStream input = new InputStream() {
+
+			@Override
+			public int read() {
+				return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+			}
+
+			@Override
+			public int read(byte[] bytes, int offset, int length) {
+				if (!buffer.hasRemaining()) {
+					return -1;
+				}
+				int count = Math.min(length, buffer.remaining());
+				buffer.get(bytes, offset, count);
+				return count;
+			}
+		};
+
+		/**
+		 * Clears the buffer and makes sure it can hold at least capacity bytes.
+		 *
+		 * @param capacity Expected content size, or 0 if not known. The buffer still grows as the content is written.
+		 */
+		ByteBuffer reset(int capacity) {
+			this.buffer = this.pooled;
+			this.buffer.clear();
+			if (capacity > this.buffer.capacity()) {
+				grow(capacity);
+			}
+			return this.buffer;
+		}
+
+		InputStream getInputStream() {
+			return this.input;
+		}
+
+		ByteBuffer flip() {
+			this.buffer.flip();
+			return this.buffer;
+		}
+
+		/**
+		 * Drops the heap buffer of a large conversion, if any.
+		 */
+		void release() {
+			this.buffer = this.pooled;
+		}
+
+		@Override
+		public void write(int b) {
+			ensureCapacity(this.buffer.position() + 1);
+			this.buffer.put((byte) b);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			ensureCapacity(this.buffer.position() + length);
+			this.buffer.put(bytes, offset, length);
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > this.buffer.capacity()) {
+				grow((int) Math.min(Math.max(capacity, 2L * this.buffer.capacity()), Integer.MAX_VALUE));
+			}
+		}
+
+		private void grow(int size) {
+			ByteBuffer larger;
+			if (size <= MAX_POOLED_BUFFER_SIZE) {
+				larger = ByteBuffer.allocateDirect(size);
+				this.pooled = larger;
+			}
+			else {
+				// A direct buffer would hold its native memory until the next garbage collection
+				larger = ByteBuffer.allocate(size);
+			}
+			this.buffer.flip();
+			larger.put(this.buffer);
+			this.buffer = larger;
+		}
+	}
 }
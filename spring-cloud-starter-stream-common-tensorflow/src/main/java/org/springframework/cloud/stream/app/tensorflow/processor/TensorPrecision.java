@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+/**
+ * Transport precision of the float tensors in the binary tensor envelope (see {@link TensorEnvelopeConverter}).
+ *
+ * @author agent
+ */
+public enum TensorPrecision {
+
+	/**
+	 * Raw 32 bit float values.
+	 */
+	full,
+
+	/**
+	 * IEEE 754 half precision (16 bit) values, rounded to the nearest.
+	 */
+	float16,
+
+	/**
+	 * 8 bit values, linearly quantized with a per-tensor scale and zero point: value = (quantized - zeroPoint) * scale.
+	 */
+	int8
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
+import org.tensorflow.DataType;
+import org.tensorflow.Tensor;
+import org.tensorflow.framework.TensorProto;
+import org.tensorflow.framework.TensorShapeProto;
+
+import org.springframework.util.Assert;
+
+/**
+ * Utility that converts {@link Tensor}s to TensorFlow {@link TensorProto} messages and in reverse.
+ *
+ * Named tensors are exchanged in the TensorFlow Serving PredictRequest and PredictResponse wire format:
+ * the map&lt;string, TensorProto&gt; inputs (field 2) of the PredictRequest and the map&lt;string, TensorProto&gt;
+ * outputs (field 1) of the PredictResponse. The other fields (e.g. model_spec) are skipped when reading and not
+ * written. The messages are read and written with the protobuf wire API, so the TensorFlow Serving API classes are
+ * not required.
+ *
+ * The TensorProto tensor_content is copied straight into the tensor buffer. The typed repeated fields (float_val,
+ * int_val ...) are supported as well, including the TensorFlow convention that the last value fills the remaining
+ * elements. String tensors are supported up to rank 1.
+ *
+ * @author agent
+ */
+public class TensorProtoConverter {
+
+	/**
+	 * Content type of the messages carrying a serialized protobuf payload.
+	 */
+	public static final String CONTENT_TYPE = "application/x-protobuf";
+
+	private static final int PREDICT_REQUEST_INPUTS_FIELD = 2;
+
+	private static final int PREDICT_RESPONSE_OUTPUTS_FIELD = 1;
+
+	private static final int MAP_ENTRY_KEY_FIELD = 1;
+
+	private static final int MAP_ENTRY_VALUE_FIELD = 2;
+
+	/**
+	 * @param tensor Tensor to convert. The tensor is not closed by this method.
+	 * @return Returns the TensorProto with the tensor content, or the string_val values for string tensors.
+	 */
+	public static TensorProto toTensorProto(Tensor<?> tensor) {
+		TensorShapeProto.Builder shape = TensorShapeProto.newBuilder();
+		for (long dimension : tensor.shape()) {
+			shape.addDim(TensorShapeProto.Dim.newBuilder().setSize(dimension));
+		}
+
+		TensorProto.Builder builder = TensorProto.newBuilder()
+				.setDtypeValue(TensorEnvelopeConverter.dataTypeNumber(tensor.dataType()))
+				.setTensorShape(shape);
+
+		if (tensor.dataType() == DataType.STRING) {
+			if (tensor.numDimensions() == 0) {
+				builder.addStringVal(UnsafeByteOperations.unsafeWrap(tensor.bytesValue()));
+			}
+			else {
+				Assert.isTrue(tensor.numDimensions() == 1, "String tensors with rank above 1 are not supported");
+				for (byte[] value : tensor.copyTo(new byte[(int) tensor.shape()[0]][])) {
+					builder.addStringVal(UnsafeByteOperations.unsafeWrap(value));
+				}
+			}
+		}
+		else {
+			ByteBuffer content = ByteBuffer.allocate(tensor.numBytes());
+			tensor.writeTo(content);
+			// The new array is owned by the proto from now on
+			builder.setTensorContent(UnsafeByteOperations.unsafeWrap(content.array()));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @param tensorProto TensorProto to convert.
+	 * @return Returns new Tensor. The caller is responsible to close it.
+	 */
+	public static Tensor<?> toTensor(TensorProto tensorProto) {
+		DataType dataType = TensorEnvelopeConverter.dataType(tensorProto.getDtypeValue());
+
+		long[] shape = new long[tensorProto.getTensorShape().getDimCount()];
+		long size = 1;
+		for (int i = 0; i < shape.length; i++) {
+			shape[i] = tensorProto.getTensorShape().getDim(i).getSize();
+			size *= shape[i];
+		}
+
+		if (dataType == DataType.STRING) {
+			return toStringTensor(tensorProto, shape);
+		}
+
+		if (!tensorProto.getTensorContent().isEmpty()) {
+			// Copies the content straight from the proto bytes into the tensor buffer
+			return Tensor.create(TensorJsonConverter.dataTypeToClass(dataType), shape,
+					tensorProto.getTensorContent().asReadOnlyByteBuffer());
+		}
+
+		ByteBuffer content = ByteBuffer.allocate(Math.toIntExact(size * dataType.byteSize()))
+				.order(ByteOrder.nativeOrder());
+		for (int i = 0; i < size; i++) {
+			switch (dataType) {
+			case FLOAT:
+				content.putFloat(tensorProto.getFloatValCount() == 0 ? 0
+						: tensorProto.getFloatVal(Math.min(i, tensorProto.getFloatValCount() - 1)));
+				break;
+			case DOUBLE:
+				content.putDouble(tensorProto.getDoubleValCount() == 0 ? 0
+						: tensorProto.getDoubleVal(Math.min(i, tensorProto.getDoubleValCount() - 1)));
+				break;
+			case INT32:
+				content.putInt(tensorProto.getIntValCount() == 0 ? 0
+						: tensorProto.getIntVal(Math.min(i, tensorProto.getIntValCount() - 1)));
+				break;
+			case UINT8:
+				content.put((byte) (tensorProto.getIntValCount() == 0 ? 0
+						: tensorProto.getIntVal(Math.min(i, tensorProto.getIntValCount() - 1))));
+				break;
+			case INT64:
+				content.putLong(tensorProto.getInt64ValCount() == 0 ? 0
+						: tensorProto.getInt64Val(Math.min(i, tensorProto.getInt64ValCount() - 1)));
+				break;
+			case BOOL:
+				content.put((byte) (tensorProto.getBoolValCount() != 0
+						&& tensorProto.getBoolVal(Math.min(i, tensorProto.getBoolValCount() - 1)) ? 1 : 0));
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported TensorProto data type: " + tensorProto.getDtype());
+			}
+		}
+		content.flip();
+		return Tensor.create(TensorJsonConverter.dataTypeToClass(dataType), shape, content);
+	}
+
+	private static Tensor<?> toStringTensor(TensorProto tensorProto, long[] shape) {
+		Assert.isTrue(tensorProto.getStringValCount() > 0, "String TensorProto without string_val values");
+		if (shape.length == 0) {
+			return Tensor.create(tensorProto.getStringVal(0).toByteArray(), String.class);
+		}
+		Assert.isTrue(shape.length == 1, "String tensors with rank above 1 are not supported");
+		byte[][] values = new byte[(int) shape[0]][];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = tensorProto.getStringVal(Math.min(i, tensorProto.getStringValCount() - 1)).toByteArray();
+		}
+		return Tensor.create(values, String.class);
+	}
+
+	/**
+	 * @param tensors Named input tensors. The tensors are not closed by this method.
+	 * @return Returns serialized PredictRequest with the tensors as inputs.
+	 */
+	public static byte[] toPredictRequest(Map<String, Tensor<?>> tensors) {
+		return writeTensorMap(PREDICT_REQUEST_INPUTS_FIELD, tensors);
+	}
+
+	/**
+	 * @param tensors Named output tensors. The tensors are not closed by this method.
+	 * @return Returns serialized PredictResponse with the tensors as outputs.
+	 */
+	public static byte[] toPredictResponse(Map<String, Tensor<?>> tensors) {
+		return writeTensorMap(PREDICT_RESPONSE_OUTPUTS_FIELD, tensors);
+	}
+
+	/**
+	 * @param predictRequest Serialized PredictRequest.
+	 * @return Returns the inputs of the request, keyed by feed name. The caller is responsible to close the tensors.
+	 */
+	public static Map<String, Tensor<?>> fromPredictRequest(byte[] predictRequest) {
+		return readTensorMap(PREDICT_REQUEST_INPUTS_FIELD, predictRequest);
+	}
+
+	/**
+	 * @param predictResponse Serialized PredictResponse.
+	 * @return Returns the outputs of the response, keyed by name. The caller is responsible to close the tensors.
+	 */
+	public static Map<String, Tensor<?>> fromPredictResponse(byte[] predictResponse) {
+		return readTensorMap(PREDICT_RESPONSE_OUTPUTS_FIELD, predictResponse);
+	}
+
+	private static byte[] writeTensorMap(int fieldNumber, Map<String, Tensor<?>> tensors) {
+		Map<String, TensorProto> entries = new LinkedHashMap<>();
+		int size = 0;
+		for (Map.Entry<String, Tensor<?>> e : tensors.entrySet()) {
+			TensorProto tensorProto = toTensorProto(e.getValue());
+			entries.put(e.getKey(), tensorProto);
+			size += CodedOutputStream.computeTagSize(fieldNumber)
+					+ CodedOutputStream.computeUInt32SizeNoTag(entrySize(e.getKey(), tensorProto))
+					+ entrySize(e.getKey(), tensorProto);
+		}
+
+		byte[] message = new byte[size];
+		CodedOutputStream out = CodedOutputStream.newInstance(message);
+		try {
+			for (Map.Entry<String, TensorProto> e : entries.entrySet()) {
+				out.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+				out.writeUInt32NoTag(entrySize(e.getKey(), e.getValue()));
+				out.writeString(MAP_ENTRY_KEY_FIELD, e.getKey());
+				out.writeMessage(MAP_ENTRY_VALUE_FIELD, e.getValue());
+			}
+			out.checkNoSpaceLeft();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Can not serialize the tensors", e);
+		}
+		return message;
+	}
+
+	private static int entrySize(String key, TensorProto value) {
+		return CodedOutputStream.computeStringSize(MAP_ENTRY_KEY_FIELD, key)
+				+ CodedOutputStream.computeMessageSize(MAP_ENTRY_VALUE_FIELD, value);
+	}
+
+	private static Map<String, Tensor<?>> readTensorMap(int fieldNumber, byte[] message) {
+		Map<String, Tensor<?>> tensors = new LinkedHashMap<>();
+		try {
+			CodedInputStream in = CodedInputStream.newInstance(message);
+			for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+				if (tag != WireFormat.makeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED)) {
+					in.skipField(tag);
+					continue;
+				}
+
+				int limit = in.pushLimit(in.readRawVarint32());
+				String key = "";
+				TensorProto value = TensorProto.getDefaultInstance();
+				for (int entryTag = in.readTag(); entryTag != 0; entryTag = in.readTag()) {
+					switch (WireFormat.getTagFieldNumber(entryTag)) {
+					case MAP_ENTRY_KEY_FIELD:
+						key = in.readStringRequireUtf8();
+						break;
+					case MAP_ENTRY_VALUE_FIELD:
+						value = in.readMessage(TensorProto.parser(), ExtensionRegistryLite.getEmptyRegistry());
+						break;
+					default:
+						in.skipField(entryTag);
+					}
+				}
+				in.popLimit(limit);
+
+				Tensor<?> previous = tensors.put(key, toTensor(value));
+				if (previous != null) {
+					previous.close();
+				}
+			}
+			return tensors;
+		}
+		catch (IOException | RuntimeException e) {
+			TensorflowModel.closeAll(tensors.values());
+			throw new IllegalArgumentException("Can not convert the protobuf message into tensors", e);
+		}
+	}
+}
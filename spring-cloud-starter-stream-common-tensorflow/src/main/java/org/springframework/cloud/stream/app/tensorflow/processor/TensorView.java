@@ -0,0 +1,319 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import org.tensorflow.DataType;
+import org.tensorflow.Tensor;
+
+import org.springframework.util.Assert;
+
+/**
+ * Read-only, row-major view over the content of a tensor. The tensor is copied once, with {@link Tensor#writeTo},
+ * into a direct buffer in native byte order, and its elements are read in place through the strided index
+ * accessors. Unlike {@link Tensor#copyTo}, which fills a nested Java array (one array object per row of every
+ * dimension but the last), the view doesn't allocate per element or per row.
+ *
+ * The buffers are pooled per thread: closing the view returns its buffer to the pool of the closing thread. A pool
+ * holds at most 4MB of direct buffers. The content of a larger tensor is copied into a heap buffer allocated for
+ * its view only, and released to the garbage collector with the view. The
+ * view doesn't retain the tensor, which can be closed right after the view is created. The views returned by
+ * {@link #slice(int)} share the buffer of their parent and are valid until the root view is closed.
+ *
+ * String tensors are not supported.
+ *
+ * @author agent
+ */
+public final class TensorView implements AutoCloseable {
+
+	/**
+	 * Total capacity of the buffers pooled per thread. The larger tensors are not copied into pooled buffers.
+	 */
+	private static final int MAX_POOLED_BYTES = 4 * 1024 * 1024;
+
+	/**
+	 * Number of the buffers pooled per thread, enough for the views opened together by an output converter.
+	 */
+	private static final int MAX_POOLED_BUFFERS = 8;
+
+	private static final int MIN_BUFFER_SIZE = 8 * 1024;
+
+	private static final ThreadLocal<BufferPool> pools = ThreadLocal.withInitial(BufferPool::new);
+
+	private final ByteBuffer buffer;
+
+	private final DataType dataType;
+
+	private final int[] shape;
+
+	/**
+	 * Number of elements between two consecutive indices of every dimension.
+	 */
+	private final int[] strides;
+
+	/**
+	 * Index of the first element of the view in the buffer.
+	 */
+	private final int offset;
+
+	private final int size;
+
+	/**
+	 * View owning the buffer, this view unless it is a slice.
+	 */
+	private final TensorView root;
+
+	private boolean closed;
+
+	private TensorView(ByteBuffer buffer, DataType dataType, int[] shape, int[] strides, int offset,
+			TensorView root) {
+		this.buffer = buffer;
+		this.dataType = dataType;
+		this.shape = shape;
+		this.strides = strides;
+		this.offset = offset;
+		this.size = (shape.length == 0) ? 1 : shape[0] * strides[0];
+		this.root = (root != null) ? root : this;
+	}
+
+	/**
+	 * Copies the content of the tensor into a pooled buffer.
+	 *
+	 * @param tensor Tensor to view. It is not closed by this method.
+	 * @return New view of the tensor content. The caller is responsible to close it.
+	 */
+	public static TensorView of(Tensor<?> tensor) {
+		DataType dataType = tensor.dataType();
+		Assert.isTrue(dataType != DataType.STRING, "String tensors can not be viewed");
+
+		long[] tensorShape = tensor.shape();
+		int[] shape = new int[tensorShape.length];
+		int[] strides = new int[tensorShape.length];
+		long stride = 1;
+		for (int d = tensorShape.length - 1; d >= 0; d--) {
+			shape[d] = (int) tensorShape[d];
+			strides[d] = (int) stride;
+			stride *= tensorShape[d];
+		}
+
+		ByteBuffer buffer = acquire(tensor.numBytes());
+		tensor.writeTo(buffer);
+
+		return new TensorView(buffer, dataType, shape, strides, 0, null);
+	}
+
+	private static ByteBuffer acquire(int capacity) {
+		if (capacity > MAX_POOLED_BYTES) {
+			// A direct buffer would hold its native memory until the next garbage collection
+			return ByteBuffer.allocate(capacity).order(ByteOrder.nativeOrder());
+		}
+		BufferPool pool = pools.get();
+		ByteBuffer buffer = pool.buffers.pollFirst();
+		if (buffer != null) {
+			pool.bytes -= buffer.capacity();
+		}
+		if (buffer == null || buffer.capacity() < capacity) {
+			buffer = ByteBuffer.allocateDirect(Math.max(capacity, MIN_BUFFER_SIZE)).order(ByteOrder.nativeOrder());
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+	private static void release(ByteBuffer buffer) {
+		BufferPool pool = pools.get();
+		if (buffer.isDirect() && pool.bytes + buffer.capacity() <= MAX_POOLED_BYTES
+				&& pool.buffers.size() < MAX_POOLED_BUFFERS) {
+			pool.buffers.addFirst(buffer);
+			pool.bytes += buffer.capacity();
+		}
+	}
+
+	/**
+	 * @return the total capacity of the buffers pooled by the calling thread.
+	 */
+	static long pooledBytes() {
+		return pools.get().bytes;
+	}
+
+	public DataType dataType() {
+		return this.dataType;
+	}
+
+	public int numDimensions() {
+		return this.shape.length;
+	}
+
+	/**
+	 * @param dimension Dimension index.
+	 * @return the size of the dimension.
+	 */
+	public int shape(int dimension) {
+		return this.shape[dimension];
+	}
+
+	/**
+	 * @return the number of the elements of the view.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @param row Index along the first dimension.
+	 * @return view over the row, with one dimension less. It shares the buffer of this view.
+	 */
+	public TensorView slice(int row) {
+		Assert.state(this.shape.length > 0, "A scalar can not be sliced");
+		return new TensorView(this.buffer, this.dataType,
+				Arrays.copyOfRange(this.shape, 1, this.shape.length),
+				Arrays.copyOfRange(this.strides, 1, this.strides.length),
+				this.offset + checkIndex(row, 0) * this.strides[0], this.root);
+	}
+
+	/**
+	 * @param index Row-major index of the element within the view, regardless of the view dimensions.
+	 * @return the float element.
+	 */
+	public float getFloat(int index) {
+		checkReadable(DataType.FLOAT);
+		return this.buffer.getFloat(flatIndex(index) << 2);
+	}
+
+	public float getFloat(int i, int j) {
+		checkReadable(DataType.FLOAT);
+		checkRank(2);
+		return this.buffer.getFloat((this.offset + checkIndex(i, 0) * this.strides[0] + checkIndex(j, 1)) << 2);
+	}
+
+	public float getFloat(int i, int j, int k) {
+		checkReadable(DataType.FLOAT);
+		checkRank(3);
+		return this.buffer.getFloat((this.offset + checkIndex(i, 0) * this.strides[0]
+				+ checkIndex(j, 1) * this.strides[1] + checkIndex(k, 2)) << 2);
+	}
+
+	public float getFloat(int i, int j, int k, int l) {
+		checkReadable(DataType.FLOAT);
+		checkRank(4);
+		return this.buffer.getFloat((this.offset + checkIndex(i, 0) * this.strides[0]
+				+ checkIndex(j, 1) * this.strides[1] + checkIndex(k, 2) * this.strides[2] + checkIndex(l, 3)) << 2);
+	}
+
+	public float getFloat(int... indices) {
+		checkReadable(DataType.FLOAT);
+		return this.buffer.getFloat(index(indices) << 2);
+	}
+
+	public double getDouble(int... indices) {
+		checkReadable(DataType.DOUBLE);
+		return this.buffer.getDouble(index(indices) << 3);
+	}
+
+	public int getInt(int... indices) {
+		checkReadable(DataType.INT32);
+		return this.buffer.getInt(index(indices) << 2);
+	}
+
+	public long getLong(int... indices) {
+		checkReadable(DataType.INT64);
+		return this.buffer.getLong(index(indices) << 3);
+	}
+
+	/**
+	 * @param indices Element indices.
+	 * @return the UINT8 or BOOL element.
+	 */
+	public byte getByte(int... indices) {
+		checkReadable((this.dataType == DataType.BOOL) ? DataType.BOOL : DataType.UINT8);
+		return this.buffer.get(index(indices));
+	}
+
+	/**
+	 * @return new array with the elements of the float view, in row-major order.
+	 */
+	public float[] toFloatArray() {
+		checkReadable(DataType.FLOAT);
+		float[] values = new float[this.size];
+		ByteBuffer content = this.buffer.duplicate().order(ByteOrder.nativeOrder());
+		content.position(this.offset << 2);
+		content.asFloatBuffer().get(values);
+		return values;
+	}
+
+	@Override
+	public void close() {
+		if (this.root == this && !this.closed) {
+			this.closed = true;
+			release(this.buffer);
+		}
+	}
+
+	private int index(int[] indices) {
+		if (indices.length == 1) {
+			return flatIndex(indices[0]);
+		}
+		checkRank(indices.length);
+		int index = this.offset;
+		for (int d = 0; d < indices.length; d++) {
+			index += checkIndex(indices[d], d) * this.strides[d];
+		}
+		return index;
+	}
+
+	private int flatIndex(int index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException(String.format("Index %d out of the %d view elements", index,
+					this.size));
+		}
+		return this.offset + index;
+	}
+
+	private int checkIndex(int index, int dimension) {
+		if (index < 0 || index >= this.shape[dimension]) {
+			throw new IndexOutOfBoundsException(String.format("Index %d out of the dimension %d of shape %s", index,
+					dimension, Arrays.toString(this.shape)));
+		}
+		return index;
+	}
+
+	private void checkRank(int rank) {
+		if (this.shape.length != rank) {
+			throw new IllegalArgumentException(String.format("Expected %d indices for the view of shape %s", rank,
+					Arrays.toString(this.shape)));
+		}
+	}
+
+	private void checkReadable(DataType expected) {
+		if (this.dataType != expected) {
+			throw new IllegalStateException(String.format("Expected a %s tensor, found %s", expected,
+					this.dataType));
+		}
+		// The buffer of a slice is released, and possibly reused, once its root view is closed
+		Assert.state(!this.root.closed, "The tensor view is closed");
+	}
+
+	private static final class BufferPool {
+
+		private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+
+		private long bytes;
+	}
+}
@@ -17,23 +17,55 @@
 package org.springframework.cloud.stream.app.tensorflow.processor;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.tensorflow.Tensor;
+import org.tensorflow.TensorFlow;
+import reactor.core.publisher.Flux;
 
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.stream.annotation.StreamListener;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
 import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
 import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
 
 /**
  * A processor that evaluates a machine learning model stored in TensorFlow's ProtoBuf format.
@@ -54,14 +86,69 @@ import org.springframework.messaging.handler.annotation.SendTo;
  *
  * The {@link OutputMessageBuilder} defines how the computed inference score is arranged withing the output message.
  *
+ * The evaluation is stateless and thread-safe. The {@link TensorFlowService} keeps a pool of long-lived sessions and
+ * the input binding consumer concurrency defaults to the pool size (see
+ * {@link SessionPoolConcurrencyEnvironmentPostProcessor}), so that messages are consumed and evaluated in parallel.
+ *
+ * When tensorflow.batch.size is greater than 1 and the input converter implements
+ * {@link BatchableTensorflowInputConverter}, the input messages are accumulated by a {@link MicroBatcher} and
+ * evaluated together with a single session run. In this mode the output messages are sent asynchronously, but the
+ * consumer threads wait for the evaluation of their batch, so that the messages of a failed batch fail.
+ *
+ * When tensorflow.pipeline.enabled is set, the input conversion, the inference and the output message building run
+ * on the separate stages of an {@link InferencePipeline} and the output messages are sent asynchronously. The input
+ * message is acknowledged before it is evaluated, so the failed messages are published to the error channel.
+ *
+ * The TensorFlow native library and the model are loaded in the background by the {@link TensorflowStartup}, while
+ * the application context starts. The input binding starts once they are loaded. The startup phases are reported
+ * by the {@link TensorflowStartupEndpoint}.
+ *
+ * When tensorflow.reactive.enabled is set, the input messages are evaluated by the tensorflowFunction
+ * {@link ReactiveInferenceFunction} instead of the {@link StreamListener}, with a bounded number of concurrent
+ * evaluations on a dedicated scheduler (see {@link ReactiveFunctionEnvironmentPostProcessor}).
+ *
+ * When tensorflow.warm-up.iterations is set, the {@link ModelWarmUp} evaluates the sample (or synthetic) inputs before
+ * the input binding is started. The output of the warm-up is discarded.
+ *
+ * When tensorflow.reload.poll-interval is set, the {@link ModelReloader} reloads the model when the model location
+ * changes. The reload can also be triggered through the {@link TensorflowModelEndpoint}.
+ *
+ * When tensorflow.cache.enabled is set, the results of the synchronous evaluations are cached in an
+ * {@link InferenceCache}, keyed by the input data and the model fingerprint. Only the byte array and the string input
+ * data is cached.
+ *
+ * When tensorflow.model-zoo.enabled is set, every input message can select a named model with a header or an
+ * expression. The named models are loaded on demand by the {@link TensorFlowService}.
+ *
+ * When tensorflow.admission.enabled is set, the evaluations are admitted by an {@link InferenceAdmission} under an
+ * adaptive concurrency limit and a budget of live tensor bytes. The consumer threads block while either is reached.
+ *
+ * The tensors of every evaluation are tracked by a {@link TensorArena} scope and closed once the message completes,
+ * even if the converters don't close them. With tensorflow.arena.debug set, the feed tensors that never reached the
+ * model evaluation are logged with their name.
+ *
+ * When tensorflow.profiling.enabled is set, the {@link InferenceProfiler} traces a sample of the evaluations and
+ * aggregates the execution statistics of the graph ops, reported by the {@link TensorflowProfileEndpoint}.
+ *
+ * When Micrometer is on the classpath, the {@link MicrometerInferenceMetrics} times every evaluation stage and
+ * tracks the in-flight evaluations, the input and output tensor sizes and the model load duration.
+ *
  * @author Christian Tzolov
  * @author Artem Bilan
  */
 @EnableConfigurationProperties(TensorflowCommonProcessorProperties.class)
-public class TensorflowCommonProcessorConfiguration {
+@Import({ TensorflowCommonProcessorConfiguration.TensorflowStreamListenerConfiguration.class,
+		TensorflowCommonProcessorConfiguration.TensorflowActuatorConfiguration.class,
+		TensorflowCommonProcessorConfiguration.TensorflowMetricsConfiguration.class })
+public class TensorflowCommonProcessorConfiguration implements InitializingBean, DisposableBean {
 
 	private static final Log logger = LogFactory.getLog(TensorflowCommonProcessorConfiguration.class);
 
+	/**
+	 * Stage of the feed tensors, reported by the {@link TensorArena} debug mode.
+	 */
+	private static final String INPUT_STAGE = "input converter";
+
 	@Autowired
 	@Qualifier(IntegrationContextUtils.INTEGRATION_EVALUATION_CONTEXT_BEAN_NAME)
 	private EvaluationContext evaluationContext;
@@ -69,6 +156,13 @@ public class TensorflowCommonProcessorConfiguration {
 	@Autowired
 	private TensorflowCommonProcessorProperties properties;
 
+	/**
+	 * The converter beans declare {@code @DependsOn("tensorFlowService")}, so that the model loads in the background
+	 * while the converters load their labels or vocabularies, whatever the field injection order.
+	 */
+	@Autowired
+	private TensorFlowService tensorFlowService;
+
 	@Autowired
 	private TensorflowInputConverter tensorflowInputConverter;
 
@@ -79,32 +173,613 @@ public class TensorflowCommonProcessorConfiguration {
 	private OutputMessageBuilder tensorflowOutputMessageBuilder;
 
 	@Autowired
-	private TensorFlowService tensorFlowService;
+	private Processor processor;
+
+	@Autowired(required = false)
+	private InferenceCache inferenceCache;
+
+	@Autowired(required = false)
+	private InferenceMetrics inferenceMetrics;
+
+	@Autowired(required = false)
+	private InferenceAdmission inferenceAdmission;
+
+	@Autowired(required = false)
+	private InferenceProfiler inferenceProfiler;
+
+	@Autowired
+	private TensorArena tensorArena;
+
+	@Autowired
+	private BeanFactory beanFactory;
+
+	private MicroBatcher<Message<byte[]>> microBatcher;
+
+	private InferencePipeline inferencePipeline;
+
+	/**
+	 * Publishes the failures of the pipelined evaluations to the errorChannel of the input message, or to the global
+	 * errorChannel.
+	 */
+	private MessagePublishingErrorHandler pipelineErrorHandler;
+
+	/**
+	 * The compiled tensorflow.expression, or null.
+	 */
+	private Expression inputExpression;
+
+	/**
+	 * The compiled tensorflow.model-zoo.expression, or null.
+	 */
+	private Expression modelNameExpression;
+
+	@Override
+	public void afterPropertiesSet() {
+		this.inputExpression = compile(this.properties.getExpression());
+		this.modelNameExpression = compile(this.properties.getModelZoo().getExpression());
+
+		if (this.inferenceMetrics == null) {
+			this.inferenceMetrics = InferenceMetrics.NONE;
+		}
+		this.tensorFlowService.setMetrics(this.inferenceMetrics);
+		this.tensorFlowService.setProfiler(this.inferenceProfiler);
+
+		TensorflowCommonProcessorProperties.Batch batch = this.properties.getBatch();
+		TensorflowCommonProcessorProperties.Pipeline pipeline = this.properties.getPipeline();
+		Assert.state(!(pipeline.isEnabled() && batch.getSize() > 1),
+				"The pipelined execution can not be combined with batching");
+		Assert.state(!(this.properties.getReactive().isEnabled() && (pipeline.isEnabled() || batch.getSize() > 1)),
+				"The reactive evaluation can not be combined with batching or the pipelined execution");
 
-	@StreamListener(Processor.INPUT)
-	@SendTo(Processor.OUTPUT)
+		if (pipeline.isEnabled()) {
+			this.inferencePipeline = new InferencePipeline(pipeline.getInputThreads(), pipeline.getInferenceThreads(),
+					pipeline.getOutputThreads(), pipeline.getQueueCapacity());
+			this.pipelineErrorHandler = errorChannelHandler();
+		}
+
+		if (batch.getSize() > 1) {
+			if (this.tensorflowInputConverter instanceof BatchableTensorflowInputConverter) {
+				this.microBatcher = new MicroBatcher<>(batch.getSize(), batch.getTimeout(), this::evaluateBatch);
+			}
+			else {
+				logger.warn("Batching is disabled. The input converter doesn't support batching: "
+						+ this.tensorflowInputConverter.getClass().getName());
+			}
+		}
+
+		if (this.inferenceCache != null && (this.microBatcher != null || this.inferencePipeline != null)) {
+			logger.warn("The inference cache is not applied in the batching and the pipelined modes");
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (this.microBatcher != null) {
+			this.microBatcher.close();
+		}
+		if (this.inferencePipeline != null) {
+			this.inferencePipeline.close();
+		}
+	}
+
+	/**
+	 * Evaluates the input message consumed by the {@link StreamListener}.
+	 *
+	 * @param input Input message.
+	 * @return the output message builder, or null if the output message is sent asynchronously.
+	 */
 	public Object evaluate(Message<byte[]> input) {
 
-		Object inputData =
-				this.properties.getExpression() == null
-						? input.getPayload()
-						: this.properties.getExpression().getValue(this.evaluationContext, input, Object.class);
+		if (this.microBatcher != null) {
+			// The output message is sent once the batch is evaluated. Waits for the batch, so that the input message
+			// fails (and is redelivered or dead lettered by the binder) if the batch fails.
+			await(this.microBatcher.add(input));
+			return null;
+		}
+
+		if (this.inferencePipeline != null) {
+			// The output message is sent once the message leaves the pipeline
+			evaluatePipelined(input);
+			return null;
+		}
+
+		return evaluateMessage(input);
+	}
+
+	private MessageBuilder<?> evaluateMessage(Message<byte[]> input) {
+
+		String modelName = modelName(input);
+		Object inputData = inputData(modelName, input);
+
+		String cacheKey = (this.inferenceCache != null)
+				? InferenceCache.key(cacheNamespace(modelName), inputData) : null;
+		Object outputData = (cacheKey != null)
+				? this.inferenceCache.get(cacheKey, () -> evaluateData(modelName, inputData))
+				: evaluateData(modelName, inputData);
+
+		return outputMessageBuilder(modelName, input, outputData);
+	}
+
+	private Object evaluateData(String modelName, Object inputData) {
+
+		// The processorContext allows to convey metadata from the Input to Output converter. The evaluation runs on the
+		// calling thread only, so the context of the thread is reused.
+		ProcessorContext processorContext = ProcessorContext.current();
+
+		// The arena closes the tensors before the permit releases their bytes
+		try (InferenceAdmission.Permit permit = admit(); TensorArena.Scope arena = this.tensorArena.open()) {
 
-		// The processorContext allows to convey metadata from the Input to Output converter.
-		Map<String, Object> processorContext = new ConcurrentHashMap<>();
+			Map<String, Object> inputDataMap = arena.track(convertInput(modelName, inputData, processorContext),
+					INPUT_STAGE);
+			permit.addTensors(inputDataMap.values());
 
+			Map<String, Tensor<?>> outputTensorMap = evaluateModel(arena, modelName, inputDataMap);
+			permit.addTensors(outputTensorMap.values());
+
+			return convertOutput(modelName, outputTensorMap, processorContext);
+		}
+	}
+
+	/**
+	 * Blocks the calling thread until the evaluation is admitted, when the admission control is enabled.
+	 */
+	private InferenceAdmission.Permit admit() {
+		return (this.inferenceAdmission != null) ? this.inferenceAdmission.acquire() : InferenceAdmission.Permit.NONE;
+	}
+
+	private Map<String, Object> convertInput(String modelName, Object inputData,
+			Map<String, Object> processorContext) {
+		long start = System.nanoTime();
 		Map<String, Object> inputDataMap = this.tensorflowInputConverter.convert(inputData, processorContext);
+		this.inferenceMetrics.record(InferenceMetrics.Stage.input, modelName, start);
+		return inputDataMap;
+	}
+
+	private Map<String, Tensor<?>> evaluateModel(TensorArena.Scope arena, String modelName,
+			Map<String, Object> inputDataMap) {
+		long start = System.nanoTime();
+		try {
+			Map<String, Tensor<?>> outputTensorMap = arena.own(this.tensorFlowService.evaluate(modelName,
+					inputDataMap, this.properties.getModelFetch()));
+			this.inferenceMetrics.record(InferenceMetrics.Stage.inference, modelName, start);
+			return outputTensorMap;
+		}
+		finally {
+			// The evaluation closes the feed tensors, whether it succeeds or not
+			arena.release(inputDataMap);
+		}
+	}
+
+	private Object convertOutput(String modelName, Map<String, Tensor<?>> outputTensorMap,
+			Map<String, Object> processorContext) {
+		long start = System.nanoTime();
+		Object outputData = this.tensorflowOutputConverter.convert(outputTensorMap, processorContext);
+		this.inferenceMetrics.record(InferenceMetrics.Stage.output, modelName, start);
+		return outputData;
+	}
+
+	private MessageBuilder<?> outputMessageBuilder(String modelName, Message<?> input, Object outputData) {
+		long start = System.nanoTime();
+		MessageBuilder<?> outputMessageBuilder = this.tensorflowOutputMessageBuilder.createOutputMessageBuilder(input,
+				outputData);
+		this.inferenceMetrics.record(InferenceMetrics.Stage.message, modelName, start);
+		return outputMessageBuilder;
+	}
+
+	/**
+	 * The cached results are valid for the current (or the named) model content and the fetched outputs only.
+	 */
+	private String cacheNamespace(String modelName) {
+		return this.tensorFlowService.getModelFingerprint(modelName) + "|" + this.properties.getModelFetch();
+	}
+
+	/**
+	 * Runs a single warm-up round. The sample inputs go through the same input converter, model evaluation and
+	 * output converter as the input messages. Without samples the model is evaluated with synthetic inputs.
+	 */
+	private void warmUpRound(List<Message<byte[]>> samples) {
+		if (!samples.isEmpty()) {
+			for (Message<byte[]> sample : samples) {
+				// Bypass the inference cache, to evaluate the model in every round
+				String modelName = modelName(sample);
+				this.tensorflowOutputMessageBuilder.createOutputMessageBuilder(sample,
+						evaluateData(modelName, inputData(modelName, sample)));
+			}
+			return;
+		}
+
+		try (TensorArena.Scope arena = this.tensorArena.open()) {
+			Map<String, Object> feeds = arena.track(this.tensorFlowService.syntheticFeeds(), INPUT_STAGE);
+			if (feeds.isEmpty()) {
+				return;
+			}
+			Map<String, Tensor<?>> outputTensorMap;
+			try {
+				outputTensorMap = arena.own(this.tensorFlowService.evaluate(feeds, this.properties.getModelFetch()));
+			}
+			finally {
+				arena.release(feeds);
+			}
+			try {
+				this.tensorflowOutputConverter.convert(outputTensorMap, new ProcessorContext());
+			}
+			catch (RuntimeException e) {
+				// The output converters may expect input converter metadata, which is missing for synthetic inputs
+				if (logger.isDebugEnabled()) {
+					logger.debug("Synthetic warm-up output conversion failed", e);
+				}
+			}
+		}
+	}
+
+	private List<Message<byte[]>> warmUpSamples() {
+		List<Message<byte[]>> samples = new ArrayList<>();
+		for (Resource sample : this.properties.getWarmUp().getSamples()) {
+			try {
+				samples.add(MessageBuilder.withPayload(StreamUtils.copyToByteArray(sample.getInputStream())).build());
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Failed to load the warm-up sample: " + sample, e);
+			}
+		}
+		return samples;
+	}
+
+	private void evaluatePipelined(Message<byte[]> input) {
+
+		// The stages run on different threads, and concurrently with the following messages
+		ProcessorContext processorContext = new ProcessorContext();
+		String modelName = modelName(input);
+
+		// Admitted on the consumer thread, so that the consumer is held back while the pipeline is saturated
+		InferenceAdmission.Permit permit = admit();
+		TensorArena.Scope arena = this.tensorArena.open();
+
+		try {
+			this.inferencePipeline.submit(
+					() -> addTensors(permit, arena.track(convertInput(modelName, inputData(modelName, input),
+							processorContext), INPUT_STAGE)),
+					inputDataMap -> addTensors(permit, evaluateModel(arena, modelName, inputDataMap)),
+					outputTensorMap -> outputMessageBuilder(modelName, input,
+							convertOutput(modelName, outputTensorMap, processorContext)))
+					.whenComplete((outputMessageBuilder, error) -> {
+						arena.close();
+						permit.close();
+						if (error != null) {
+							// The input message is already acknowledged, the binder can not redeliver it
+							Throwable cause = (error instanceof CompletionException && error.getCause() != null)
+									? error.getCause() : error;
+							this.pipelineErrorHandler.handleError(
+									new MessagingException(input, "Failed to evaluate the message", cause));
+						}
+						else {
+							send(input, outputMessageBuilder);
+						}
+					});
+		}
+		catch (RuntimeException e) {
+			// The pipeline is shut down
+			arena.close();
+			permit.close();
+			throw e;
+		}
+	}
+
+	private void evaluateBatch(List<Message<byte[]>> inputs) {
+		// The inputs of every model are evaluated together
+		Map<String, List<Message<byte[]>>> inputsByModel = new LinkedHashMap<>();
+		for (Message<byte[]> input : inputs) {
+			inputsByModel.computeIfAbsent(modelName(input), modelName -> new ArrayList<>()).add(input);
+		}
+		inputsByModel.forEach(this::evaluateBatch);
+	}
+
+	private void evaluateBatch(String modelName, List<Message<byte[]>> inputs) {
+
+		// A batch is a single evaluation. The full batches are evaluated on the consumer thread that completes them
+		try (InferenceAdmission.Permit permit = admit(); TensorArena.Scope arena = this.tensorArena.open()) {
+
+			List<Map<String, Object>> processorContexts = new ArrayList<>(inputs.size());
+			List<Map<String, Object>> inputDataMaps = new ArrayList<>(inputs.size());
+			for (Message<byte[]> input : inputs) {
+				ProcessorContext processorContext = new ProcessorContext();
+				processorContexts.add(processorContext);
+				inputDataMaps.add(addTensors(permit, arena.track(convertInput(modelName, inputData(modelName, input),
+						processorContext), INPUT_STAGE)));
+			}
+
+			long start = System.nanoTime();
+			List<Map<String, Tensor<?>>> outputTensorMaps;
+			try {
+				outputTensorMaps = this.tensorFlowService.evaluate(modelName, inputDataMaps,
+						((BatchableTensorflowInputConverter) this.tensorflowInputConverter).getBatchedFeedNames(),
+						this.properties.getModelFetch());
+			}
+			finally {
+				for (Map<String, Object> inputDataMap : inputDataMaps) {
+					arena.release(inputDataMap);
+				}
+			}
+			this.inferenceMetrics.record(InferenceMetrics.Stage.inference, modelName, start);
+
+			// Owned up front, so that the outputs of the following inputs are released if a conversion fails
+			for (Map<String, Tensor<?>> outputTensorMap : outputTensorMaps) {
+				arena.own(outputTensorMap);
+			}
+
+			// All outputs are converted before any is sent, so that a failed batch sends nothing
+			List<MessageBuilder<?>> outputMessageBuilders = new ArrayList<>(inputs.size());
+			for (int i = 0; i < inputs.size(); i++) {
+				Map<String, Tensor<?>> outputTensorMap = addTensors(permit, outputTensorMaps.get(i));
+				Object outputData = convertOutput(modelName, outputTensorMap, processorContexts.get(i));
+				outputMessageBuilders.add(outputMessageBuilder(modelName, inputs.get(i), outputData));
+			}
+			for (int i = 0; i < inputs.size(); i++) {
+				send(inputs.get(i), outputMessageBuilders.get(i));
+			}
+		}
+	}
 
-		Map<String, Tensor<?>> outputTensorMap = this.tensorFlowService.evaluate(inputDataMap, this.properties.getModelFetch());
+	/**
+	 * Waits for the asynchronous evaluation and rethrows its failure.
+	 */
+	private static void await(CompletableFuture<?> evaluation) {
+		try {
+			evaluation.join();
+		}
+		catch (CompletionException e) {
+			throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+		}
+	}
 
-		Object outputData = tensorflowOutputConverter.convert(outputTensorMap, processorContext);
+	private static <T extends Map<String, ?>> T addTensors(InferenceAdmission.Permit permit, T tensorMap) {
+		permit.addTensors(tensorMap.values());
+		return tensorMap;
+	}
 
-		return tensorflowOutputMessageBuilder.createOutputMessageBuilder(input, outputData);
+	private Object inputData(String modelName, Message<byte[]> input) {
+		if (this.inputExpression == null) {
+			return input.getPayload();
+		}
+		long start = System.nanoTime();
+		Object inputData = this.inputExpression.getValue(this.evaluationContext, input, Object.class);
+		this.inferenceMetrics.record(InferenceMetrics.Stage.expression, modelName, start);
+		return inputData;
+	}
+
+	/**
+	 * @return the name of the model zoo model selected by the input message, or null for the default model.
+	 */
+	private String modelName(Message<?> input) {
+		TensorflowCommonProcessorProperties.ModelZoo modelZoo = this.properties.getModelZoo();
+		if (!modelZoo.isEnabled()) {
+			return null;
+		}
+		Object modelName = (this.modelNameExpression != null)
+				? this.modelNameExpression.getValue(this.evaluationContext, input)
+				: input.getHeaders().get(modelZoo.getHeader());
+		return (modelName != null && StringUtils.hasText(modelName.toString())) ? modelName.toString() : null;
+	}
 
+	/**
+	 * Parses the SpEL expression again, with the SpEL compiler enabled. Once interpreted a number of times the
+	 * expression is evaluated as generated byte code. The expressions that can not be compiled, or whose compiled
+	 * form fails, keep being interpreted.
+	 *
+	 * @param expression The configured expression, or null.
+	 * @return the compilable expression, or the given expression if it is not a SpEL expression.
+	 */
+	static Expression compile(Expression expression) {
+		if (!(expression instanceof SpelExpression)) {
+			return expression;
+		}
+		SpelExpressionParser parser = new SpelExpressionParser(new SpelParserConfiguration(SpelCompilerMode.MIXED,
+				TensorflowCommonProcessorConfiguration.class.getClassLoader()));
+		return parser.parseExpression(expression.getExpressionString());
 	}
 
+	/**
+	 * Sends an output message produced outside of the {@link StreamListener} call. Like the {@link SendTo} replies,
+	 * the output message inherits the headers of the input message.
+	 */
+	private void send(Message<?> input, MessageBuilder<?> outputMessageBuilder) {
+		this.processor.output().send(outputMessageBuilder.copyHeadersIfAbsent(input.getHeaders()).build());
+	}
+
+	/**
+	 * Starts loading the TensorFlow native library right away. The model extraction runs concurrently.
+	 */
 	@Bean
-	public TensorFlowService tensorFlowService() {
-		return new TensorFlowService(this.properties.getModel());
+	public TensorflowStartup tensorflowStartup() {
+		TensorflowStartup startup = new TensorflowStartup();
+		startup.submit("native-library", TensorFlow::version);
+		return startup;
+	}
+
+	@Bean
+	public TensorFlowService tensorFlowService(TensorflowStartup tensorflowStartup) {
+		return new TensorFlowService(this.properties.getModel(), this.properties, tensorflowStartup);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "tensorflow.reactive.enabled", havingValue = "true")
+	public Function<Flux<Message<byte[]>>, Flux<Message<?>>> tensorflowFunction() {
+		TensorflowCommonProcessorProperties.Reactive reactive = this.properties.getReactive();
+		// Like the stream listener replies, the output messages inherit the headers of the input messages
+		return new ReactiveInferenceFunction(
+				input -> evaluateMessage(input).copyHeadersIfAbsent(input.getHeaders()).build(),
+				reactive.getConcurrency(), reactive.getInferenceThreads(), errorChannelHandler());
+	}
+
+	/**
+	 * @return handler publishing the failed evaluations as error messages to the error channel.
+	 */
+	private MessagePublishingErrorHandler errorChannelHandler() {
+		MessagePublishingErrorHandler errorHandler = new MessagePublishingErrorHandler();
+		errorHandler.setBeanFactory(this.beanFactory);
+		errorHandler.setDefaultErrorChannelName(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME);
+		return errorHandler;
+	}
+
+	@Bean
+	public ModelWarmUp tensorflowModelWarmUp() {
+		List<Message<byte[]>> samples = warmUpSamples();
+		return new ModelWarmUp(this.properties.getWarmUp().getIterations(), () -> warmUpRound(samples));
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "tensorflow.cache.enabled", havingValue = "true")
+	public InferenceCache tensorflowInferenceCache() {
+		TensorflowCommonProcessorProperties.Cache cache = this.properties.getCache();
+		return new InferenceCache(cache.getMaxEntries(), cache.getDiskDirectory(), cache.getDiskMaxEntries());
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "tensorflow.admission.enabled", havingValue = "true")
+	public InferenceAdmission tensorflowInferenceAdmission() {
+		TensorflowCommonProcessorProperties.Admission admission = this.properties.getAdmission();
+		return new InferenceAdmission(admission.getInitialLimit(), admission.getMinLimit(), admission.getMaxLimit(),
+				admission.getTensorMemoryBudget().toBytes());
+	}
+
+	@Bean
+	public TensorArena tensorflowTensorArena() {
+		return new TensorArena(this.properties.getArena().isDebug());
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "tensorflow.profiling.enabled", havingValue = "true")
+	public InferenceProfiler tensorflowInferenceProfiler() {
+		TensorflowCommonProcessorProperties.Profiling profiling = this.properties.getProfiling();
+		return new InferenceProfiler(profiling.getSampleRate(), profiling.getTopOps());
+	}
+
+	@Bean
+	public ModelReloader tensorflowModelReloader(TensorFlowService tensorFlowService) {
+		return new ModelReloader(tensorFlowService, this.properties.getReload().getPollInterval());
+	}
+
+	/**
+	 * Consumes the input messages, unless the reactive function does.
+	 */
+	@Configuration
+	@ConditionalOnProperty(name = "tensorflow.reactive.enabled", havingValue = "false", matchIfMissing = true)
+	static class TensorflowStreamListenerConfiguration {
+
+		@Autowired
+		private TensorflowCommonProcessorConfiguration tensorflowCommonProcessorConfiguration;
+
+		@StreamListener(Processor.INPUT)
+		@SendTo(Processor.OUTPUT)
+		public Object evaluate(Message<byte[]> input) {
+			return this.tensorflowCommonProcessorConfiguration.evaluate(input);
+		}
+	}
+
+	@Configuration
+	@ConditionalOnClass(name = "org.springframework.boot.actuate.health.HealthIndicator")
+	static class TensorflowActuatorConfiguration {
+
+		@Bean
+		public ModelWarmUpHealthIndicator tensorflowWarmUpHealthIndicator(ModelWarmUp tensorflowModelWarmUp) {
+			return new ModelWarmUpHealthIndicator(tensorflowModelWarmUp);
+		}
+
+		@Bean
+		@ConditionalOnProperty(name = "tensorflow.profiling.enabled", havingValue = "true")
+		public TensorflowProfileEndpoint tensorflowProfileEndpoint(InferenceProfiler tensorflowInferenceProfiler) {
+			return new TensorflowProfileEndpoint(tensorflowInferenceProfiler);
+		}
+
+		@Bean
+		public TensorflowStartupEndpoint tensorflowStartupEndpoint(TensorflowStartup tensorflowStartup) {
+			return new TensorflowStartupEndpoint(tensorflowStartup);
+		}
+
+		@Bean
+		public TensorflowModelEndpoint tensorflowModelEndpoint(TensorFlowService tensorFlowService,
+				ModelReloader tensorflowModelReloader, ObjectProvider<InferenceCache> tensorflowInferenceCache,
+				ObjectProvider<InferenceAdmission> tensorflowInferenceAdmission, TensorArena tensorflowTensorArena) {
+			return new TensorflowModelEndpoint(tensorFlowService, tensorflowModelReloader,
+					tensorflowInferenceCache.getIfAvailable(), tensorflowInferenceAdmission.getIfAvailable(),
+					tensorflowTensorArena);
+		}
+	}
+
+	@Configuration
+	@ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+	static class TensorflowMetricsConfiguration {
+
+		/**
+		 * Bound to the meter registries as a MeterBinder. The meters are tagged by the application name and the
+		 * model: the model file name for the default model, the model name for the model zoo models.
+		 */
+		@Bean
+		public MicrometerInferenceMetrics tensorflowInferenceMetrics(TensorFlowService tensorFlowService,
+				TensorflowCommonProcessorProperties properties, Environment environment) {
+			return new MicrometerInferenceMetrics(tensorFlowService, processorTag(environment), modelTag(properties));
+		}
+
+		/**
+		 * Publishes the adaptive limit, the live tensor bytes and the throttled evaluations of the admission control.
+		 */
+		@Bean
+		@ConditionalOnProperty(name = "tensorflow.admission.enabled", havingValue = "true")
+		public MeterBinder tensorflowAdmissionMetrics(InferenceAdmission tensorflowInferenceAdmission,
+				TensorflowCommonProcessorProperties properties, Environment environment) {
+			Tags tags = Tags.of("processor", processorTag(environment), "model", modelTag(properties));
+			return registry -> {
+				Gauge.builder("tensorflow.admission.limit", tensorflowInferenceAdmission, InferenceAdmission::getLimit)
+						.description("Adaptive limit of the concurrent model evaluations")
+						.tags(tags)
+						.register(registry);
+				Gauge.builder("tensorflow.admission.tensor.bytes", tensorflowInferenceAdmission,
+						InferenceAdmission::getLiveTensorBytes)
+						.description("Off-heap bytes of the tensors of the in-flight evaluations")
+						.baseUnit("bytes")
+						.tags(tags)
+						.register(registry);
+				FunctionCounter.builder("tensorflow.admission.throttled", tensorflowInferenceAdmission,
+						InferenceAdmission::getThrottled)
+						.description("Number of the evaluations that waited for the admission")
+						.tags(tags)
+						.register(registry);
+			};
+		}
+
+		/**
+		 * Publishes the tensors that the arena closed because the converters left them open.
+		 */
+		@Bean
+		public MeterBinder tensorflowArenaMetrics(TensorArena tensorflowTensorArena,
+				TensorflowCommonProcessorProperties properties, Environment environment) {
+			Tags tags = Tags.of("processor", processorTag(environment), "model", modelTag(properties));
+			return registry -> {
+				FunctionCounter.builder("tensorflow.arena.reclaimed", tensorflowTensorArena,
+						TensorArena::getReclaimedTensors)
+						.description("Number of the feed tensors that never reached the model evaluation")
+						.tags(tags)
+						.register(registry);
+				FunctionCounter.builder("tensorflow.arena.reclaimed.bytes", tensorflowTensorArena,
+						TensorArena::getReclaimedBytes)
+						.description("Off-heap bytes of the feed tensors that never reached the model evaluation")
+						.baseUnit("bytes")
+						.tags(tags)
+						.register(registry);
+				Gauge.builder("tensorflow.arena.scopes", tensorflowTensorArena, TensorArena::getOpenScopes)
+						.description("Number of the evaluations whose tensors are not released yet")
+						.tags(tags)
+						.register(registry);
+			};
+		}
+
+		private static String processorTag(Environment environment) {
+			return environment.getProperty("spring.application.name", "tensorflow");
+		}
+
+		private static String modelTag(TensorflowCommonProcessorProperties properties) {
+			Resource model = properties.getModel();
+			return (model.getFilename() != null) ? model.getFilename() : model.getDescription();
+		}
 	}
 }
@@ -16,12 +16,20 @@
 
 package org.springframework.cloud.stream.app.tensorflow.processor;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.core.io.Resource;
 import org.springframework.expression.Expression;
+import org.springframework.util.unit.DataSize;
 import org.springframework.validation.annotation.Validated;
 
 /**
@@ -43,6 +51,7 @@ public class TensorflowCommonProcessorProperties {
 
 	/**
 	 * The TensorFlow graph model outputs. Comma separate list of TensorFlow operation names to fetch the output Tensors from.
+	 * For SavedModels the signature output keys can be used as well. If empty it defaults to all signature outputs.
 	 */
 	private List<String> modelFetch;
 
@@ -65,6 +74,102 @@ public class TensorflowCommonProcessorProperties {
 	 */
 	private String outputName = "result";
 
+	/**
+	 * Format of the byte array payloads, used by the default input converter of the generic processor. The proto
+	 * format reads serialized PredictRequest messages with TensorProto inputs keyed by feed name. The binary tensor
+	 * envelope payloads are recognized in any format.
+	 */
+	private TensorFormat inputFormat = TensorFormat.json;
+
+	/**
+	 * Serialization format of the inference result, used by the default output converter of the generic processor.
+	 * The json format (default) emits the first fetched tensor as JSON with a Base64 encoded value. The envelope
+	 * format emits all fetched tensors as raw bytes in the binary tensor envelope. The proto format emits all fetched
+	 * tensors as a serialized PredictResponse message with TensorProto outputs.
+	 */
+	private TensorFormat outputFormat = TensorFormat.json;
+
+	/**
+	 * Transport precision of the float tensors in the envelope output format. The float16 and int8 (quantized with a
+	 * per-tensor scale and zero point) precisions reduce the size of the float tensor values by 2 and 4 times.
+	 */
+	private TensorPrecision outputPrecision = TensorPrecision.full;
+
+	/**
+	 * Configures the TensorFlow sessions used to evaluate the model.
+	 */
+	private final Session session = new Session();
+
+	/**
+	 * Configures the micro-batching of the input messages.
+	 */
+	private final Batch batch = new Batch();
+
+	/**
+	 * Configures the pipelined execution of the input conversion, inference and output conversion stages.
+	 */
+	private final Pipeline pipeline = new Pipeline();
+
+	/**
+	 * Configures the reactive evaluation of the input messages.
+	 */
+	private final Reactive reactive = new Reactive();
+
+	/**
+	 * Configures the loading of the model as a SavedModel bundle.
+	 */
+	private final SavedModel savedModel = new SavedModel();
+
+	/**
+	 * Configures the model warm-up before the input messages are consumed.
+	 */
+	private final WarmUp warmUp = new WarmUp();
+
+	/**
+	 * Configures the reloading of the model at runtime.
+	 */
+	private final Reload reload = new Reload();
+
+	/**
+	 * Configures the local cache of the extracted models.
+	 */
+	private final ModelCache modelCache = new ModelCache();
+
+	/**
+	 * Configures the extraction of the compressed models.
+	 */
+	private final ModelExtraction modelExtraction = new ModelExtraction();
+
+	/**
+	 * Configures the cache of the inference results.
+	 */
+	private final Cache cache = new Cache();
+
+	/**
+	 * Configures the on-demand loading of the models selected by the input messages.
+	 */
+	private final ModelZoo modelZoo = new ModelZoo();
+
+	/**
+	 * Configures the admission control of the model evaluations.
+	 */
+	private final Admission admission = new Admission();
+
+	/**
+	 * Configures the rewriting of the frozen graph before it is loaded.
+	 */
+	private final GraphOptimization graphOptimization = new GraphOptimization();
+
+	/**
+	 * Configures the sampled per-op profiling of the model evaluations.
+	 */
+	private final Profiling profiling = new Profiling();
+
+	/**
+	 * Configures the arena that releases the tensors of every evaluation.
+	 */
+	private final Arena arena = new Arena();
+
 	public List<String> getModelFetch() {
 		return this.modelFetch;
 	}
@@ -107,4 +212,794 @@ public class TensorflowCommonProcessorProperties {
 		this.outputName = outputName;
 	}
 
+	@NotNull
+	public TensorFormat getInputFormat() {
+		return this.inputFormat;
+	}
+
+	public void setInputFormat(TensorFormat inputFormat) {
+		this.inputFormat = inputFormat;
+	}
+
+	@NotNull
+	public TensorFormat getOutputFormat() {
+		return this.outputFormat;
+	}
+
+	public void setOutputFormat(TensorFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+
+	@NotNull
+	public TensorPrecision getOutputPrecision() {
+		return this.outputPrecision;
+	}
+
+	public void setOutputPrecision(TensorPrecision outputPrecision) {
+		this.outputPrecision = outputPrecision;
+	}
+
+	@Valid
+	public Session getSession() {
+		return this.session;
+	}
+
+	@Valid
+	public Batch getBatch() {
+		return this.batch;
+	}
+
+	@Valid
+	public Pipeline getPipeline() {
+		return this.pipeline;
+	}
+
+	@Valid
+	public Reactive getReactive() {
+		return this.reactive;
+	}
+
+	@Valid
+	public SavedModel getSavedModel() {
+		return this.savedModel;
+	}
+
+	@Valid
+	public WarmUp getWarmUp() {
+		return this.warmUp;
+	}
+
+	@Valid
+	public Reload getReload() {
+		return this.reload;
+	}
+
+	@Valid
+	public ModelCache getModelCache() {
+		return this.modelCache;
+	}
+
+	@Valid
+	public ModelExtraction getModelExtraction() {
+		return this.modelExtraction;
+	}
+
+	@Valid
+	public Cache getCache() {
+		return this.cache;
+	}
+
+	@Valid
+	public ModelZoo getModelZoo() {
+		return this.modelZoo;
+	}
+
+	@Valid
+	public Admission getAdmission() {
+		return this.admission;
+	}
+
+	@Valid
+	public GraphOptimization getGraphOptimization() {
+		return this.graphOptimization;
+	}
+
+	@Valid
+	public Profiling getProfiling() {
+		return this.profiling;
+	}
+
+	public Arena getArena() {
+		return this.arena;
+	}
+
+	public static class Session {
+
+		/**
+		 * Number of long-lived TensorFlow sessions opened against the model graph. Concurrent evaluations borrow a
+		 * session from the pool and block if none is available. Unless set explicitly, the input binding consumer
+		 * concurrency defaults to the pool size.
+		 */
+		private int poolSize = 1;
+
+		/**
+		 * Number of threads used to parallelize the execution of a single operation (e.g. matmul). 0 lets
+		 * TensorFlow pick a value, which usually is the number of cores.
+		 */
+		private int intraOpParallelism = 0;
+
+		/**
+		 * Number of threads used to run independent operations in parallel. 0 lets TensorFlow pick a value.
+		 */
+		private int interOpParallelism = 0;
+
+		/**
+		 * When enabled every session gets its own intra-op and inter-op thread pools, instead of sharing the
+		 * process wide TensorFlow thread pools.
+		 */
+		private boolean usePerSessionThreads = false;
+
+		/**
+		 * When enabled and the intraOpParallelism is not set, the available cores are divided evenly across the
+		 * pooled sessions. Each session then gets its own thread pool with cores/poolSize intra-op threads.
+		 * Useful for throughput oriented layouts that run many sessions concurrently.
+		 */
+		private boolean partitionCores = false;
+
+		@Min(1)
+		public int getPoolSize() {
+			return this.poolSize;
+		}
+
+		public void setPoolSize(int poolSize) {
+			this.poolSize = poolSize;
+		}
+
+		@Min(0)
+		public int getIntraOpParallelism() {
+			return this.intraOpParallelism;
+		}
+
+		public void setIntraOpParallelism(int intraOpParallelism) {
+			this.intraOpParallelism = intraOpParallelism;
+		}
+
+		@Min(0)
+		public int getInterOpParallelism() {
+			return this.interOpParallelism;
+		}
+
+		public void setInterOpParallelism(int interOpParallelism) {
+			this.interOpParallelism = interOpParallelism;
+		}
+
+		public boolean isUsePerSessionThreads() {
+			return this.usePerSessionThreads;
+		}
+
+		public void setUsePerSessionThreads(boolean usePerSessionThreads) {
+			this.usePerSessionThreads = usePerSessionThreads;
+		}
+
+		public boolean isPartitionCores() {
+			return this.partitionCores;
+		}
+
+		public void setPartitionCores(boolean partitionCores) {
+			this.partitionCores = partitionCores;
+		}
+	}
+
+	public static class Batch {
+
+		/**
+		 * Maximum number of messages evaluated together in a single session run. Batching is enabled for values
+		 * greater than 1 and requires an input converter that supports batching. When enabled the output messages
+		 * are sent asynchronously, once the batch is evaluated.
+		 */
+		private int size = 1;
+
+		/**
+		 * Maximum time, in milliseconds, to wait for a batch to fill up before it is evaluated.
+		 */
+		private long timeout = 10;
+
+		@Min(1)
+		public int getSize() {
+			return this.size;
+		}
+
+		public void setSize(int size) {
+			this.size = size;
+		}
+
+		@Min(1)
+		public long getTimeout() {
+			return this.timeout;
+		}
+
+		public void setTimeout(long timeout) {
+			this.timeout = timeout;
+		}
+	}
+
+	public static class Pipeline {
+
+		/**
+		 * When enabled, the input conversion, the model inference and the output conversion of the messages run
+		 * on separate thread pools connected with bounded queues, and the output messages are sent asynchronously.
+		 * With more than one thread per stage the output messages can be sent out of order. Can not be combined
+		 * with batching.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Number of threads that convert the input messages into model feeds (e.g. decode the images).
+		 */
+		private int inputThreads = 1;
+
+		/**
+		 * Number of threads that evaluate the model.
+		 */
+		private int inferenceThreads = 1;
+
+		/**
+		 * Number of threads that convert the model outputs and build the output messages.
+		 */
+		private int outputThreads = 1;
+
+		/**
+		 * Number of messages that can wait in front of each stage. When the queue is full the previous stage blocks.
+		 */
+		private int queueCapacity = 16;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		@Min(1)
+		public int getInputThreads() {
+			return this.inputThreads;
+		}
+
+		public void setInputThreads(int inputThreads) {
+			this.inputThreads = inputThreads;
+		}
+
+		@Min(1)
+		public int getInferenceThreads() {
+			return this.inferenceThreads;
+		}
+
+		public void setInferenceThreads(int inferenceThreads) {
+			this.inferenceThreads = inferenceThreads;
+		}
+
+		@Min(1)
+		public int getOutputThreads() {
+			return this.outputThreads;
+		}
+
+		public void setOutputThreads(int outputThreads) {
+			this.outputThreads = outputThreads;
+		}
+
+		@Min(1)
+		public int getQueueCapacity() {
+			return this.queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+	}
+
+	public static class Reactive {
+
+		/**
+		 * When enabled, the input messages are evaluated by the tensorflowFunction reactive function instead of the
+		 * stream listener. The evaluations run on a dedicated scheduler and the output messages can be sent out of
+		 * order. Can not be combined with batching or the pipelined execution.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Maximum number of messages evaluated concurrently. No more input messages are requested while the
+		 * bound is reached.
+		 */
+		private int concurrency = 4;
+
+		/**
+		 * Number of threads that evaluate the messages.
+		 */
+		private int inferenceThreads = 1;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		@Min(1)
+		public int getConcurrency() {
+			return this.concurrency;
+		}
+
+		public void setConcurrency(int concurrency) {
+			this.concurrency = concurrency;
+		}
+
+		@Min(1)
+		public int getInferenceThreads() {
+			return this.inferenceThreads;
+		}
+
+		public void setInferenceThreads(int inferenceThreads) {
+			this.inferenceThreads = inferenceThreads;
+		}
+	}
+
+	public static class SavedModel {
+
+		/**
+		 * When enabled, the model location is loaded as a SavedModel bundle (a directory or an archive with the
+		 * saved_model.pb and the variables) instead of a frozen graph. The feed and fetch names can use the
+		 * signature input and output keys.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * The tags of the MetaGraphDef to load from the SavedModel.
+		 */
+		private List<String> tags = Arrays.asList("serve");
+
+		/**
+		 * The name of the signature used to resolve the feed and fetch names.
+		 */
+		private String signature = "serving_default";
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		@NotNull
+		public List<String> getTags() {
+			return this.tags;
+		}
+
+		public void setTags(List<String> tags) {
+			this.tags = tags;
+		}
+
+		@NotNull
+		public String getSignature() {
+			return this.signature;
+		}
+
+		public void setSignature(String signature) {
+			this.signature = signature;
+		}
+	}
+
+	public static class WarmUp {
+
+		/**
+		 * Number of warm-up rounds evaluated before the input binding is started. Set it to at least the session
+		 * pool size to warm up every pooled session. The warm-up is disabled for 0.
+		 */
+		private int iterations = 0;
+
+		/**
+		 * Sample input payloads used for the warm-up. Every round evaluates all samples through the input converter,
+		 * the model and the output converter. If empty, the model is warmed up with synthetic zero filled inputs.
+		 */
+		private List<Resource> samples = new ArrayList<>();
+
+		@Min(0)
+		public int getIterations() {
+			return this.iterations;
+		}
+
+		public void setIterations(int iterations) {
+			this.iterations = iterations;
+		}
+
+		@NotNull
+		public List<Resource> getSamples() {
+			return this.samples;
+		}
+
+		public void setSamples(List<Resource> samples) {
+			this.samples = samples;
+		}
+	}
+
+	public static class Reload {
+
+		/**
+		 * Time, in milliseconds, between two checks of the model location for changes. When the last modified time
+		 * of the model changes, the new model is loaded and warmed up in the background and replaces the current
+		 * model without interrupting the processing. Polling is disabled for 0. The reload can also be triggered
+		 * through the tensorflow actuator endpoint.
+		 */
+		private long pollInterval = 0;
+
+		@Min(0)
+		public long getPollInterval() {
+			return this.pollInterval;
+		}
+
+		public void setPollInterval(long pollInterval) {
+			this.pollInterval = pollInterval;
+		}
+	}
+
+	public static class GraphOptimization {
+
+		/**
+		 * When enabled, the frozen graph is pruned to the nodes the model-fetch outputs depend on, the Identity
+		 * nodes are forwarded and the constant subgraphs are folded before the graph is loaded. The model inputs
+		 * must be Placeholder nodes. With tensorflow.model-cache.directory the optimized graph is cached as well.
+		 * Not applied to the SavedModels.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Evaluates the stateless subgraphs that depend on constants only once, at load time, and replaces them
+		 * with their value.
+		 */
+		private boolean constantFolding = true;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public boolean isConstantFolding() {
+			return this.constantFolding;
+		}
+
+		public void setConstantFolding(boolean constantFolding) {
+			this.constantFolding = constantFolding;
+		}
+	}
+
+	public static class Profiling {
+
+		/**
+		 * When enabled, a sample of the evaluations is traced and the wall time and the memory of every graph op
+		 * are aggregated and reported by the tensorflowprofile actuator endpoint.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Traces one in sample-rate evaluations. The traced evaluations are slower.
+		 */
+		private int sampleRate = 100;
+
+		/**
+		 * Number of the ops with the highest total wall time that are reported.
+		 */
+		private int topOps = 20;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		@Min(1)
+		public int getSampleRate() {
+			return this.sampleRate;
+		}
+
+		public void setSampleRate(int sampleRate) {
+			this.sampleRate = sampleRate;
+		}
+
+		@Min(1)
+		public int getTopOps() {
+			return this.topOps;
+		}
+
+		public void setTopOps(int topOps) {
+			this.topOps = topOps;
+		}
+	}
+
+	public static class Arena {
+
+		/**
+		 * When enabled, every feed tensor records the evaluation stage that produced it and its name, or the stack
+		 * trace of its allocation, and the feed tensors that never reached the model evaluation are logged with them.
+		 */
+		private boolean debug = false;
+
+		public boolean isDebug() {
+			return this.debug;
+		}
+
+		public void setDebug(boolean debug) {
+			this.debug = debug;
+		}
+	}
+
+	public static class ModelCache {
+
+		/**
+		 * Local directory to cache the extracted frozen models in. The cached models are keyed by the model URI and
+		 * version (ETag, Last-Modified), so the following starts load the model from the local disk without
+		 * downloading and decompressing it. The cache is disabled if not set.
+		 */
+		private File directory;
+
+		public File getDirectory() {
+			return this.directory;
+		}
+
+		public void setDirectory(File directory) {
+			this.directory = directory;
+		}
+	}
+
+	public static class ModelExtraction {
+
+		/**
+		 * Number of threads used to decompress multi-member gzip and bzip2 model archives (e.g. created with bgzip
+		 * or pbzip2). When positive, the model is extracted through temporary files with fixed size buffers instead
+		 * of in memory and the extraction throughput is logged. Set it to the number of cores to scale the
+		 * extraction time with the cores. The in memory extraction is used for 0.
+		 */
+		private int parallelism = 0;
+
+		@Min(0)
+		public int getParallelism() {
+			return this.parallelism;
+		}
+
+		public void setParallelism(int parallelism) {
+			this.parallelism = parallelism;
+		}
+	}
+
+	public static class Cache {
+
+		/**
+		 * When enabled, the inference results are cached by a hash of the input data, and identical inputs are
+		 * not evaluated again. Concurrent identical inputs are evaluated only once. Not applied in the batching and
+		 * pipelined modes.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Maximum number of results kept in memory. The least recently used results are evicted first.
+		 */
+		private int maxEntries = 1000;
+
+		/**
+		 * Local directory of the disk cache tier. Keeps the serializable results across restarts. The disk tier is
+		 * disabled if not set.
+		 */
+		private File diskDirectory;
+
+		/**
+		 * Maximum number of results kept on the disk. The oldest results are evicted first.
+		 */
+		private int diskMaxEntries = 10000;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		@Min(1)
+		public int getMaxEntries() {
+			return this.maxEntries;
+		}
+
+		public void setMaxEntries(int maxEntries) {
+			this.maxEntries = maxEntries;
+		}
+
+		public File getDiskDirectory() {
+			return this.diskDirectory;
+		}
+
+		public void setDiskDirectory(File diskDirectory) {
+			this.diskDirectory = diskDirectory;
+		}
+
+		@Min(1)
+		public int getDiskMaxEntries() {
+			return this.diskMaxEntries;
+		}
+
+		public void setDiskMaxEntries(int diskMaxEntries) {
+			this.diskMaxEntries = diskMaxEntries;
+		}
+	}
+
+	public static class ModelZoo {
+
+		/**
+		 * When enabled, every input message can select the model it is evaluated with, by name. The named models
+		 * are loaded on first use, each with its own session pool, and the least recently used models are closed
+		 * when the native memory budget is exceeded. The messages without a model name are evaluated with the
+		 * tensorflow.model.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Name of the input message header holding the model name.
+		 */
+		private String header = "tensorflow_model";
+
+		/**
+		 * Expression evaluated against the input message to compute the model name. Takes precedence over the
+		 * header.
+		 */
+		private Expression expression;
+
+		/**
+		 * Locations of the named models.
+		 */
+		private Map<String, Resource> models = new HashMap<>();
+
+		/**
+		 * Location of the models not listed in the models property, with a {model} placeholder for the model name
+		 * (e.g. https://foo/models/{model}.tar.gz#frozen_inference_graph.pb). The model names may contain letters,
+		 * digits, '.', '_' and '-' only. Unknown model names are rejected if not set.
+		 */
+		private String locationTemplate;
+
+		/**
+		 * Estimated native memory of the loaded named models (the graphs and the constants materialized by their
+		 * sessions) above which the least recently used models are closed. A model is closed once its in-flight
+		 * evaluations complete. The most recently used model is never evicted.
+		 */
+		private DataSize nativeMemoryBudget = DataSize.ofGigabytes(1);
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		@NotNull
+		public String getHeader() {
+			return this.header;
+		}
+
+		public void setHeader(String header) {
+			this.header = header;
+		}
+
+		public Expression getExpression() {
+			return this.expression;
+		}
+
+		public void setExpression(Expression expression) {
+			this.expression = expression;
+		}
+
+		@NotNull
+		public Map<String, Resource> getModels() {
+			return this.models;
+		}
+
+		public void setModels(Map<String, Resource> models) {
+			this.models = models;
+		}
+
+		public String getLocationTemplate() {
+			return this.locationTemplate;
+		}
+
+		public void setLocationTemplate(String locationTemplate) {
+			this.locationTemplate = locationTemplate;
+		}
+
+		@NotNull
+		public DataSize getNativeMemoryBudget() {
+			return this.nativeMemoryBudget;
+		}
+
+		public void setNativeMemoryBudget(DataSize nativeMemoryBudget) {
+			this.nativeMemoryBudget = nativeMemoryBudget;
+		}
+	}
+
+	public static class Admission {
+
+		/**
+		 * When enabled, the evaluations are admitted under an adaptive concurrency limit and a budget of live
+		 * tensor bytes. The consumer threads block while either limit is reached, holding back the input binding.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Limit of the concurrent evaluations until the latency measurements adapt it.
+		 */
+		private int initialLimit = 4;
+
+		/**
+		 * Lower bound of the adaptive limit.
+		 */
+		private int minLimit = 1;
+
+		/**
+		 * Upper bound of the adaptive limit. Higher than the input binding consumer concurrency has no effect.
+		 */
+		private int maxLimit = 64;
+
+		/**
+		 * Off-heap bytes of the feed and fetched tensors of the in-flight evaluations above which no new
+		 * evaluation is admitted.
+		 */
+		private DataSize tensorMemoryBudget = DataSize.ofMegabytes(512);
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		@Min(1)
+		public int getInitialLimit() {
+			return this.initialLimit;
+		}
+
+		public void setInitialLimit(int initialLimit) {
+			this.initialLimit = initialLimit;
+		}
+
+		@Min(1)
+		public int getMinLimit() {
+			return this.minLimit;
+		}
+
+		public void setMinLimit(int minLimit) {
+			this.minLimit = minLimit;
+		}
+
+		@Min(1)
+		public int getMaxLimit() {
+			return this.maxLimit;
+		}
+
+		public void setMaxLimit(int maxLimit) {
+			this.maxLimit = maxLimit;
+		}
+
+		@NotNull
+		public DataSize getTensorMemoryBudget() {
+			return this.tensorMemoryBudget;
+		}
+
+		public void setTensorMemoryBudget(DataSize tensorMemoryBudget) {
+			this.tensorMemoryBudget = tensorMemoryBudget;
+		}
+	}
 }
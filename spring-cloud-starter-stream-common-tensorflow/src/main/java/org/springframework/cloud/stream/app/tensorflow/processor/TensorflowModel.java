@@ -0,0 +1,492 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.tensorflow.DataType;
+import org.tensorflow.Graph;
+import org.tensorflow.Operation;
+import org.tensorflow.SavedModelBundle;
+import org.tensorflow.Session;
+import org.tensorflow.Session.Runner;
+import org.tensorflow.Shape;
+import org.tensorflow.Tensor;
+import org.tensorflow.framework.MetaGraphDef;
+import org.tensorflow.framework.SignatureDef;
+import org.tensorflow.framework.TensorInfo;
+
+import org.springframework.cloud.stream.app.tensorflow.util.ModelExtractor;
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * A loaded TensorFlow model: the {@link Graph}, the {@link SessionPool} bound to it and, for SavedModels, the
+ * signature that maps the input and output keys to the graph tensor names.
+ *
+ * The model is reference counted. The owner holds the initial reference and every evaluation acquires its own
+ * reference for the duration of the session run. The native resources are released once the owner has released
+ * the model and all in-flight evaluations have completed. This allows a model to be replaced while in use.
+ *
+ * @author Christian Tzolov
+ * @author agent
+ */
+class TensorflowModel {
+
+	private static final Log logger = LogFactory.getLog(TensorflowModel.class);
+
+	private final Resource location;
+
+	private final long loadedAt = System.currentTimeMillis();
+
+	/**
+	 * Identifies the model content: the location and its last modified time, when available.
+	 */
+	private final String fingerprint;
+
+	/**
+	 * Number of references to the model. The owner holds one reference until the model is released.
+	 */
+	private final AtomicInteger references = new AtomicInteger(1);
+
+	private Graph graph;
+
+	private SessionPool sessionPool;
+
+	/**
+	 * The SavedModel bundle, when the model is loaded as a SavedModel. Owns the graph and the session.
+	 */
+	private SavedModelBundle savedModelBundle;
+
+	/**
+	 * Directory the SavedModel archive is extracted into. Deleted on close.
+	 */
+	private File savedModelDirectory;
+
+	/**
+	 * Maps the SavedModel signature input and output keys to the graph tensor names.
+	 */
+	private Map<String, String> signatureTensorNames = Collections.emptyMap();
+
+	/**
+	 * Output keys fetched when no fetch names are provided.
+	 */
+	private List<String> defaultFetchedNames = Collections.emptyList();
+
+	/**
+	 * SavedModel signature input keys.
+	 */
+	private List<String> signatureInputNames;
+
+	/**
+	 * The graph tensor names of the last fetched names. The processor fetches the same names on every evaluation, so
+	 * they are resolved once.
+	 */
+	private volatile FetchPlan fetchPlan;
+
+	/**
+	 * Estimated native memory held by the model: the graph and the constants or variables materialized by the
+	 * sessions.
+	 */
+	private long nativeBytes;
+
+	private TensorflowModel(Resource location) {
+		this.location = location;
+		this.fingerprint = fingerprint(location, this.loadedAt);
+	}
+
+	private static String fingerprint(Resource location, long loadedAt) {
+		try {
+			return location.getURI() + "@" + location.lastModified();
+		}
+		catch (IOException e) {
+			// Unknown version. Valid for this model instance only.
+			return location.getDescription() + "@" + loadedAt;
+		}
+	}
+
+	/**
+	 * Loads either a frozen graph or a SavedModel bundle, depending on the tensorflow.saved-model.enabled property.
+	 * @param modelLocation the model location.
+	 * @param properties processor properties.
+	 * @return the loaded model.
+	 */
+	static TensorflowModel load(Resource modelLocation, TensorflowCommonProcessorProperties properties) {
+		return load(modelLocation, properties, null);
+	}
+
+	/**
+	 * Loads the model and records the extraction, optimization and import phases in the startup report.
+	 * @param modelLocation the model location.
+	 * @param properties processor properties.
+	 * @param startup Records the load phases, or null.
+	 * @return the loaded model.
+	 */
+	static TensorflowModel load(Resource modelLocation, TensorflowCommonProcessorProperties properties,
+			TensorflowStartup startup) {
+		TensorflowModel model = new TensorflowModel(modelLocation);
+		try {
+			if (properties.getSavedModel().isEnabled()) {
+				model.loadSavedModel(properties, startup);
+			}
+			else {
+				model.loadFrozenGraph(properties, startup);
+			}
+		}
+		catch (RuntimeException e) {
+			model.close();
+			throw e;
+		}
+		return model;
+	}
+
+	private void loadFrozenGraph(TensorflowCommonProcessorProperties properties, TensorflowStartup startup) {
+		if (logger.isInfoEnabled()) {
+			logger.info("Loading TensorFlow graph model: " + this.location);
+		}
+		// The extraction doesn't need the native library, so it can overlap with the library load
+		byte[] extracted = time(startup, "model-extraction", () -> new ModelExtractor(
+				ModelExtractor.DEFAULT_FROZEN_GRAPH_FILE_EXTENSION, properties.getModelCache().getDirectory(),
+				properties.getModelExtraction().getParallelism()).getModel(this.location));
+		byte[] model = !properties.getGraphOptimization().isEnabled() ? extracted
+				: time(startup, "graph-optimization", () -> new GraphDefOptimizer(properties.getModelFetch(),
+						properties.getGraphOptimization().isConstantFolding(),
+						properties.getModelCache().getDirectory()).optimize(extracted));
+		time(startup, "graph-import", () -> {
+			this.graph = new Graph();
+			this.graph.importGraphDef(model);
+			this.sessionPool = new SessionPool(this.graph, properties.getSession().getPoolSize(),
+					TensorFlowService.sessionConfig(properties.getSession()));
+			return this.graph;
+		});
+		// The graph holds the GraphDef and every pooled session materializes its own copy of the constants
+		this.nativeBytes = (long) model.length * (1 + properties.getSession().getPoolSize());
+	}
+
+	private static <T> T time(TensorflowStartup startup, String phase, Supplier<T> task) {
+		return (startup != null) ? startup.time(phase, task) : task.get();
+	}
+
+	/**
+	 * Loads the model as a SavedModel bundle and resolves the feed and fetch names from the configured signature.
+	 * The session restored by the bundle holds the model variables, so it is shared by all pool callers instead of
+	 * opening new sessions.
+	 */
+	private void loadSavedModel(TensorflowCommonProcessorProperties properties, TensorflowStartup startup) {
+		TensorflowCommonProcessorProperties.SavedModel savedModelProperties = properties.getSavedModel();
+		if (logger.isInfoEnabled()) {
+			logger.info("Loading TensorFlow SavedModel: " + this.location + ", tags: " + savedModelProperties.getTags());
+		}
+
+		try {
+			this.savedModelDirectory = Files.createTempDirectory("tensorflow-saved-model").toFile();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Failed to create the SavedModel directory", e);
+		}
+		File modelDirectory = time(startup, "model-extraction",
+				() -> new ModelExtractor().getSavedModel(this.location, this.savedModelDirectory));
+
+		SavedModelBundle.Loader loader = SavedModelBundle.loader(modelDirectory.getAbsolutePath())
+				.withTags(savedModelProperties.getTags().toArray(new String[0]));
+		byte[] config = TensorFlowService.sessionConfig(properties.getSession());
+		if (config != null) {
+			loader = loader.withConfigProto(config);
+		}
+		SavedModelBundle.Loader bundleLoader = loader;
+		this.savedModelBundle = time(startup, "saved-model-load", bundleLoader::load);
+		this.graph = this.savedModelBundle.graph();
+		// The graph and the variables restored into the single shared session
+		this.nativeBytes = 2 * directorySize(modelDirectory);
+		this.sessionPool = new SessionPool(this.savedModelBundle.session(), properties.getSession().getPoolSize());
+
+		SignatureDef signature = signatureDef(this.savedModelBundle, savedModelProperties.getSignature());
+		this.signatureTensorNames = new HashMap<>();
+		for (Entry<String, TensorInfo> input : signature.getInputsMap().entrySet()) {
+			this.signatureTensorNames.put(input.getKey(), input.getValue().getName());
+		}
+		for (Entry<String, TensorInfo> output : signature.getOutputsMap().entrySet()) {
+			this.signatureTensorNames.put(output.getKey(), output.getValue().getName());
+		}
+		this.defaultFetchedNames = new ArrayList<>(signature.getOutputsMap().keySet());
+		this.signatureInputNames = new ArrayList<>(signature.getInputsMap().keySet());
+
+		if (logger.isInfoEnabled()) {
+			logger.info("SavedModel signature '" + savedModelProperties.getSignature() + "' inputs: "
+					+ this.signatureInputNames + ", outputs: " + this.defaultFetchedNames);
+		}
+	}
+
+	private static long directorySize(File directory) {
+		try (Stream<Path> files = Files.walk(directory.toPath())) {
+			return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Failed to compute the SavedModel size", e);
+		}
+	}
+
+	private static SignatureDef signatureDef(SavedModelBundle bundle, String signatureName) {
+		MetaGraphDef metaGraphDef;
+		try {
+			metaGraphDef = MetaGraphDef.parseFrom(bundle.metaGraphDef());
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Failed to parse the SavedModel MetaGraphDef", e);
+		}
+		SignatureDef signature = metaGraphDef.getSignatureDefMap().get(signatureName);
+		if (signature == null) {
+			throw new IllegalArgumentException("Unknown SavedModel signature: " + signatureName
+					+ ". Available signatures: " + metaGraphDef.getSignatureDefMap().keySet());
+		}
+		return signature;
+	}
+
+	/**
+	 * Runs the model on a session borrowed from the session pool. The caller must hold a reference to the model.
+	 */
+	Map<String, Tensor<?>> run(Map<String, Tensor<?>> feedTensors, List<String> fetchedNames) {
+		return run(feedTensors, fetchedNames, null);
+	}
+
+	/**
+	 * Runs the model, see {@link #run(Map, List)}. The runs sampled by the profiler are traced.
+	 */
+	Map<String, Tensor<?>> run(Map<String, Tensor<?>> feedTensors, List<String> fetchedNames,
+			InferenceProfiler profiler) {
+
+		if (fetchedNames == null || fetchedNames.isEmpty()) {
+			fetchedNames = this.defaultFetchedNames;
+		}
+
+		String[] fetchTensorNames = fetchTensorNames(fetchedNames);
+
+		Session session = this.sessionPool.borrow();
+		try {
+			Runner runner = session.runner();
+
+			// Feed in the input named tensors. The SavedModel signature keys are resolved to graph tensor names.
+			for (Entry<String, Tensor<?>> e : feedTensors.entrySet()) {
+				runner = runner.feed(this.signatureTensorNames.getOrDefault(e.getKey(), e.getKey()), e.getValue());
+			}
+
+			// Set the tensor name to be fetched after the evaluation
+			for (String fetchTensorName : fetchTensorNames) {
+				runner.fetch(fetchTensorName);
+			}
+
+			// Evaluate the input
+			List<Tensor<?>> outputTensors;
+			if (profiler != null && profiler.sample()) {
+				Session.Run run = runner.setOptions(InferenceProfiler.FULL_TRACE).runAndFetchMetadata();
+				outputTensors = run.outputs;
+				profiler.record(run.metadata);
+			}
+			else {
+				outputTensors = runner.run();
+			}
+
+			// Extract the output tensors
+			Map<String, Tensor<?>> outTensorMap = new HashMap<>(mapCapacity(fetchedNames.size()));
+			for (int outputIndex = 0; outputIndex < fetchedNames.size(); outputIndex++) {
+				outTensorMap.put(fetchedNames.get(outputIndex), outputTensors.get(outputIndex));
+			}
+			return outTensorMap;
+		}
+		finally {
+			this.sessionPool.release(session);
+		}
+	}
+
+	private String[] fetchTensorNames(List<String> fetchedNames) {
+		FetchPlan plan = this.fetchPlan;
+		if (plan == null || !plan.fetchedNames.equals(fetchedNames)) {
+			String[] tensorNames = new String[fetchedNames.size()];
+			for (int i = 0; i < tensorNames.length; i++) {
+				tensorNames[i] = this.signatureTensorNames.getOrDefault(fetchedNames.get(i), fetchedNames.get(i));
+			}
+			plan = new FetchPlan(new ArrayList<>(fetchedNames), tensorNames);
+			this.fetchPlan = plan;
+		}
+		return plan.tensorNames;
+	}
+
+	/**
+	 * @return the initial capacity of a hash map that holds the given number of entries without rehashing.
+	 */
+	static int mapCapacity(int size) {
+		return (int) (size / 0.75f) + 1;
+	}
+
+	/**
+	 * Creates zero filled feed tensors for all model inputs. See {@link TensorFlowService#syntheticFeeds()}.
+	 */
+	Map<String, Tensor<?>> syntheticFeeds() {
+		Map<String, Operation> placeholders = new LinkedHashMap<>();
+		if (this.signatureInputNames != null) {
+			for (String inputName : this.signatureInputNames) {
+				String tensorName = this.signatureTensorNames.get(inputName);
+				placeholders.put(inputName, this.graph.operation(tensorName.split(":")[0]));
+			}
+		}
+		else {
+			for (Iterator<Operation> it = this.graph.operations(); it.hasNext(); ) {
+				Operation operation = it.next();
+				if ("Placeholder".equals(operation.type())) {
+					placeholders.put(operation.name(), operation);
+				}
+			}
+		}
+
+		Map<String, Tensor<?>> feeds = new LinkedHashMap<>();
+		for (Entry<String, Operation> placeholder : placeholders.entrySet()) {
+			DataType dataType = placeholder.getValue().output(0).dataType();
+			if (dataType == DataType.STRING) {
+				logger.warn("Can not synthesize the string input: " + placeholder.getKey());
+				closeAll(feeds.values());
+				return Collections.emptyMap();
+			}
+			Shape shape = placeholder.getValue().output(0).shape();
+			long[] dimensions = new long[Math.max(0, shape.numDimensions())];
+			long size = 1;
+			for (int i = 0; i < dimensions.length; i++) {
+				dimensions[i] = Math.max(1, shape.size(i));
+				size = size * dimensions[i];
+			}
+			feeds.put(placeholder.getKey(), Tensor.create(TensorJsonConverter.dataTypeToClass(dataType), dimensions,
+					ByteBuffer.allocate((int) (size * dataType.byteSize()))));
+		}
+		return feeds;
+	}
+
+	/**
+	 * Runs the given number of evaluations with synthetic inputs and discards the results.
+	 */
+	void warmUp(int iterations, List<String> fetchedNames) {
+		for (int i = 0; i < iterations; i++) {
+			Map<String, Tensor<?>> feeds = syntheticFeeds();
+			if (feeds.isEmpty()) {
+				return;
+			}
+			try {
+				closeAll(run(feeds, fetchedNames).values());
+			}
+			finally {
+				closeAll(feeds.values());
+			}
+		}
+	}
+
+	static void closeAll(Collection<? extends Tensor<?>> tensors) {
+		for (Tensor<?> tensor : tensors) {
+			if (tensor != null) {
+				tensor.close();
+			}
+		}
+	}
+
+	/**
+	 * Acquires a reference to the model for the duration of an evaluation.
+	 * @return false if the model is already released and closed.
+	 */
+	boolean tryAcquire() {
+		int count;
+		do {
+			count = this.references.get();
+			if (count == 0) {
+				return false;
+			}
+		}
+		while (!this.references.compareAndSet(count, count + 1));
+		return true;
+	}
+
+	/**
+	 * Releases a reference to the model. The last release closes the model.
+	 */
+	void release() {
+		if (this.references.decrementAndGet() == 0) {
+			close();
+		}
+	}
+
+	Resource getLocation() {
+		return this.location;
+	}
+
+	long getLoadedAt() {
+		return this.loadedAt;
+	}
+
+	String getFingerprint() {
+		return this.fingerprint;
+	}
+
+	/**
+	 * @return the estimated native memory held by the model, in bytes.
+	 */
+	long getNativeBytes() {
+		return this.nativeBytes;
+	}
+
+	private void close() {
+		logger.info("Close TensorFlow Graph: " + this.location);
+		if (this.sessionPool != null) {
+			this.sessionPool.close();
+		}
+		if (this.savedModelBundle != null) {
+			// The bundle owns both the graph and the session
+			this.savedModelBundle.close();
+		}
+		else if (this.graph != null) {
+			this.graph.close();
+		}
+		if (this.savedModelDirectory != null) {
+			FileSystemUtils.deleteRecursively(this.savedModelDirectory);
+		}
+	}
+
+	private static final class FetchPlan {
+
+		private final List<String> fetchedNames;
+
+		private final String[] tensorNames;
+
+		FetchPlan(List<String> fetchedNames, String[] tensorNames) {
+			this.fetchedNames = fetchedNames;
+			this.tensorNames = tensorNames;
+		}
+	}
+}
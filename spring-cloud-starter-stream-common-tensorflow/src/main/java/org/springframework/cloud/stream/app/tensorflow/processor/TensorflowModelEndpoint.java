@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+/**
+ * Actuator endpoint that reports the loaded model, the model zoo, the inference cache, the admission control and
+ * the tensor arena statistics, and triggers a model reload.
+ *
+ * @author agent
+ */
+@Endpoint(id = "tensorflow")
+public class TensorflowModelEndpoint {
+
+	private final TensorFlowService tensorFlowService;
+
+	private final ModelReloader modelReloader;
+
+	private final InferenceCache inferenceCache;
+
+	private final InferenceAdmission inferenceAdmission;
+
+	private final TensorArena tensorArena;
+
+	/**
+	 * @param tensorFlowService Service to report the model of.
+	 * @param modelReloader Reloads the model.
+	 * @param inferenceCache The inference cache, or null if disabled.
+	 * @param inferenceAdmission The admission control, or null if disabled.
+	 * @param tensorArena Arena releasing the tensors of the evaluations.
+	 */
+	public TensorflowModelEndpoint(TensorFlowService tensorFlowService, ModelReloader modelReloader,
+			InferenceCache inferenceCache, InferenceAdmission inferenceAdmission, TensorArena tensorArena) {
+		this.tensorFlowService = tensorFlowService;
+		this.modelReloader = modelReloader;
+		this.inferenceCache = inferenceCache;
+		this.inferenceAdmission = inferenceAdmission;
+		this.tensorArena = tensorArena;
+	}
+
+	@ReadOperation
+	public Map<String, Object> model() {
+		Map<String, Object> model = new LinkedHashMap<>();
+		model.put("location", this.tensorFlowService.getModelLocation().getDescription());
+		model.put("version", this.tensorFlowService.getModelVersion());
+		model.put("loadedAt", this.tensorFlowService.getModelLoadedAt());
+		Map<String, Object> modelZoo = this.tensorFlowService.getModelZooStatistics();
+		if (!modelZoo.isEmpty()) {
+			model.put("modelZoo", modelZoo);
+		}
+		if (this.inferenceCache != null) {
+			model.put("cache", this.inferenceCache.getStatistics());
+		}
+		if (this.inferenceAdmission != null) {
+			model.put("admission", this.inferenceAdmission.getStatistics());
+		}
+		model.put("arena", this.tensorArena.getStatistics());
+		return model;
+	}
+
+	/**
+	 * Reloads the model from its current location and waits until the new model serves the evaluations.
+	 */
+	@WriteOperation
+	public Map<String, Object> reload() {
+		this.modelReloader.reload();
+		return model();
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.Assert;
+
+/**
+ * Registry of the named models, loaded on demand (see {@link TensorflowCommonProcessorProperties.ModelZoo}).
+ *
+ * The first evaluation of a model name loads the model in the calling thread. The concurrent evaluations of the same
+ * model name wait for that load instead of loading the model again. Every model has its own session pool.
+ *
+ * The loaded models are kept in least recently used order. When the estimated native memory of the loaded models
+ * exceeds the budget, the least recently used models are released. Like for the reload, a released model is closed
+ * once its in-flight evaluations complete (see {@link TensorflowModel}).
+ *
+ * @author agent
+ */
+class TensorflowModelZoo implements AutoCloseable {
+
+	private static final Log logger = LogFactory.getLog(TensorflowModelZoo.class);
+
+	private static final String MODEL_PLACEHOLDER = "{model}";
+
+	private static final Pattern MODEL_NAME_PATTERN = Pattern.compile("[A-Za-z0-9._-]+");
+
+	private final Map<String, Resource> models;
+
+	private final String locationTemplate;
+
+	private final long nativeMemoryBudget;
+
+	private final Function<Resource, TensorflowModel> modelLoader;
+
+	private final ResourceLoader resourceLoader = new DefaultResourceLoader();
+
+	/**
+	 * The loaded models, in access order. Guarded by this.
+	 */
+	private final LinkedHashMap<String, TensorflowModel> loadedModels = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The models being loaded. Guarded by this.
+	 */
+	private final Map<String, CompletableFuture<TensorflowModel>> loadingModels = new HashMap<>();
+
+	/**
+	 * Estimated native memory of the loaded models. Guarded by this.
+	 */
+	private long nativeBytes;
+
+	private long loads;
+
+	private long evictions;
+
+	private boolean closed;
+
+	/**
+	 * @param properties Model zoo configuration.
+	 * @param modelLoader Loads the model from the given location.
+	 */
+	TensorflowModelZoo(TensorflowCommonProcessorProperties.ModelZoo properties,
+			Function<Resource, TensorflowModel> modelLoader) {
+		this.models = new HashMap<>(properties.getModels());
+		this.locationTemplate = properties.getLocationTemplate();
+		this.nativeMemoryBudget = properties.getNativeMemoryBudget().toBytes();
+		this.modelLoader = modelLoader;
+	}
+
+	/**
+	 * Acquires a reference to the named model, loading it if necessary. The caller must release the model.
+	 *
+	 * @param name Model name.
+	 * @return the acquired model.
+	 */
+	TensorflowModel acquire(String name) {
+		Resource location = location(name);
+		while (true) {
+			CompletableFuture<TensorflowModel> loading;
+			boolean loader = false;
+			synchronized (this) {
+				Assert.state(!this.closed, "The model zoo is closed");
+				TensorflowModel model = this.loadedModels.get(name);
+				if (model != null && model.tryAcquire()) {
+					return model;
+				}
+				loading = this.loadingModels.get(name);
+				if (loading == null) {
+					loading = new CompletableFuture<>();
+					this.loadingModels.put(name, loading);
+					loader = true;
+				}
+			}
+
+			if (loader) {
+				load(name, location, loading);
+			}
+
+			TensorflowModel model;
+			try {
+				model = loading.join();
+			}
+			catch (CompletionException e) {
+				throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+			}
+			// A model evicted right after the load is loaded again
+			if (model.tryAcquire()) {
+				return model;
+			}
+		}
+	}
+
+	private void load(String name, Resource location, CompletableFuture<TensorflowModel> loading) {
+		TensorflowModel model;
+		long start = System.nanoTime();
+		try {
+			model = this.modelLoader.apply(location);
+		}
+		catch (RuntimeException e) {
+			synchronized (this) {
+				this.loadingModels.remove(name);
+			}
+			loading.completeExceptionally(e);
+			throw e;
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info(String.format("Model '%s' loaded from %s in %d ms, estimated native memory: %d bytes", name,
+					location.getDescription(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+					model.getNativeBytes()));
+		}
+
+		List<TensorflowModel> evicted = new ArrayList<>();
+		synchronized (this) {
+			this.loadingModels.remove(name);
+			if (this.closed) {
+				evicted.add(model);
+			}
+			else {
+				this.loadedModels.put(name, model);
+				this.nativeBytes += model.getNativeBytes();
+				this.loads++;
+				evicted.addAll(evictOverBudget(name));
+			}
+		}
+		loading.complete(model);
+
+		for (TensorflowModel evictedModel : evicted) {
+			evictedModel.release();
+		}
+	}
+
+	/**
+	 * Removes the least recently used models, except the given one, until the loaded models fit the budget.
+	 */
+	private List<TensorflowModel> evictOverBudget(String retainedName) {
+		List<TensorflowModel> evicted = new ArrayList<>();
+		Iterator<Map.Entry<String, TensorflowModel>> it = this.loadedModels.entrySet().iterator();
+		while (this.nativeBytes > this.nativeMemoryBudget && it.hasNext()) {
+			Map.Entry<String, TensorflowModel> eldest = it.next();
+			if (eldest.getKey().equals(retainedName)) {
+				continue;
+			}
+			it.remove();
+			this.nativeBytes -= eldest.getValue().getNativeBytes();
+			this.evictions++;
+			evicted.add(eldest.getValue());
+			if (logger.isInfoEnabled()) {
+				logger.info("Evict the least recently used model: " + eldest.getKey());
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Resolves the model name to the configured model location, or to the location template.
+	 */
+	Resource location(String name) {
+		Resource location = this.models.get(name);
+		if (location != null) {
+			return location;
+		}
+		if (this.locationTemplate == null || !MODEL_NAME_PATTERN.matcher(name).matches()) {
+			throw new IllegalArgumentException("Unknown TensorFlow model: " + name);
+		}
+		return this.resourceLoader.getResource(this.locationTemplate.replace(MODEL_PLACEHOLDER, name));
+	}
+
+	/**
+	 * @return the loaded models with their estimated native memory, in least recently used order, and the load
+	 * and eviction counts.
+	 */
+	synchronized Map<String, Object> getStatistics() {
+		Map<String, Long> models = new LinkedHashMap<>();
+		this.loadedModels.forEach((name, model) -> models.put(name, model.getNativeBytes()));
+
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("models", models);
+		statistics.put("nativeBytes", this.nativeBytes);
+		statistics.put("nativeMemoryBudget", this.nativeMemoryBudget);
+		statistics.put("loads", this.loads);
+		statistics.put("evictions", this.evictions);
+		return statistics;
+	}
+
+	@Override
+	public void close() {
+		List<TensorflowModel> models;
+		synchronized (this) {
+			this.closed = true;
+			models = new ArrayList<>(this.loadedModels.values());
+			this.loadedModels.clear();
+			this.nativeBytes = 0;
+		}
+		for (TensorflowModel model : models) {
+			model.release();
+		}
+	}
+}
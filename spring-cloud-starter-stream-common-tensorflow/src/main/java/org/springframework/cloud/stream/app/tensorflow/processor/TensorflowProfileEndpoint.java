@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Actuator endpoint that reports the graph ops with the highest total wall time in the traced evaluations (see
+ * {@link InferenceProfiler}), and discards the profile.
+ *
+ * @author agent
+ */
+@Endpoint(id = "tensorflowprofile")
+public class TensorflowProfileEndpoint {
+
+	private final InferenceProfiler inferenceProfiler;
+
+	public TensorflowProfileEndpoint(InferenceProfiler inferenceProfiler) {
+		this.inferenceProfiler = inferenceProfiler;
+	}
+
+	@ReadOperation
+	public Map<String, Object> profile() {
+		return this.inferenceProfiler.getReport();
+	}
+
+	/**
+	 * Discards the aggregated statistics, e.g. to profile a new load pattern.
+	 */
+	@DeleteOperation
+	public void reset() {
+		this.inferenceProfiler.reset();
+	}
+}
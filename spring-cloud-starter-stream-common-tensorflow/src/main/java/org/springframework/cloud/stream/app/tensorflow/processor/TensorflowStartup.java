@@ -0,0 +1,218 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Runs the independent startup initializations (e.g. the TensorFlow native library load and the model download,
+ * extraction and import) concurrently, on dedicated threads, while the application context keeps starting on the
+ * main thread. The initializations of the main thread can be timed as well.
+ *
+ * Every phase is recorded with its start offset, counted from the creation of this instance, its duration and its
+ * thread. A phase timed within another phase (e.g. the graph import within the model load) records it as its parent
+ * and is not counted again in the serial startup time. The background phases must complete before the input bindings
+ * are started: the lifecycle waits for them in a phase that precedes the {@link ModelWarmUp}, fails the startup on
+ * the first failure and logs the report.
+ *
+ * @author agent
+ */
+public class TensorflowStartup implements SmartLifecycle {
+
+	private static final Log logger = LogFactory.getLog(TensorflowStartup.class);
+
+	/**
+	 * Must complete before the {@link ModelWarmUp}.
+	 */
+	static final int PHASE = ModelWarmUp.PHASE - 1;
+
+	private final long createdAt = System.nanoTime();
+
+	private final ExecutorService executor = Executors.newCachedThreadPool(threadFactory());
+
+	/**
+	 * The recorded phases, in start order. Guarded by this.
+	 */
+	private final Map<String, Map<String, Object>> phases = new LinkedHashMap<>();
+
+	/**
+	 * The background phases. Guarded by this.
+	 */
+	private final List<CompletableFuture<?>> tasks = new ArrayList<>();
+
+	/**
+	 * The phase running on the current thread, the parent of the phases it times.
+	 */
+	private final ThreadLocal<String> currentPhase = new ThreadLocal<>();
+
+	private volatile long readyMillis = -1;
+
+	private volatile boolean running;
+
+	private static CustomizableThreadFactory threadFactory() {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tensorflow-startup-");
+		threadFactory.setDaemon(true);
+		return threadFactory;
+	}
+
+	/**
+	 * Runs the phase on a startup thread.
+	 *
+	 * @param phase Phase name, reported with the phase duration.
+	 * @param task The initialization.
+	 * @return Future completed with the task result, or with its failure.
+	 */
+	public <T> CompletableFuture<T> submit(String phase, Supplier<T> task) {
+		CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> time(phase, task), this.executor);
+		synchronized (this) {
+			this.tasks.add(future);
+		}
+		return future;
+	}
+
+	/**
+	 * Runs the phase on the calling thread.
+	 *
+	 * @param phase Phase name, reported with the phase duration.
+	 * @param task The initialization.
+	 * @return the task result.
+	 */
+	public <T> T time(String phase, Supplier<T> task) {
+		long start = System.nanoTime();
+		Map<String, Object> record = new LinkedHashMap<>();
+		record.put("startMs", TimeUnit.NANOSECONDS.toMillis(start - this.createdAt));
+		record.put("thread", Thread.currentThread().getName());
+		String parent = this.currentPhase.get();
+		if (parent != null) {
+			record.put("parent", parent);
+		}
+		synchronized (this) {
+			this.phases.put(phase, record);
+		}
+		this.currentPhase.set(phase);
+		boolean failed = true;
+		try {
+			T result = task.get();
+			failed = false;
+			return result;
+		}
+		finally {
+			if (parent != null) {
+				this.currentPhase.set(parent);
+			}
+			else {
+				this.currentPhase.remove();
+			}
+			synchronized (this) {
+				record.put("durationMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+				if (failed) {
+					record.put("failed", true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits for the background phases submitted so far.
+	 *
+	 * @throws IllegalStateException if a phase failed.
+	 */
+	public void await() {
+		List<CompletableFuture<?>> pending;
+		synchronized (this) {
+			pending = new ArrayList<>(this.tasks);
+		}
+		try {
+			CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+		}
+		catch (CompletionException e) {
+			throw new IllegalStateException("TensorFlow startup failed", e.getCause());
+		}
+	}
+
+	@Override
+	public void start() {
+		if (this.running) {
+			return;
+		}
+		this.running = true;
+		try {
+			await();
+		}
+		finally {
+			this.readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.createdAt);
+			this.executor.shutdown();
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info("TensorFlow startup: " + getReport());
+		}
+	}
+
+	@Override
+	public void stop() {
+		this.running = false;
+		this.executor.shutdownNow();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public int getPhase() {
+		return PHASE;
+	}
+
+	/**
+	 * @return the recorded phases, the sum of the top level phase durations (the startup time if run serially) and
+	 * the time until all phases completed, or -1 if not yet completed.
+	 */
+	public synchronized Map<String, Object> getReport() {
+		Map<String, Object> phasesCopy = new LinkedHashMap<>();
+		long serialMillis = 0;
+		for (Map.Entry<String, Map<String, Object>> phase : this.phases.entrySet()) {
+			phasesCopy.put(phase.getKey(), new LinkedHashMap<>(phase.getValue()));
+			Object duration = phase.getValue().get("durationMs");
+			if (duration != null && !phase.getValue().containsKey("parent")) {
+				// The nested phases are part of the duration of their parent
+				serialMillis += (Long) duration;
+			}
+		}
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("phases", phasesCopy);
+		report.put("serialMs", serialMillis);
+		report.put("readyMs", this.readyMillis);
+		return report;
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Actuator endpoint that reports the duration of the startup phases (see {@link TensorflowStartup#getReport()}).
+ *
+ * @author agent
+ */
+@Endpoint(id = "tensorflowstartup")
+public class TensorflowStartupEndpoint {
+
+	private final TensorflowStartup tensorflowStartup;
+
+	public TensorflowStartupEndpoint(TensorflowStartup tensorflowStartup) {
+		this.tensorflowStartup = tensorflowStartup;
+	}
+
+	@ReadOperation
+	public Map<String, Object> startup() {
+		return this.tensorflowStartup.getReport();
+	}
+}
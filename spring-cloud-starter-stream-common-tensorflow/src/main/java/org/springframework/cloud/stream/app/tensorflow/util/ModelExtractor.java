@@ -17,12 +17,25 @@
 package org.springframework.cloud.stream.app.tensorflow.util;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import java.util.Enumeration;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
@@ -34,12 +47,18 @@ import javax.net.ssl.X509TrustManager;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.compress.compressors.CompressorInputStream;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.util.Assert;
+import org.springframework.util.FileSystemUtils;
 import org.springframework.util.StreamUtils;
 import org.springframework.util.StringUtils;
 
@@ -52,11 +71,33 @@ import org.springframework.util.StringUtils;
  * the myarchive.tar.gz is traversed to uncompress and extract the model.pb file as byte array.
  * If the file name is not provided as URI fragment then the first file in the archive with extension .pb is extracted.
  *
+ * When a cache directory is configured the extracted model is stored on the local disk, under a key computed from
+ * the model URI and the resource version (ETag, Last-Modified and Content-Length for http resources, last modified
+ * time and length for files). Later extractions of the same model version read the cached file without downloading
+ * or decompressing the archive again. A new version replaces the cached versions of the same URI. The resources
+ * without a known version (a failed HEAD request, or neither an ETag nor a Last-Modified header) are not cached.
+ *
+ * Zip archives available on the local file system are read through the zip central directory, which locates the
+ * model entry without scanning the whole archive.
+ *
+ * With a positive parallelism, the models are extracted through temporary files with fixed size buffers and the
+ * multi-member gzip and bzip2 files are decompressed in parallel (see {@link ParallelDecompressor}).
+ *
+ * The {@link #getSavedModel(Resource, File)} resolves a TensorFlow SavedModel directory (e.g. the directory that
+ * contains the saved_model.pb and the variables folder) either from a local directory or from an archive.
+ *
  * @author Christian Tzolov
  */
 public class ModelExtractor {
 
-	private static final String DEFAULT_FROZEN_GRAPH_FILE_EXTENSION = ".pb";
+	private static final Log logger = LogFactory.getLog(ModelExtractor.class);
+
+	public static final String DEFAULT_FROZEN_GRAPH_FILE_EXTENSION = ".pb";
+
+	/**
+	 * Name of the file that marks the root of a SavedModel directory.
+	 */
+	public static final String SAVED_MODEL_FILE_NAME = "saved_model.pb";
 
 	/**
 	 * When an archive resource if referred, but no fragment URI is provided (to specify the target file name in
@@ -65,12 +106,42 @@ public class ModelExtractor {
 	 */
 	public final String frozenGraphFileExtension;
 
+	/**
+	 * Local directory to cache the extracted models in. Null disables the cache.
+	 */
+	private final File cacheDirectory;
+
+	/**
+	 * Number of threads used to decompress multi-member gzip and bzip2 models. When positive, the models are
+	 * extracted through temporary files with fixed size buffers (spooled). Zero extracts the models in memory.
+	 */
+	private final int parallelism;
+
 	public ModelExtractor() {
 		this(DEFAULT_FROZEN_GRAPH_FILE_EXTENSION);
 	}
 
 	public ModelExtractor(String frozenGraphFileExtension) {
+		this(frozenGraphFileExtension, null);
+	}
+
+	/**
+	 * @param frozenGraphFileExtension Extension of the model file to look for in archives.
+	 * @param cacheDirectory Local directory to cache the extracted models in, or null to disable the caching.
+	 */
+	public ModelExtractor(String frozenGraphFileExtension, File cacheDirectory) {
+		this(frozenGraphFileExtension, cacheDirectory, 0);
+	}
+
+	/**
+	 * @param frozenGraphFileExtension Extension of the model file to look for in archives.
+	 * @param cacheDirectory Local directory to cache the extracted models in, or null to disable the caching.
+	 * @param parallelism Number of decompression threads for the spooled extraction, or 0 for in memory extraction.
+	 */
+	public ModelExtractor(String frozenGraphFileExtension, File cacheDirectory, int parallelism) {
 		this.frozenGraphFileExtension = frozenGraphFileExtension;
+		this.cacheDirectory = cacheDirectory;
+		this.parallelism = parallelism;
 	}
 
 	public byte[] getModel(String  modelUri) {
@@ -81,39 +152,385 @@ public class ModelExtractor {
 
 		Assert.notNull(modelResource, "Not null model resource is required!");
 
+		try {
+			File cachedModel = (this.cacheDirectory != null) ? getCachedModel(modelResource) : null;
+			if (cachedModel != null) {
+				return Files.readAllBytes(cachedModel.toPath());
+			}
+			if (this.parallelism > 0) {
+				return getSpooledModel(modelResource);
+			}
+			ByteArrayOutputStream model = new ByteArrayOutputStream();
+			extractModel(modelResource, modelResource.getURI().getFragment(), model);
+			return model.toByteArray();
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Failed to extract a model from: " + modelResource.getDescription(), e);
+		}
+	}
+
+	/**
+	 * Returns the cached model file for the current version of the model resource. On a cache miss the model is
+	 * extracted into a temporary file that is atomically moved into the cache, so that concurrent or interrupted
+	 * extractions never leave a partial model in the cache.
+	 *
+	 * @return the cached model file, or null if the version of the resource is unknown.
+	 */
+	private File getCachedModel(Resource modelResource) throws Exception {
+
+		String version = resourceVersion(modelResource);
+		if (version == null) {
+			if (logger.isInfoEnabled()) {
+				logger.info("Model cache skipped for: " + modelResource.getDescription()
+						+ ". The resource version is unknown");
+			}
+			return null;
+		}
+
+		Files.createDirectories(this.cacheDirectory.toPath());
+
+		String locationKey = sha256(modelResource.getURI() + "\n" + this.frozenGraphFileExtension);
+		String key = locationKey + "-" + sha256(version);
+		File cachedModel = new File(this.cacheDirectory, key + DEFAULT_FROZEN_GRAPH_FILE_EXTENSION);
+		if (cachedModel.isFile()) {
+			if (logger.isInfoEnabled()) {
+				logger.info("Model cache hit for: " + modelResource.getDescription() + " -> " + cachedModel);
+			}
+			return cachedModel;
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Model cache miss for: " + modelResource.getDescription() + ". Extract into: " + cachedModel);
+		}
+
+		Path download = null;
+		Path extracted = Files.createTempFile(this.cacheDirectory.toPath(), key, ".tmp");
+		try {
+			Resource source = modelResource;
+			if (isZipArchive(modelResource) && !modelResource.isFile()) {
+				// Download the zip first, to locate the model entry through the zip central directory
+				download = Files.createTempFile(this.cacheDirectory.toPath(), key, ".zip");
+				try (InputStream is = modelResource.getInputStream()) {
+					Files.copy(is, download, StandardCopyOption.REPLACE_EXISTING);
+				}
+				source = new FileSystemResource(download.toFile());
+			}
+			try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(extracted))) {
+				if (this.parallelism > 0) {
+					extractModelSpooled(source, modelResource.getURI().getFragment(), os, this.cacheDirectory.toPath());
+				}
+				else {
+					extractModel(source, modelResource.getURI().getFragment(), os);
+				}
+			}
+			Files.move(extracted, cachedModel.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(extracted);
+			if (download != null) {
+				Files.deleteIfExists(download);
+			}
+		}
+		deleteOtherVersions(locationKey, cachedModel);
+		return cachedModel;
+	}
+
+	/**
+	 * Deletes the cached models of the same location, other than the given version.
+	 */
+	private void deleteOtherVersions(String locationKey, File cachedModel) {
+		File[] otherVersions = this.cacheDirectory.listFiles((directory, name) -> name.startsWith(locationKey + "-")
+				&& name.endsWith(DEFAULT_FROZEN_GRAPH_FILE_EXTENSION) && !name.equals(cachedModel.getName()));
+		if (otherVersions == null) {
+			return;
+		}
+		for (File otherVersion : otherVersions) {
+			try {
+				Files.deleteIfExists(otherVersion.toPath());
+				if (logger.isInfoEnabled()) {
+					logger.info("Deleted the previous cached model version: " + otherVersion);
+				}
+			}
+			catch (IOException e) {
+				logger.warn("Failed to delete the previous cached model version: " + otherVersion, e);
+			}
+		}
+	}
+
+	/**
+	 * Extracts the model through a temporary directory and reads it into an array of the exact model size, so the
+	 * model is not buffered (and copied) in memory while extracted.
+	 */
+	private byte[] getSpooledModel(Resource modelResource) throws Exception {
+		Path spoolDirectory = Files.createTempDirectory("tensorflow-model");
+		try {
+			Path extracted = spoolDirectory.resolve("model" + DEFAULT_FROZEN_GRAPH_FILE_EXTENSION);
+			try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(extracted))) {
+				extractModelSpooled(modelResource, modelResource.getURI().getFragment(), os, spoolDirectory);
+			}
+			return Files.readAllBytes(extracted);
+		}
+		finally {
+			FileSystemUtils.deleteRecursively(spoolDirectory.toFile());
+		}
+	}
+
+	/**
+	 * Copies remote resources into the spool directory, decompresses gzip and bzip2 content with the
+	 * {@link ParallelDecompressor} into a temporary file and then looks up the model in the decompressed archive.
+	 * Other formats fall back to the streaming extraction.
+	 */
+	private void extractModelSpooled(Resource modelResource, String fragment, OutputStream target, Path spoolDirectory)
+			throws Exception {
+
+		String[] archiveCompressor = detectArchiveAndCompressor(modelResource.getFilename());
+		String archive = archiveCompressor[0];
+		String compressor = archiveCompressor[1];
+
+		if (!ParallelDecompressor.supports(compressor)) {
+			extractModel(modelResource, fragment, target);
+			return;
+		}
+
+		Path download = null;
+		Path decompressed = Files.createTempFile(spoolDirectory, "model", ".decompressed");
+		try {
+			File compressed;
+			if (modelResource.isFile()) {
+				compressed = modelResource.getFile();
+			}
+			else {
+				long start = System.nanoTime();
+				download = Files.createTempFile(spoolDirectory, "model", ".download");
+				try (InputStream is = modelResource.getInputStream()) {
+					Files.copy(is, download, StandardCopyOption.REPLACE_EXISTING);
+				}
+				compressed = download.toFile();
+				if (logger.isInfoEnabled()) {
+					double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+					double megabytes = compressed.length() / (1024.0 * 1024.0);
+					logger.info(String.format("Downloaded %.1f MB in %.2f s (%.1f MB/s) from: %s", megabytes, seconds,
+							megabytes / seconds, modelResource.getDescription()));
+				}
+			}
+
+			new ParallelDecompressor(this.parallelism).decompress(compressed, compressor, decompressed.toFile());
+
+			if (StringUtils.hasText(archive)) {
+				try (InputStream is = new BufferedInputStream(Files.newInputStream(decompressed));
+					 ArchiveInputStream ais = new ArchiveStreamFactory().createArchiveInputStream(archive, is)) {
+					findInArchiveStream(fragment, ais, target);
+				}
+			}
+			else {
+				Files.copy(decompressed, target);
+			}
+		}
+		finally {
+			Files.deleteIfExists(decompressed);
+			if (download != null) {
+				Files.deleteIfExists(download);
+			}
+		}
+	}
+
+	private static String sha256(String value) throws NoSuchAlgorithmException {
+		byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Resolves the version of the resource without downloading it. Http resources are checked with a HEAD request.
+	 *
+	 * @return the resource version, or null if it is unknown.
+	 */
+	private String resourceVersion(Resource modelResource) throws IOException {
+		if (!modelResource.isFile()) {
+			URLConnection connection = modelResource.getURL().openConnection();
+			if (connection instanceof HttpURLConnection) {
+				HttpURLConnection httpConnection = (HttpURLConnection) connection;
+				try {
+					httpConnection.setRequestMethod("HEAD");
+					int status = httpConnection.getResponseCode();
+					if (status < 200 || status >= 300) {
+						if (logger.isDebugEnabled()) {
+							logger.debug("HEAD " + modelResource.getDescription() + " responded with: " + status);
+						}
+						return null;
+					}
+					String etag = httpConnection.getHeaderField("ETag");
+					long lastModified = httpConnection.getLastModified();
+					if (etag == null && lastModified <= 0) {
+						return null;
+					}
+					return etag + ":" + lastModified + ":" + httpConnection.getContentLengthLong();
+				}
+				finally {
+					httpConnection.disconnect();
+				}
+			}
+		}
+		try {
+			long lastModified = modelResource.lastModified();
+			return (lastModified > 0) ? lastModified + ":" + modelResource.contentLength() : null;
+		}
+		catch (IOException e) {
+			// e.g. no modification time for the resource type
+			return null;
+		}
+	}
+
+	/**
+	 * Extracts the model from the resource into the target stream, decompressing and traversing archives as needed.
+	 */
+	private void extractModel(Resource modelResource, String fragment, OutputStream target) throws Exception {
+
+		if (isZipArchive(modelResource) && modelResource.isFile()) {
+			try (ZipFile zipFile = new ZipFile(modelResource.getFile())) {
+				findInZipFile(fragment, zipFile, target);
+				return;
+			}
+		}
+
 		try (InputStream is = modelResource.getInputStream();
 			 InputStream bi = new BufferedInputStream(is)) {
 
 			String[] archiveCompressor = detectArchiveAndCompressor(modelResource.getFilename());
 			String archive = archiveCompressor[0];
 			String compressor = archiveCompressor[1];
-			String fragment = modelResource.getURI().getFragment();
 
 			if (StringUtils.hasText(compressor)) {
-				try (CompressorInputStream cis = new CompressorStreamFactory().createCompressorInputStream(compressor, bi)) {
+				// Decompress all the members of concatenated gzip and bzip2 files
+				try (CompressorInputStream cis = new CompressorStreamFactory(true).createCompressorInputStream(compressor, bi)) {
 					if (StringUtils.hasText(archive)) {
 						try (ArchiveInputStream ais = new ArchiveStreamFactory().createArchiveInputStream(archive, cis)) {
 							// Compressor with Archive
-							return findInArchiveStream(fragment, ais);
+							findInArchiveStream(fragment, ais, target);
 						}
 					}
 					else { // Compressor only
-						return StreamUtils.copyToByteArray(cis);
+						StreamUtils.copy(cis, target);
 					}
 				}
 			}
 			else if (StringUtils.hasText(archive)) { // Archive only
 				try (ArchiveInputStream ais = new ArchiveStreamFactory().createArchiveInputStream(archive, bi)) {
-					return findInArchiveStream(fragment, ais);
+					findInArchiveStream(fragment, ais, target);
 				}
 			}
 			else {
 				// No compressor nor Archive
-				return StreamUtils.copyToByteArray(bi);
+				StreamUtils.copy(bi, target);
 			}
 		}
+	}
+
+	private boolean isZipArchive(Resource modelResource) {
+		String[] archiveCompressor = detectArchiveAndCompressor(modelResource.getFilename());
+		return ArchiveStreamFactory.ZIP.equals(archiveCompressor[0]) && archiveCompressor[1] == null;
+	}
+
+	/**
+	 * Looks up the model entry in the zip central directory and copies only that entry.
+	 */
+	private void findInZipFile(String modelFileNameInArchive, ZipFile zipFile, OutputStream target) throws IOException {
+		Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+		while (entries.hasMoreElements()) {
+			ZipArchiveEntry entry = entries.nextElement();
+			if (zipFile.canReadEntryData(entry) && !entry.isDirectory() && isModelEntry(modelFileNameInArchive, entry)) {
+				try (InputStream is = zipFile.getInputStream(entry)) {
+					StreamUtils.copy(is, target);
+				}
+				return;
+			}
+		}
+		throw new IllegalArgumentException("No model is found in the archive");
+	}
+
+	private boolean isModelEntry(String modelFileNameInArchive, ArchiveEntry entry) {
+		return (StringUtils.hasText(modelFileNameInArchive) && entry.getName().endsWith(modelFileNameInArchive)) ||
+				(!StringUtils.hasText(modelFileNameInArchive) && entry.getName().endsWith(this.frozenGraphFileExtension));
+	}
+
+	/**
+	 * Resolves the SavedModel directory for the given resource. Local directories are used in place. Archives
+	 * are extracted into the extractionDirectory. If the archive (or directory) contains several SavedModels the
+	 * URI fragment can specify the SavedModel sub-directory (e.g. https://foo/bar/models.tar.gz#my_model/1).
+	 * Otherwise the first directory with a saved_model.pb file is used.
+	 *
+	 * @param modelResource SavedModel directory or archive.
+	 * @param extractionDirectory Directory to extract archives into.
+	 * @return Returns the directory that contains the saved_model.pb file.
+	 */
+	public File getSavedModel(Resource modelResource, File extractionDirectory) {
+
+		Assert.notNull(modelResource, "Not null model resource is required!");
+
+		try {
+			String fragment = modelResource.getURI().getFragment();
+
+			if (modelResource.isFile() && modelResource.getFile().isDirectory()) {
+				return findSavedModelDirectory(modelResource.getFile().toPath(), fragment);
+			}
+
+			String[] archiveCompressor = detectArchiveAndCompressor(modelResource.getFilename());
+			String archive = archiveCompressor[0];
+			String compressor = archiveCompressor[1];
+			Assert.hasText(archive, "The SavedModel must be a directory or an archive");
+
+			try (InputStream is = modelResource.getInputStream();
+				 InputStream bi = new BufferedInputStream(is);
+				 InputStream source = StringUtils.hasText(compressor)
+						 ? new CompressorStreamFactory(true).createCompressorInputStream(compressor, bi) : bi;
+				 ArchiveInputStream ais = new ArchiveStreamFactory().createArchiveInputStream(archive, source)) {
+				extractArchive(ais, extractionDirectory.toPath());
+			}
+
+			return findSavedModelDirectory(extractionDirectory.toPath(), fragment);
+		}
 		catch (Exception e) {
-			throw new IllegalStateException("Failed to extract a model from: " + modelResource.getDescription(), e);
+			throw new IllegalStateException("Failed to extract a saved model from: " + modelResource.getDescription(), e);
+		}
+	}
+
+	/**
+	 * Extracts all archive entries into the target directory.
+	 */
+	private void extractArchive(ArchiveInputStream archive, Path targetDirectory) throws IOException {
+		Path root = targetDirectory.toAbsolutePath().normalize();
+		ArchiveEntry entry;
+		while ((entry = archive.getNextEntry()) != null) {
+			if (!archive.canReadEntryData(entry)) {
+				continue;
+			}
+			Path target = root.resolve(entry.getName()).normalize();
+			if (!target.startsWith(root)) {
+				throw new IOException("Archive entry is outside of the target directory: " + entry.getName());
+			}
+			if (entry.isDirectory()) {
+				Files.createDirectories(target);
+			}
+			else {
+				Files.createDirectories(target.getParent());
+				Files.copy(archive, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	private File findSavedModelDirectory(Path root, String fragment) throws IOException {
+		try (Stream<Path> paths = Files.walk(root)) {
+			return paths
+					.filter(path -> path.getFileName() != null
+							&& SAVED_MODEL_FILE_NAME.equals(path.getFileName().toString()))
+					.map(Path::getParent)
+					.filter(directory -> !StringUtils.hasText(fragment) || directory.endsWith(fragment))
+					.findFirst()
+					.map(Path::toFile)
+					.orElseThrow(() -> new IllegalArgumentException("No " + SAVED_MODEL_FILE_NAME + " found in: " + root));
 		}
 	}
 
@@ -124,18 +541,19 @@ public class ModelExtractor {
 	 * @param modelFileNameInArchive Optional name of the archive entry that represents the frozen model file. If empty
 	 *                               the archive will be searched for the first entry that ends in .pb
 	 * @param archive Archive stream to be traversed
-	 * @return
+	 * @param target Stream to copy the model entry into
 	 * @throws IOException
 	 */
-	private byte[] findInArchiveStream(String modelFileNameInArchive, ArchiveInputStream archive) throws IOException {
+	private void findInArchiveStream(String modelFileNameInArchive, ArchiveInputStream archive, OutputStream target)
+			throws IOException {
 		ArchiveEntry entry;
 		while ((entry = archive.getNextEntry()) != null) {
 			//System.out.println(entry.getName() + " : " + entry.isDirectory());
 
 			if (archive.canReadEntryData(entry) && !entry.isDirectory()) {
-				if ((StringUtils.hasText(modelFileNameInArchive) && entry.getName().endsWith(modelFileNameInArchive)) ||
-						(!StringUtils.hasText(modelFileNameInArchive) && entry.getName().endsWith(this.frozenGraphFileExtension))) {
-					return StreamUtils.copyToByteArray(archive);
+				if (isModelEntry(modelFileNameInArchive, entry)) {
+					StreamUtils.copy(archive, target);
+					return;
 				}
 			}
 		}
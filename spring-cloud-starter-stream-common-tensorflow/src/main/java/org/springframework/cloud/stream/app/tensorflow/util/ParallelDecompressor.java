@@ -0,0 +1,335 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.compress.utils.BoundedInputStream;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Decompresses multi-member gzip and multi-stream bzip2 files (e.g. produced by bgzip or pbzip2) in parallel.
+ *
+ * A gzip member or a bzip2 stream can only be decoded from its start, so the file is scanned for the member header
+ * signatures and split into segments at every candidate offset. The segments are decoded concurrently into temporary
+ * files. A segment is accepted only if it starts at a verified member boundary and decodes into complete members
+ * (the CRC and size checks pass and no byte is left over), which proves that the segment end is a member boundary
+ * too. Segments split by a false signature match fail the decoding and are merged with the following segments and
+ * decoded again sequentially. Single member files are decoded sequentially.
+ *
+ * All data is streamed through fixed size buffers, so the memory use doesn't depend on the model size.
+ *
+ * @author agent
+ */
+public class ParallelDecompressor {
+
+	private static final Log logger = LogFactory.getLog(ParallelDecompressor.class);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final byte[] GZIP_SIGNATURE = { 0x1f, (byte) 0x8b, 0x08 };
+
+	private static final byte[] BZIP2_SIGNATURE = { 'B', 'Z', 'h' };
+
+	private static final byte[] BZIP2_BLOCK_MAGIC = { 0x31, 0x41, 0x59, 0x26, 0x53, 0x59 };
+
+	private static final byte[] BZIP2_END_MAGIC = { 0x17, 0x72, 0x45, 0x38, 0x50, (byte) 0x90 };
+
+	private final int parallelism;
+
+	/**
+	 * @param parallelism Maximum number of segments decoded concurrently.
+	 */
+	public ParallelDecompressor(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * @param compressor Compressor name, as defined by the {@link CompressorStreamFactory}.
+	 * @return true if the compressor format can be decompressed in parallel.
+	 */
+	public static boolean supports(String compressor) {
+		return CompressorStreamFactory.GZIP.equals(compressor) || CompressorStreamFactory.BZIP2.equals(compressor);
+	}
+
+	/**
+	 * Decompresses the source file into the target file.
+	 *
+	 * @param source Compressed file.
+	 * @param compressor Compressor name. Either gz or bzip2.
+	 * @param target File to write the decompressed content into.
+	 * @throws IOException on read or decoding errors.
+	 */
+	public void decompress(File source, String compressor, File target) throws IOException {
+
+		long start = System.nanoTime();
+
+		List<Long> boundaries = findCandidateBoundaries(source, compressor);
+		boundaries.add(source.length());
+		int segments = boundaries.size() - 1;
+
+		if (segments == 1 || this.parallelism == 1) {
+			try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(target.toPath()), BUFFER_SIZE)) {
+				decodeSegment(source, compressor, 0, source.length(), os);
+			}
+		}
+		else {
+			decompressSegments(source, compressor, boundaries, target);
+		}
+
+		report(source, target, segments, System.nanoTime() - start);
+	}
+
+	private void decompressSegments(File source, String compressor, List<Long> boundaries, File target)
+			throws IOException {
+
+		File segmentDirectory = Files.createTempDirectory(target.getParentFile().toPath(), "segments").toFile();
+		ExecutorService executor = Executors.newFixedThreadPool(this.parallelism,
+				new CustomizableThreadFactory("tensorflow-decompress-"));
+		try {
+			// Speculatively decode every segment in parallel
+			List<Future<Path>> decodedSegments = new ArrayList<>();
+			for (int i = 0; i < boundaries.size() - 1; i++) {
+				long from = boundaries.get(i);
+				long to = boundaries.get(i + 1);
+				decodedSegments.add(executor.submit(() -> {
+					Path segment = Files.createTempFile(segmentDirectory.toPath(), "segment", ".out");
+					try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(segment), BUFFER_SIZE)) {
+						decodeSegment(source, compressor, from, to, os);
+						return segment;
+					}
+					catch (IOException e) {
+						// Not a member boundary. The segment is merged with the following ones.
+						Files.deleteIfExists(segment);
+						return null;
+					}
+				}));
+			}
+
+			// Stitch the decoded segments in order, starting from verified member boundaries
+			try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				int i = 0;
+				while (i < decodedSegments.size()) {
+					Path segment = decodedSegments.get(i).get();
+					if (segment != null) {
+						try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+							transfer(in, out);
+						}
+						Files.delete(segment);
+						i++;
+						continue;
+					}
+					i = decodeMerged(source, compressor, boundaries, i, decodedSegments, out);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while decompressing: " + source, e);
+		}
+		catch (ExecutionException e) {
+			throw new IOException("Failed to decompress: " + source, e.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+			FileSystemUtils.deleteRecursively(segmentDirectory);
+		}
+	}
+
+	/**
+	 * Decodes the failed segment merged with the following segments, until the merged range decodes into complete
+	 * members. The last merged range always ends at the end of the file.
+	 * @return the index of the first segment after the merged range.
+	 */
+	private int decodeMerged(File source, String compressor, List<Long> boundaries, int first,
+			List<Future<Path>> decodedSegments, FileChannel out) throws IOException {
+
+		long from = boundaries.get(first);
+		for (int last = first + 1; last < boundaries.size() - 1; last++) {
+			long position = out.position();
+			try {
+				decodeSegment(source, compressor, from, boundaries.get(last + 1),
+						new BufferedOutputStream(Channels.newOutputStream(out), BUFFER_SIZE));
+				discard(decodedSegments, first, last);
+				return last + 1;
+			}
+			catch (IOException e) {
+				// Still not at a member boundary. Roll back the partial output and extend the range.
+				out.truncate(position);
+				out.position(position);
+			}
+		}
+		throw new IOException("Failed to decode the compressed data from offset: " + from);
+	}
+
+	private void discard(List<Future<Path>> decodedSegments, int first, int last) throws IOException {
+		for (int i = first; i <= last; i++) {
+			try {
+				Path segment = decodedSegments.get(i).get();
+				if (segment != null) {
+					Files.deleteIfExists(segment);
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while decompressing", e);
+			}
+			catch (ExecutionException e) {
+				// The segment is already merged
+			}
+		}
+	}
+
+	/**
+	 * Decodes the [from, to) byte range of the source. Fails unless the range holds complete members only.
+	 */
+	private void decodeSegment(File source, String compressor, long from, long to, OutputStream target)
+			throws IOException {
+
+		try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+			channel.position(from);
+			InputStream segment = new BufferedInputStream(
+					new BoundedInputStream(Channels.newInputStream(channel), to - from), BUFFER_SIZE);
+			try (InputStream decoded = new CompressorStreamFactory(true).createCompressorInputStream(compressor, segment)) {
+				StreamUtils.copy(decoded, target);
+			}
+			target.flush();
+		}
+		catch (CompressorException e) {
+			throw new IOException("Failed to decode the range [" + from + ", " + to + ") of: " + source, e);
+		}
+	}
+
+	/**
+	 * Scans the source for the offsets that look like the start of a gzip member or a bzip2 stream.
+	 */
+	private List<Long> findCandidateBoundaries(File source, String compressor) throws IOException {
+		List<Long> candidates = new ArrayList<>();
+		candidates.add(0L);
+		if (this.parallelism == 1) {
+			return candidates;
+		}
+
+		boolean gzip = CompressorStreamFactory.GZIP.equals(compressor);
+		// Number of bytes needed to check a signature
+		int signatureLength = gzip ? GZIP_SIGNATURE.length + 1 : BZIP2_SIGNATURE.length + 1 + BZIP2_BLOCK_MAGIC.length;
+
+		byte[] buffer = new byte[BUFFER_SIZE + signatureLength];
+		try (InputStream in = Files.newInputStream(source.toPath())) {
+			// File offset of the first byte in the buffer
+			long offset = 0;
+			int length = 0;
+			while (true) {
+				int read = in.read(buffer, length, buffer.length - length);
+				boolean eof = read < 0;
+				if (!eof) {
+					length += read;
+				}
+				int scanEnd = eof ? length : length - signatureLength;
+				for (int i = 0; i < scanEnd; i++) {
+					if (offset + i > 0 && (gzip ? isGzipMember(buffer, i, length) : isBzip2Stream(buffer, i, length))) {
+						candidates.add(offset + i);
+					}
+				}
+				if (eof) {
+					break;
+				}
+				if (scanEnd > 0) {
+					// Keep the tail that is too short to be checked yet
+					System.arraycopy(buffer, scanEnd, buffer, 0, length - scanEnd);
+					offset += scanEnd;
+					length -= scanEnd;
+				}
+			}
+		}
+		return candidates;
+	}
+
+	private static boolean isGzipMember(byte[] buffer, int index, int length) {
+		// Magic, deflate method and zero reserved FLG bits
+		return index + GZIP_SIGNATURE.length < length
+				&& startsWith(buffer, index, length, GZIP_SIGNATURE)
+				&& (buffer[index + GZIP_SIGNATURE.length] & 0xE0) == 0;
+	}
+
+	private static boolean isBzip2Stream(byte[] buffer, int index, int length) {
+		// Magic, block size digit, followed by a block or an end of stream magic
+		if (!startsWith(buffer, index, length, BZIP2_SIGNATURE) || index + BZIP2_SIGNATURE.length >= length) {
+			return false;
+		}
+		byte blockSize = buffer[index + BZIP2_SIGNATURE.length];
+		int magicIndex = index + BZIP2_SIGNATURE.length + 1;
+		return blockSize >= '1' && blockSize <= '9'
+				&& (startsWith(buffer, magicIndex, length, BZIP2_BLOCK_MAGIC)
+				|| startsWith(buffer, magicIndex, length, BZIP2_END_MAGIC));
+	}
+
+	private static boolean startsWith(byte[] buffer, int index, int length, byte[] magic) {
+		if (index + magic.length > length) {
+			return false;
+		}
+		for (int j = 0; j < magic.length; j++) {
+			if (buffer[index + j] != magic[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void transfer(FileChannel in, FileChannel out) throws IOException {
+		long size = in.size();
+		long transferred = 0;
+		while (transferred < size) {
+			transferred += in.transferTo(transferred, size - transferred, out);
+		}
+	}
+
+	private void report(File source, File target, int segments, long durationNanos) {
+		if (logger.isInfoEnabled()) {
+			double seconds = Math.max(durationNanos, 1) / 1e9;
+			double compressedMb = source.length() / (1024.0 * 1024.0);
+			double decompressedMb = target.length() / (1024.0 * 1024.0);
+			logger.info(String.format("Decompressed %.1f MB into %.1f MB in %.2f s (%.1f MB/s compressed, " +
+							"%.1f MB/s decompressed), segments: %d, parallelism: %d", compressedMb, decompressedMb,
+					seconds, compressedMb / seconds, decompressedMb / seconds, segments, this.parallelism));
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tensorflow.Tensor;
+
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loads the linear regression SavedModel fixtures. The "serving_default" signature maps the x input to the
+ * Placeholder, and the y output to the add (W * x + b) tensor, or to the mul (W * x) tensor in models/b/1.
+ *
+ * @author agent
+ */
+public class SavedModelTests {
+
+	private static final float W = -0.9999969f;
+
+	private static final float B = 0.9999908f;
+
+	private TensorflowCommonProcessorProperties properties;
+
+	@Before
+	public void before() {
+		this.properties = new TensorflowCommonProcessorProperties();
+		this.properties.getSavedModel().setEnabled(true);
+	}
+
+	@Test
+	public void savedModelDirectory() {
+		assertEquals(W * 0.7f + B, evaluate("file:src/test/resources/tensorflow/saved_model/linear_regression", "y"),
+				1e-6f);
+	}
+
+	@Test
+	public void savedModelArchive() {
+		// Both archived models compute y from the same graph, the first one found is used
+		float y = evaluate("file:src/test/resources/tensorflow/saved_model.tar.gz", "y");
+		assertTrue(Math.abs(y - (W * 0.7f + B)) < 1e-6f || Math.abs(y - W * 0.7f) < 1e-6f);
+	}
+
+	@Test
+	public void savedModelArchiveFragmentSelectsTheModel() {
+		assertEquals(W * 0.7f + B, evaluate("file:src/test/resources/tensorflow/saved_model.tar.gz#models/a/1", "y"),
+				1e-6f);
+		assertEquals(W * 0.7f, evaluate("file:src/test/resources/tensorflow/saved_model.tar.gz#models/b/1", "y"),
+				1e-6f);
+	}
+
+	@Test
+	public void signatureOutputsAreFetchedByDefault() {
+		TensorflowModel model = TensorflowModel.load(resource(
+				"file:src/test/resources/tensorflow/saved_model/linear_regression"), this.properties);
+		try (Tensor<?> x = Tensor.create(0.7f)) {
+			Map<String, Tensor<?>> outputs = model.run(Collections.singletonMap("x", x), Collections.emptyList());
+			try (Tensor<?> y = outputs.get("y")) {
+				assertEquals(Collections.singleton("y"), outputs.keySet());
+				assertEquals(W * 0.7f + B, y.floatValue(), 1e-6f);
+			}
+		}
+		finally {
+			model.release();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownSignatureIsRejected() {
+		this.properties.getSavedModel().setSignature("unknown");
+		TensorflowModel.load(resource("file:src/test/resources/tensorflow/saved_model/linear_regression"),
+				this.properties);
+	}
+
+	private float evaluate(String location, String output) {
+		TensorFlowService tensorFlowService = new TensorFlowService(resource(location), this.properties);
+		try (Tensor<?> y = tensorFlowService.evaluate(Collections.singletonMap("x", 0.7f),
+				Collections.singletonList(output)).get(output)) {
+			return y.floatValue();
+		}
+		finally {
+			tensorFlowService.close();
+		}
+	}
+
+	private static Resource resource(String location) {
+		return new DefaultResourceLoader().getResource(location);
+	}
+}
@@ -16,21 +16,39 @@
 
 package org.springframework.cloud.stream.app.tensorflow.util;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import com.sun.net.httpserver.HttpServer;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Christian Tzolov
  */
 public class ModelExtractorTest {
 
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	@BeforeClass
 	public static void beforeClass() {
 		// disabling HTTPS checks: https://stackoverflow.com/questions/19540289/how-to-fix-the-java-security-cert-certificateexception-no-subject-alternative
@@ -93,4 +111,128 @@ public class ModelExtractorTest {
 				.getModel("https://download.tensorflow.org/models/deeplabv3_mnv2_pascal_train_aug_2018_01_29.tar.gz");
 		assertThat(model.length, is(8773281));
 	}
+
+	@Test
+	public void cachedTarGzipArchive() throws IOException {
+		File cacheDirectory = temporaryFolder.newFolder("model-cache");
+		String modelUri = "file:src/test/resources/tensorflow/model.tar.gz#linear_regression_graph.proto";
+
+		byte[] model1 = new ModelExtractor(".pb", cacheDirectory).getModel(modelUri);
+		assertThat(model1.length, is(422));
+		assertThat(cacheDirectory.listFiles().length, is(1));
+
+		byte[] model2 = new ModelExtractor(".pb", cacheDirectory).getModel(modelUri);
+		assertThat(model2, equalTo(model1));
+		assertThat(cacheDirectory.listFiles().length, is(1));
+	}
+
+	@Test
+	public void cachedZipArchiveWithCustomExtension() throws IOException {
+		File cacheDirectory = temporaryFolder.newFolder("model-cache");
+
+		byte[] model = new ModelExtractor(".proto", cacheDirectory).getModel("classpath:/tensorflow/model.zip");
+		assertThat(model.length, is(422));
+		assertThat(cacheDirectory.listFiles().length, is(1));
+	}
+
+	@Test
+	public void newVersionReplacesTheCachedVersion() throws IOException {
+		File cacheDirectory = temporaryFolder.newFolder("model-cache");
+		File modelFile = temporaryFolder.newFile("model.tar.gz");
+		Files.copy(new File("src/test/resources/tensorflow/model.tar.gz").toPath(), modelFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		String modelUri = modelFile.toURI() + "#linear_regression_graph.proto";
+
+		new ModelExtractor(".pb", cacheDirectory).getModel(modelUri);
+		File[] firstVersion = cacheDirectory.listFiles();
+		assertThat(firstVersion.length, is(1));
+
+		assertTrue(modelFile.setLastModified(modelFile.lastModified() + 10000));
+		byte[] model = new ModelExtractor(".pb", cacheDirectory).getModel(modelUri);
+		assertThat(model.length, is(422));
+		File[] secondVersion = cacheDirectory.listFiles();
+		assertThat(secondVersion.length, is(1));
+		assertThat(secondVersion[0].getName(), not(equalTo(firstVersion[0].getName())));
+	}
+
+	@Test
+	public void unversionedHttpModelIsNotCached() throws IOException {
+		byte[] modelBytes = Files.readAllBytes(
+				new File("src/test/resources/tensorflow/model/linear_regression_graph.proto").toPath());
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		// Rejects the HEAD requests and serves the model without ETag and Last-Modified headers
+		server.createContext("/", exchange -> {
+			if ("HEAD".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+			}
+			else {
+				exchange.sendResponseHeaders(200, modelBytes.length);
+				try (OutputStream body = exchange.getResponseBody()) {
+					body.write(modelBytes);
+				}
+			}
+			exchange.close();
+		});
+		server.start();
+		try {
+			File cacheDirectory = temporaryFolder.newFolder("model-cache");
+			byte[] model = new ModelExtractor(".proto", cacheDirectory).getModel(
+					"http://localhost:" + server.getAddress().getPort() + "/linear_regression_graph.proto");
+			assertThat(model, equalTo(modelBytes));
+			assertThat(cacheDirectory.listFiles().length, is(0));
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void spooledTarGzipArchive() {
+		byte[] model = new ModelExtractor(".pb", null, 2)
+				.getModel("file:src/test/resources/tensorflow/model.tar.gz#linear_regression_graph.proto");
+		assertThat(model.length, is(422));
+	}
+
+	@Test
+	public void savedModelDirectoryIsUsedInPlace() throws IOException {
+		File directory = new ModelExtractor().getSavedModel(
+				new FileSystemResource("src/test/resources/tensorflow/saved_model/linear_regression"),
+				temporaryFolder.newFolder("saved-model"));
+		assertThat(directory.getCanonicalFile(),
+				equalTo(new File("src/test/resources/tensorflow/saved_model/linear_regression").getCanonicalFile()));
+	}
+
+	@Test
+	public void savedModelArchiveIsExtracted() throws IOException {
+		File extractionDirectory = temporaryFolder.newFolder("saved-model");
+		File directory = new ModelExtractor().getSavedModel(
+				new DefaultResourceLoader().getResource("file:src/test/resources/tensorflow/saved_model.tar.gz"),
+				extractionDirectory);
+		// Without a fragment, any of the archived SavedModels
+		assertTrue(directory.toPath().startsWith(extractionDirectory.toPath()));
+		assertTrue(new File(directory, ModelExtractor.SAVED_MODEL_FILE_NAME).isFile());
+	}
+
+	@Test
+	public void savedModelArchiveWithFragment() throws IOException {
+		File extractionDirectory = temporaryFolder.newFolder("saved-model");
+		File directory = new ModelExtractor().getSavedModel(
+				new DefaultResourceLoader().getResource("file:src/test/resources/tensorflow/saved_model.tar.gz#models/b/1"),
+				extractionDirectory);
+		assertThat(directory, equalTo(new File(extractionDirectory, "models/b/1")));
+	}
+
+	@Test
+	public void savedModelArchiveEntriesOutsideOfTheDirectoryAreRejected() throws IOException {
+		File extractionDirectory = temporaryFolder.newFolder("saved-model");
+		try {
+			new ModelExtractor().getSavedModel(new DefaultResourceLoader()
+					.getResource("file:src/test/resources/tensorflow/saved_model_traversal.tar.gz"), extractionDirectory);
+			fail("The ../escaped/saved_model.pb entry must be rejected");
+		}
+		catch (IllegalStateException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertFalse(new File(extractionDirectory.getParentFile(), "escaped").exists());
+	}
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.util;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author agent
+ */
+public class ParallelDecompressorTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void multiMemberGzip() throws IOException {
+		byte[] content = content();
+		File compressed = temporaryFolder.newFile("model.pb.gz");
+		try (OutputStream os = Files.newOutputStream(compressed.toPath())) {
+			for (int offset = 0; offset < content.length; offset += 100_000) {
+				GZIPOutputStream member = new GZIPOutputStream(os);
+				member.write(content, offset, Math.min(100_000, content.length - offset));
+				member.finish();
+			}
+		}
+
+		File target = temporaryFolder.newFile("model.pb");
+		new ParallelDecompressor(4).decompress(compressed, CompressorStreamFactory.GZIP, target);
+
+		assertThat(Files.readAllBytes(target.toPath()), equalTo(content));
+	}
+
+	@Test
+	public void multiStreamBzip2() throws IOException {
+		byte[] content = content();
+		File compressed = temporaryFolder.newFile("model.pb.bz2");
+		try (OutputStream os = Files.newOutputStream(compressed.toPath())) {
+			for (int offset = 0; offset < content.length; offset += 100_000) {
+				BZip2CompressorOutputStream stream = new BZip2CompressorOutputStream(new NonClosingOutputStream(os));
+				stream.write(content, offset, Math.min(100_000, content.length - offset));
+				stream.close();
+			}
+		}
+
+		File target = temporaryFolder.newFile("model.pb");
+		new ParallelDecompressor(4).decompress(compressed, CompressorStreamFactory.BZIP2, target);
+
+		assertThat(Files.readAllBytes(target.toPath()), equalTo(content));
+	}
+
+	@Test
+	public void singleMemberGzip() throws IOException {
+		byte[] content = content();
+		File compressed = temporaryFolder.newFile("model.pb.gz");
+		try (GZIPOutputStream os = new GZIPOutputStream(Files.newOutputStream(compressed.toPath()))) {
+			os.write(content);
+		}
+
+		File target = temporaryFolder.newFile("model.pb");
+		new ParallelDecompressor(4).decompress(compressed, CompressorStreamFactory.GZIP, target);
+
+		assertThat(Files.readAllBytes(target.toPath()), equalTo(content));
+	}
+
+	private static byte[] content() {
+		// Random content contains false member signatures in the compressed data as well
+		byte[] content = new byte[1_000_000];
+		new Random(42).nextBytes(content);
+		return content;
+	}
+
+	private static class NonClosingOutputStream extends FilterOutputStream {
+
+		NonClosingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
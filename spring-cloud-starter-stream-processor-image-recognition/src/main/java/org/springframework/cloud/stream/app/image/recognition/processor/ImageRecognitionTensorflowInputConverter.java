@@ -16,7 +16,8 @@
 
 package org.springframework.cloud.stream.app.image.recognition.processor;
 
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 
 import org.apache.commons.logging.Log;
@@ -27,12 +28,12 @@ import org.tensorflow.Output;
 import org.tensorflow.Session;
 import org.tensorflow.Tensor;
 
-import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowInputConverter;
+import org.springframework.cloud.stream.app.tensorflow.processor.BatchableTensorflowInputConverter;
 
 /**
  * @author Christian Tzolov
  */
-public class ImageRecognitionTensorflowInputConverter implements TensorflowInputConverter, AutoCloseable {
+public class ImageRecognitionTensorflowInputConverter implements BatchableTensorflowInputConverter, AutoCloseable {
 
 	private static final Log logger = LogFactory.getLog(ImageRecognitionTensorflowInputConverter.class);
 
@@ -83,15 +84,18 @@ public class ImageRecognitionTensorflowInputConverter implements TensorflowInput
 		}
 	}
 
+	@Override
+	public Collection<String> getBatchedFeedNames() {
+		// All images are normalized to the same [1, H, W, 3] shape and can always be stacked.
+		return Collections.singletonList("input");
+	}
+
 	@Override
 	public Map<String, Object> convert(Object input, Map<String, Object> processorContext) {
 
 		if (input instanceof byte[]) {
 			Tensor inputImageTensor = constructAndExecuteGraphToNormalizeImage3((byte[]) input);
-			Map<String, Object> inputMap = new HashMap<>();
-			inputMap.put("input", inputImageTensor);
-
-			return inputMap;
+			return Collections.singletonMap("input", inputImageTensor);
 		}
 
 		throw new IllegalArgumentException("Unsupported payload type: " + input);
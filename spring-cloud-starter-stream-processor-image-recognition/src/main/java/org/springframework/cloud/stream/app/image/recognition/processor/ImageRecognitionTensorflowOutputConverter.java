@@ -30,6 +30,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.tensorflow.Tensor;
 
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorView;
 import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowOutputConverter;
 import org.springframework.core.io.Resource;
 import org.springframework.util.Assert;
@@ -70,11 +71,10 @@ public class ImageRecognitionTensorflowOutputConverter implements TensorflowOutp
 									"instead it produced one with shape %s",
 							Arrays.toString(rshape)));
 		}
-		int labelsCount = (int) rshape[1];
-
-		float[][] resultMatrix = new float[1][labelsCount];
-
-		float[] labelProbabilities = ((float[][])tensor.copyTo(resultMatrix))[0];
+		float[] labelProbabilities;
+		try (Tensor<?> outputTensor = tensor; TensorView view = TensorView.of(outputTensor)) {
+			labelProbabilities = view.toFloatArray();
+		}
 
 		List<String> entries = new ArrayList<>();
 		if (responseSize == 1) {
@@ -27,8 +27,10 @@ import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowCommo
 import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowCommonProcessorProperties;
 import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowInputConverter;
 import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowOutputConverter;
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowStartup;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Import;
 
 /**
@@ -51,15 +53,17 @@ public class ObjectDetectionProcessorConfiguration {
 	private TensorflowCommonProcessorProperties commonProperties;
 
 	@Bean
-	public TensorflowOutputConverter tensorflowOutputConverter() {
+	@DependsOn("tensorFlowService")
+	public TensorflowOutputConverter tensorflowOutputConverter(TensorflowStartup tensorflowStartup) {
 		if (logger.isInfoEnabled()) {
 			logger.info("Load ObjectDetectionTensorflowOutputConverter " + properties.getLabels());
 		}
-		return new ObjectDetectionTensorflowOutputConverter(properties.getLabels(),
-				properties.getConfidence(), commonProperties.getModelFetch());
+		return tensorflowStartup.time("labels", () -> new ObjectDetectionTensorflowOutputConverter(
+				properties.getLabels(), properties.getConfidence(), commonProperties.getModelFetch()));
 	}
 
 	@Bean
+	@DependsOn("tensorFlowService")
 	public TensorflowInputConverter tensorflowInputConverter() {
 		logger.info("Load ObjectDetectionTensorflowInputConverter");
 		return new ObjectDetectionTensorflowInputConverter();
@@ -21,7 +21,8 @@ import java.awt.image.DataBufferByte;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import javax.imageio.ImageIO;
 
@@ -30,15 +31,18 @@ import org.apache.commons.logging.LogFactory;
 import org.tensorflow.Tensor;
 import org.tensorflow.types.UInt8;
 
-import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowInputConverter;
+import org.springframework.cloud.stream.app.tensorflow.processor.BatchableTensorflowInputConverter;
 
 /**
  * Converts byte array image into a input Tensor for the Object Detection API. The computed image tensors uses the
  * 'image_tensor' model placeholder.
  *
+ * Every image is converted with batch size 1. When batching is enabled, the images with the same size are stacked
+ * along the batch dimension.
+ *
  * @author Christian Tzolov
  */
-public class ObjectDetectionTensorflowInputConverter implements TensorflowInputConverter {
+public class ObjectDetectionTensorflowInputConverter implements BatchableTensorflowInputConverter {
 
 	private static final Log logger = LogFactory.getLog(ObjectDetectionTensorflowInputConverter.class);
 
@@ -46,16 +50,18 @@ public class ObjectDetectionTensorflowInputConverter implements TensorflowInputC
 	private static final long CHANNELS = 3;
 	public static final String IMAGE_TENSOR_FEED_NAME = "image_tensor";
 
+	@Override
+	public Collection<String> getBatchedFeedNames() {
+		return Collections.singletonList(IMAGE_TENSOR_FEED_NAME);
+	}
+
 	@Override
 	public Map<String, Object> convert(Object input, Map<String, Object> processorContext) {
 
 		if (input instanceof byte[]) {
 			try {
 				Tensor inputImageTensor = makeImageTensor((byte[]) input);
-				Map<String, Object> inputMap = new HashMap<>();
-				inputMap.put(IMAGE_TENSOR_FEED_NAME, inputImageTensor);
-
-				return inputMap;
+				return Collections.singletonMap(IMAGE_TENSOR_FEED_NAME, inputImageTensor);
 			}
 			catch (IOException e) {
 				throw new IllegalArgumentException("Incorrect image format", e);
@@ -19,6 +19,7 @@ package org.springframework.cloud.stream.app.object.detection.processor;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,7 @@ import org.tensorflow.Tensor;
 
 import org.springframework.cloud.stream.app.object.detection.mocel.ObjectDetection;
 import org.springframework.cloud.stream.app.object.detection.protos.StringIntLabelMapOuterClass;
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorView;
 import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowOutputConverter;
 import org.springframework.core.io.Resource;
 import org.springframework.util.Assert;
@@ -122,47 +124,42 @@ public class ObjectDetectionTensorflowOutputConverter implements TensorflowOutpu
 
 		try (Tensor<Float> scoresTensor = tensorMap.get(DETECTION_SCORES).expect(Float.class);
 			 Tensor<Float> classesTensor = tensorMap.get(DETECTION_CLASSES).expect(Float.class);
-			 Tensor<Float> boxesTensor = tensorMap.get(DETECTION_BOXES).expect(Float.class)
+			 Tensor<Float> boxesTensor = tensorMap.get(DETECTION_BOXES).expect(Float.class);
+			 TensorView scoresView = TensorView.of(scoresTensor);
+			 TensorView classesView = TensorView.of(classesTensor);
+			 TensorView boxesView = TensorView.of(boxesTensor);
+			 TensorView masksView = maskView(tensorMap)
 		) {
 			// All these tensors have:
 			// - 1 as the first dimension
 			// - maxObjects as the second dimension
 			// While boxesT will have 4 as the third dimension (2 sets of (x, y) coordinates).
 			// This can be verified by looking at scoresT.shape() etc.
-			int maxObjects = (int) scoresTensor.shape()[1];
-			float[] scores = scoresTensor.copyTo(new float[1][maxObjects])[0];
-			float[] classes = classesTensor.copyTo(new float[1][maxObjects])[0];
-			float[][] boxes = boxesTensor.copyTo(new float[1][maxObjects][4])[0];
+			TensorView scores = scoresView.slice(0);
+			TensorView classes = classesView.slice(0);
+			TensorView boxes = boxesView.slice(0);
+			TensorView masks = (masksView != null) ? masksView.slice(0) : null;
 
 			List<ObjectDetection> objectDetections = new ArrayList<>();
 
 			// Collect only the objects whose scores are at above the configured confidence threshold.
-			for (int i = 0; i < scores.length; ++i) {
-				if (scores[i] >= confidence) {
-					String category = labels[(int) classes[i]];
-					float score = scores[i];
+			for (int i = 0; i < scores.size(); ++i) {
+				float score = scores.getFloat(i);
+				if (score >= confidence) {
+					int cid = (int) classes.getFloat(i);
 
 					ObjectDetection od = new ObjectDetection();
-					od.setName(category);
+					od.setName(labels[cid]);
 					od.setConfidence(score);
-					od.setX1(boxes[i][1]);
-					od.setY1(boxes[i][0]);
-					od.setX2(boxes[i][3]);
-					od.setY2(boxes[i][2]);
-					od.setCid((int) classes[i]);
+					od.setX1(boxes.getFloat(i, 1));
+					od.setY1(boxes.getFloat(i, 0));
+					od.setX2(boxes.getFloat(i, 3));
+					od.setY2(boxes.getFloat(i, 2));
+					od.setCid(cid);
 
 					// Mask allows image-segmentation
-					if (modelFetch.contains(DETECTION_MASKS) && modelFetch.contains(NUM_DETECTIONS)) {
-						Tensor<Float> masksTensor = tensorMap.get(DETECTION_MASKS).expect(Float.class);
-						Tensor<Float> numDetections = tensorMap.get(NUM_DETECTIONS).expect(Float.class);
-						float nd = numDetections.copyTo(new float[1])[0];
-
-						if (masksTensor != null) {
-							long[] shape = masksTensor.shape();
-							float[][][] masks = masksTensor.copyTo(new float[(int) shape[0]][(int) shape[1]][(int) shape[2]][(int) shape[3]])[0];
-							od.setMask(masks[i]);
-							logger.info(String.format("Num detections: %s, Masks: %s", nd, masks));
-						}
+					if (masks != null) {
+						od.setMask(toMatrix(masks.slice(i)));
 					}
 
 					objectDetections.add(od);
@@ -172,4 +169,39 @@ public class ObjectDetectionTensorflowOutputConverter implements TensorflowOutpu
 			return objectDetections;
 		}
 	}
+
+	/**
+	 * Closes the masks and the num_detections tensors, once viewed.
+	 *
+	 * @return view of the detection masks, or null if the model doesn't fetch them.
+	 */
+	private TensorView maskView(Map<String, Tensor<?>> tensorMap) {
+		if (!modelFetch.contains(DETECTION_MASKS) || !modelFetch.contains(NUM_DETECTIONS)) {
+			return null;
+		}
+		try (Tensor<?> masksTensor = tensorMap.get(DETECTION_MASKS);
+			 Tensor<?> numDetectionsTensor = tensorMap.get(NUM_DETECTIONS)) {
+			if (masksTensor == null) {
+				return null;
+			}
+			if (logger.isDebugEnabled() && numDetectionsTensor != null) {
+				try (TensorView numDetections = TensorView.of(numDetectionsTensor.expect(Float.class))) {
+					logger.debug(String.format("Num detections: %s, Masks: %s", numDetections.getFloat(0),
+							Arrays.toString(masksTensor.shape())));
+				}
+			}
+			return TensorView.of(masksTensor.expect(Float.class));
+		}
+	}
+
+	/**
+	 * Copies a single mask, the only nested array the {@link ObjectDetection} keeps.
+	 */
+	private static float[][] toMatrix(TensorView mask) {
+		float[][] matrix = new float[mask.shape(0)][];
+		for (int row = 0; row < matrix.length; row++) {
+			matrix[row] = mask.slice(row).toFloatArray();
+		}
+		return matrix;
+	}
 }
@@ -40,6 +40,7 @@ import org.apache.commons.logging.LogFactory;
 import org.springframework.cloud.stream.app.pose.estimation.model.Limb;
 import org.springframework.cloud.stream.app.pose.estimation.model.Model;
 import org.springframework.cloud.stream.app.pose.estimation.model.Part;
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorView;
 import org.springframework.cloud.stream.app.tensorflow.util.GraphicsUtils;
 
 /**
@@ -58,7 +59,7 @@ public class DebugVisualizationUtility {
 	private static final int OVAL_WIDTH = 6;
 	private static final int OVAL_HEIGHT = 6;
 
-	public static void visualizeAllPafHeatMapChannels(byte[] inputImage, float[][][] tensorData, String debugImageFilePath) {
+	public static void visualizeAllPafHeatMapChannels(byte[] inputImage, TensorView tensorData, String debugImageFilePath) {
 		byte[] partHeatmap = inputImage;
 		int heatmapColor = 0;
 		for (Model.PartType partType : Model.PartType.values()) {
@@ -69,15 +70,15 @@ public class DebugVisualizationUtility {
 	}
 
 	private static byte[] drawPartHeatmap(byte[] imageBytes, Model.PartType partType,
-			float[][][] outputTensor, Color color) {
+			TensorView outputTensor, Color color) {
 
 		return new ImageGraphicsTemplate() {
 			@Override
 			public void drawWithingImage(Graphics2D g) {
 				g.setColor(color);
-				for (int x = 0; x < outputTensor.length; x++) {
-					for (int y = 0; y < outputTensor[0].length; y++) {
-						float partScore = outputTensor[x][y][partType.getId()];
+				for (int x = 0; x < outputTensor.shape(0); x++) {
+					for (int y = 0; y < outputTensor.shape(1); y++) {
+						float partScore = outputTensor.getFloat(x, y, partType.getId());
 						g.fillOval(y * 8, x * 8, (int) (15 * partScore), (int) (15 * partScore));
 					}
 				}
@@ -85,7 +86,7 @@ public class DebugVisualizationUtility {
 		}.draw(imageBytes);
 	}
 
-	public static void visualizeAllPafChannels(byte[] inputImage, float[][][] tensorData, String debugImageFilePath) {
+	public static void visualizeAllPafChannels(byte[] inputImage, TensorView tensorData, String debugImageFilePath) {
 		byte[] pafFieldImage = inputImage;
 		int pafColor = 0;
 		for (Model.LimbType pafLimbType : Model.LimbType.values()) {
@@ -96,16 +97,16 @@ public class DebugVisualizationUtility {
 
 	}
 
-	private static byte[] drawPafField(byte[] imageBytes, Model.LimbType limbType, float[][][] outputTensor, Color color) {
+	private static byte[] drawPafField(byte[] imageBytes, Model.LimbType limbType, TensorView outputTensor, Color color) {
 
 		return new ImageGraphicsTemplate() {
 			@Override
 			public void drawWithingImage(Graphics2D g) {
 				g.setColor(color);
-				for (int x = 0; x < outputTensor.length; x++) {
-					for (int y = 0; y < outputTensor[0].length; y++) {
-						float pafX = outputTensor[x][y][limbType.getPafIndexX()];
-						float pafY = outputTensor[x][y][limbType.getPafIndexY()];
+				for (int x = 0; x < outputTensor.shape(0); x++) {
+					for (int y = 0; y < outputTensor.shape(1); y++) {
+						float pafX = outputTensor.getFloat(x, y, limbType.getPafIndexX());
+						float pafY = outputTensor.getFloat(x, y, limbType.getPafIndexY());
 
 						if (pafX > 0.1f || pafY > 0.1f) {
 							g.draw(new Line2D.Double(y * 8, x * 8, (y + 2 * pafY) * 8, (x + 3 * pafX) * 8));
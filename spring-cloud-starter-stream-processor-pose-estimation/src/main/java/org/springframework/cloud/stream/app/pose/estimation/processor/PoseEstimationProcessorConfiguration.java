@@ -29,6 +29,7 @@ import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowInput
 import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowOutputConverter;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Import;
 
 /**
@@ -49,6 +50,7 @@ public class PoseEstimationProcessorConfiguration {
 	private TensorflowCommonProcessorProperties commonProperties;
 
 	@Bean
+	@DependsOn("tensorFlowService")
 	public TensorflowOutputConverter tensorflowOutputConverter() {
 		if (logger.isInfoEnabled()) {
 			logger.info("Load PoseEstimationTensorflowOutputConverter ");
@@ -57,6 +59,7 @@ public class PoseEstimationProcessorConfiguration {
 	}
 
 	@Bean
+	@DependsOn("tensorFlowService")
 	public TensorflowInputConverter tensorflowInputConverter() {
 		logger.info("Load PoseEstimationTensorflowInputConverter");
 		return new PoseEstimationTensorflowInputConverter(poseProperties);
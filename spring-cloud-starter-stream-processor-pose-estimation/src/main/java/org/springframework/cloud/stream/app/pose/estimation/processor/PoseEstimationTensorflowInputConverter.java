@@ -21,7 +21,8 @@ import java.awt.image.DataBufferInt;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.FloatBuffer;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 
 import javax.imageio.ImageIO;
@@ -30,16 +31,19 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.tensorflow.Tensor;
 
-import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowInputConverter;
+import org.springframework.cloud.stream.app.tensorflow.processor.BatchableTensorflowInputConverter;
 import org.springframework.cloud.stream.app.tensorflow.util.GraphicsUtils;
 
 /**
  * Converts byte array image into a input Tensor for the Pose Estimation API. The computed image tensors uses the
  * 'image' model placeholder.
  *
+ * Every image is converted with batch size 1. When batching is enabled, the images with the same size are stacked
+ * along the batch dimension.
+ *
  * @author Christian Tzolov
  */
-public class PoseEstimationTensorflowInputConverter implements TensorflowInputConverter {
+public class PoseEstimationTensorflowInputConverter implements BatchableTensorflowInputConverter {
 
 	private static final Log logger = LogFactory.getLog(PoseEstimationTensorflowInputConverter.class);
 
@@ -54,20 +58,22 @@ public class PoseEstimationTensorflowInputConverter implements TensorflowInputCo
 		this.properties = properties;
 	}
 
+	@Override
+	public Collection<String> getBatchedFeedNames() {
+		return Collections.singletonList(IMAGE_TENSOR_FEED_NAME);
+	}
+
 	@Override
 	public Map<String, Object> convert(Object input, Map<String, Object> processorContext) {
 
 		if (input instanceof byte[]) {
 			try {
 				Tensor inputImageTensor = makeImageTensor((byte[]) input);
-				Map<String, Object> inputMap = new HashMap<>();
-				inputMap.put(IMAGE_TENSOR_FEED_NAME, inputImageTensor);
-
 				if (properties.isDebugVisualisationEnabled()) {
 					processorContext.put("inputImage", input);
 				}
 
-				return inputMap;
+				return Collections.singletonMap(IMAGE_TENSOR_FEED_NAME, inputImageTensor);
 			}
 			catch (IOException e) {
 				throw new IllegalArgumentException("Incorrect image format", e);
@@ -35,6 +35,7 @@ import org.springframework.cloud.stream.app.pose.estimation.model.Body;
 import org.springframework.cloud.stream.app.pose.estimation.model.Limb;
 import org.springframework.cloud.stream.app.pose.estimation.model.Model;
 import org.springframework.cloud.stream.app.pose.estimation.model.Part;
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorView;
 import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowOutputConverter;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
@@ -63,16 +64,17 @@ public class PoseEstimationTensorflowOutputConverter implements TensorflowOutput
 	@Override
 	public List<Body> convert(Map<String, Tensor<?>> tensorMap, Map<String, Object> processorContext) {
 
-		try (Tensor<Float> openPoseOutputTensor = tensorMap.get(this.modelFetchOutput).expect(Float.class)) {
+		try (Tensor<Float> openPoseOutputTensor = tensorMap.get(this.modelFetchOutput).expect(Float.class);
+			 TensorView openPoseOutput = TensorView.of(openPoseOutputTensor)) {
 
-			int height = (int) openPoseOutputTensor.shape()[1]; // = input image's height / 8;
-			int width = (int) openPoseOutputTensor.shape()[2]; //  = input image's width / 8;
-			int heatmapPafmapCount = (int) openPoseOutputTensor.shape()[3]; // HeatMapCount + PafMapCount = 57 layers
+			int height = openPoseOutput.shape(1); // = input image's height / 8;
+			int width = openPoseOutput.shape(2); //  = input image's width / 8;
+			int heatmapPafmapCount = openPoseOutput.shape(3); // HeatMapCount + PafMapCount = 57 layers
 
 			Assert.isTrue(heatmapPafmapCount == 57, "Incorrect number of output tensor layer");
 
 			// [H] [W] [Heat + PAF]
-			float[][][] tensorData = openPoseOutputTensor.copyTo(new float[1][height][width][heatmapPafmapCount])[0];
+			TensorView tensorData = openPoseOutput.slice(0);
 
 			if (poseProperties.isDebugVisualisationEnabled()) {
 				byte[] inputImage = (byte[]) processorContext.get("inputImage");
@@ -159,7 +161,7 @@ public class PoseEstimationTensorflowOutputConverter implements TensorflowOutput
 	 * @return Returns a list of part candidates for the given Part Type.
 	 */
 	private List<Part> findHighConfidenceParts(Model.PartType partType, int height, int width,
-			float[][][] outputTensor) {
+			TensorView outputTensor) {
 
 		final int minNmsRadius = -(poseProperties.getNmsWindowSize() - 1) / 2;
 		final int maxNmsRadius = (poseProperties.getNmsWindowSize() + 1) / 2;
@@ -171,11 +173,11 @@ public class PoseEstimationTensorflowOutputConverter implements TensorflowOutput
 				float maxPartScore = 0;
 				for (int stepY = minNmsRadius; stepY < maxNmsRadius; stepY++) {
 					for (int stepX = minNmsRadius; stepX < maxNmsRadius; stepX++) {
-						maxPartScore = Math.max(maxPartScore, outputTensor[y + stepY][x + stepX][partType.getId()]);
+						maxPartScore = Math.max(maxPartScore, outputTensor.getFloat(y + stepY, x + stepX, partType.getId()));
 					}
 				}
 				if (maxPartScore > poseProperties.getNmsThreshold()) {
-					if (maxPartScore == outputTensor[y][x][partType.getId()]) {
+					if (maxPartScore == outputTensor.getFloat(y, x, partType.getId())) {
 						// Add another name center to the list (e.g. remember the cell with the higher score)
 						partsPerType.add(new Part(partType, partsPerType.size(), y, x, maxPartScore));
 					}
@@ -199,7 +201,7 @@ public class PoseEstimationTensorflowOutputConverter implements TensorflowOutput
 	 * @return Returns a list of Limb candidates sorted by their total PAF score in a descending order.
 	 */
 	private PriorityQueue<Limb> findLimbCandidates(Model.LimbType limbType, List<Part> fromParts, List<Part> toParts,
-			float[][][] outputTensor) {
+			TensorView outputTensor) {
 
 		// Use priority queue to keeps the limb instance candidates in descending order.
 		int initialSize = (fromParts.size() * toParts.size()) / 2 + 1;
@@ -234,8 +236,8 @@ public class PoseEstimationTensorflowOutputConverter implements TensorflowOutput
 						int tx = (int) ((float) fromPart.getY() + (t * deltaX / STEP_PAF) + 0.5);
 						int ty = (int) ((float) fromPart.getX() + (t * deltaY / STEP_PAF) + 0.5);
 
-						float pafScoreX = outputTensor[tx][ty][limbType.getPafIndexX()];
-						float pafScoreY = outputTensor[tx][ty][limbType.getPafIndexY()];
+						float pafScoreX = outputTensor.getFloat(tx, ty, limbType.getPafIndexX());
+						float pafScoreY = outputTensor.getFloat(tx, ty, limbType.getPafIndexY());
 
 						pafScores[t] = (dy * pafScoreX) + (dx * pafScoreY);
 
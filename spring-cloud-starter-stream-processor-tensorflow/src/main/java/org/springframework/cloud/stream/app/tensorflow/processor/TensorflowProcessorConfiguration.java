@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.stream.app.tensorflow.processor;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.commons.logging.Log;
@@ -28,6 +29,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Import;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.converter.MessageConversionException;
@@ -38,13 +40,16 @@ import org.springframework.messaging.converter.MessageConversionException;
  * Processor uses a {@link TensorflowInputConverter} to convert the input data into TensorFlow model input format (called
  * feeds). The input converter converts the input {@link Message} into key/value {@link Map},
  * where the Key corresponds to a model input placeholder (feed) and the content is {@link org.tensorflow.DataType}
- * compliant value. The default converter implementation expects either Map payload.
+ * compliant value. The default converter implementation expects either Map payload, a binary tensor envelope
+ * (see: {@link TensorEnvelopeConverter}) payload or, when the inputFormat property is set to proto, a serialized
+ * PredictRequest (see: {@link TensorProtoConverter}) payload.
  *
  * The {@link TensorflowInputConverter} can be extended and customized.
  *
  * Processor's output uses the {@link TensorflowOutputConverter} to convert the computed {@link Tensor} result into a
  * serializable message. The default implementation converts the Tensor result into JSON (see:
- * {@link TensorflowOutputConverter}).
+ * {@link TensorflowOutputConverter}). When the outputFormat property is set to envelope or proto all fetched Tensors
+ * are converted into a binary tensor envelope or a serialized PredictResponse instead.
  *
  * The {@link TensorflowOutputConverter} can be extended and customized to provide a convenient data representations,
  * accustomed for a particular model (see TwitterSentimentTensorflowOutputConverter.java)
@@ -78,7 +83,19 @@ public class TensorflowProcessorConfiguration {
 	}
 
 	@Bean
+	@DependsOn("tensorFlowService")
 	public TensorflowOutputConverter tensorflowOutputConverter() {
+		if (properties.getOutputFormat() == TensorFormat.envelope) {
+			// Serializes all fetched Tensors into a binary envelope
+			return (TensorflowOutputConverter<byte[]>) (tensorMap, processorContext) ->
+					TensorEnvelopeConverter.toEnvelope(tensorMap, properties.getOutputPrecision());
+		}
+		else if (properties.getOutputFormat() == TensorFormat.proto) {
+			// Serializes all fetched Tensors into a PredictResponse message
+			return (TensorflowOutputConverter<byte[]>) (tensorMap, processorContext) ->
+					TensorProtoConverter.toPredictResponse(tensorMap);
+		}
+
 		// Default implementations serializes the Tensor into Json
 		return (TensorflowOutputConverter<String>) (tensorMap, processorContext) -> {
 			Tensor<?> tensor = tensorMap.entrySet().iterator().next().getValue();
@@ -87,6 +104,7 @@ public class TensorflowProcessorConfiguration {
 	}
 
 	@Bean
+	@DependsOn("tensorFlowService")
 	@SuppressWarnings("unchecked")
 	public TensorflowInputConverter tensorflowInputConverter() {
 		return (input, processorContext) -> {
@@ -94,6 +112,12 @@ public class TensorflowProcessorConfiguration {
 			if (input instanceof Map) {
 				return (Map<String, Object>) input;
 			}
+			else if (input instanceof byte[] && TensorEnvelopeConverter.isEnvelope((byte[]) input)) {
+				return new LinkedHashMap<>(TensorEnvelopeConverter.toTensors((byte[]) input));
+			}
+			else if (input instanceof byte[] && properties.getInputFormat() == TensorFormat.proto) {
+				return new LinkedHashMap<>(TensorProtoConverter.fromPredictRequest((byte[]) input));
+			}
 
 			throw new MessageConversionException("Unsupported input format: " + input);
 		};
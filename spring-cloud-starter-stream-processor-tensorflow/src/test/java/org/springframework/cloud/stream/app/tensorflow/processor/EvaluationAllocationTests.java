@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.Assume;
+import org.junit.Test;
+import org.tensorflow.Tensor;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tracks the heap allocation of the evaluation hot path.
+ *
+ * @author agent
+ */
+public class EvaluationAllocationTests {
+
+	/**
+	 * Most of the budget is taken by the TensorFlow session runner and the feed and output tensor objects.
+	 */
+	private static final long MAX_BYTES_PER_EVALUATION = 8 * 1024;
+
+	@Test
+	public void processorContextIsReusedPerThread() throws InterruptedException {
+		ProcessorContext processorContext = ProcessorContext.current();
+		processorContext.put("key", "value");
+
+		assertSame(processorContext, ProcessorContext.current());
+		assertTrue(processorContext.isEmpty());
+
+		ProcessorContext[] otherThreadContext = new ProcessorContext[1];
+		Thread thread = new Thread(() -> otherThreadContext[0] = ProcessorContext.current());
+		thread.start();
+		thread.join();
+		assertNotSame(processorContext, otherThreadContext[0]);
+	}
+
+	@Test
+	public void expressionIsCompiled() {
+		Expression expression = TensorflowCommonProcessorConfiguration.compile(
+				new SpelExpressionParser().parseExpression("headers['input']"));
+		EvaluationContext evaluationContext = new StandardEvaluationContext();
+		Message<byte[]> message = MessageBuilder.withPayload(new byte[0]).setHeader("input", "data").build();
+
+		assertEquals("data", expression.getValue(evaluationContext, message));
+		assertTrue(((SpelExpression) expression).compileExpression());
+		assertEquals("data", expression.getValue(evaluationContext, message));
+	}
+
+	@Test
+	public void evaluationAllocation() {
+		ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+		threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+		TensorFlowService tensorFlowService = new TensorFlowService(
+				new ClassPathResource("tensorflow/model/linear_regression_graph.proto"));
+		try {
+			List<String> fetchedNames = Collections.singletonList("add");
+			// Let the JIT compile the hot path
+			evaluate(tensorFlowService, fetchedNames, 5_000);
+
+			int evaluations = 10_000;
+			long threadId = Thread.currentThread().getId();
+			long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+			evaluate(tensorFlowService, fetchedNames, evaluations);
+			long bytesPerEvaluation = (threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytes) / evaluations;
+
+			assertTrue("Allocated bytes per evaluation: " + bytesPerEvaluation,
+					bytesPerEvaluation < MAX_BYTES_PER_EVALUATION);
+		}
+		finally {
+			tensorFlowService.close();
+		}
+	}
+
+	private static void evaluate(TensorFlowService tensorFlowService, List<String> fetchedNames, int evaluations) {
+		for (int i = 0; i < evaluations; i++) {
+			ProcessorContext processorContext = ProcessorContext.current();
+			// The input converters create the feed tensors
+			Map<String, Object> feeds = Collections.singletonMap("Placeholder", Tensor.create(0.7f));
+			Map<String, Tensor<?>> outputs = tensorFlowService.evaluate(feeds, fetchedNames);
+			processorContext.put("output", outputs.get("add").floatValue());
+			TensorflowModel.closeAll(outputs.values());
+		}
+	}
+}
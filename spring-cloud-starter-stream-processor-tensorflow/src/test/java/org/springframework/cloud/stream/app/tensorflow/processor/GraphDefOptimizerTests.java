@@ -0,0 +1,195 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.google.protobuf.ByteString;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tensorflow.Graph;
+import org.tensorflow.Session;
+import org.tensorflow.Tensor;
+import org.tensorflow.framework.AttrValue;
+import org.tensorflow.framework.DataType;
+import org.tensorflow.framework.GraphDef;
+import org.tensorflow.framework.NodeDef;
+import org.tensorflow.framework.TensorProto;
+import org.tensorflow.framework.TensorShapeProto;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class GraphDefOptimizerTests {
+
+	private static final AttrValue FLOAT = AttrValue.newBuilder().setType(DataType.DT_FLOAT).build();
+
+	private static final String COLOCATION = "_class";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/**
+	 * output = Identity(x + a * b), with an unused training branch.
+	 */
+	private static GraphDef graphDef() {
+		return GraphDef.newBuilder()
+				.addNode(NodeDef.newBuilder().setName("x").setOp("Placeholder").putAttr("dtype", FLOAT))
+				.addNode(constant("a", 2))
+				.addNode(constant("b", 3))
+				.addNode(node("ab", "Mul", "a", "b"))
+				.addNode(node("y", "Add", "x", "ab"))
+				.addNode(NodeDef.newBuilder().setName("y/read").setOp("Identity").addInput("y").putAttr("T", FLOAT))
+				.addNode(NodeDef.newBuilder().setName("output").setOp("Identity").addInput("y/read")
+						.putAttr("T", FLOAT))
+				.addNode(constant("learning_rate", 0.1f))
+				.addNode(node("gradients/y", "Mul", "y/read", "learning_rate")
+						.putAttr(COLOCATION, colocation("y/read")))
+				.build();
+	}
+
+	private static NodeDef.Builder constant(String name, float value) {
+		return NodeDef.newBuilder().setName(name).setOp("Const").putAttr("dtype", FLOAT)
+				.putAttr("value", AttrValue.newBuilder().setTensor(TensorProto.newBuilder()
+						.setDtype(DataType.DT_FLOAT).addFloatVal(value)).build());
+	}
+
+	private static NodeDef.Builder node(String name, String op, String... inputs) {
+		return NodeDef.newBuilder().setName(name).setOp(op).addAllInput(Arrays.asList(inputs)).putAttr("T", FLOAT);
+	}
+
+	private static AttrValue colocation(String name) {
+		return AttrValue.newBuilder().setList(AttrValue.ListValue.newBuilder()
+				.addS(ByteString.copyFromUtf8("loc:@" + name))).build();
+	}
+
+	private static Map<String, NodeDef> nodes(GraphDef graphDef) {
+		return graphDef.getNodeList().stream().collect(Collectors.toMap(NodeDef::getName, Function.identity()));
+	}
+
+	private static float evaluate(byte[] graphDef, String feed, String fetch, float value) {
+		try (Graph graph = new Graph()) {
+			graph.importGraphDef(graphDef);
+			try (Session session = new Session(graph); Tensor<?> input = Tensor.create(value);
+					Tensor<?> result = session.runner().feed(feed, input).fetch(fetch).run().get(0)) {
+				return result.floatValue();
+			}
+		}
+	}
+
+	@Test
+	public void pruneAndForwardIdentities() {
+		GraphDef optimized = new GraphDefOptimizer(Collections.singletonList("output:0"), false, null)
+				.optimize(graphDef());
+
+		Map<String, NodeDef> nodes = nodes(optimized);
+		assertEquals(Arrays.asList("x", "a", "b", "ab", "y", "output"),
+				optimized.getNodeList().stream().map(NodeDef::getName).collect(Collectors.toList()));
+		// The fetched Identity is kept, its Identity input is forwarded
+		assertEquals(Collections.singletonList("y"), nodes.get("output").getInputList());
+		assertEquals(7f, evaluate(optimized.toByteArray(), "x", "output", 1), 0);
+	}
+
+	@Test
+	public void foldConstants() {
+		GraphDef optimized = new GraphDefOptimizer(Collections.singletonList("output"), true, null)
+				.optimize(graphDef());
+
+		Map<String, NodeDef> nodes = nodes(optimized);
+		assertEquals("Const", nodes.get("ab").getOp());
+		assertFalse(nodes.containsKey("a"));
+		assertFalse(nodes.containsKey("b"));
+		assertEquals(7f, evaluate(optimized.toByteArray(), "x", "output", 1), 0);
+	}
+
+	@Test
+	public void randomOpsAreNotFolded() {
+		GraphDef graphDef = GraphDef.newBuilder()
+				.addNode(NodeDef.newBuilder().setName("x").setOp("Placeholder").putAttr("dtype", FLOAT))
+				.addNode(NodeDef.newBuilder().setName("shape").setOp("Const")
+						.putAttr("dtype", AttrValue.newBuilder().setType(DataType.DT_INT32).build())
+						.putAttr("value", AttrValue.newBuilder().setTensor(TensorProto.newBuilder()
+								.setDtype(DataType.DT_INT32).addIntVal(1)
+								.setTensorShape(TensorShapeProto.newBuilder()
+										.addDim(TensorShapeProto.Dim.newBuilder().setSize(1)))).build()))
+				.addNode(NodeDef.newBuilder().setName("noise").setOp("TruncatedNormal").addInput("shape")
+						.putAttr("T", AttrValue.newBuilder().setType(DataType.DT_INT32).build())
+						.putAttr("dtype", FLOAT))
+				.addNode(constant("scale", 2))
+				.addNode(node("scaled", "Mul", "noise", "scale"))
+				.addNode(node("output", "Add", "x", "scaled"))
+				.build();
+
+		GraphDef optimized = new GraphDefOptimizer(Collections.singletonList("output"), true, null)
+				.optimize(graphDef);
+
+		Map<String, NodeDef> nodes = nodes(optimized);
+		assertEquals("TruncatedNormal", nodes.get("noise").getOp());
+		assertEquals("Mul", nodes.get("scaled").getOp());
+		assertEquals(Arrays.asList("noise", "scale"), nodes.get("scaled").getInputList());
+	}
+
+	@Test
+	public void unknownFetchesKeepTheSinks() {
+		GraphDef optimized = new GraphDefOptimizer(Collections.emptyList(), false, null).optimize(graphDef());
+
+		Map<String, NodeDef> nodes = nodes(optimized);
+		assertTrue(nodes.containsKey("gradients/y"));
+		// The colocation with the forwarded Identity is dropped
+		assertFalse(nodes.get("gradients/y").containsAttr(COLOCATION));
+		assertEquals(Arrays.asList("y", "learning_rate"), nodes.get("gradients/y").getInputList());
+	}
+
+	@Test
+	public void optimizedGraphIsCached() throws IOException {
+		File cacheDirectory = this.temporaryFolder.newFolder("graphs");
+		byte[] model = StreamUtils.copyToByteArray(
+				new ClassPathResource("tensorflow/model/linear_regression_graph.proto").getInputStream());
+		GraphDefOptimizer optimizer = new GraphDefOptimizer(Collections.singletonList("add"), true, cacheDirectory);
+
+		byte[] optimized = optimizer.optimize(model);
+		List<File> cached = Arrays.asList(cacheDirectory.listFiles());
+		assertEquals(1, cached.size());
+		assertTrue(cached.get(0).getName().endsWith(".optimized.pb"));
+		assertTrue(Arrays.equals(optimized, optimizer.optimize(model)));
+
+		assertEquals(evaluate(model, "Placeholder", "add", 0.7f),
+				evaluate(optimized, "Placeholder", "add", 0.7f), 0);
+	}
+
+	@Test
+	public void nodeName() {
+		assertEquals("node", GraphDefOptimizer.nodeName("node"));
+		assertEquals("node", GraphDefOptimizer.nodeName("node:1"));
+		assertEquals("scope/node", GraphDefOptimizer.nodeName("^scope/node"));
+	}
+}
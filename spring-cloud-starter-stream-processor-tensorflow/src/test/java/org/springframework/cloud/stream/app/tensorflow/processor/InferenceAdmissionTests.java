@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+import org.tensorflow.Tensor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class InferenceAdmissionTests {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	@After
+	public void after() {
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	public void limitShrinksWhenLatencyGrows() {
+		InferenceAdmission admission = new InferenceAdmission(10, 1, 64, 1024);
+		admission.update(MS, 10);
+		for (int i = 0; i < 20; i++) {
+			admission.update(4 * MS, 10);
+		}
+		assertTrue(admission.getLimit() < 10);
+		assertTrue(admission.getLimit() >= 1);
+	}
+
+	@Test
+	public void limitGrowsWhileLatencyIsSteady() {
+		InferenceAdmission admission = new InferenceAdmission(4, 1, 16, 1024);
+		for (int i = 0; i < 100; i++) {
+			admission.update(MS, admission.getLimit());
+		}
+		assertEquals(16, admission.getLimit());
+	}
+
+	@Test
+	public void limitDoesNotGrowWhenUnderused() {
+		InferenceAdmission admission = new InferenceAdmission(10, 1, 64, 1024);
+		for (int i = 0; i < 100; i++) {
+			admission.update(MS, 1);
+		}
+		assertEquals(10, admission.getLimit());
+	}
+
+	@Test
+	public void concurrencyLimitHoldsBackNewEvaluations() throws Exception {
+		InferenceAdmission admission = new InferenceAdmission(1, 1, 1, 1024);
+		InferenceAdmission.Permit permit = admission.acquire();
+
+		Future<InferenceAdmission.Permit> waiting = this.executor.submit(admission::acquire);
+		assertBlocked(waiting);
+
+		permit.close();
+		waiting.get(5, TimeUnit.SECONDS).close();
+		assertEquals(1, admission.getThrottled());
+		assertEquals(0, admission.getInFlight());
+	}
+
+	@Test
+	public void tensorBudgetHoldsBackNewEvaluations() throws Exception {
+		InferenceAdmission admission = new InferenceAdmission(4, 1, 4, 4);
+		InferenceAdmission.Permit permit = admission.acquire();
+		try (Tensor<?> tensor = Tensor.create(new float[] { 1, 2 })) {
+			permit.addTensors(Collections.singletonList(tensor));
+		}
+		assertEquals(8, admission.getLiveTensorBytes());
+
+		Future<InferenceAdmission.Permit> waiting = this.executor.submit(admission::acquire);
+		assertBlocked(waiting);
+
+		permit.close();
+		waiting.get(5, TimeUnit.SECONDS).close();
+		assertEquals(0, admission.getLiveTensorBytes());
+	}
+
+	@Test
+	public void singleEvaluationIsAdmittedOverBudget() {
+		InferenceAdmission admission = new InferenceAdmission(4, 1, 4, 1);
+		try (InferenceAdmission.Permit permit = admission.acquire()) {
+			permit.addTensors(Collections.singletonList("not a tensor"));
+			assertEquals(0, admission.getLiveTensorBytes());
+		}
+		try (InferenceAdmission.Permit permit = admission.acquire()) {
+			assertEquals(1, admission.getInFlight());
+		}
+		assertEquals(0, admission.getThrottled());
+	}
+
+	private static void assertBlocked(Future<?> waiting) throws Exception {
+		try {
+			waiting.get(200, TimeUnit.MILLISECONDS);
+			fail("The evaluation should wait for the admission");
+		}
+		catch (TimeoutException e) {
+			assertFalse(waiting.isDone());
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author agent
+ */
+public class InferenceCacheTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void keyDependsOnNamespaceAndInput() {
+		String key = InferenceCache.key("model@1", "input".getBytes());
+		assertEquals(key, InferenceCache.key("model@1", "input".getBytes()));
+		assertNotEquals(key, InferenceCache.key("model@2", "input".getBytes()));
+		assertNotEquals(key, InferenceCache.key("model@1", "other".getBytes()));
+	}
+
+	@Test
+	public void stringKeyDoesNotCollideWithItsBytes() {
+		String key = InferenceCache.key("model@1", "input");
+		assertEquals(key, InferenceCache.key("model@1", "input"));
+		assertNotEquals(key, InferenceCache.key("model@1", "input".getBytes()));
+	}
+
+	@Test
+	public void otherInputTypesAreNotCached() {
+		// Distinct arrays or maps may have the same string representation
+		assertNull(InferenceCache.key("model@1", new float[] { 1f }));
+		assertNull(InferenceCache.key("model@1", Collections.singletonMap("Placeholder", 0.7f)));
+		assertNull(InferenceCache.key("model@1", null));
+	}
+
+	@Test
+	public void leastRecentlyUsedEviction() {
+		InferenceCache cache = new InferenceCache(2, null, 1);
+		AtomicInteger evaluations = new AtomicInteger();
+
+		cache.get("a", () -> "A" + evaluations.incrementAndGet());
+		cache.get("b", () -> "B" + evaluations.incrementAndGet());
+		assertEquals("A1", cache.get("a", () -> "A" + evaluations.incrementAndGet()));
+		cache.get("c", () -> "C" + evaluations.incrementAndGet());
+
+		// b is the least recently used
+		assertEquals("B4", cache.get("b", () -> "B" + evaluations.incrementAndGet()));
+		assertEquals(1, cache.getHits());
+		assertEquals(4, cache.getMisses());
+		assertEquals(2, cache.getEvictions());
+	}
+
+	@Test
+	public void diskTierSurvivesRestarts() throws IOException {
+		File directory = temporaryFolder.newFolder("inference-cache");
+
+		InferenceCache cache = new InferenceCache(10, directory, 10);
+		cache.get("a", () -> "A");
+
+		InferenceCache restarted = new InferenceCache(10, directory, 10);
+		assertEquals("A", restarted.get("a", () -> "not cached"));
+		assertEquals(1, restarted.getDiskHits());
+		assertEquals(0, restarted.getMisses());
+	}
+
+	@Test
+	public void concurrentRequestsAreCoalesced() throws Exception {
+		InferenceCache cache = new InferenceCache(10, null, 1);
+		AtomicInteger evaluations = new AtomicInteger();
+		CountDownLatch evaluating = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Object> first = executor.submit(() -> cache.get("a", () -> {
+				evaluating.countDown();
+				await(release);
+				return "A" + evaluations.incrementAndGet();
+			}));
+			evaluating.await(10, TimeUnit.SECONDS);
+			Future<Object> second = executor.submit(() -> cache.get("a", () -> "A" + evaluations.incrementAndGet()));
+
+			// Wait for the second request to join the in-flight evaluation
+			while (cache.getCoalesced() == 0) {
+				Thread.sleep(1);
+			}
+			release.countDown();
+
+			assertEquals("A1", first.get(10, TimeUnit.SECONDS));
+			assertEquals("A1", second.get(10, TimeUnit.SECONDS));
+			assertEquals(1, evaluations.get());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
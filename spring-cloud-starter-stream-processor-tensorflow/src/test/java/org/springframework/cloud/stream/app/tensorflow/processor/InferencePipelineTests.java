@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class InferencePipelineTests {
+
+	@Test
+	public void singleThreadedStagesKeepTheOrder() {
+		List<Integer> outputs = new CopyOnWriteArrayList<>();
+		List<CompletableFuture<Integer>> results = new ArrayList<>();
+		try (InferencePipeline pipeline = new InferencePipeline(1, 1, 1, 4)) {
+			for (int i = 0; i < 20; i++) {
+				int message = i;
+				results.add(pipeline.submit(() -> message, feeds -> feeds * 10, output -> {
+					outputs.add(output);
+					return output + 1;
+				}));
+			}
+			for (int i = 0; i < 20; i++) {
+				assertEquals(Integer.valueOf(i * 10 + 1), results.get(i).join());
+			}
+		}
+		for (int i = 0; i < 20; i++) {
+			assertEquals(Integer.valueOf(i * 10), outputs.get(i));
+		}
+	}
+
+	@Test
+	public void failedStageFailsTheResult() {
+		IllegalStateException error = new IllegalStateException("boom");
+		AtomicInteger outputStageCalls = new AtomicInteger();
+		try (InferencePipeline pipeline = new InferencePipeline(1, 1, 1, 4)) {
+			CompletableFuture<Integer> result = pipeline.submit(() -> 1, feeds -> {
+				throw error;
+			}, output -> outputStageCalls.incrementAndGet());
+			try {
+				result.join();
+				fail("The stage failure must fail the result");
+			}
+			catch (CompletionException e) {
+				assertSame(error, e.getCause());
+			}
+		}
+		assertEquals(0, outputStageCalls.get());
+	}
+
+	@Test
+	public void fullStageBlocksTheSubmitter() throws Exception {
+		CountDownLatch inferenceRelease = new CountDownLatch(1);
+		AtomicInteger submitted = new AtomicInteger();
+		List<CompletableFuture<Integer>> results = new CopyOnWriteArrayList<>();
+
+		try (InferencePipeline pipeline = new InferencePipeline(1, 1, 1, 1)) {
+			Thread submitter = new Thread(() -> {
+				for (int i = 0; i < 5; i++) {
+					int message = i;
+					results.add(pipeline.submit(() -> message, feeds -> {
+						await(inferenceRelease);
+						return feeds;
+					}, output -> output));
+					submitted.incrementAndGet();
+				}
+			});
+			submitter.start();
+
+			// One message in the inference stage, one in its queue, one waiting on the input thread to be handed over
+			// and one in the input queue. The fifth submission blocks.
+			long deadline = System.currentTimeMillis() + 10000;
+			while (submitted.get() < 4 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(4, submitted.get());
+			submitter.join(200);
+			assertTrue(submitter.isAlive());
+			assertEquals(4, submitted.get());
+
+			inferenceRelease.countDown();
+			submitter.join(10000);
+			assertFalse(submitter.isAlive());
+			for (int i = 0; i < 5; i++) {
+				assertEquals(Integer.valueOf(i), results.get(i).get(10, TimeUnit.SECONDS));
+			}
+		}
+	}
+
+	@Test
+	public void closeDrainsTheSubmittedMessages() {
+		List<CompletableFuture<Integer>> results = new ArrayList<>();
+		InferencePipeline pipeline = new InferencePipeline(1, 1, 1, 8);
+		for (int i = 0; i < 8; i++) {
+			int message = i;
+			results.add(pipeline.submit(() -> message, feeds -> {
+				sleep(10);
+				return feeds;
+			}, output -> output));
+		}
+		pipeline.close();
+
+		for (int i = 0; i < 8; i++) {
+			assertTrue(results.get(i).isDone());
+			assertEquals(Integer.valueOf(i), results.get(i).join());
+		}
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void submitAfterCloseIsRejected() {
+		InferencePipeline pipeline = new InferencePipeline(1, 1, 1, 1);
+		pipeline.close();
+		pipeline.submit(() -> 1, feeds -> feeds, output -> output);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.tensorflow.Tensor;
+import org.tensorflow.framework.AllocatorMemoryUsed;
+import org.tensorflow.framework.DeviceStepStats;
+import org.tensorflow.framework.NodeExecStats;
+import org.tensorflow.framework.RunMetadata;
+import org.tensorflow.framework.StepStats;
+
+import org.springframework.core.io.ClassPathResource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class InferenceProfilerTests {
+
+	@Test
+	public void oneInSampleRateEvaluationsIsTraced() {
+		InferenceProfiler profiler = new InferenceProfiler(3, 10);
+		assertFalse(profiler.sample());
+		assertFalse(profiler.sample());
+		assertTrue(profiler.sample());
+		assertFalse(profiler.sample());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void opStatisticsAreAggregated() {
+		InferenceProfiler profiler = new InferenceProfiler(1, 1);
+		byte[] runMetadata = RunMetadata.newBuilder()
+				.setStepStats(StepStats.newBuilder().addDevStats(DeviceStepStats.newBuilder()
+						.setDevice("/job:localhost/replica:0/task:0/device:CPU:0")
+						.addNodeStats(nodeStats("matmul", "MatMul", 30, 100))
+						.addNodeStats(nodeStats("add", "Add", 10, 10))))
+				.build()
+				.toByteArray();
+		profiler.record(runMetadata);
+		profiler.record(runMetadata);
+
+		Map<String, Object> report = profiler.getReport();
+		assertEquals(2L, report.get("tracedEvaluations"));
+		assertEquals(80L, report.get("totalMicros"));
+
+		// Only the top op is reported
+		List<Map<String, Object>> ops = (List<Map<String, Object>>) report.get("ops");
+		assertEquals(1, ops.size());
+		Map<String, Object> matmul = ops.get(0);
+		assertEquals("matmul", matmul.get("name"));
+		assertEquals("MatMul", matmul.get("type"));
+		assertEquals(2L, matmul.get("count"));
+		assertEquals(60L, matmul.get("totalMicros"));
+		assertEquals(0.75, (Double) matmul.get("timeShare"), 1e-9);
+		assertEquals(100L, matmul.get("meanAllocatedBytes"));
+
+		profiler.reset();
+		assertEquals(0L, profiler.getReport().get("tracedEvaluations"));
+	}
+
+	private static NodeExecStats nodeStats(String name, String type, long micros, long bytes) {
+		return NodeExecStats.newBuilder()
+				.setNodeName(name)
+				.setTimelineLabel(name + " = " + type + "(x, y)")
+				.setAllEndRelMicros(micros)
+				.addMemory(AllocatorMemoryUsed.newBuilder().setAllocatorName("cpu").setTotalBytes(bytes)
+						.setPeakBytes(bytes))
+				.build();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void evaluationIsTraced() {
+		TensorFlowService tensorFlowService = new TensorFlowService(
+				new ClassPathResource("tensorflow/model/linear_regression_graph.proto"));
+		InferenceProfiler profiler = new InferenceProfiler(1, 10);
+		tensorFlowService.setProfiler(profiler);
+		try {
+			Map<String, Tensor<?>> outputs = tensorFlowService.evaluate(Collections.singletonMap("Placeholder", 0.7f),
+					Collections.singletonList("add"));
+			TensorflowModel.closeAll(outputs.values());
+
+			Map<String, Object> report = profiler.getReport();
+			assertEquals(1L, report.get("tracedEvaluations"));
+			assertFalse(((List<Map<String, Object>>) report.get("ops")).isEmpty());
+		}
+		finally {
+			tensorFlowService.close();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class MicroBatcherTests {
+
+	@Test
+	public void fullBatchIsHandledAndCompleted() {
+		List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+		try (MicroBatcher<Integer> batcher = new MicroBatcher<>(2, 60000, batches::add)) {
+			CompletableFuture<Void> first = batcher.add(1);
+			assertFalse(first.isDone());
+			CompletableFuture<Void> second = batcher.add(2);
+
+			assertSame(first, second);
+			assertTrue(second.isDone());
+			assertEquals(Arrays.asList(Arrays.asList(1, 2)), batches);
+		}
+	}
+
+	@Test
+	public void expiredBatchIsHandled() throws Exception {
+		List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+		try (MicroBatcher<Integer> batcher = new MicroBatcher<>(10, 10, batches::add)) {
+			batcher.add(1).get(10, TimeUnit.SECONDS);
+			assertEquals(Arrays.asList(Arrays.asList(1)), batches);
+		}
+	}
+
+	@Test
+	public void failedBatchFailsTheItemsCompletion() {
+		IllegalStateException error = new IllegalStateException("boom");
+		List<CompletableFuture<Void>> completions = new ArrayList<>();
+		try (MicroBatcher<Integer> batcher = new MicroBatcher<>(2, 60000, batch -> {
+			throw error;
+		})) {
+			completions.add(batcher.add(1));
+			completions.add(batcher.add(2));
+		}
+
+		for (CompletableFuture<Void> completion : completions) {
+			try {
+				completion.join();
+				fail("The batch failure must fail the items");
+			}
+			catch (CompletionException e) {
+				assertSame(error, e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void nextBatchAfterAFailureHasANewCompletion() {
+		List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+		try (MicroBatcher<Integer> batcher = new MicroBatcher<>(1, 60000, batch -> {
+			batches.add(batch);
+			if (batch.contains(1)) {
+				throw new IllegalStateException("boom");
+			}
+		})) {
+			assertTrue(batcher.add(1).isCompletedExceptionally());
+			CompletableFuture<Void> next = batcher.add(2);
+			assertTrue(next.isDone());
+			assertFalse(next.isCompletedExceptionally());
+			assertEquals(2, batches.size());
+		}
+	}
+}
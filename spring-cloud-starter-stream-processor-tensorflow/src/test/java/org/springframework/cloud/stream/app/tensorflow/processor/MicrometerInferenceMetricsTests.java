@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tensorflow.Tensor;
+
+import org.springframework.core.io.ClassPathResource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class MicrometerInferenceMetricsTests {
+
+	private TensorFlowService tensorFlowService;
+
+	private MicrometerInferenceMetrics metrics;
+
+	private SimpleMeterRegistry registry;
+
+	@Before
+	public void before() {
+		this.tensorFlowService = new TensorFlowService(
+				new ClassPathResource("tensorflow/model/linear_regression_graph.proto"));
+		this.metrics = new MicrometerInferenceMetrics(this.tensorFlowService, "tensorflow", "linear_regression");
+		this.registry = new SimpleMeterRegistry();
+	}
+
+	@After
+	public void after() {
+		this.tensorFlowService.close();
+		this.registry.close();
+	}
+
+	@Test
+	public void modelEvaluation() {
+		this.metrics.bindTo(this.registry);
+		this.tensorFlowService.setMetrics(this.metrics);
+
+		Map<String, Tensor<?>> result = this.tensorFlowService.evaluate(
+				Collections.<String, Object>singletonMap("Placeholder", 0.7f), Collections.singletonList("add"));
+		result.values().forEach(Tensor::close);
+
+		// Float scalar input and output
+		assertEquals(4, this.registry.get("tensorflow.tensor.bytes").tag("direction", "input")
+				.summary().totalAmount(), 0);
+		assertEquals(4, this.registry.get("tensorflow.tensor.bytes").tag("direction", "output")
+				.summary().totalAmount(), 0);
+		assertEquals(0, this.registry.get("tensorflow.evaluations.in.flight").gauge().value(), 0);
+		assertEquals("linear_regression", this.registry.get("tensorflow.tensor.bytes").tag("direction", "input")
+				.summary().getId().getTag("model"));
+		assertEquals(this.tensorFlowService.getModelLoadDuration(), this.registry.get("tensorflow.model.load.duration")
+				.tag("model", "linear_regression").timeGauge().value(TimeUnit.MILLISECONDS), 0);
+	}
+
+	@Test
+	public void stageTimers() {
+		this.metrics.bindTo(this.registry);
+
+		this.metrics.record(InferenceMetrics.Stage.input, null,
+				System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5));
+		this.metrics.record(InferenceMetrics.Stage.input, null, System.nanoTime());
+
+		Timer timer = this.registry.get("tensorflow.evaluation.stage").tag("stage", "input")
+				.tag("processor", "tensorflow").tag("model", "linear_regression").timer();
+		assertEquals(2, timer.count());
+		assertTrue(timer.totalTime(TimeUnit.MILLISECONDS) >= 5);
+		assertEquals(0, this.registry.get("tensorflow.evaluation.stage").tag("stage", "output").timer().count());
+	}
+
+	@Test
+	public void modelZooModelsAreTaggedOnceEvaluated() {
+		this.metrics.bindTo(this.registry);
+
+		// Measured before the model is acquired, e.g. a name that fails to load
+		this.metrics.record(InferenceMetrics.Stage.input, "unknown", System.nanoTime());
+		assertNull(this.registry.find("tensorflow.evaluation.stage").tag("model", "unknown").timer());
+
+		this.metrics.evaluationStarted("other");
+		this.metrics.inputTensorBytes("other", 8);
+		this.metrics.evaluationFinished("other");
+		this.metrics.record(InferenceMetrics.Stage.inference, "other", System.nanoTime());
+
+		assertEquals(1, this.registry.get("tensorflow.evaluation.stage").tag("stage", "inference")
+				.tag("model", "other").timer().count());
+		assertEquals(8, this.registry.get("tensorflow.tensor.bytes").tag("direction", "input")
+				.tag("model", "other").summary().totalAmount(), 0);
+		assertEquals(0, this.registry.get("tensorflow.evaluation.stage").tag("stage", "inference")
+				.tag("model", "linear_regression").timer().count());
+	}
+
+	@Test
+	public void measurementsBeforeBindingAreDiscarded() {
+		this.metrics.record(InferenceMetrics.Stage.inference, null, System.nanoTime());
+		this.metrics.inputTensorBytes(null, 100);
+
+		this.metrics.bindTo(this.registry);
+
+		assertEquals(0, this.registry.get("tensorflow.evaluation.stage").tag("stage", "inference").timer().count());
+		assertEquals(0, this.registry.get("tensorflow.tensor.bytes").tag("direction", "input").summary().count());
+		assertNull(this.registry.find("tensorflow.tensor.bytes").tag("direction", "unknown").summary());
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tensorflow.Tensor;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class ModelReloadTests {
+
+	private static final Map<String, Object> FEEDS = Collections.singletonMap("Placeholder", 0.7f);
+
+	private static final List<String> FETCHED_NAMES = Collections.singletonList("add");
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File modelFile;
+
+	private TensorFlowService tensorFlowService;
+
+	@Before
+	public void before() throws Exception {
+		this.modelFile = this.temporaryFolder.newFile("linear_regression_graph.proto");
+		try (InputStream model = new ClassPathResource("tensorflow/model/linear_regression_graph.proto")
+				.getInputStream()) {
+			Files.copy(model, this.modelFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		this.tensorFlowService = new TensorFlowService(new FileSystemResource(this.modelFile),
+				new TensorflowCommonProcessorProperties());
+	}
+
+	@After
+	public void after() {
+		this.tensorFlowService.close();
+	}
+
+	@Test
+	public void reloadSwapsTheModel() {
+		float before = evaluate();
+		assertEquals(1, this.tensorFlowService.getModelVersion());
+
+		this.tensorFlowService.reload();
+
+		assertEquals(2, this.tensorFlowService.getModelVersion());
+		assertEquals(before, evaluate(), 0f);
+	}
+
+	@Test
+	public void inFlightEvaluationHoldsTheReplacedModel() throws Exception {
+		CountDownLatch evaluationStarted = new CountDownLatch(1);
+		CountDownLatch reloaded = new CountDownLatch(1);
+		AtomicBoolean first = new AtomicBoolean(true);
+		// Holds the first evaluation after it acquired the model and before it runs the session
+		this.tensorFlowService.setMetrics(new InferenceMetrics() {
+
+			@Override
+			public void evaluationStarted(String modelName) {
+				if (first.compareAndSet(true, false)) {
+					evaluationStarted.countDown();
+					await(reloaded);
+				}
+			}
+		});
+
+		CompletableFuture<Float> inFlight = CompletableFuture.supplyAsync(this::evaluate);
+		assertTrue(evaluationStarted.await(10, TimeUnit.SECONDS));
+
+		this.tensorFlowService.reload();
+		assertEquals(2, this.tensorFlowService.getModelVersion());
+		reloaded.countDown();
+
+		// The replaced model is closed once the in-flight evaluation releases it, not before
+		assertEquals(evaluate(), inFlight.get(10, TimeUnit.SECONDS), 0f);
+	}
+
+	@Test
+	public void modelIsClosedWithTheLastReference() {
+		TensorflowModel model = TensorflowModel.load(new FileSystemResource(this.modelFile),
+				new TensorflowCommonProcessorProperties());
+		assertTrue(model.tryAcquire());
+
+		// The owner releases the model while an evaluation still holds it
+		model.release();
+		try (Tensor<?> x = Tensor.create(0.7f)) {
+			Map<String, Tensor<?>> outputs = model.run(Collections.singletonMap("Placeholder", x), FETCHED_NAMES);
+			TensorflowModel.closeAll(outputs.values());
+		}
+
+		model.release();
+		assertFalse(model.tryAcquire());
+	}
+
+	@Test
+	public void explicitReloadIsNotRepeatedByThePolling() {
+		ModelReloader modelReloader = new ModelReloader(this.tensorFlowService, 60000);
+		try {
+			assertTrue(this.modelFile.setLastModified(this.modelFile.lastModified() + 10000));
+			modelReloader.reload();
+			assertEquals(2, this.tensorFlowService.getModelVersion());
+
+			modelReloader.poll();
+			assertEquals(2, this.tensorFlowService.getModelVersion());
+
+			assertTrue(this.modelFile.setLastModified(this.modelFile.lastModified() + 10000));
+			modelReloader.poll();
+			assertEquals(3, this.tensorFlowService.getModelVersion());
+		}
+		finally {
+			modelReloader.close();
+		}
+	}
+
+	@Test
+	public void firstPollRecordsTheLoadedVersion() {
+		ModelReloader modelReloader = new ModelReloader(this.tensorFlowService, 0);
+		modelReloader.poll();
+		assertEquals(1, this.tensorFlowService.getModelVersion());
+
+		assertTrue(this.modelFile.setLastModified(this.modelFile.lastModified() + 10000));
+		modelReloader.poll();
+		assertEquals(2, this.tensorFlowService.getModelVersion());
+	}
+
+	private float evaluate() {
+		try (Tensor<?> add = this.tensorFlowService.evaluate(FEEDS, FETCHED_NAMES).get("add")) {
+			return add.floatValue();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.stream.binding.InputBindingLifecycle;
+import org.springframework.context.ApplicationContextException;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class ModelWarmUpTests {
+
+	@Test
+	public void warmUpPrecedesTheInputBindingPhase() {
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TensorflowProcessorApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties("tensorflow.model=classpath:tensorflow/model/linear_regression_graph.proto",
+						"tensorflow.modelFetch=add", "tensorflow.warm-up.iterations=2")
+				.run()) {
+
+			ModelWarmUp modelWarmUp = context.getBean(ModelWarmUp.class);
+			assertTrue(modelWarmUp.getPhase() < context.getBean(InputBindingLifecycle.class).getPhase());
+			assertTrue(modelWarmUp.isCompleted());
+			assertEquals(Status.UP, context.getBean(ModelWarmUpHealthIndicator.class).health().getStatus());
+		}
+	}
+
+	@Test
+	public void warmUpCompletesBeforeTheLaterPhasesStart() {
+		List<String> events = new CopyOnWriteArrayList<>();
+		try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+			context.registerBean(ModelWarmUp.class, () -> new ModelWarmUp(2, () -> events.add("warm-up")));
+			context.registerBean(BindingLifecycle.class, () -> new BindingLifecycle(events));
+			context.refresh();
+		}
+		assertEquals(3, events.size());
+		assertEquals("binding", events.get(2));
+	}
+
+	@Test
+	public void failedWarmUpFailsTheStartup() {
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		context.registerBean(ModelWarmUp.class, () -> new ModelWarmUp(2, () -> {
+			throw new IllegalArgumentException("Invalid sample");
+		}));
+		try {
+			context.refresh();
+			fail("The warm-up failure must fail the startup");
+		}
+		catch (ApplicationContextException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+			assertTrue(e.getCause().getCause() instanceof IllegalArgumentException);
+		}
+		finally {
+			context.close();
+		}
+	}
+
+	@Test
+	public void healthIsDownUntilTheWarmUpCompletes() {
+		ModelWarmUp modelWarmUp = new ModelWarmUp(1, () -> { });
+		ModelWarmUpHealthIndicator healthIndicator = new ModelWarmUpHealthIndicator(modelWarmUp);
+
+		assertEquals(Status.DOWN, healthIndicator.health().getStatus());
+		assertFalse(modelWarmUp.isCompleted());
+
+		modelWarmUp.start();
+		assertEquals(Status.UP, healthIndicator.health().getStatus());
+		assertEquals(1, healthIndicator.health().getDetails().get("iterations"));
+	}
+
+	/**
+	 * Stands for the binding lifecycles, that start in a later phase.
+	 */
+	private static class BindingLifecycle implements SmartLifecycle {
+
+		private final List<String> events;
+
+		private volatile boolean running;
+
+		BindingLifecycle(List<String> events) {
+			this.events = events;
+		}
+
+		@Override
+		public void start() {
+			this.events.add("binding");
+			this.running = true;
+		}
+
+		@Override
+		public void stop() {
+			this.running = false;
+		}
+
+		@Override
+		public boolean isRunning() {
+			return this.running;
+		}
+
+		@Override
+		public int getPhase() {
+			return Integer.MAX_VALUE - 1000;
+		}
+	}
+
+	@Configuration
+	@EnableAutoConfiguration
+	@Import(TensorflowProcessorConfiguration.class)
+	static class TensorflowProcessorApplication {
+	}
+}
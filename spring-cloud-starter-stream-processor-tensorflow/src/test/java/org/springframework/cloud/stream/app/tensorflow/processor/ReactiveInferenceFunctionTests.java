@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class ReactiveInferenceFunctionTests {
+
+	private final QueueChannel errorChannel = new QueueChannel();
+
+	private ReactiveInferenceFunction function;
+
+	@After
+	public void after() {
+		if (this.function != null) {
+			this.function.close();
+		}
+	}
+
+	@Test
+	public void evaluationsAreBoundedAndOffloaded() {
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		this.function = new ReactiveInferenceFunction(input -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			threads.add(Thread.currentThread().getName());
+			try {
+				Thread.sleep(5);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			inFlight.decrementAndGet();
+			return MessageBuilder.withPayload(input.getPayload().length).build();
+		}, 2, 4, errorHandler());
+
+		List<Message<?>> outputs = this.function.apply(inputs(20)).collectList().block();
+
+		assertEquals(20, outputs.size());
+		assertTrue("Max in-flight evaluations: " + maxInFlight.get(), maxInFlight.get() <= 2);
+		assertTrue(threads.stream().allMatch(thread -> thread.startsWith("tensorflow-inference")));
+	}
+
+	@Test
+	public void failedEvaluationIsPublishedToTheErrorChannel() {
+		this.function = new ReactiveInferenceFunction(input -> {
+			if (input.getPayload().length == 3) {
+				throw new IllegalArgumentException("Invalid input");
+			}
+			return MessageBuilder.withPayload(input.getPayload().length).build();
+		}, 1, 1, errorHandler());
+
+		List<Object> payloads = this.function.apply(inputs(5)).map(Message::getPayload).collectList().block();
+
+		assertEquals(4, payloads.size());
+		assertFalse(payloads.contains(3));
+		Message<?> errorMessage = this.errorChannel.receive(0);
+		assertTrue(errorMessage.getPayload() instanceof MessagingException);
+		MessagingException exception = (MessagingException) errorMessage.getPayload();
+		assertEquals(3, ((byte[]) exception.getFailedMessage().getPayload()).length);
+		assertTrue(exception.getCause() instanceof IllegalArgumentException);
+		assertNull(this.errorChannel.receive(0));
+	}
+
+	private MessagePublishingErrorHandler errorHandler() {
+		MessagePublishingErrorHandler errorHandler = new MessagePublishingErrorHandler();
+		errorHandler.setDefaultErrorChannel(this.errorChannel);
+		return errorHandler;
+	}
+
+	private static Flux<Message<byte[]>> inputs(int count) {
+		return Flux.range(0, count).map(i -> MessageBuilder.withPayload(new byte[i]).build());
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import org.junit.Test;
+import org.tensorflow.framework.ConfigProto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the ConfigProto built by {@link TensorFlowService#sessionConfig(TensorflowCommonProcessorProperties.Session)}.
+ *
+ * @author agent
+ */
+public class SessionConfigTests {
+
+	@Test
+	public void defaultsKeepTheTensorFlowDefaults() {
+		assertNull(TensorFlowService.sessionConfig(new TensorflowCommonProcessorProperties.Session()));
+	}
+
+	@Test
+	public void threadCountsAreMapped() throws Exception {
+		TensorflowCommonProcessorProperties.Session session = new TensorflowCommonProcessorProperties.Session();
+		session.setIntraOpParallelism(2);
+		session.setInterOpParallelism(3);
+
+		ConfigProto config = ConfigProto.parseFrom(TensorFlowService.sessionConfig(session));
+		assertEquals(2, config.getIntraOpParallelismThreads());
+		assertEquals(3, config.getInterOpParallelismThreads());
+		assertFalse(config.getUsePerSessionThreads());
+	}
+
+	@Test
+	public void perSessionThreadsAreMapped() throws Exception {
+		TensorflowCommonProcessorProperties.Session session = new TensorflowCommonProcessorProperties.Session();
+		session.setUsePerSessionThreads(true);
+
+		ConfigProto config = ConfigProto.parseFrom(TensorFlowService.sessionConfig(session));
+		assertEquals(0, config.getIntraOpParallelismThreads());
+		assertEquals(0, config.getInterOpParallelismThreads());
+		assertTrue(config.getUsePerSessionThreads());
+	}
+
+	@Test
+	public void partitionedCoresAreSharedByThePooledSessions() throws Exception {
+		TensorflowCommonProcessorProperties.Session session = new TensorflowCommonProcessorProperties.Session();
+		session.setPoolSize(2);
+		session.setPartitionCores(true);
+
+		ConfigProto config = ConfigProto.parseFrom(TensorFlowService.sessionConfig(session));
+		assertEquals(Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+				config.getIntraOpParallelismThreads());
+		assertTrue(config.getUsePerSessionThreads());
+	}
+
+	@Test
+	public void explicitIntraOpParallelismIsNotPartitioned() throws Exception {
+		TensorflowCommonProcessorProperties.Session session = new TensorflowCommonProcessorProperties.Session();
+		session.setPoolSize(2);
+		session.setIntraOpParallelism(3);
+		session.setPartitionCores(true);
+
+		ConfigProto config = ConfigProto.parseFrom(TensorFlowService.sessionConfig(session));
+		assertEquals(3, config.getIntraOpParallelismThreads());
+		assertFalse(config.getUsePerSessionThreads());
+	}
+}
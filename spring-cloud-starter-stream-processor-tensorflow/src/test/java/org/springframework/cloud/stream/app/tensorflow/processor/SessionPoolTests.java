@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tensorflow.Graph;
+import org.tensorflow.Session;
+import org.tensorflow.Tensor;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class SessionPoolTests {
+
+	private static final String MODEL = "tensorflow/model/linear_regression_graph.proto";
+
+	private Graph graph;
+
+	private ExecutorService executor;
+
+	@Before
+	public void before() throws IOException {
+		this.graph = new Graph();
+		this.graph.importGraphDef(StreamUtils.copyToByteArray(new ClassPathResource(MODEL).getInputStream()));
+		this.executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void after() {
+		this.executor.shutdownNow();
+		this.graph.close();
+	}
+
+	@Test
+	public void concurrentEvaluationsBorrowDistinctSessions() throws Exception {
+		int size = 3;
+		try (SessionPool sessionPool = new SessionPool(this.graph, size)) {
+			CountDownLatch allBorrowed = new CountDownLatch(size);
+			CountDownLatch evaluate = new CountDownLatch(1);
+			Set<Session> borrowed = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+			Future<?>[] evaluations = new Future<?>[size];
+			for (int i = 0; i < size; i++) {
+				evaluations[i] = this.executor.submit(() -> {
+					Session session = sessionPool.borrow();
+					try {
+						borrowed.add(session);
+						allBorrowed.countDown();
+						evaluate.await();
+						try (Tensor<?> input = Tensor.create(0.7f);
+							 Tensor<?> output = session.runner().feed("Placeholder", input).fetch("add").run().get(0)) {
+							assertEquals(input.dataType(), output.dataType());
+						}
+					}
+					finally {
+						sessionPool.release(session);
+					}
+					return null;
+				});
+			}
+
+			assertTrue(allBorrowed.await(10, TimeUnit.SECONDS));
+			// Every evaluation holds its own session
+			assertEquals(size, borrowed.size());
+
+			evaluate.countDown();
+			for (Future<?> evaluation : evaluations) {
+				evaluation.get(10, TimeUnit.SECONDS);
+			}
+
+			// All sessions are back in the pool
+			for (int i = 0; i < size; i++) {
+				assertTrue(borrowed.contains(sessionPool.borrow()));
+			}
+		}
+	}
+
+	@Test
+	public void borrowWaitsForARelease() throws Exception {
+		try (SessionPool sessionPool = new SessionPool(this.graph, 1)) {
+			Session session = sessionPool.borrow();
+			Future<Session> waiting = this.executor.submit(sessionPool::borrow);
+			try {
+				waiting.get(200, TimeUnit.MILLISECONDS);
+				fail("The pool has no idle session");
+			}
+			catch (TimeoutException e) {
+				// expected
+			}
+
+			sessionPool.release(session);
+			assertSame(session, waiting.get(10, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	public void closeClosesThePooledSessions() {
+		SessionPool sessionPool = new SessionPool(this.graph, 2);
+		Session first = sessionPool.borrow();
+		Session second = sessionPool.borrow();
+		assertNotSame(first, second);
+		sessionPool.release(first);
+
+		sessionPool.close();
+
+		assertClosed(first);
+		assertClosed(second);
+	}
+
+	@Test
+	public void sharedSessionIsNotClosed() {
+		try (Session shared = new Session(this.graph)) {
+			SessionPool sessionPool = new SessionPool(shared, 2);
+			assertSame(shared, sessionPool.borrow());
+			assertSame(shared, sessionPool.borrow());
+			sessionPool.close();
+
+			try (Tensor<?> input = Tensor.create(0.7f);
+				 Tensor<?> output = shared.runner().feed("Placeholder", input).fetch("add").run().get(0)) {
+				assertEquals(input.dataType(), output.dataType());
+			}
+		}
+	}
+
+	private static void assertClosed(Session session) {
+		try (Tensor<?> input = Tensor.create(0.7f)) {
+			session.runner().feed("Placeholder", input).fetch("add").run();
+			fail("The session should be closed");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.tensorflow.Tensor;
+
+import org.springframework.boot.test.rule.OutputCapture;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class TensorArenaTests {
+
+	@Rule
+	public OutputCapture output = new OutputCapture();
+
+	@Test
+	public void reclaimsTheFeedsNeverReleased() {
+		TensorArena tensorArena = new TensorArena(false);
+		Tensor<?> feed = Tensor.create(1f);
+		Tensor<?> abandoned = Tensor.create(new float[] { 1f, 2f });
+		Tensor<?> output = Tensor.create(new float[] { 1f, 2f });
+
+		Map<String, Object> feeds = new LinkedHashMap<>();
+		feeds.put("input", feed);
+		feeds.put("json", "{}");
+
+		try (TensorArena.Scope arena = tensorArena.open()) {
+			assertEquals(1, tensorArena.getOpenScopes());
+			arena.track(feeds, "input converter");
+			arena.track(abandoned, "input converter");
+			// Taken over by the model evaluation
+			arena.release(feeds);
+			assertTrue(isClosed(feed));
+			arena.own(Collections.singletonMap("output", output));
+		}
+
+		assertTrue(isClosed(abandoned));
+		assertTrue(isClosed(output));
+		assertEquals(0, tensorArena.getOpenScopes());
+		assertEquals(3, tensorArena.getTrackedTensors());
+		assertEquals(1, tensorArena.getReclaimedTensors());
+		assertEquals(8, tensorArena.getReclaimedBytes());
+	}
+
+	@Test
+	public void ownedTensorsClosedByTheConvertersAreNotReclaimed() {
+		TensorArena tensorArena = new TensorArena(true);
+		Tensor<?> output = Tensor.create(new long[] { 1L });
+		TensorArena.Scope arena = tensorArena.open();
+		arena.own(Collections.singletonMap("output", output));
+		// Closed by the output converter
+		output.close();
+		arena.close();
+		arena.close();
+
+		assertEquals(0, tensorArena.getOpenScopes());
+		assertEquals(1, tensorArena.getTrackedTensors());
+		assertEquals(0, tensorArena.getReclaimedTensors());
+		assertEquals(true, tensorArena.getStatistics().get("debug"));
+	}
+
+	@Test
+	public void debugModeReclaimsTheFeedsNeverReleased() {
+		TensorArena tensorArena = new TensorArena(true);
+		Tensor<?> feed = Tensor.create(new long[] { 1L });
+		try (TensorArena.Scope arena = tensorArena.open()) {
+			arena.track(Collections.singletonMap("input", feed), "input converter");
+		}
+
+		assertTrue(isClosed(feed));
+		assertEquals(1, tensorArena.getReclaimedTensors());
+		assertEquals(8, tensorArena.getReclaimedBytes());
+		this.output.expect(allOf(containsString("input converter tensor 'input'"),
+				not(containsString("TensorArenaTests.debugModeReclaimsTheFeedsNeverReleased"))));
+	}
+
+	@Test
+	public void debugModeLogsTheAllocationSiteOfTheReclaimedTensors() {
+		TensorArena tensorArena = new TensorArena(true);
+		try (TensorArena.Scope arena = tensorArena.open()) {
+			arena.track(Tensor.create(new long[] { 1L }), "input converter");
+		}
+
+		assertEquals(1, tensorArena.getReclaimedTensors());
+		this.output.expect(allOf(containsString("input converter tensor"),
+				containsString("TensorArenaTests.debugModeLogsTheAllocationSiteOfTheReclaimedTensors")));
+	}
+
+	@Test
+	public void closesTheTensorsTrackedAfterTheScope() {
+		TensorArena tensorArena = new TensorArena(false);
+		TensorArena.Scope arena = tensorArena.open();
+		arena.close();
+
+		// E.g. the output of a pipeline stage that completes after the message failed
+		Tensor<?> late = arena.track(Tensor.create(1), "input converter");
+		Tensor<?> lateOutput = Tensor.create(2);
+		arena.own(Collections.singletonMap("output", lateOutput));
+
+		assertTrue(isClosed(late));
+		assertTrue(isClosed(lateOutput));
+		assertEquals(0, tensorArena.getTrackedTensors());
+	}
+
+	private static boolean isClosed(Tensor<?> tensor) {
+		try {
+			tensor.numBytes();
+			return false;
+		}
+		catch (RuntimeException e) {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.tensorflow.Tensor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author agent
+ */
+public class TensorBatchUtilsTests {
+
+	@Test
+	public void stackAndSplit() {
+		float[][] in1 = new float[][] { { 1f, 2f, 3f } };
+		float[][] in2 = new float[][] { { 4f, 5f, 6f } };
+
+		try (Tensor<?> t1 = Tensor.create(in1);
+			 Tensor<?> t2 = Tensor.create(in2);
+			 Tensor<?> batch = TensorBatchUtils.stack(Arrays.asList(t1, t2))) {
+
+			assertArrayEquals(new long[] { 2, 3 }, batch.shape());
+			float[][] batchValues = batch.expect(Float.class).copyTo(new float[2][3]);
+			assertArrayEquals(in1[0], batchValues[0], 0f);
+			assertArrayEquals(in2[0], batchValues[1], 0f);
+
+			List<Tensor<?>> items = TensorBatchUtils.split(batch, 2);
+			assertEquals(2, items.size());
+			try (Tensor<?> out1 = items.get(0); Tensor<?> out2 = items.get(1)) {
+				assertArrayEquals(new long[] { 1, 3 }, out1.shape());
+				assertArrayEquals(in1[0], out1.expect(Float.class).copyTo(new float[1][3])[0], 0f);
+				assertArrayEquals(in2[0], out2.expect(Float.class).copyTo(new float[1][3])[0], 0f);
+			}
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void splitRequiresMatchingBatchDimension() {
+		try (Tensor<?> tensor = Tensor.create(new long[][] { { 1, 2 } })) {
+			TensorBatchUtils.split(tensor, 2);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void stackRequiresSameShape() {
+		try (Tensor<?> t1 = Tensor.create(new float[][] { { 1f } });
+			 Tensor<?> t2 = Tensor.create(new float[][] { { 1f, 2f } })) {
+			TensorBatchUtils.stack(Arrays.asList(t1, t2));
+		}
+	}
+}
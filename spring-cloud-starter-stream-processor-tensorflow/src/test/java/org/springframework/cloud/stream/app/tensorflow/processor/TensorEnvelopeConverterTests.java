@@ -0,0 +1,193 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.tensorflow.Tensor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class TensorEnvelopeConverterTests {
+
+	@Test
+	public void namedTensors() {
+		float[][] inFloatArray = new float[][] { { 0.5f, 1.5f, 2.5f }, { 3.5f, 4.5f, 5.5f } };
+		long inLong = 666;
+
+		Map<String, Tensor<?>> inTensors = new LinkedHashMap<>();
+		inTensors.put("features", Tensor.create(inFloatArray));
+		inTensors.put("count", Tensor.create(inLong));
+
+		byte[] envelope = TensorEnvelopeConverter.toEnvelope(inTensors);
+		assertTrue(TensorEnvelopeConverter.isEnvelope(envelope));
+
+		Map<String, Tensor<?>> outTensors = TensorEnvelopeConverter.toTensors(envelope);
+		try {
+			assertArrayEquals(new String[] { "features", "count" }, outTensors.keySet().toArray());
+
+			compareTensors(inTensors.get("features"), outTensors.get("features"));
+			float[][] outFloatArray = outTensors.get("features").copyTo(new float[2][3]);
+			assertArrayEquals(inFloatArray, outFloatArray);
+
+			compareTensors(inTensors.get("count"), outTensors.get("count"));
+			assertEquals(inLong, outTensors.get("count").longValue());
+		}
+		finally {
+			TensorflowModel.closeAll(inTensors.values());
+			TensorflowModel.closeAll(outTensors.values());
+		}
+	}
+
+	@Test
+	public void envelopeSize() {
+		Map<String, Tensor<?>> tensors = new LinkedHashMap<>();
+		tensors.put("x", Tensor.create(new int[] { 1, 2, 3, 4 }));
+		try {
+			// header + name length + name + data type + encoding + rank + dimension + byte length + content
+			assertEquals(9 + 2 + 1 + 1 + 1 + 1 + 8 + 8 + 16, TensorEnvelopeConverter.toEnvelope(tensors).length);
+		}
+		finally {
+			TensorflowModel.closeAll(tensors.values());
+		}
+	}
+
+	@Test
+	public void float16Precision() {
+		float[] inFloatArray = new float[] { 0.1f, -2.5f, 1000.7f, 1e-6f, 65504f, 0f };
+
+		Map<String, Tensor<?>> tensors = new LinkedHashMap<>();
+		tensors.put("x", Tensor.create(inFloatArray));
+		tensors.put("count", Tensor.create(666L));
+		Map<String, Tensor<?>> outTensors = Collections.emptyMap();
+		try {
+			byte[] envelope = TensorEnvelopeConverter.toEnvelope(tensors, TensorPrecision.float16);
+			assertEquals(TensorEnvelopeConverter.toEnvelope(tensors).length - 2 * inFloatArray.length,
+					envelope.length);
+
+			outTensors = TensorEnvelopeConverter.toTensors(envelope);
+			float[] outFloatArray = outTensors.get("x").copyTo(new float[inFloatArray.length]);
+			for (int i = 0; i < inFloatArray.length; i++) {
+				// 11 significant bits
+				assertEquals(inFloatArray[i], outFloatArray[i], Math.max(Math.abs(inFloatArray[i]) / 2048, 6e-8f));
+			}
+			// Only the float tensors have reduced precision
+			assertEquals(666L, outTensors.get("count").longValue());
+		}
+		finally {
+			TensorflowModel.closeAll(tensors.values());
+			TensorflowModel.closeAll(outTensors.values());
+		}
+	}
+
+	@Test
+	public void float16SpecialValues() {
+		assertEquals((short) 0x7BFF, TensorEnvelopeConverter.toFloat16(65504f));
+		assertEquals((short) 0x7C00, TensorEnvelopeConverter.toFloat16(70000f));
+		assertEquals((short) 0xFC00, TensorEnvelopeConverter.toFloat16(Float.NEGATIVE_INFINITY));
+		assertEquals((short) 0x0001, TensorEnvelopeConverter.toFloat16(0x1p-24f));
+		assertEquals((short) 0x8000, TensorEnvelopeConverter.toFloat16(-0f));
+		assertTrue(Float.isNaN(TensorEnvelopeConverter.fromFloat16(TensorEnvelopeConverter.toFloat16(Float.NaN))));
+		for (int bits = 0; bits <= 0xFFFF; bits++) {
+			float value = TensorEnvelopeConverter.fromFloat16((short) bits);
+			if (!Float.isNaN(value)) {
+				assertEquals((short) bits, TensorEnvelopeConverter.toFloat16(value));
+			}
+		}
+	}
+
+	@Test
+	public void int8Precision() {
+		float[] inFloatArray = new float[] { -1.5f, 0f, 0.25f, 3.75f, 100f, -40f };
+
+		Map<String, Tensor<?>> tensors = new LinkedHashMap<>();
+		tensors.put("x", Tensor.create(inFloatArray));
+		Map<String, Tensor<?>> outTensors = Collections.emptyMap();
+		try {
+			byte[] envelope = TensorEnvelopeConverter.toEnvelope(tensors, TensorPrecision.int8);
+			// The scale and the zero point take 8 bytes
+			assertEquals(TensorEnvelopeConverter.toEnvelope(tensors).length - 3 * inFloatArray.length + 8,
+					envelope.length);
+
+			outTensors = TensorEnvelopeConverter.toTensors(envelope);
+			float[] outFloatArray = outTensors.get("x").copyTo(new float[inFloatArray.length]);
+			float scale = (100f + 40f) / 255;
+			for (int i = 0; i < inFloatArray.length; i++) {
+				assertEquals(inFloatArray[i], outFloatArray[i], scale / 2 + 1e-5f);
+			}
+			// Zero is exactly representable
+			assertEquals(0f, outFloatArray[1], 0);
+		}
+		finally {
+			TensorflowModel.closeAll(tensors.values());
+			TensorflowModel.closeAll(outTensors.values());
+		}
+	}
+
+	@Test
+	public void jsonIsNotEnvelope() {
+		assertFalse(TensorEnvelopeConverter.isEnvelope(
+				"{ \"type\": \"INT64\", \"shape\": [], \"value\": \"mgIAAAAAAAA=\" }".getBytes(StandardCharsets.UTF_8)));
+		assertFalse(TensorEnvelopeConverter.isEnvelope(new byte[] { 'T', 'F' }));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void stringTensorsAreNotSupported() {
+		Map<String, Tensor<?>> tensors = new LinkedHashMap<>();
+		tensors.put("text", Tensor.create("text".getBytes(StandardCharsets.UTF_8)));
+		try {
+			TensorEnvelopeConverter.toEnvelope(tensors);
+		}
+		finally {
+			TensorflowModel.closeAll(tensors.values());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void truncatedEnvelope() {
+		Map<String, Tensor<?>> tensors = new LinkedHashMap<>();
+		tensors.put("x", Tensor.create(new int[] { 1, 2, 3, 4 }));
+		byte[] envelope;
+		try {
+			envelope = TensorEnvelopeConverter.toEnvelope(tensors);
+		}
+		finally {
+			TensorflowModel.closeAll(tensors.values());
+		}
+		byte[] truncated = new byte[envelope.length - 4];
+		System.arraycopy(envelope, 0, truncated, 0, truncated.length);
+		TensorEnvelopeConverter.toTensors(truncated);
+	}
+
+	private void compareTensors(Tensor in, Tensor out) {
+		assertEquals(in.dataType(), out.dataType());
+		assertEquals(in.numDimensions(), out.numDimensions());
+		assertEquals(in.numBytes(), out.numBytes());
+		assertArrayEquals(in.shape(), out.shape());
+	}
+
+}
@@ -16,6 +16,15 @@
 
 package org.springframework.cloud.stream.app.tensorflow.processor;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Base64;
+
 import org.junit.Test;
 import org.tensorflow.Tensor;
 
@@ -62,6 +71,81 @@ public class TensorJsonConverterTests {
 		assertEquals(inLong, outTensor.longValue());
 	}
 
+	@Test
+	public void floatArrayThroughStream() throws IOException {
+		float[][] inFloatArray = new float[64][128];
+		for (int i = 0; i < inFloatArray.length; i++) {
+			for (int j = 0; j < inFloatArray[i].length; j++) {
+				inFloatArray[i][j] = i * 0.5f - j;
+			}
+		}
+
+		Tensor inTensor = Tensor.create(inFloatArray);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TensorJsonConverter.toJson(inTensor, out);
+		Tensor outTensor = TensorJsonConverter.toTensor(out.toByteArray());
+
+		compareTensors(inTensor, outTensor);
+		assertArrayEquals(inFloatArray, (float[][]) outTensor.copyTo(new float[64][128]));
+	}
+
+	@Test
+	public void legacyJsonFormat() {
+		ByteBuffer value = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder()).putLong(666);
+		String json = String.format("{ \"type\": \"%s\", \"shape\": %s, \"value\": \"%s\" }",
+				"INT64", Arrays.toString(new long[0]), Base64.getEncoder().encodeToString(value.array()));
+
+		Tensor outTensor = TensorJsonConverter.toTensor(json);
+
+		assertEquals(0, outTensor.numDimensions());
+		assertEquals(666, outTensor.longValue());
+	}
+
+	@Test
+	public void anyFieldOrder() {
+		long[] inLongArray = new long[] { 1, 2, 3 };
+		Tensor inTensor = Tensor.create(inLongArray);
+
+		String json = TensorJsonConverter.toJson(inTensor);
+		String value = json.substring(json.indexOf("\"value\""), json.lastIndexOf('}'));
+		String reordered = "{" + value + ",\"ignored\":{\"a\":[1]},\"shape\":[3],\"type\":\"INT64\"}";
+
+		Tensor outTensor = TensorJsonConverter.toTensor(reordered);
+
+		compareTensors(inTensor, outTensor);
+		assertArrayEquals(inLongArray, (long[]) outTensor.copyTo(new long[3]));
+	}
+
+	@Test
+	public void largeTensorDoesNotAllocateDirectBuffers() {
+		float[] inFloatArray = new float[5 * 1024 * 1024 / 4];
+		inFloatArray[inFloatArray.length - 1] = 1f;
+		Tensor inTensor = Tensor.create(inFloatArray);
+		String jsonTensor = TensorJsonConverter.toJson(inTensor);
+		// Pools the direct buffer of the thread
+		TensorJsonConverter.toTensor(TensorJsonConverter.toJson(Tensor.create(new float[] { 1f }))).close();
+
+		BufferPoolMXBean directBuffers = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+				.filter(pool -> "direct".equals(pool.getName())).findFirst().get();
+		long count = directBuffers.getCount();
+		long memoryUsed = directBuffers.getMemoryUsed();
+		for (int i = 0; i < 2; i++) {
+			try (Tensor outTensor = TensorJsonConverter.toTensor(jsonTensor)) {
+				compareTensors(inTensor, outTensor);
+				assertArrayEquals(inFloatArray, (float[]) outTensor.copyTo(new float[inFloatArray.length]), 0f);
+			}
+		}
+
+		assertEquals(count, directBuffers.getCount());
+		assertEquals(memoryUsed, directBuffers.getMemoryUsed());
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void missingType() {
+		TensorJsonConverter.toTensor("{ \"shape\": [], \"value\": \"mgIAAAAAAAA=\" }");
+	}
+
 	private void compareTensors(Tensor in, Tensor out) {
 		assertEquals(in.dataType(), out.dataType());
 		assertEquals(in.numDimensions(), out.numDimensions());
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import org.junit.Test;
+import org.tensorflow.DataType;
+import org.tensorflow.Tensor;
+import org.tensorflow.framework.TensorProto;
+import org.tensorflow.framework.TensorShapeProto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author agent
+ */
+public class TensorProtoConverterTests {
+
+	@Test
+	public void predictRequest() throws IOException {
+		float[][] inFloatArray = new float[][] { { 0.5f, 1.5f }, { 2.5f, 3.5f } };
+		byte[][] inStrings = new byte[][] { "a".getBytes(StandardCharsets.UTF_8), "bc".getBytes(StandardCharsets.UTF_8) };
+
+		Map<String, Tensor<?>> inTensors = new LinkedHashMap<>();
+		inTensors.put("features", Tensor.create(inFloatArray));
+		inTensors.put("words", Tensor.create(inStrings, String.class));
+
+		// The model_spec (field 1) precedes the inputs and is skipped
+		ByteArrayOutputStream request = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(request);
+		out.writeBytes(1, ByteString.copyFromUtf8("\n\u0005model"));
+		out.flush();
+		request.write(TensorProtoConverter.toPredictRequest(inTensors));
+
+		Map<String, Tensor<?>> outTensors = TensorProtoConverter.fromPredictRequest(request.toByteArray());
+		try {
+			assertArrayEquals(new String[] { "features", "words" }, outTensors.keySet().toArray());
+			assertEquals(DataType.FLOAT, outTensors.get("features").dataType());
+			assertArrayEquals(inFloatArray, outTensors.get("features").copyTo(new float[2][2]));
+			assertEquals(DataType.STRING, outTensors.get("words").dataType());
+			assertArrayEquals(inStrings, outTensors.get("words").copyTo(new byte[2][]));
+		}
+		finally {
+			TensorflowModel.closeAll(inTensors.values());
+			TensorflowModel.closeAll(outTensors.values());
+		}
+	}
+
+	@Test
+	public void predictResponse() {
+		Map<String, Tensor<?>> inTensors = new LinkedHashMap<>();
+		inTensors.put("scores", Tensor.create(new long[] { 7, 8, 9 }));
+
+		Map<String, Tensor<?>> outTensors = TensorProtoConverter.fromPredictResponse(
+				TensorProtoConverter.toPredictResponse(inTensors));
+		try {
+			assertEquals(1, outTensors.size());
+			assertArrayEquals(new long[] { 7, 8, 9 }, outTensors.get("scores").copyTo(new long[3]));
+			// A PredictResponse has no inputs
+			assertEquals(0, TensorProtoConverter.fromPredictRequest(
+					TensorProtoConverter.toPredictResponse(inTensors)).size());
+		}
+		finally {
+			TensorflowModel.closeAll(inTensors.values());
+			TensorflowModel.closeAll(outTensors.values());
+		}
+	}
+
+	@Test
+	public void repeatedValues() {
+		TensorProto tensorProto = TensorProto.newBuilder()
+				.setDtype(org.tensorflow.framework.DataType.DT_FLOAT)
+				.setTensorShape(TensorShapeProto.newBuilder()
+						.addDim(TensorShapeProto.Dim.newBuilder().setSize(2))
+						.addDim(TensorShapeProto.Dim.newBuilder().setSize(2)))
+				.addFloatVal(1.0f)
+				.addFloatVal(2.0f)
+				.build();
+
+		try (Tensor<?> tensor = TensorProtoConverter.toTensor(tensorProto)) {
+			assertArrayEquals(new long[] { 2, 2 }, tensor.shape());
+			// The last value fills the remaining elements
+			assertArrayEquals(new float[][] { { 1.0f, 2.0f }, { 2.0f, 2.0f } }, tensor.copyTo(new float[2][2]));
+		}
+	}
+
+	@Test
+	public void scalarTensorProto() {
+		try (Tensor<?> inTensor = Tensor.create(0.7f);
+				Tensor<?> outTensor = TensorProtoConverter.toTensor(TensorProtoConverter.toTensorProto(inTensor))) {
+			assertEquals(0, outTensor.numDimensions());
+			assertEquals(0.7f, outTensor.floatValue(), 0);
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import org.junit.Test;
+import org.tensorflow.Tensor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class TensorViewTests {
+
+	private static final float[][][][] VALUES = new float[][][][] { {
+			{ { 1f, 2f }, { 3f, 4f }, { 5f, 6f } },
+			{ { 7f, 8f }, { 9f, 10f }, { 11f, 12f } } } };
+
+	@Test
+	public void stridedAccess() {
+		try (Tensor<?> tensor = Tensor.create(VALUES); TensorView view = TensorView.of(tensor)) {
+			assertEquals(4, view.numDimensions());
+			assertEquals(12, view.size());
+			for (int i = 0; i < 2; i++) {
+				for (int j = 0; j < 3; j++) {
+					for (int k = 0; k < 2; k++) {
+						assertEquals(VALUES[0][i][j][k], view.getFloat(0, i, j, k), 0f);
+						assertEquals(VALUES[0][i][j][k], view.getFloat(new int[] { 0, i, j, k }), 0f);
+					}
+				}
+			}
+			assertEquals(12f, view.getFloat(11), 0f);
+		}
+	}
+
+	@Test
+	public void slice() {
+		try (Tensor<?> tensor = Tensor.create(VALUES); TensorView view = TensorView.of(tensor)) {
+			TensorView image = view.slice(0);
+			assertEquals(3, image.numDimensions());
+			assertEquals(9f, image.getFloat(1, 1, 0), 0f);
+
+			TensorView row = image.slice(1);
+			assertEquals(2, row.numDimensions());
+			assertEquals(3, row.shape(0));
+			assertEquals(12f, row.getFloat(2, 1), 0f);
+			assertArrayEquals(new float[] { 7f, 8f, 9f, 10f, 11f, 12f }, row.toFloatArray(), 0f);
+			assertArrayEquals(new float[] { 9f, 10f }, row.slice(1).toFloatArray(), 0f);
+		}
+	}
+
+	@Test
+	public void typedAccess() {
+		try (Tensor<?> ints = Tensor.create(new int[][] { { 1, 2 }, { 3, 4 } });
+			 Tensor<?> longs = Tensor.create(new long[] { 5L, 6L });
+			 Tensor<?> doubles = Tensor.create(7.5d);
+			 TensorView intView = TensorView.of(ints);
+			 TensorView longView = TensorView.of(longs);
+			 TensorView doubleView = TensorView.of(doubles)) {
+			assertEquals(3, intView.getInt(1, 0));
+			assertEquals(6L, longView.getLong(1));
+			assertEquals(0, doubleView.numDimensions());
+			assertEquals(7.5d, doubleView.getDouble(), 0d);
+		}
+	}
+
+	@Test
+	public void pooledBufferIsReused() {
+		try (Tensor<?> first = Tensor.create(new float[] { 1f, 2f, 3f });
+			 Tensor<?> second = Tensor.create(new float[] { 4f, 5f })) {
+			try (TensorView view = TensorView.of(first)) {
+				assertEquals(3f, view.getFloat(2), 0f);
+			}
+			try (TensorView view = TensorView.of(second)) {
+				assertEquals(2, view.size());
+				assertArrayEquals(new float[] { 4f, 5f }, view.toFloatArray(), 0f);
+			}
+		}
+	}
+
+	@Test
+	public void pooledBytesAreCapped() {
+		float[] large = new float[2 * 1024 * 1024];
+		large[large.length - 1] = 1f;
+		try (Tensor<?> first = Tensor.create(new float[768 * 1024]);
+			 Tensor<?> second = Tensor.create(new float[768 * 1024]);
+			 Tensor<?> third = Tensor.create(large)) {
+			TensorView firstView = TensorView.of(first);
+			TensorView secondView = TensorView.of(second);
+			firstView.close();
+			secondView.close();
+			// Pooling the second 3MB buffer would exceed the 4MB per thread
+			assertTrue(TensorView.pooledBytes() <= 4 * 1024 * 1024);
+
+			long pooledBytes = TensorView.pooledBytes();
+			try (TensorView view = TensorView.of(third)) {
+				assertEquals(1f, view.getFloat(large.length - 1), 0f);
+			}
+			// The 8MB tensor is copied into a buffer of its own view, never pooled
+			assertEquals(pooledBytes, TensorView.pooledBytes());
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void indexOutOfDimension() {
+		try (Tensor<?> tensor = Tensor.create(VALUES); TensorView view = TensorView.of(tensor)) {
+			// Within the buffer, but out of the second dimension
+			view.getFloat(0, 0, 3, 0);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void wrongDataType() {
+		try (Tensor<?> tensor = Tensor.create(VALUES); TensorView view = TensorView.of(tensor)) {
+			view.getInt(0);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void closedView() {
+		try (Tensor<?> tensor = Tensor.create(VALUES)) {
+			TensorView view = TensorView.of(tensor);
+			view.close();
+			view.getFloat(0);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void sliceOfClosedView() {
+		try (Tensor<?> tensor = Tensor.create(VALUES)) {
+			TensorView view = TensorView.of(tensor);
+			TensorView row = view.slice(0).slice(1);
+			view.close();
+			row.toFloatArray();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tensorflow.Tensor;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.unit.DataSize;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class TensorflowModelZooTests {
+
+	private static final String MODEL = "tensorflow/model/linear_regression_graph.proto";
+
+	private TensorflowCommonProcessorProperties properties;
+
+	private TensorflowModelZoo modelZoo;
+
+	@Before
+	public void before() {
+		this.properties = new TensorflowCommonProcessorProperties();
+		this.properties.getModelZoo().setEnabled(true);
+		this.properties.getModelZoo().getModels().put("a", new ClassPathResource(MODEL));
+		this.properties.getModelZoo().getModels().put("b", new ClassPathResource(MODEL));
+		this.properties.getModelZoo().setLocationTemplate("classpath:tensorflow/model/{model}.proto");
+	}
+
+	@After
+	public void after() {
+		if (this.modelZoo != null) {
+			this.modelZoo.close();
+		}
+	}
+
+	private TensorflowModelZoo modelZoo() {
+		this.modelZoo = new TensorflowModelZoo(this.properties.getModelZoo(),
+				location -> TensorflowModel.load(location, this.properties));
+		return this.modelZoo;
+	}
+
+	@Test
+	public void loadedModelIsShared() {
+		TensorflowModelZoo modelZoo = modelZoo();
+
+		TensorflowModel model = modelZoo.acquire("a");
+		model.release();
+		TensorflowModel again = modelZoo.acquire("a");
+		again.release();
+
+		assertSame(model, again);
+		assertEquals(1L, modelZoo.getStatistics().get("loads"));
+		assertTrue(model.getNativeBytes() > 0);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void leastRecentlyUsedModelIsEvictedOverBudget() {
+		this.properties.getModelZoo().setNativeMemoryBudget(DataSize.ofBytes(1));
+		TensorflowModelZoo modelZoo = modelZoo();
+
+		TensorflowModel a = modelZoo.acquire("a");
+		a.release();
+		modelZoo.acquire("b").release();
+
+		// Only the most recently used model is retained
+		Map<String, Object> statistics = modelZoo.getStatistics();
+		assertEquals(Collections.singleton("b"), ((Map<String, Long>) statistics.get("models")).keySet());
+		assertEquals(1L, statistics.get("evictions"));
+
+		TensorflowModel reloaded = modelZoo.acquire("a");
+		reloaded.release();
+		assertNotSame(a, reloaded);
+		assertEquals(3L, modelZoo.getStatistics().get("loads"));
+	}
+
+	@Test
+	public void locationTemplate() {
+		assertEquals("linear_regression_graph.proto",
+				modelZoo().location("linear_regression_graph").getFilename());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownModelIsRejected() {
+		this.properties.getModelZoo().setLocationTemplate(null);
+		modelZoo().acquire("c");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void templateRejectsPaths() {
+		modelZoo().location("../linear_regression_graph");
+	}
+
+	@Test
+	public void evaluateNamedModel() {
+		TensorFlowService tensorFlowService = new TensorFlowService(new ClassPathResource(MODEL), this.properties);
+		try {
+			Map<String, Object> feeds = Collections.singletonMap("Placeholder", 0.7f);
+			try (Tensor<?> named = tensorFlowService.evaluate("a", feeds, Collections.singletonList("add")).get("add");
+					Tensor<?> unnamed = tensorFlowService.evaluate(feeds, Collections.singletonList("add")).get("add")) {
+				// Both are the same linear regression graph
+				assertEquals(unnamed.floatValue(), named.floatValue(), 0);
+			}
+			assertTrue(tensorFlowService.getModelZooStatistics().containsKey("models"));
+		}
+		finally {
+			tensorFlowService.close();
+		}
+	}
+}
@@ -16,6 +16,8 @@
 
 package org.springframework.cloud.stream.app.tensorflow.processor;
 
+import java.util.Arrays;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -26,6 +28,7 @@ import org.springframework.cloud.stream.config.SpelExpressionConverterConfigurat
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.util.unit.DataSize;
 
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.Assert.assertNull;
@@ -77,6 +80,41 @@ public class TensorflowProcessorPropertiesTests {
 		assertThat(properties.getMode(), equalTo(OutputMode.payload));
 	}
 
+	@Test
+	public void inputFormatCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.inputFormat:proto").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getInputFormat(), equalTo(TensorFormat.proto));
+	}
+
+	@Test
+	public void outputFormatDefaultsToJson() {
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getOutputFormat(), equalTo(TensorFormat.json));
+	}
+
+	@Test
+	public void outputFormatCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.outputFormat:envelope").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getOutputFormat(), equalTo(TensorFormat.envelope));
+	}
+
+	@Test
+	public void outputPrecisionCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.outputPrecision:float16").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getOutputPrecision(), equalTo(TensorPrecision.float16));
+	}
+
 	@Test
 	public void modeCanBeCustomized() {
 		TestPropertyValues.of("tensorflow.mode:header").applyTo(context);
@@ -120,6 +158,234 @@ public class TensorflowProcessorPropertiesTests {
 		assertThat(properties.getExpression().getExpressionString(), equalTo("header"));
 	}
 
+	@Test
+	public void sessionPoolSizeDefaultsToOne() {
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getSession().getPoolSize(), equalTo(1));
+	}
+
+	@Test
+	public void sessionPoolSizeCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.session.poolSize:4").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getSession().getPoolSize(), equalTo(4));
+	}
+
+	@Test
+	public void sessionConfigCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.session.intraOpParallelism:2", "tensorflow.session.interOpParallelism:1",
+				"tensorflow.session.usePerSessionThreads:true", "tensorflow.session.partitionCores:true")
+				.applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getSession().getIntraOpParallelism(), equalTo(2));
+		assertThat(properties.getSession().getInterOpParallelism(), equalTo(1));
+		assertThat(properties.getSession().isUsePerSessionThreads(), equalTo(true));
+		assertThat(properties.getSession().isPartitionCores(), equalTo(true));
+	}
+
+	@Test
+	public void batchingDisabledByDefault() {
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getBatch().getSize(), equalTo(1));
+		assertThat(properties.getBatch().getTimeout(), equalTo(10L));
+	}
+
+	@Test
+	public void batchCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.batch.size:8", "tensorflow.batch.timeout:50").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getBatch().getSize(), equalTo(8));
+		assertThat(properties.getBatch().getTimeout(), equalTo(50L));
+	}
+
+	@Test
+	public void pipelineCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.pipeline.enabled:true", "tensorflow.pipeline.inputThreads:2",
+				"tensorflow.pipeline.inferenceThreads:3", "tensorflow.pipeline.outputThreads:4",
+				"tensorflow.pipeline.queueCapacity:5").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getPipeline().isEnabled(), equalTo(true));
+		assertThat(properties.getPipeline().getInputThreads(), equalTo(2));
+		assertThat(properties.getPipeline().getInferenceThreads(), equalTo(3));
+		assertThat(properties.getPipeline().getOutputThreads(), equalTo(4));
+		assertThat(properties.getPipeline().getQueueCapacity(), equalTo(5));
+	}
+
+	@Test
+	public void savedModelDisabledByDefault() {
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getSavedModel().isEnabled(), equalTo(false));
+		assertThat(properties.getSavedModel().getTags(), equalTo(Arrays.asList("serve")));
+		assertThat(properties.getSavedModel().getSignature(), equalTo("serving_default"));
+	}
+
+	@Test
+	public void savedModelCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.savedModel.enabled:true", "tensorflow.savedModel.tags:serve,gpu",
+				"tensorflow.savedModel.signature:predict").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getSavedModel().isEnabled(), equalTo(true));
+		assertThat(properties.getSavedModel().getTags(), equalTo(Arrays.asList("serve", "gpu")));
+		assertThat(properties.getSavedModel().getSignature(), equalTo("predict"));
+	}
+
+	@Test
+	public void warmUpDisabledByDefault() {
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getWarmUp().getIterations(), equalTo(0));
+		assertThat(properties.getWarmUp().getSamples().isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void warmUpCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.warmUp.iterations:4",
+				"tensorflow.warmUp.samples:classpath:/warmup/sample1.json,classpath:/warmup/sample2.json")
+				.applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getWarmUp().getIterations(), equalTo(4));
+		assertThat(properties.getWarmUp().getSamples().size(), equalTo(2));
+		assertThat(properties.getWarmUp().getSamples().get(1).getFilename(), equalTo("sample2.json"));
+	}
+
+	@Test
+	public void reloadPollIntervalCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.reload.pollInterval:30000").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getReload().getPollInterval(), equalTo(30000L));
+	}
+
+	@Test
+	public void modelCacheCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.modelCache.directory:/tmp/tensorflow-models").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getModelCache().getDirectory().getPath(), equalTo("/tmp/tensorflow-models"));
+	}
+
+	@Test
+	public void modelExtractionParallelismCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.modelExtraction.parallelism:8").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getModelExtraction().getParallelism(), equalTo(8));
+	}
+
+	@Test
+	public void cacheCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.cache.enabled:true", "tensorflow.cache.maxEntries:50",
+				"tensorflow.cache.diskDirectory:/tmp/inference-cache", "tensorflow.cache.diskMaxEntries:500")
+				.applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getCache().isEnabled(), equalTo(true));
+		assertThat(properties.getCache().getMaxEntries(), equalTo(50));
+		assertThat(properties.getCache().getDiskDirectory().getPath(), equalTo("/tmp/inference-cache"));
+		assertThat(properties.getCache().getDiskMaxEntries(), equalTo(500));
+	}
+
+	@Test
+	public void modelZooCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.modelZoo.enabled:true", "tensorflow.modelZoo.header:model",
+				"tensorflow.modelZoo.expression:headers['model']",
+				"tensorflow.modelZoo.models.linear:classpath:tensorflow/model/linear_regression_graph.proto",
+				"tensorflow.modelZoo.locationTemplate:file:/models/{model}.pb",
+				"tensorflow.modelZoo.nativeMemoryBudget:256MB").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getModelZoo().isEnabled(), equalTo(true));
+		assertThat(properties.getModelZoo().getHeader(), equalTo("model"));
+		assertThat(properties.getModelZoo().getExpression().getExpressionString(), equalTo("headers['model']"));
+		assertThat(properties.getModelZoo().getModels().get("linear").getFilename(),
+				equalTo("linear_regression_graph.proto"));
+		assertThat(properties.getModelZoo().getLocationTemplate(), equalTo("file:/models/{model}.pb"));
+		assertThat(properties.getModelZoo().getNativeMemoryBudget(), equalTo(DataSize.ofMegabytes(256)));
+	}
+
+	@Test
+	public void admissionCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.admission.enabled:true", "tensorflow.admission.initialLimit:2",
+				"tensorflow.admission.minLimit:2", "tensorflow.admission.maxLimit:8",
+				"tensorflow.admission.tensorMemoryBudget:64MB").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getAdmission().isEnabled(), equalTo(true));
+		assertThat(properties.getAdmission().getInitialLimit(), equalTo(2));
+		assertThat(properties.getAdmission().getMinLimit(), equalTo(2));
+		assertThat(properties.getAdmission().getMaxLimit(), equalTo(8));
+		assertThat(properties.getAdmission().getTensorMemoryBudget(), equalTo(DataSize.ofMegabytes(64)));
+	}
+
+	@Test
+	public void reactiveCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.reactive.enabled:true", "tensorflow.reactive.concurrency:8",
+				"tensorflow.reactive.inferenceThreads:2").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getReactive().isEnabled(), equalTo(true));
+		assertThat(properties.getReactive().getConcurrency(), equalTo(8));
+		assertThat(properties.getReactive().getInferenceThreads(), equalTo(2));
+	}
+
+	@Test
+	public void profilingCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.profiling.enabled:true", "tensorflow.profiling.sampleRate:10",
+				"tensorflow.profiling.topOps:5").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getProfiling().isEnabled(), equalTo(true));
+		assertThat(properties.getProfiling().getSampleRate(), equalTo(10));
+		assertThat(properties.getProfiling().getTopOps(), equalTo(5));
+	}
+
+	@Test
+	public void arenaDebugCanBeEnabled() {
+		TestPropertyValues.of("tensorflow.arena.debug:true").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getArena().isDebug(), equalTo(true));
+	}
+
+	@Test
+	public void graphOptimizationCanBeCustomized() {
+		TestPropertyValues.of("tensorflow.graphOptimization.enabled:true",
+				"tensorflow.graphOptimization.constantFolding:false").applyTo(context);
+		context.register(Conf.class);
+		context.refresh();
+		TensorflowCommonProcessorProperties properties = context.getBean(TensorflowCommonProcessorProperties.class);
+		assertThat(properties.getGraphOptimization().isEnabled(), equalTo(true));
+		assertThat(properties.getGraphOptimization().isConstantFolding(), equalTo(false));
+	}
+
 	@Configuration
 	@EnableConfigurationProperties(TensorflowCommonProcessorProperties.class)
 	@Import(SpelExpressionConverterConfiguration.class)
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.processor;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.tensorflow.Tensor;
+
+import org.springframework.core.io.ClassPathResource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class TensorflowStartupTests {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void phasesRunInParallel() {
+		TensorflowStartup startup = new TensorflowStartup();
+		// Neither phase can complete before the other one started
+		CountDownLatch started = new CountDownLatch(2);
+		startup.submit("a", () -> awaitLatch(started));
+		startup.submit("b", () -> awaitLatch(started));
+		startup.time("main", () -> "main");
+		startup.start();
+
+		Map<String, Object> report = startup.getReport();
+		Map<String, Map<String, Object>> phases = (Map<String, Map<String, Object>>) report.get("phases");
+		assertEquals(3, phases.size());
+		assertNotEquals(phases.get("a").get("thread"), phases.get("b").get("thread"));
+		assertFalse(phases.get("a").containsKey("failed"));
+		assertTrue((Long) report.get("readyMs") >= 0);
+		startup.stop();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void nestedPhasesAreNotCountedTwice() {
+		TensorflowStartup startup = new TensorflowStartup();
+		startup.submit("model", () -> startup.time("graph-import", () -> sleep(50)));
+		startup.time("labels", () -> sleep(20));
+		startup.start();
+
+		Map<String, Object> report = startup.getReport();
+		Map<String, Map<String, Object>> phases = (Map<String, Map<String, Object>>) report.get("phases");
+		assertEquals("model", phases.get("graph-import").get("parent"));
+		assertFalse(phases.get("model").containsKey("parent"));
+		assertFalse(phases.get("labels").containsKey("parent"));
+		assertEquals((Long) phases.get("model").get("durationMs") + (Long) phases.get("labels").get("durationMs"),
+				report.get("serialMs"));
+		assertTrue((Long) report.get("serialMs") >= 70);
+		startup.stop();
+	}
+
+	private static boolean sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+			return true;
+		}
+		catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static boolean awaitLatch(CountDownLatch latch) {
+		latch.countDown();
+		try {
+			return latch.await(10, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void failedPhaseFailsTheStartup() {
+		TensorflowStartup startup = new TensorflowStartup();
+		startup.submit("model", () -> {
+			throw new IllegalArgumentException("Invalid model");
+		});
+		try {
+			startup.start();
+		}
+		finally {
+			assertEquals(true, ((Map<?, ?>) ((Map<?, ?>) startup.getReport().get("phases")).get("model"))
+					.get("failed"));
+		}
+	}
+
+	@Test
+	public void evaluationWaitsForTheBackgroundModelLoad() {
+		TensorflowStartup startup = new TensorflowStartup();
+		TensorFlowService tensorFlowService = new TensorFlowService(
+				new ClassPathResource("tensorflow/model/linear_regression_graph.proto"),
+				new TensorflowCommonProcessorProperties(), startup);
+		try (Tensor<?> result = tensorFlowService.evaluate(Collections.singletonMap("Placeholder", 0.7f),
+				Collections.singletonList("add")).get("add")) {
+			assertEquals(1L, tensorFlowService.getModelVersion());
+			assertTrue(startup.getReport().toString().contains("graph-import"));
+		}
+		finally {
+			tensorFlowService.close();
+			startup.stop();
+		}
+	}
+}
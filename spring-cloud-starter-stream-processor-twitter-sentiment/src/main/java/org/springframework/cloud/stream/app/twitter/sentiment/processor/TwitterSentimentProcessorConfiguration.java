@@ -29,8 +29,10 @@ import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowCommo
 import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowCommonProcessorProperties;
 import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowInputConverter;
 import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowOutputConverter;
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowStartup;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Import;
 
 /**
@@ -55,17 +57,20 @@ public class TwitterSentimentProcessorConfiguration {
 	private TwitterSentimentProcessorProperties twitterSentimentProcessorProperties;
 
 	@Bean
+	@DependsOn("tensorFlowService")
 	public TensorflowOutputConverter tensorflowOutputConverter() {
 		logger.info("Load TwitterSentimentTensorflowOutputConverter");
 		return new TwitterSentimentTensorflowOutputConverter();
 	}
 
 	@Bean
-	public TensorflowInputConverter tensorflowInputConverter() {
+	@DependsOn("tensorFlowService")
+	public TensorflowInputConverter tensorflowInputConverter(TensorflowStartup tensorflowStartup) {
 		if (logger.isInfoEnabled()) {
 			logger.info("Load vocabulary: " + twitterSentimentProcessorProperties.getVocabulary());
 		}
-		return new TwitterSentimentTensorflowInputConverter(twitterSentimentProcessorProperties.getVocabulary());
+		return tensorflowStartup.time("vocabulary", () -> new TwitterSentimentTensorflowInputConverter(
+				twitterSentimentProcessorProperties.getVocabulary()));
 	}
 
 	@Bean
@@ -21,6 +21,7 @@ import java.util.Map;
 
 import org.tensorflow.Tensor;
 
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorView;
 import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowOutputConverter;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -54,10 +55,11 @@ public class TwitterSentimentTensorflowOutputConverter implements TensorflowOutp
 	@Override
 	public String convert(Map<String, Tensor<?>> tensorMap, Map<String, Object> processorContext) {
 		Tensor tensor = tensorMap.entrySet().iterator().next().getValue();
-		// Read Tensor's value into float[][] matrix
-		float[][] resultMatrix = new float[12][2];
-		tensor.copyTo(resultMatrix);
-		String sentimentString = Sentiment.get(resultMatrix[0][1]).toString();
+		// Read the [0][1] element of the [12][2] result matrix
+		String sentimentString;
+		try (TensorView resultMatrix = TensorView.of(tensor)) {
+			sentimentString = Sentiment.get(resultMatrix.getFloat(0, 1)).toString();
+		}
 
 		// Prepare teh output map
 		Map inputJsonMap = (Map) processorContext.get(
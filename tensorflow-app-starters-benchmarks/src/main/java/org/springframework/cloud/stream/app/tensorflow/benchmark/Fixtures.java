@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowCommonProcessorProperties;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Loads the checked-in benchmark fixtures from the fixtures/ classpath folder.
+ *
+ * @author agent
+ */
+final class Fixtures {
+
+	static final String LINEAR_REGRESSION_MODEL = "tensorflow/model/linear_regression_graph.proto";
+
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	private Fixtures() {
+	}
+
+	static Resource resource(String name) {
+		return new ClassPathResource("fixtures/" + name);
+	}
+
+	static byte[] bytes(String name) {
+		try (InputStream is = resource(name).getInputStream()) {
+			return StreamUtils.copyToByteArray(is);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Can not read the fixture: " + name, e);
+		}
+	}
+
+	static JsonNode json(String name) {
+		try {
+			return objectMapper.readTree(bytes(name));
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Can not parse the fixture: " + name, e);
+		}
+	}
+
+	/**
+	 * @return Returns the default processor properties, as bound without any configuration.
+	 */
+	static TensorflowCommonProcessorProperties processorProperties() {
+		return new TensorflowCommonProcessorProperties();
+	}
+
+	/**
+	 * @return Returns a new, mutable processor context.
+	 */
+	static Map<String, Object> processorContext() {
+		return new HashMap<>();
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.benchmark;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tensorflow.Tensor;
+
+import org.springframework.cloud.stream.app.image.recognition.processor.ImageRecognitionOutputMessageBuilder;
+import org.springframework.cloud.stream.app.image.recognition.processor.ImageRecognitionTensorflowInputConverter;
+import org.springframework.cloud.stream.app.image.recognition.processor.ImageRecognitionTensorflowOutputConverter;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.util.StringUtils;
+
+/**
+ * Benchmarks the Image Recognition processor input converter (JPEG decoding and normalization graph), output
+ * converter (top-K label selection) and message builder (label drawing), using the fixtures/images/panda.jpeg.
+ * The label probabilities are random, with one probability per fixtures/image-recognition/labels.txt label.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageRecognitionBenchmarks {
+
+	@Param({ "1", "3" })
+	private int responseSize;
+
+	private byte[] image;
+
+	private ImageRecognitionTensorflowInputConverter inputConverter;
+
+	private ImageRecognitionTensorflowOutputConverter outputConverter;
+
+	private ImageRecognitionOutputMessageBuilder outputMessageBuilder;
+
+	private Tensor<?> outputTensor;
+
+	private Message<byte[]> inputMessage;
+
+	private String recognizedLabels;
+
+	@Setup
+	public void setup() {
+		this.image = Fixtures.bytes("images/panda.jpeg");
+		this.inputConverter = new ImageRecognitionTensorflowInputConverter();
+		this.outputConverter = new ImageRecognitionTensorflowOutputConverter(
+				Fixtures.resource("image-recognition/labels.txt"), this.responseSize);
+		this.outputMessageBuilder = new ImageRecognitionOutputMessageBuilder(true, Fixtures.processorProperties());
+
+		int labelsCount = StringUtils.countOccurrencesOf(
+				new String(Fixtures.bytes("image-recognition/labels.txt")), "\n");
+		float[][] probabilities = new float[1][labelsCount];
+		Random random = new Random(42);
+		for (int i = 0; i < labelsCount; i++) {
+			probabilities[0][i] = random.nextFloat() / labelsCount;
+		}
+		this.outputTensor = Tensor.create(probabilities);
+
+		this.inputMessage = MessageBuilder.withPayload(this.image).build();
+		this.recognizedLabels = outputConverter();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		this.outputTensor.close();
+		this.inputConverter.close();
+	}
+
+	@Benchmark
+	public void inputConverter(Blackhole blackhole) {
+		Map<String, Object> feeds = this.inputConverter.convert(this.image, Fixtures.processorContext());
+		for (Object feed : feeds.values()) {
+			blackhole.consume(feed);
+			((Tensor<?>) feed).close();
+		}
+	}
+
+	@Benchmark
+	public String outputConverter() {
+		return this.outputConverter.convert(Collections.singletonMap("output", this.outputTensor),
+				Fixtures.processorContext());
+	}
+
+	@Benchmark
+	public Message<?> messageBuilder() {
+		return this.outputMessageBuilder.createOutputMessageBuilder(this.inputMessage, this.recognizedLabels).build();
+	}
+}
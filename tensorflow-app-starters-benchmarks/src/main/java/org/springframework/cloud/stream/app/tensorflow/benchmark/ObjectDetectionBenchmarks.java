@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tensorflow.Tensor;
+
+import org.springframework.cloud.stream.app.object.detection.mocel.ObjectDetection;
+import org.springframework.cloud.stream.app.object.detection.processor.GraphicsUtils;
+import org.springframework.cloud.stream.app.object.detection.processor.ObjectDetectionOutputMessageBuilder;
+import org.springframework.cloud.stream.app.object.detection.processor.ObjectDetectionTensorflowInputConverter;
+import org.springframework.cloud.stream.app.object.detection.processor.ObjectDetectionTensorflowOutputConverter;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import static org.springframework.cloud.stream.app.object.detection.processor.ObjectDetectionTensorflowOutputConverter.DETECTION_BOXES;
+import static org.springframework.cloud.stream.app.object.detection.processor.ObjectDetectionTensorflowOutputConverter.DETECTION_CLASSES;
+import static org.springframework.cloud.stream.app.object.detection.processor.ObjectDetectionTensorflowOutputConverter.DETECTION_SCORES;
+
+/**
+ * Benchmarks the Object Detection processor input converter, output converter, message builder and the
+ * {@link GraphicsUtils#drawBoundingBox} on the fixtures/images/tourists.jpg image.
+ *
+ * The model output tensors are built from the fixtures/object-detection/detections.json, padded with zero score
+ * detections up to the {@link #MAX_DETECTIONS} of the SSD models. The output converter closes the output tensors, so
+ * the outputConverter benchmark includes the creation of the three (small) output tensors.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObjectDetectionBenchmarks {
+
+	private static final int MAX_DETECTIONS = 100;
+
+	private static final float CONFIDENCE = 0.4f;
+
+	private byte[] image;
+
+	private BufferedImage bufferedImage;
+
+	private List<ObjectDetection> detections;
+
+	private float[] scores;
+
+	private float[] classes;
+
+	private float[] boxes;
+
+	private ObjectDetectionTensorflowInputConverter inputConverter;
+
+	private ObjectDetectionTensorflowOutputConverter outputConverter;
+
+	private ObjectDetectionOutputMessageBuilder outputMessageBuilder;
+
+	private Message<byte[]> inputMessage;
+
+	@Setup
+	public void setup() throws IOException {
+		this.image = Fixtures.bytes("images/tourists.jpg");
+		this.bufferedImage = ImageIO.read(new ByteArrayInputStream(this.image));
+		this.detections = new ObjectMapper().readValue(Fixtures.bytes("object-detection/detections.json"),
+				new TypeReference<List<ObjectDetection>>() { });
+
+		this.scores = new float[MAX_DETECTIONS];
+		this.classes = new float[MAX_DETECTIONS];
+		this.boxes = new float[MAX_DETECTIONS * 4];
+		for (int i = 0; i < this.detections.size(); i++) {
+			ObjectDetection detection = this.detections.get(i);
+			this.scores[i] = detection.getConfidence();
+			this.classes[i] = detection.getCid();
+			this.boxes[i * 4] = detection.getY1();
+			this.boxes[i * 4 + 1] = detection.getX1();
+			this.boxes[i * 4 + 2] = detection.getY2();
+			this.boxes[i * 4 + 3] = detection.getX2();
+		}
+		// The padding detections are classified as the first label
+		Arrays.fill(this.classes, this.detections.size(), MAX_DETECTIONS, 1);
+
+		List<String> modelFetch = Arrays.asList(DETECTION_SCORES, DETECTION_CLASSES, DETECTION_BOXES);
+		this.inputConverter = new ObjectDetectionTensorflowInputConverter();
+		this.outputConverter = new ObjectDetectionTensorflowOutputConverter(
+				Fixtures.resource("object-detection/mscoco_label_map.pbtxt"), CONFIDENCE, modelFetch);
+		this.outputMessageBuilder = new ObjectDetectionOutputMessageBuilder(true, false, false,
+				Fixtures.processorProperties());
+
+		this.inputMessage = MessageBuilder.withPayload(this.image).build();
+	}
+
+	@Benchmark
+	public void inputConverter(Blackhole blackhole) {
+		Map<String, Object> feeds = this.inputConverter.convert(this.image, Fixtures.processorContext());
+		for (Object feed : feeds.values()) {
+			blackhole.consume(feed);
+			((Tensor<?>) feed).close();
+		}
+	}
+
+	@Benchmark
+	public List<ObjectDetection> outputConverter() {
+		Map<String, Tensor<?>> outputTensors = new HashMap<>();
+		outputTensors.put(DETECTION_SCORES, Tensor.create(new long[] { 1, MAX_DETECTIONS },
+				FloatBuffer.wrap(this.scores)));
+		outputTensors.put(DETECTION_CLASSES, Tensor.create(new long[] { 1, MAX_DETECTIONS },
+				FloatBuffer.wrap(this.classes)));
+		outputTensors.put(DETECTION_BOXES, Tensor.create(new long[] { 1, MAX_DETECTIONS, 4 },
+				FloatBuffer.wrap(this.boxes)));
+		return this.outputConverter.convert(outputTensors, Fixtures.processorContext());
+	}
+
+	@Benchmark
+	public Message<?> messageBuilder() {
+		return this.outputMessageBuilder.createOutputMessageBuilder(this.inputMessage, this.detections).build();
+	}
+
+	@Benchmark
+	public BufferedImage drawBoundingBox() {
+		// Draws over the same image, the pixel values do not affect the drawing cost
+		for (ObjectDetection od : this.detections) {
+			GraphicsUtils.drawBoundingBox(this.bufferedImage, od.getCid(), od.getName(),
+					(int) (od.getX1() * this.bufferedImage.getWidth()), (int) (od.getY1() * this.bufferedImage.getHeight()),
+					(int) (od.getX2() * this.bufferedImage.getWidth()), (int) (od.getY2() * this.bufferedImage.getHeight()),
+					false);
+		}
+		return this.bufferedImage;
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tensorflow.Tensor;
+
+import org.springframework.cloud.stream.app.pose.estimation.model.Body;
+import org.springframework.cloud.stream.app.pose.estimation.model.Model;
+import org.springframework.cloud.stream.app.pose.estimation.processor.PoseEstimateOutputMessageBuilder;
+import org.springframework.cloud.stream.app.pose.estimation.processor.PoseEstimationProcessorProperties;
+import org.springframework.cloud.stream.app.pose.estimation.processor.PoseEstimationTensorflowInputConverter;
+import org.springframework.cloud.stream.app.pose.estimation.processor.PoseEstimationTensorflowOutputConverter;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+/**
+ * Benchmarks the Pose Estimation processor input converter, output converter (the part non-maximum suppression,
+ * the limb PAF scoring and the body assembling) and message builder (pose drawing) on the
+ * fixtures/images/tourists.jpg image.
+ *
+ * The model output tensor is rebuilt from the bodies detected in the same image, fixtures/pose-estimation/
+ * tourists-bodies.json: a gaussian heatmap peak for every part and a unit PAF vector field along every limb. The
+ * output converter closes the output tensor, so the outputConverter benchmark includes the creation of the tensor.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PoseEstimationBenchmarks {
+
+	private static final String MODEL_FETCH = "Openpose/concat_stage7";
+
+	// 18 part heatmaps, the background heatmap and 19 x 2 limb PAFs
+	private static final int HEATMAP_PAFMAP_COUNT = 57;
+
+	// The model output is 1/8 of the input image
+	private static final int OUTPUT_SCALE = 8;
+
+	private byte[] image;
+
+	private long[] outputShape;
+
+	private float[] outputData;
+
+	private PoseEstimationTensorflowInputConverter inputConverter;
+
+	private PoseEstimationTensorflowOutputConverter outputConverter;
+
+	private PoseEstimateOutputMessageBuilder outputMessageBuilder;
+
+	private Message<byte[]> inputMessage;
+
+	private List<Body> bodies;
+
+	@Setup
+	public void setup() throws IOException {
+		this.image = Fixtures.bytes("images/tourists.jpg");
+		BufferedImage bufferedImage = ImageIO.read(new ByteArrayInputStream(this.image));
+		int height = bufferedImage.getHeight() / OUTPUT_SCALE;
+		int width = bufferedImage.getWidth() / OUTPUT_SCALE;
+		this.outputShape = new long[] { 1, height, width, HEATMAP_PAFMAP_COUNT };
+		this.outputData = new float[height * width * HEATMAP_PAFMAP_COUNT];
+		for (JsonNode body : Fixtures.json("pose-estimation/tourists-bodies.json")) {
+			for (JsonNode limb : body.get("limbs")) {
+				drawPart(limb.get("from"), height, width);
+				drawPart(limb.get("to"), height, width);
+				drawLimb(limb, height, width);
+			}
+		}
+
+		PoseEstimationProcessorProperties poseProperties = new PoseEstimationProcessorProperties();
+		this.inputConverter = new PoseEstimationTensorflowInputConverter(poseProperties);
+		this.outputConverter = new PoseEstimationTensorflowOutputConverter(poseProperties,
+				Collections.singletonList(MODEL_FETCH));
+		this.outputMessageBuilder = new PoseEstimateOutputMessageBuilder(poseProperties,
+				Fixtures.processorProperties());
+
+		this.inputMessage = MessageBuilder.withPayload(this.image).build();
+		this.bodies = outputConverter();
+	}
+
+	/**
+	 * Adds a gaussian peak, with the part confidence, to the heatmap of the part type.
+	 */
+	private void drawPart(JsonNode part, int height, int width) {
+		int channel = Model.PartType.valueOf(part.get("type").asText()).getId();
+		int y = part.get("y").asInt();
+		int x = part.get("x").asInt();
+		float confidence = (float) part.get("confidence").asDouble();
+		for (int i = Math.max(0, y - 2); i <= Math.min(height - 1, y + 2); i++) {
+			for (int j = Math.max(0, x - 2); j <= Math.min(width - 1, x + 2); j++) {
+				int index = (i * width + j) * HEATMAP_PAFMAP_COUNT + channel;
+				float value = confidence * (float) Math.exp(-((i - y) * (i - y) + (j - x) * (j - x)) / 2.0);
+				this.outputData[index] = Math.max(this.outputData[index], value);
+			}
+		}
+	}
+
+	/**
+	 * Sets the PAF of the limb type to the unit vector pointing from the "from" to the "to" part, along the limb.
+	 */
+	private void drawLimb(JsonNode limb, int height, int width) {
+		Model.LimbType limbType = Model.LimbType.valueOf(limb.get("type").asText());
+		int fromY = limb.get("from").get("y").asInt();
+		int fromX = limb.get("from").get("x").asInt();
+		float deltaY = limb.get("to").get("y").asInt() - fromY;
+		float deltaX = limb.get("to").get("x").asInt() - fromX;
+		float norm = (float) Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+		if (norm == 0) {
+			return;
+		}
+		// Multiple of the 10 PAF score steps of the output converter
+		int steps = (int) Math.ceil(norm) * 10;
+		for (int t = 0; t <= steps; t++) {
+			int y = Math.min(height - 1, Math.round(fromY + t * deltaY / steps));
+			int x = Math.min(width - 1, Math.round(fromX + t * deltaX / steps));
+			int index = (y * width + x) * HEATMAP_PAFMAP_COUNT;
+			this.outputData[index + limbType.getPafIndexX()] = deltaX / norm;
+			this.outputData[index + limbType.getPafIndexY()] = deltaY / norm;
+		}
+	}
+
+	@Benchmark
+	public void inputConverter(Blackhole blackhole) {
+		Map<String, Object> feeds = this.inputConverter.convert(this.image, Fixtures.processorContext());
+		for (Object feed : feeds.values()) {
+			blackhole.consume(feed);
+			((Tensor<?>) feed).close();
+		}
+	}
+
+	@Benchmark
+	public List<Body> outputConverter() {
+		Tensor<Float> outputTensor = Tensor.create(this.outputShape, FloatBuffer.wrap(this.outputData));
+		return this.outputConverter.convert(Collections.singletonMap(MODEL_FETCH, outputTensor),
+				Fixtures.processorContext());
+	}
+
+	@Benchmark
+	public Message<?> messageBuilder() {
+		return this.outputMessageBuilder.createOutputMessageBuilder(this.inputMessage, this.bodies).build();
+	}
+}
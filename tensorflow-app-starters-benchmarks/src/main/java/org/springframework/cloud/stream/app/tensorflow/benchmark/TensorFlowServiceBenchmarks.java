@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tensorflow.Tensor;
+
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorFlowService;
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorflowCommonProcessorProperties;
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * Benchmarks the {@link TensorFlowService#evaluate(Map, List)} of the bundled linear regression model. The model is
+ * trivial, so the measurement is dominated by the feed tensor creation, the session run and the JNI overhead.
+ *
+ * Run with -t (threads) equal to the pool size to measure the concurrent throughput of the pooled sessions.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TensorFlowServiceBenchmarks {
+
+	private static final Map<String, Object> FEEDS = Collections.singletonMap("Placeholder", 0.7f);
+
+	private static final List<String> FETCHED_NAMES = Collections.singletonList("add");
+
+	@Param({ "1" })
+	private int poolSize;
+
+	private TensorFlowService tensorFlowService;
+
+	@Setup
+	public void setup() {
+		TensorflowCommonProcessorProperties properties = Fixtures.processorProperties();
+		properties.getSession().setPoolSize(this.poolSize);
+		this.tensorFlowService = new TensorFlowService(new ClassPathResource(Fixtures.LINEAR_REGRESSION_MODEL),
+				properties);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.tensorFlowService.close();
+	}
+
+	@Benchmark
+	public void evaluate(Blackhole blackhole) {
+		Map<String, Tensor<?>> result = this.tensorFlowService.evaluate(FEEDS, FETCHED_NAMES);
+		for (Tensor<?> tensor : result.values()) {
+			blackhole.consume(tensor.floatValue());
+			tensor.close();
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tensorflow.Tensor;
+
+import org.springframework.cloud.stream.app.tensorflow.processor.DefaultOutputMessageBuilder;
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorEnvelopeConverter;
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorFormat;
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorJsonConverter;
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorPrecision;
+import org.springframework.cloud.stream.app.tensorflow.processor.TensorProtoConverter;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+/**
+ * Benchmarks the generic TensorFlow processor input converter, output converter and message builder for each
+ * {@link TensorFormat}. The input converter decodes a payload into feed tensors, the output converter encodes the
+ * fetched tensor (see TensorflowProcessorConfiguration).
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TensorflowProcessorBenchmarks {
+
+	private static final String FETCH_NAME = "output";
+
+	/**
+	 * The {@link TensorFormat}, optionally followed by the envelope {@link TensorPrecision}.
+	 */
+	@Param({ "json", "envelope", "envelope:float16", "envelope:int8", "proto" })
+	private String encoding;
+
+	@Param({ "1024" })
+	private int tensorSize;
+
+	private TensorFormat format;
+
+	private TensorPrecision precision = TensorPrecision.full;
+
+	private Tensor<?> outputTensor;
+
+	private Map<String, Tensor<?>> outputTensors;
+
+	private byte[] inputPayload;
+
+	private Object outputPayload;
+
+	private Message<byte[]> inputMessage;
+
+	private DefaultOutputMessageBuilder outputMessageBuilder;
+
+	@Setup
+	public void setup() {
+		String[] encoding = this.encoding.split(":");
+		this.format = TensorFormat.valueOf(encoding[0]);
+		if (encoding.length > 1) {
+			this.precision = TensorPrecision.valueOf(encoding[1]);
+		}
+
+		float[][] values = new float[1][this.tensorSize];
+		Random random = new Random(42);
+		for (int i = 0; i < this.tensorSize; i++) {
+			values[0][i] = random.nextFloat();
+		}
+		this.outputTensor = Tensor.create(values);
+		this.outputTensors = Collections.singletonMap(FETCH_NAME, this.outputTensor);
+
+		this.outputPayload = convertOutput();
+		this.inputPayload = (this.outputPayload instanceof String) ?
+				((String) this.outputPayload).getBytes(StandardCharsets.UTF_8) : (byte[]) this.outputPayload;
+		if (this.format == TensorFormat.proto) {
+			// The input converter expects a PredictRequest
+			this.inputPayload = TensorProtoConverter.toPredictRequest(this.outputTensors);
+		}
+
+		this.inputMessage = MessageBuilder.withPayload(this.inputPayload).build();
+		this.outputMessageBuilder = new DefaultOutputMessageBuilder(Fixtures.processorProperties());
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.outputTensor.close();
+	}
+
+	@Benchmark
+	public void inputConverter(Blackhole blackhole) {
+		switch (this.format) {
+		case envelope:
+			closeAll(blackhole, TensorEnvelopeConverter.toTensors(this.inputPayload));
+			break;
+		case proto:
+			closeAll(blackhole, TensorProtoConverter.fromPredictRequest(this.inputPayload));
+			break;
+		default:
+			close(blackhole, TensorJsonConverter.toTensor(this.inputPayload));
+		}
+	}
+
+	@Benchmark
+	public Object outputConverter() {
+		return convertOutput();
+	}
+
+	@Benchmark
+	public Message<?> messageBuilder() {
+		return this.outputMessageBuilder.createOutputMessageBuilder(this.inputMessage, this.outputPayload).build();
+	}
+
+	private Object convertOutput() {
+		switch (this.format) {
+		case envelope:
+			return TensorEnvelopeConverter.toEnvelope(this.outputTensors, this.precision);
+		case proto:
+			return TensorProtoConverter.toPredictResponse(this.outputTensors);
+		default:
+			return TensorJsonConverter.toJson(this.outputTensor);
+		}
+	}
+
+	private static void closeAll(Blackhole blackhole, Map<String, Tensor<?>> tensors) {
+		tensors.values().forEach(tensor -> close(blackhole, tensor));
+	}
+
+	private static void close(Blackhole blackhole, Tensor<?> tensor) {
+		blackhole.consume(tensor.numBytes());
+		tensor.close();
+	}
+}
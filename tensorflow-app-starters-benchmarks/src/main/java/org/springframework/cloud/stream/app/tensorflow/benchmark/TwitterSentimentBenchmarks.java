@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tensorflow.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tensorflow.Tensor;
+
+import org.springframework.cloud.stream.app.tensorflow.processor.DefaultOutputMessageBuilder;
+import org.springframework.cloud.stream.app.twitter.sentiment.processor.TwitterSentimentTensorflowInputConverter;
+import org.springframework.cloud.stream.app.twitter.sentiment.processor.TwitterSentimentTensorflowOutputConverter;
+import org.springframework.cloud.stream.app.twitter.sentiment.processor.WordVocabulary;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+/**
+ * Benchmarks the Twitter Sentiment processor input converter (including the {@link WordVocabulary} sentence
+ * vectorization), output converter and message builder, using the fixtures/twitter-sentiment tweet and vocabulary.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TwitterSentimentBenchmarks {
+
+	private byte[] tweet;
+
+	private String tweetText;
+
+	private WordVocabulary wordVocabulary;
+
+	private TwitterSentimentTensorflowInputConverter inputConverter;
+
+	private TwitterSentimentTensorflowOutputConverter outputConverter;
+
+	private DefaultOutputMessageBuilder outputMessageBuilder;
+
+	private Map<String, Object> processorContext;
+
+	private Tensor<?> outputTensor;
+
+	private Message<byte[]> inputMessage;
+
+	private String outputJson;
+
+	@Setup
+	public void setup() throws IOException {
+		this.tweet = Fixtures.bytes("twitter-sentiment/tweet.json");
+		this.tweetText = Fixtures.json("twitter-sentiment/tweet.json").get("text").asText();
+		try (InputStream is = Fixtures.resource("twitter-sentiment/vocabulary.csv").getInputStream()) {
+			this.wordVocabulary = new WordVocabulary(is);
+		}
+		this.inputConverter = new TwitterSentimentTensorflowInputConverter(
+				Fixtures.resource("twitter-sentiment/vocabulary.csv"));
+		this.outputConverter = new TwitterSentimentTensorflowOutputConverter();
+		this.outputMessageBuilder = new DefaultOutputMessageBuilder(Fixtures.processorProperties());
+
+		// The output converter reads the input tweet from the processor context
+		this.processorContext = Fixtures.processorContext();
+		this.inputConverter.convert(this.tweet, this.processorContext);
+
+		// The sentiment model output is a [12, 2] matrix
+		float[][] sentiment = new float[12][2];
+		sentiment[0] = new float[] { 0.1f, 0.9f };
+		this.outputTensor = Tensor.create(sentiment);
+
+		this.inputMessage = MessageBuilder.withPayload(this.tweet).build();
+		this.outputJson = this.outputConverter.convert(
+				Collections.singletonMap("output/Softmax", this.outputTensor), this.processorContext);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		this.outputTensor.close();
+		this.inputConverter.close();
+		this.wordVocabulary.close();
+	}
+
+	@Benchmark
+	public int[][] vectorizeSentence() {
+		return this.wordVocabulary.vectorizeSentence(this.tweetText);
+	}
+
+	@Benchmark
+	public Map<String, Object> inputConverter() {
+		return this.inputConverter.convert(this.tweet, Fixtures.processorContext());
+	}
+
+	@Benchmark
+	public String outputConverter() {
+		return this.outputConverter.convert(
+				Collections.singletonMap("output/Softmax", this.outputTensor), this.processorContext);
+	}
+
+	@Benchmark
+	public Message<?> messageBuilder() {
+		return this.outputMessageBuilder.createOutputMessageBuilder(this.inputMessage, this.outputJson).build();
+	}
+}